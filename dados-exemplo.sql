@@ -21,49 +21,54 @@ INSERT INTO sensor (id_escola, localizacao, ativo, tipo, descricao, data_criacao
 (5, 'Sala 5E', true, 'temperatura', 'Sensor da sala 5E', CURRENT_TIMESTAMP);
 
 -- Inserir leituras de exemplo (últimas 24 horas)
-INSERT INTO leitura (id_sensor, temperatura, umidade, timestamp) VALUES
+INSERT INTO leitura (id, id_sensor, temperatura, umidade, timestamp) VALUES
 -- Sensor 1 (Sala 1A)
-(1, 26.5, 65.2, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
-(1, 27.2, 63.8, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
-(1, 28.1, 62.5, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
-(1, 29.3, 61.2, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
-(1, 30.5, 59.8, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
+(1, 1, 26.5, 65.2, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
+(2, 1, 27.2, 63.8, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
+(3, 1, 28.1, 62.5, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
+(4, 1, 29.3, 61.2, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
+(5, 1, 30.5, 59.8, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
 
 -- Sensor 2 (Sala 2B)
-(2, 25.8, 67.1, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
-(2, 26.4, 66.3, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
-(2, 27.9, 64.7, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
-(2, 28.7, 63.2, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
-(2, 29.8, 61.9, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
+(6, 2, 25.8, 67.1, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
+(7, 2, 26.4, 66.3, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
+(8, 2, 27.9, 64.7, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
+(9, 2, 28.7, 63.2, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
+(10, 2, 29.8, 61.9, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
 
 -- Sensor 3 (Pátio)
-(3, 31.2, 58.5, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
-(3, 32.1, 57.2, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
-(3, 33.5, 55.8, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
-(3, 34.2, 54.3, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
-(3, 35.1, 53.1, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
+(11, 3, 31.2, 58.5, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
+(12, 3, 32.1, 57.2, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
+(13, 3, 33.5, 55.8, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
+(14, 3, 34.2, 54.3, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
+(15, 3, 35.1, 53.1, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
 
 -- Sensor 4 (Sala 3C)
-(4, 27.3, 64.8, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
-(4, 28.1, 63.5, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
-(4, 29.2, 62.1, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
-(4, 30.1, 60.7, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
-(4, 31.3, 59.2, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
+(16, 4, 27.3, 64.8, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
+(17, 4, 28.1, 63.5, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
+(18, 4, 29.2, 62.1, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
+(19, 4, 30.1, 60.7, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
+(20, 4, 31.3, 59.2, DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
 
 -- Sensor 5 (Biblioteca)
-(5, 24.5, 68.9, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
-(5, 25.2, 67.6, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
-(5, 26.1, 66.2, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
-(5, 26.8, 65.1, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
-(5, 27.5, 63.8, DATEADD('HOUR', -5, CURRENT_TIMESTAMP));
+(21, 5, 24.5, 68.9, DATEADD('HOUR', -1, CURRENT_TIMESTAMP)),
+(22, 5, 25.2, 67.6, DATEADD('HOUR', -2, CURRENT_TIMESTAMP)),
+(23, 5, 26.1, 66.2, DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
+(24, 5, 26.8, 65.1, DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
+(25, 5, 27.5, 63.8, DATEADD('HOUR', -5, CURRENT_TIMESTAMP));
 
 -- Inserir alguns alertas de exemplo
-INSERT INTO alerta (id_leitura, tipo, mensagem, nivel, status, timestamp) VALUES
-(13, 'Calor Extremo', 'Temperatura crítica detectada no pátio da EMEF Prof. João Silva. Risco extremo para a saúde dos estudantes. Recomenda-se suspender atividades ao ar livre e garantir hidratação adequada.', 'Crítico', 'Emitido', DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
-(14, 'Calor Extremo', 'Temperatura crítica mantida no pátio. Situação requer atenção imediata da coordenação.', 'Crítico', 'Em Andamento', DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
-(15, 'Calor Extremo', 'Temperatura extremamente alta no pátio. Medidas de emergência devem ser implementadas.', 'Crítico', 'Resolvido', DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
-(5, 'Temperatura Elevada', 'Temperatura acima do confortável na Sala 1A. Monitoramento recomendado.', 'Médio', 'Visualizado', DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
-(20, 'Temperatura Elevada', 'Temperatura elevada na Sala 3C. Verificar ventilação do ambiente.', 'Médio', 'Emitido', DATEADD('HOUR', -5, CURRENT_TIMESTAMP));
+INSERT INTO alerta (id, id_leitura, tipo, mensagem, nivel, status, timestamp) VALUES
+(1, 13, 'Calor Extremo', 'Temperatura crítica detectada no pátio da EMEF Prof. João Silva. Risco extremo para a saúde dos estudantes. Recomenda-se suspender atividades ao ar livre e garantir hidratação adequada.', 'Crítico', 'Emitido', DATEADD('HOUR', -3, CURRENT_TIMESTAMP)),
+(2, 14, 'Calor Extremo', 'Temperatura crítica mantida no pátio. Situação requer atenção imediata da coordenação.', 'Crítico', 'Em Andamento', DATEADD('HOUR', -4, CURRENT_TIMESTAMP)),
+(3, 15, 'Calor Extremo', 'Temperatura extremamente alta no pátio. Medidas de emergência devem ser implementadas.', 'Crítico', 'Resolvido', DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
+(4, 5, 'Temperatura Elevada', 'Temperatura acima do confortável na Sala 1A. Monitoramento recomendado.', 'Médio', 'Visualizado', DATEADD('HOUR', -5, CURRENT_TIMESTAMP)),
+(5, 20, 'Temperatura Elevada', 'Temperatura elevada na Sala 3C. Verificar ventilação do ambiente.', 'Médio', 'Emitido', DATEADD('HOUR', -5, CURRENT_TIMESTAMP));
+
+-- Leitura e alerta usam sequências com alocação em blocos de 50 (pooled optimizer);
+-- avançar as sequências para além dos IDs inseridos manualmente acima
+ALTER SEQUENCE leitura_seq RESTART WITH 100;
+ALTER SEQUENCE alerta_seq RESTART WITH 100;
 
 -- Inserir usuários de exemplo (para testes de autenticação local)
 INSERT INTO usuario (email, nome, provider, provider_id, role, ativo, data_criacao) VALUES
@@ -0,0 +1,51 @@
+package com.greenlight.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Janelas de supressão de alertas repetidos (app.alerts.dedup).
+ * Um alerta do mesmo tipo para o mesmo sensor não é emitido novamente dentro da janela.
+ */
+@ConfigurationProperties(prefix = "app.alerts.dedup")
+public class AlertaDedupProperties {
+
+    // Janela usada para tipos sem configuração específica
+    private Duration defaultWindow = Duration.ofMinutes(30);
+
+    // Janela por tipo de alerta (chave = tipo, ex.: "[Calor Extremo]": 15m)
+    private Map<String, Duration> windows = new HashMap<>();
+
+    /**
+     * Janela de supressão para o tipo de alerta
+     */
+    public Duration getJanela(String tipo) {
+        return windows.getOrDefault(tipo, defaultWindow);
+    }
+
+    /**
+     * Maior janela configurada (período carregado do banco na inicialização)
+     */
+    public Duration getMaiorJanela() {
+        return windows.values().stream().reduce(defaultWindow, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+    }
+
+    public Duration getDefaultWindow() {
+        return defaultWindow;
+    }
+
+    public void setDefaultWindow(Duration defaultWindow) {
+        this.defaultWindow = defaultWindow;
+    }
+
+    public Map<String, Duration> getWindows() {
+        return windows;
+    }
+
+    public void setWindows(Map<String, Duration> windows) {
+        this.windows = windows;
+    }
+}
@@ -0,0 +1,191 @@
+package com.greenlight.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regras de alerta sobre janelas de leituras por sensor (app.alerts.windows).
+ * Exemplos: "média >= 30°C nos últimos 20 minutos" ou "3 das últimas 5 leituras >= 32°C".
+ */
+@ConfigurationProperties(prefix = "app.alerts.windows")
+public class AlertaJanelaProperties {
+
+    // Período de leituras carregado do banco na inicialização (no mínimo a maior duração das regras)
+    private Duration warmup = Duration.ofHours(1);
+
+    private List<Regra> definitions = new ArrayList<>();
+
+    public enum Metrica {
+        TEMPERATURA, UMIDADE
+    }
+
+    public enum Agregacao {
+        // Média dos valores na janela de tempo
+        MEDIA,
+        // Quantidade de leituras que atendem o limite entre as últimas N
+        CONTAGEM
+    }
+
+    public enum TipoJanela {
+        // Janela que avança a cada leitura
+        DESLIZANTE,
+        // Janelas consecutivas sem sobreposição, avaliadas ao fechar
+        FIXA
+    }
+
+    public enum Comparacao {
+        MAIOR_OU_IGUAL, MENOR_OU_IGUAL
+    }
+
+    public static class Regra {
+
+        private String id;
+        private String tipo;
+        private String nivel;
+        private String mensagem;
+        private Metrica metrica = Metrica.TEMPERATURA;
+        private Agregacao agregacao = Agregacao.MEDIA;
+        private TipoJanela janela = TipoJanela.DESLIZANTE;
+        private Comparacao comparacao = Comparacao.MAIOR_OU_IGUAL;
+        private double limite;
+        // MEDIA: duração da janela e leituras mínimas para avaliar a média
+        private Duration duracao;
+        private int amostrasMinimas = 3;
+        // MEDIA deslizante: máximo de leituras mantidas por sensor
+        private int capacidade = 512;
+        // CONTAGEM: "minimo" das últimas "amostras" leituras
+        private int amostras;
+        private int minimo;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTipo() {
+            return tipo;
+        }
+
+        public void setTipo(String tipo) {
+            this.tipo = tipo;
+        }
+
+        public String getNivel() {
+            return nivel;
+        }
+
+        public void setNivel(String nivel) {
+            this.nivel = nivel;
+        }
+
+        public String getMensagem() {
+            return mensagem;
+        }
+
+        public void setMensagem(String mensagem) {
+            this.mensagem = mensagem;
+        }
+
+        public Metrica getMetrica() {
+            return metrica;
+        }
+
+        public void setMetrica(Metrica metrica) {
+            this.metrica = metrica;
+        }
+
+        public Agregacao getAgregacao() {
+            return agregacao;
+        }
+
+        public void setAgregacao(Agregacao agregacao) {
+            this.agregacao = agregacao;
+        }
+
+        public TipoJanela getJanela() {
+            return janela;
+        }
+
+        public void setJanela(TipoJanela janela) {
+            this.janela = janela;
+        }
+
+        public Comparacao getComparacao() {
+            return comparacao;
+        }
+
+        public void setComparacao(Comparacao comparacao) {
+            this.comparacao = comparacao;
+        }
+
+        public double getLimite() {
+            return limite;
+        }
+
+        public void setLimite(double limite) {
+            this.limite = limite;
+        }
+
+        public Duration getDuracao() {
+            return duracao;
+        }
+
+        public void setDuracao(Duration duracao) {
+            this.duracao = duracao;
+        }
+
+        public int getAmostrasMinimas() {
+            return amostrasMinimas;
+        }
+
+        public void setAmostrasMinimas(int amostrasMinimas) {
+            this.amostrasMinimas = amostrasMinimas;
+        }
+
+        public int getCapacidade() {
+            return capacidade;
+        }
+
+        public void setCapacidade(int capacidade) {
+            this.capacidade = capacidade;
+        }
+
+        public int getAmostras() {
+            return amostras;
+        }
+
+        public void setAmostras(int amostras) {
+            this.amostras = amostras;
+        }
+
+        public int getMinimo() {
+            return minimo;
+        }
+
+        public void setMinimo(int minimo) {
+            this.minimo = minimo;
+        }
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(Duration warmup) {
+        this.warmup = warmup;
+    }
+
+    public List<Regra> getDefinitions() {
+        return definitions;
+    }
+
+    public void setDefinitions(List<Regra> definitions) {
+        this.definitions = definitions;
+    }
+}
@@ -0,0 +1,155 @@
+package com.greenlight.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regras de limites para geração de alertas (app.alerts.rules).
+ * A ordem da lista define a prioridade: dentro de um mesmo grupo apenas a primeira
+ * regra satisfeita gera alerta (ex.: "Calor Extremo" antes de "Calor Intenso").
+ */
+@ConfigurationProperties(prefix = "app.alerts.rules")
+public class AlertaRegrasProperties {
+
+    // Histerese padrão: quanto a leitura precisa voltar além do limite para encerrar o episódio
+    private double hysteresisTemperature = 1.0;
+    private double hysteresisHumidity = 5.0;
+
+    private List<Regra> definitions = new ArrayList<>();
+
+    /**
+     * Regra de limites: a leitura dispara a regra quando temperatura e umidade estão
+     * dentro dos limites informados (inclusivos; limite ausente = sem restrição)
+     */
+    public static class Regra {
+
+        // Identificador usado pelas sobrescritas por escola/sensor (tabela alerta_regra_limite)
+        private String id;
+        private String tipo;
+        private String nivel;
+        private String mensagem;
+        // Regras do mesmo grupo são mutuamente exclusivas (padrão: o próprio id)
+        private String grupo;
+        private Double temperaturaMin;
+        private Double temperaturaMax;
+        private Double umidadeMin;
+        private Double umidadeMax;
+        // Histerese da regra (padrão: hysteresis-temperature / hysteresis-humidity)
+        private Double histereseTemperatura;
+        private Double histereseUmidade;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTipo() {
+            return tipo;
+        }
+
+        public void setTipo(String tipo) {
+            this.tipo = tipo;
+        }
+
+        public String getNivel() {
+            return nivel;
+        }
+
+        public void setNivel(String nivel) {
+            this.nivel = nivel;
+        }
+
+        public String getMensagem() {
+            return mensagem;
+        }
+
+        public void setMensagem(String mensagem) {
+            this.mensagem = mensagem;
+        }
+
+        public String getGrupo() {
+            return grupo != null ? grupo : id;
+        }
+
+        public void setGrupo(String grupo) {
+            this.grupo = grupo;
+        }
+
+        public Double getTemperaturaMin() {
+            return temperaturaMin;
+        }
+
+        public void setTemperaturaMin(Double temperaturaMin) {
+            this.temperaturaMin = temperaturaMin;
+        }
+
+        public Double getTemperaturaMax() {
+            return temperaturaMax;
+        }
+
+        public void setTemperaturaMax(Double temperaturaMax) {
+            this.temperaturaMax = temperaturaMax;
+        }
+
+        public Double getUmidadeMin() {
+            return umidadeMin;
+        }
+
+        public void setUmidadeMin(Double umidadeMin) {
+            this.umidadeMin = umidadeMin;
+        }
+
+        public Double getUmidadeMax() {
+            return umidadeMax;
+        }
+
+        public void setUmidadeMax(Double umidadeMax) {
+            this.umidadeMax = umidadeMax;
+        }
+
+        public Double getHistereseTemperatura() {
+            return histereseTemperatura;
+        }
+
+        public void setHistereseTemperatura(Double histereseTemperatura) {
+            this.histereseTemperatura = histereseTemperatura;
+        }
+
+        public Double getHistereseUmidade() {
+            return histereseUmidade;
+        }
+
+        public void setHistereseUmidade(Double histereseUmidade) {
+            this.histereseUmidade = histereseUmidade;
+        }
+    }
+
+    public double getHysteresisTemperature() {
+        return hysteresisTemperature;
+    }
+
+    public void setHysteresisTemperature(double hysteresisTemperature) {
+        this.hysteresisTemperature = hysteresisTemperature;
+    }
+
+    public double getHysteresisHumidity() {
+        return hysteresisHumidity;
+    }
+
+    public void setHysteresisHumidity(double hysteresisHumidity) {
+        this.hysteresisHumidity = hysteresisHumidity;
+    }
+
+    public List<Regra> getDefinitions() {
+        return definitions;
+    }
+
+    public void setDefinitions(List<Regra> definitions) {
+        this.definitions = definitions;
+    }
+}
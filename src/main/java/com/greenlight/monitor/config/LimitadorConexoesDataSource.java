@@ -0,0 +1,108 @@
+package com.greenlight.monitor.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DataSource que limita as conexões emprestadas ao tamanho do pool.
+ * Com threads virtuais o número de threads concorrentes deixa de ser limitado pelo Tomcat e pelos
+ * consumidores; as excedentes aguardam aqui, em fila justa (FIFO), em vez de disputarem o pool do
+ * Hikari. A permissão é devolvida quando a conexão é fechada.
+ */
+public class LimitadorConexoesDataSource extends DelegatingDataSource {
+
+    private final Semaphore permissoes;
+    private final int limite;
+    private final long esperaMaximaMillis;
+
+    public LimitadorConexoesDataSource(DataSource alvo, int limite, Duration esperaMaxima) {
+        super(alvo);
+        this.limite = limite;
+        this.permissoes = new Semaphore(limite, true);
+        this.esperaMaximaMillis = esperaMaxima.toMillis();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        adquirir();
+        try {
+            return liberarAoFechar(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        adquirir();
+        try {
+            return liberarAoFechar(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+
+    public int getLimite() {
+        return limite;
+    }
+
+    public int getEmUso() {
+        return limite - permissoes.availablePermits();
+    }
+
+    public int getAguardando() {
+        return permissoes.getQueueLength();
+    }
+
+    private void adquirir() throws SQLException {
+        try {
+            if (!permissoes.tryAcquire(esperaMaximaMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Nenhuma conexão liberada em " + esperaMaximaMillis +
+                        " ms (" + getAguardando() + " threads aguardando, limite " + limite + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrompido aguardando conexão", e);
+        }
+    }
+
+    private Connection liberarAoFechar(Connection conexao) {
+        AtomicBoolean liberada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "close":
+                            try {
+                                conexao.close();
+                            } finally {
+                                if (liberada.compareAndSet(false, true)) {
+                                    permissoes.release();
+                                }
+                            }
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return metodo.invoke(conexao, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                    }
+                });
+    }
+}
@@ -1,5 +1,9 @@
 package com.greenlight.monitor.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
@@ -10,6 +14,14 @@ import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuração do RabbitMQ para recebimento de mensagens de sensores e envio de alertas.
@@ -37,6 +49,35 @@ public class RabbitMQConfig {
     @Value("${app.rabbitmq.routing-key.alerts:alerts.key}")
     private String alertsRoutingKey;
 
+    // Configurações do consumo em lote
+    @Value("${app.rabbitmq.listener.batch.size:100}")
+    private int batchSize;
+
+    @Value("${app.rabbitmq.listener.batch.receive-timeout:500}")
+    private long batchReceiveTimeout;
+
+    // Permanência na fila de espera das leituras com falha transitória no modo em lote
+    @Value("${app.rabbitmq.listener.retry.backoff:1s}")
+    private Duration retryBackoff;
+
+    // Consumidores e prefetch dos listeners (com threads virtuais podem ser maiores: o acesso ao
+    // banco é limitado pelo LimitadorConexoesDataSource)
+    @Value("${app.rabbitmq.listener.concurrency:3}")
+    private int concurrentConsumers;
+
+    @Value("${app.rabbitmq.listener.max-concurrency:10}")
+    private int maxConcurrentConsumers;
+
+    @Value("${app.rabbitmq.listener.prefetch:10}")
+    private int prefetchCount;
+
+    // Leituras entregues e ainda sem ack no modo em shards (somadas entre todos os shards)
+    @Value("${app.rabbitmq.listener.sharded.prefetch:500}")
+    private int shardedPrefetch;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuais;
+
     // Message Converter
     @Bean
     public MessageConverter jsonMessageConverter() {
@@ -45,24 +86,132 @@ public class RabbitMQConfig {
 
     // RabbitTemplate configuration
     @Bean
+    @Primary
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(jsonMessageConverter());
         return template;
     }
 
+    /**
+     * RabbitTemplate do modo de publicação com confirmações (app.rabbitmq.publisher.mode=confirmed).
+     * Usa a conexão de publicação separada, para que o controle de fluxo do broker sobre os
+     * publicadores não bloqueie os consumidores de leituras.
+     */
+    @Bean
+    public RabbitTemplate publisherRabbitTemplate(ConnectionFactory connectionFactory) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMessageConverter(jsonMessageConverter());
+        template.setUsePublisherConnection(true);
+        return template;
+    }
+
     // Listener Container Factory
     @Bean
-    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory) {
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                               MeterRegistry meterRegistry) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setConcurrentConsumers(concurrentConsumers);
+        factory.setMaxConcurrentConsumers(maxConcurrentConsumers);
+        factory.setPrefetchCount(prefetchCount);
+        configurarThreads(factory, "rabbit-listener-");
+        factory.setAdviceChain(medirProcessamento(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Listener Container Factory para consumo em lote das leituras de sensores.
+     * Entrega até {@code batchSize} mensagens por chamada, ou o que tiver chegado após
+     * {@code batchReceiveTimeout} ms sem novas mensagens. O ack é manual e feito pelo
+     * listener, mensagem a mensagem, após o commit; uma mensagem com falha vai para a DLQ
+     * sem devolver o lote inteiro à fila.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                                    MeterRegistry meterRegistry) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(jsonMessageConverter());
-        factory.setConcurrentConsumers(3);
-        factory.setMaxConcurrentConsumers(10);
-        factory.setPrefetchCount(10);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setDeBatchingEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeout);
+        // O prefetch precisa comportar um lote inteiro
+        factory.setPrefetchCount(Math.max(batchSize, prefetchCount));
+        factory.setConcurrentConsumers(concurrentConsumers);
+        factory.setMaxConcurrentConsumers(maxConcurrentConsumers);
+        configurarThreads(factory, "rabbit-batch-");
+        factory.setAdviceChain(medirProcessamento(meterRegistry));
         return factory;
     }
 
+    /**
+     * Listener Container Factory do modo em shards (app.rabbitmq.listener.mode=sharded).
+     * Um único consumidor preserva a ordem da fila; o ack é manual, feito pelo
+     * LeituraShardService após o commit, e o prefetch limita as leituras em processamento.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory shardedRabbitListenerContainerFactory(ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(shardedPrefetch);
+        configurarThreads(factory, "rabbit-shards-");
+        return factory;
+    }
+
+    /**
+     * Com spring.threads.virtual.enabled cada consumidor roda em uma thread virtual
+     * (bloqueios em JDBC e nas chamadas de IA não ocupam threads de plataforma)
+     */
+    private void configurarThreads(SimpleRabbitListenerContainerFactory factory, String prefixo) {
+        if (threadsVirtuais) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor(prefixo));
+        }
+    }
+
+    /**
+     * Mede o processamento de cada entrega (mensagem ou lote), incluindo o commit da transação
+     * do listener; usado pelo ConsumoAdaptativoService como sinal de latência.
+     * Timer e contador são criados uma vez por fila e reutilizados nas entregas seguintes.
+     */
+    private MethodInterceptor medirProcessamento(MeterRegistry meterRegistry) {
+        Map<String, Timer> timers = new ConcurrentHashMap<>();
+        Map<String, Counter> contadores = new ConcurrentHashMap<>();
+        return invocacao -> {
+            Object dados = invocacao.getArguments()[1];
+            Message mensagem = dados instanceof List<?> lote
+                    ? (lote.isEmpty() ? null : (Message) lote.get(0))
+                    : (Message) dados;
+            int mensagens = dados instanceof List<?> lote ? lote.size() : 1;
+            String fila = mensagem != null && mensagem.getMessageProperties().getConsumerQueue() != null
+                    ? mensagem.getMessageProperties().getConsumerQueue() : "desconhecida";
+
+            long inicio = System.nanoTime();
+            try {
+                return invocacao.proceed();
+            } finally {
+                timers.computeIfAbsent(fila, f -> Timer.builder("rabbitmq.listener.processing")
+                                .description("Tempo de processamento de uma entrega do RabbitMQ, com o commit")
+                                .tag("queue", f)
+                                .register(meterRegistry))
+                        .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                contadores.computeIfAbsent(fila, f -> Counter.builder("rabbitmq.listener.messages")
+                                .description("Mensagens processadas pelos listeners")
+                                .tag("queue", f)
+                                .register(meterRegistry))
+                        .increment(mensagens);
+            }
+        };
+    }
+
     // ========== SENSOR EXCHANGE AND QUEUE ==========
 
     /**
@@ -100,6 +249,20 @@ public class RabbitMQConfig {
                 .with(sensorReadingsRoutingKey);
     }
 
+    /**
+     * Fila de espera das leituras com falha transitória no modo em lote: sem consumidores, cada
+     * mensagem volta à fila de leituras (pelo exchange de sensores) quando o TTL expira
+     */
+    @Bean
+    public Queue sensorReadingsRetryQueue() {
+        return QueueBuilder
+                .durable(sensorReadingsQueue + ".retry")
+                .withArgument("x-dead-letter-exchange", sensorExchange)
+                .withArgument("x-dead-letter-routing-key", sensorReadingsRoutingKey)
+                .withArgument("x-message-ttl", retryBackoff.toMillis())
+                .build();
+    }
+
     /**
      * Dead Letter Exchange para mensagens de sensores que falharam
      */
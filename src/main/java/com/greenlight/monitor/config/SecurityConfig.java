@@ -30,7 +30,7 @@ public class SecurityConfig {
                 // API pública para recebimento de dados de sensores
                 .requestMatchers("/api/public/**").permitAll()
                 // Endpoints administrativos requerem autenticação
-                .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers("/admin/**", "/api/admin/**").hasRole("ADMIN")
                 // Demais endpoints requerem autenticação
                 .anyRequest().authenticated()
             )
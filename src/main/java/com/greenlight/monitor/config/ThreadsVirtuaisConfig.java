@@ -0,0 +1,71 @@
+package com.greenlight.monitor.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Ajustes do modo de threads virtuais (spring.threads.virtual.enabled=true, Java 21).
+ * O Spring Boot já coloca o Tomcat e os agendamentos em threads virtuais; os consumidores do
+ * RabbitMQ são configurados no RabbitMQConfig. Aqui o DataSource do Hikari é envolvido pelo
+ * LimitadorConexoesDataSource, com o limite igual ao tamanho máximo do pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class ThreadsVirtuaisConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadsVirtuaisConfig.class);
+
+    @Bean
+    public static BeanPostProcessor limitadorConexoesPostProcessor(Environment environment) {
+        boolean habilitado = environment.getProperty("app.datasource.limiter.enabled", Boolean.class, true);
+        Duration esperaMaxima = environment.getProperty("app.datasource.limiter.acquire-timeout",
+                Duration.class, Duration.ofSeconds(30));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!habilitado || !(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                // Propriedades do pool já vinculadas neste ponto
+                int limite = hikari.getMaximumPoolSize();
+                logger.info("Threads virtuais: conexões do DataSource '{}' limitadas a {} (espera máxima {})",
+                        beanName, limite, esperaMaxima);
+                return new LimitadorConexoesDataSource(hikari, limite, esperaMaxima);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder limitadorConexoesMetricas(DataSource dataSource) {
+        return registry -> {
+            LimitadorConexoesDataSource limitador;
+            try {
+                if (!dataSource.isWrapperFor(LimitadorConexoesDataSource.class)) {
+                    return;
+                }
+                limitador = dataSource.unwrap(LimitadorConexoesDataSource.class);
+            } catch (SQLException e) {
+                return;
+            }
+            Gauge.builder("db.connections.limiter.waiting", limitador, LimitadorConexoesDataSource::getAguardando)
+                    .description("Threads aguardando uma conexão do banco")
+                    .register(registry);
+            Gauge.builder("db.connections.limiter.in.use", limitador, LimitadorConexoesDataSource::getEmUso)
+                    .description("Conexões emprestadas pelo limitador")
+                    .register(registry);
+        };
+    }
+}
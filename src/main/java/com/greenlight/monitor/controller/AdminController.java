@@ -0,0 +1,96 @@
+package com.greenlight.monitor.controller;
+
+import com.greenlight.monitor.service.AlertaRegraService;
+import com.greenlight.monitor.service.ConsumoAdaptativoService;
+import com.greenlight.monitor.service.LeituraAgregadaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Endpoints administrativos de manutenção (requerem perfil ADMIN).
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    @Autowired
+    private LeituraAgregadaService leituraAgregadaService;
+
+    @Autowired
+    private AlertaRegraService alertaRegraService;
+
+    @Autowired
+    private ConsumoAdaptativoService consumoAdaptativoService;
+
+    /**
+     * Dispara a reconstrução assíncrona dos agregados de leituras para os dias em [de, ate)
+     * (sem {@code ate}, até o dia atual inclusive)
+     */
+    @PostMapping("/leituras/agregados/reconstruir")
+    public ResponseEntity<Map<String, Object>> reconstruirAgregados(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate de,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate ate) {
+
+        if (leituraAgregadaService.isReconstrucaoEmAndamento()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("mensagem", "Reconstrução dos agregados já está em andamento"));
+        }
+
+        LocalDate fim = ate != null ? ate : LocalDate.now().plusDays(1);
+        if (!de.isBefore(fim)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("mensagem", "A data inicial deve ser anterior à data final"));
+        }
+
+        leituraAgregadaService.reconstruir(de, fim);
+        return ResponseEntity.accepted()
+                .body(Map.of("mensagem", "Reconstrução dos agregados iniciada", "de", de, "ate", fim));
+    }
+
+    /**
+     * Recompila as regras de alerta com as sobrescritas atuais do banco.
+     * Alterações em app.alerts.rules.definitions exigem reinício.
+     */
+    @PostMapping("/alertas/regras/recarregar")
+    public ResponseEntity<Map<String, Object>> recarregarRegras() {
+        try {
+            int regras = alertaRegraService.recarregar();
+            return ResponseEntity.ok(Map.of("mensagem", "Regras de alerta recarregadas", "regras", regras));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("mensagem", e.getMessage()));
+        }
+    }
+
+    /**
+     * Estado do controle adaptativo de consumidores das leituras
+     */
+    @GetMapping("/rabbitmq/consumo")
+    public ResponseEntity<ConsumoAdaptativoService.Estado> estadoConsumo() {
+        return ResponseEntity.ok(consumoAdaptativoService.getEstado());
+    }
+
+    /**
+     * Fixa manualmente o número de consumidores (limitado aos valores configurados)
+     */
+    @PutMapping("/rabbitmq/consumo")
+    public ResponseEntity<ConsumoAdaptativoService.Estado> fixarConsumo(@RequestParam int consumidores) {
+        if (consumidores < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(consumoAdaptativoService.fixar(consumidores));
+    }
+
+    /**
+     * Remove a fixação manual e devolve o consumo ao controle adaptativo
+     */
+    @DeleteMapping("/rabbitmq/consumo")
+    public ResponseEntity<ConsumoAdaptativoService.Estado> liberarConsumo() {
+        return ResponseEntity.ok(consumoAdaptativoService.liberar());
+    }
+}
@@ -0,0 +1,48 @@
+package com.greenlight.monitor.controller;
+
+import com.greenlight.monitor.dto.AlertaResumoDTO;
+import com.greenlight.monitor.dto.SliceDTO;
+import com.greenlight.monitor.service.AlertaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Controller para consulta de alertas.
+ */
+@Controller
+@RequestMapping("/alertas")
+public class AlertaController {
+
+    @Autowired
+    private AlertaService alertaService;
+
+    /**
+     * API endpoint com paginação por chave (keyset), dos alertas mais recentes para os mais antigos.
+     * Use o nextCursor da resposta como parâmetro cursor da próxima chamada.
+     */
+    @GetMapping("/api/scroll")
+    @ResponseBody
+    public ResponseEntity<SliceDTO<AlertaResumoDTO>> scrollApi(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long escolaId,
+            @RequestParam(required = false) Long sensorId,
+            @RequestParam(required = false) String tipo,
+            @RequestParam(required = false) String nivel,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim) {
+
+        try {
+            return ResponseEntity.ok(alertaService.scrollByFiltros(escolaId, sensorId, tipo, nivel, status,
+                    inicio, fim, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.greenlight.monitor.controller;
 
+import com.greenlight.monitor.dto.EscolaResumoDTO;
+import com.greenlight.monitor.dto.SliceDTO;
 import com.greenlight.monitor.entity.Escola;
 import com.greenlight.monitor.service.EscolaService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +9,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -229,5 +232,25 @@ public class EscolaController {
 
         return escolaService.findByFiltros(nome, cidade, estado, ativo, pageable);
     }
-}
 
+    /**
+     * API endpoint com paginação por chave (keyset) para rolagem contínua.
+     * Use o nextCursor da resposta como parâmetro cursor da próxima chamada.
+     */
+    @GetMapping("/api/scroll")
+    @ResponseBody
+    public ResponseEntity<SliceDTO<EscolaResumoDTO>> scrollApi(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String nome,
+            @RequestParam(required = false) String cidade,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) Boolean ativo) {
+
+        try {
+            return ResponseEntity.ok(escolaService.scrollByFiltros(nome, cidade, estado, ativo, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package com.greenlight.monitor.controller;
 
-import com.greenlight.monitor.service.EscolaService;
-import com.greenlight.monitor.service.AlertaService;
+import com.greenlight.monitor.service.DashboardService;
+import com.greenlight.monitor.service.TempoRealService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.security.Principal;
+import java.util.List;
 
 /**
  * Controller principal da aplicação.
@@ -19,17 +28,17 @@ import java.security.Principal;
 public class HomeController {
 
     @Autowired
-    private EscolaService escolaService;
+    private DashboardService dashboardService;
 
     @Autowired
-    private AlertaService alertaService;
+    private TempoRealService tempoRealService;
 
     /**
      * Página inicial pública
      */
     @GetMapping("/")
     public String home(Model model) {
-        model.addAttribute("totalEscolas", escolaService.countAtivas());
+        model.addAttribute("totalEscolas", dashboardService.getSnapshot().estatisticas().totalEscolas());
         return "home";
     }
 
@@ -46,11 +55,14 @@ public class HomeController {
      */
     @GetMapping("/dashboard")
     public String dashboard(Model model, Authentication authentication) {
-        // Estatísticas gerais
-        model.addAttribute("totalEscolas", escolaService.countAtivas());
-        model.addAttribute("totalEscolasComSensores", escolaService.findEscolasComSensoresAtivos().size());
-        model.addAttribute("alertasAtivos", alertaService.countAlertasAtivos());
-        model.addAttribute("alertasCriticos", alertaService.countAlertasCriticosAtivos());
+        // Estatísticas gerais (snapshot em memória, sem consultas ao banco)
+        DashboardService.Snapshot snapshot = dashboardService.getSnapshot();
+        DashboardService.Estatisticas estatisticas = snapshot.estatisticas();
+        model.addAttribute("totalEscolas", estatisticas.totalEscolas());
+        model.addAttribute("totalEscolasComSensores", estatisticas.totalEscolasComSensores());
+        model.addAttribute("sensoresAtivos", estatisticas.sensoresAtivos());
+        model.addAttribute("alertasAtivos", estatisticas.alertasAtivos());
+        model.addAttribute("alertasCriticos", estatisticas.alertasCriticos());
 
         // Informações do usuário
         if (authentication != null) {
@@ -61,14 +73,47 @@ public class HomeController {
         }
 
         // Escolas com sensores ativos para o mapa/lista
-        model.addAttribute("escolasComSensores", escolaService.findEscolasComSensoresAtivos());
+        model.addAttribute("escolasComSensores", snapshot.escolasComSensores());
 
         // Alertas recentes
-        model.addAttribute("alertasRecentes", alertaService.findAlertasRecentes(10));
+        model.addAttribute("alertasRecentes", estatisticas.alertasRecentes());
 
         return "dashboard";
     }
 
+    /**
+     * Estatísticas do dashboard para a atualização periódica da página.
+     * Responde 304 quando a versão do snapshot (ETag) não mudou desde a última consulta.
+     */
+    @GetMapping("/api/dashboard/stats")
+    @ResponseBody
+    public ResponseEntity<DashboardService.Estatisticas> dashboardStats(WebRequest request) {
+        DashboardService.Snapshot snapshot = dashboardService.getSnapshot();
+        String etag = snapshot.etag();
+        // Trata If-None-Match com várias ETags, "*" e ETags fracas (W/"...")
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(snapshot.estatisticas());
+    }
+
+    /**
+     * Canal de tempo real (Server-Sent Events) com eventos "leitura", "alerta" e "stats".
+     * Sem escolaId recebe os eventos de todas as escolas.
+     */
+    @GetMapping(value = "/api/dashboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> dashboardStream(@RequestParam(required = false) List<Long> escolaId) {
+        SseEmitter emitter = tempoRealService.assinar(escolaId, dashboardService.getSnapshot().estatisticas());
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(emitter);
+    }
+
     /**
      * Página sobre o sistema
      */
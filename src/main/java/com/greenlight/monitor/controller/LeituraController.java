@@ -0,0 +1,48 @@
+package com.greenlight.monitor.controller;
+
+import com.greenlight.monitor.dto.LeituraResumoDTO;
+import com.greenlight.monitor.dto.SliceDTO;
+import com.greenlight.monitor.service.LeituraService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Controller para consulta de leituras.
+ */
+@Controller
+@RequestMapping("/leituras")
+public class LeituraController {
+
+    @Autowired
+    private LeituraService leituraService;
+
+    /**
+     * API endpoint com paginação por chave (keyset), das leituras mais recentes para as mais antigas.
+     * Use o nextCursor da resposta como parâmetro cursor da próxima chamada.
+     */
+    @GetMapping("/api/scroll")
+    @ResponseBody
+    public ResponseEntity<SliceDTO<LeituraResumoDTO>> scrollApi(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long sensorId,
+            @RequestParam(required = false) Long escolaId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+            @RequestParam(required = false) BigDecimal tempMin,
+            @RequestParam(required = false) BigDecimal tempMax) {
+
+        try {
+            return ResponseEntity.ok(leituraService.scrollByFiltros(sensorId, escolaId, inicio, fim,
+                    tempMin, tempMax, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
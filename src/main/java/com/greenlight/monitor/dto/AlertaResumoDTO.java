@@ -0,0 +1,21 @@
+package com.greenlight.monitor.dto;
+
+import com.greenlight.monitor.entity.Alerta;
+
+import java.time.LocalDateTime;
+
+/**
+ * Representação de um alerta nas listagens JSON.
+ */
+public record AlertaResumoDTO(Long id, Long leituraId, Long sensorId, String tipo, String nivel,
+                              String status, String mensagem, LocalDateTime timestamp) {
+
+    /**
+     * Espera a leitura já carregada (JOIN FETCH); o sensor é usado apenas pelo ID
+     */
+    public static AlertaResumoDTO from(Alerta alerta) {
+        return new AlertaResumoDTO(alerta.getId(), alerta.getLeitura().getId(),
+                alerta.getLeitura().getSensor().getId(), alerta.getTipo(), alerta.getNivel(),
+                alerta.getStatus(), alerta.getMensagem(), alerta.getTimestamp());
+    }
+}
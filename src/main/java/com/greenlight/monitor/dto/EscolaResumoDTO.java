@@ -0,0 +1,14 @@
+package com.greenlight.monitor.dto;
+
+import com.greenlight.monitor.entity.Escola;
+
+/**
+ * Representação de uma escola nas listagens JSON (sem a coleção de sensores).
+ */
+public record EscolaResumoDTO(Long id, String nome, String cidade, String estado, Boolean ativo) {
+
+    public static EscolaResumoDTO from(Escola escola) {
+        return new EscolaResumoDTO(escola.getId(), escola.getNome(), escola.getCidade(),
+                escola.getEstado(), escola.getAtivo());
+    }
+}
@@ -0,0 +1,128 @@
+package com.greenlight.monitor.dto;
+
+/**
+ * Estatísticas de temperatura e umidade de um conjunto de leituras.
+ * Guarda os momentos (contagem, soma, soma dos quadrados, mínimo e máximo), de modo que
+ * estatísticas de intervalos disjuntos podem ser combinadas sem perda.
+ */
+public class EstatisticasLeituraDTO {
+
+    private static final EstatisticasLeituraDTO VAZIO = new EstatisticasLeituraDTO(0L,
+            null, null, null, null, null, null, null, null);
+
+    private final long quantidade;
+    private final double temperaturaSoma;
+    private final double temperaturaMin;
+    private final double temperaturaMax;
+    private final double temperaturaSomaQuadrados;
+    private final double umidadeSoma;
+    private final double umidadeMin;
+    private final double umidadeMax;
+    private final double umidadeSomaQuadrados;
+
+    /**
+     * Construtor usado nas consultas agregadas (SUM/MIN/MAX retornam null quando não há linhas)
+     */
+    public EstatisticasLeituraDTO(Long quantidade,
+                                  Double temperaturaSoma, Double temperaturaMin,
+                                  Double temperaturaMax, Double temperaturaSomaQuadrados,
+                                  Double umidadeSoma, Double umidadeMin,
+                                  Double umidadeMax, Double umidadeSomaQuadrados) {
+        this.quantidade = quantidade != null ? quantidade : 0L;
+        this.temperaturaSoma = temperaturaSoma != null ? temperaturaSoma : 0.0;
+        this.temperaturaMin = temperaturaMin != null ? temperaturaMin : Double.POSITIVE_INFINITY;
+        this.temperaturaMax = temperaturaMax != null ? temperaturaMax : Double.NEGATIVE_INFINITY;
+        this.temperaturaSomaQuadrados = temperaturaSomaQuadrados != null ? temperaturaSomaQuadrados : 0.0;
+        this.umidadeSoma = umidadeSoma != null ? umidadeSoma : 0.0;
+        this.umidadeMin = umidadeMin != null ? umidadeMin : Double.POSITIVE_INFINITY;
+        this.umidadeMax = umidadeMax != null ? umidadeMax : Double.NEGATIVE_INFINITY;
+        this.umidadeSomaQuadrados = umidadeSomaQuadrados != null ? umidadeSomaQuadrados : 0.0;
+    }
+
+    public static EstatisticasLeituraDTO vazio() {
+        return VAZIO;
+    }
+
+    /**
+     * Combina com as estatísticas de outro conjunto disjunto de leituras
+     */
+    public EstatisticasLeituraDTO combinar(EstatisticasLeituraDTO outro) {
+        if (outro.isVazio()) {
+            return this;
+        }
+        if (isVazio()) {
+            return outro;
+        }
+        return new EstatisticasLeituraDTO(
+                quantidade + outro.quantidade,
+                temperaturaSoma + outro.temperaturaSoma,
+                Math.min(temperaturaMin, outro.temperaturaMin),
+                Math.max(temperaturaMax, outro.temperaturaMax),
+                temperaturaSomaQuadrados + outro.temperaturaSomaQuadrados,
+                umidadeSoma + outro.umidadeSoma,
+                Math.min(umidadeMin, outro.umidadeMin),
+                Math.max(umidadeMax, outro.umidadeMax),
+                umidadeSomaQuadrados + outro.umidadeSomaQuadrados);
+    }
+
+    public boolean isVazio() {
+        return quantidade == 0;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+
+    public double getTemperaturaMedia() {
+        return isVazio() ? 0.0 : temperaturaSoma / quantidade;
+    }
+
+    public double getTemperaturaMinima() {
+        return isVazio() ? 0.0 : temperaturaMin;
+    }
+
+    public double getTemperaturaMaxima() {
+        return isVazio() ? 0.0 : temperaturaMax;
+    }
+
+    public double getTemperaturaDesvioPadrao() {
+        return desvioPadrao(temperaturaSoma, temperaturaSomaQuadrados);
+    }
+
+    public double getUmidadeMedia() {
+        return isVazio() ? 0.0 : umidadeSoma / quantidade;
+    }
+
+    public double getUmidadeMinima() {
+        return isVazio() ? 0.0 : umidadeMin;
+    }
+
+    public double getUmidadeMaxima() {
+        return isVazio() ? 0.0 : umidadeMax;
+    }
+
+    public double getUmidadeDesvioPadrao() {
+        return desvioPadrao(umidadeSoma, umidadeSomaQuadrados);
+    }
+
+    /**
+     * Desvio padrão populacional a partir da soma e da soma dos quadrados
+     */
+    private double desvioPadrao(double soma, double somaQuadrados) {
+        if (isVazio()) {
+            return 0.0;
+        }
+        double media = soma / quantidade;
+        // max evita raiz de número negativo por erro de arredondamento
+        return Math.sqrt(Math.max(0.0, somaQuadrados / quantidade - media * media));
+    }
+
+    @Override
+    public String toString() {
+        return "EstatisticasLeituraDTO{" +
+                "quantidade=" + quantidade +
+                ", temperaturaMedia=" + getTemperaturaMedia() +
+                ", umidadeMedia=" + getUmidadeMedia() +
+                '}';
+    }
+}
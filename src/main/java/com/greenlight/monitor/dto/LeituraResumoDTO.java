@@ -0,0 +1,19 @@
+package com.greenlight.monitor.dto;
+
+import com.greenlight.monitor.entity.Leitura;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Representação de uma leitura nas listagens JSON (sem carregar o sensor).
+ */
+public record LeituraResumoDTO(Long id, Long sensorId, BigDecimal temperatura, BigDecimal umidade,
+                               LocalDateTime timestamp) {
+
+    public static LeituraResumoDTO from(Leitura leitura) {
+        // getId() do proxy do sensor não dispara consulta
+        return new LeituraResumoDTO(leitura.getId(), leitura.getSensor().getId(), leitura.getTemperatura(),
+                leitura.getUmidade(), leitura.getTimestamp());
+    }
+}
@@ -0,0 +1,54 @@
+package com.greenlight.monitor.dto;
+
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de resultados da paginação por chave (keyset).
+ * Não inclui total de registros: {@code nextCursor} é o token da próxima página,
+ * ou null quando não há mais resultados.
+ */
+public class SliceDTO<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    public SliceDTO(List<T> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Converte um Slice de entidades, gerando o cursor a partir do último registro da página
+     */
+    public static <E, T> SliceDTO<T> from(Slice<E> slice, Function<E, T> conversor, Function<E, String> cursor) {
+        List<E> conteudo = slice.getContent();
+        String nextCursor = slice.hasNext() && !conteudo.isEmpty()
+                ? cursor.apply(conteudo.get(conteudo.size() - 1))
+                : null;
+        return new SliceDTO<>(conteudo.stream().map(conversor).toList(), slice.getSize(),
+                slice.hasNext(), nextCursor);
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -4,18 +4,23 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
  * Entidade que representa um alerta no sistema.
  * Gera notificações automáticas com base nas leituras recebidas, quando são detectados valores críticos.
+ * Alertas de regras de limite são episódios: abertos ao entrar na condição e encerrados (timestampFim)
+ * ao sair dela, com o valor de pico atualizado no próprio registro.
  */
 @Entity
 @Table(name = "alerta")
 public class Alerta {
 
+    // Sequência com alocação em blocos (pooled optimizer) para permitir inserts em lote via JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "alerta_seq")
+    @SequenceGenerator(name = "alerta_seq", sequenceName = "alerta_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Leitura é obrigatória")
@@ -47,6 +52,20 @@ public class Alerta {
     @Column(name = "timestamp", nullable = false)
     private LocalDateTime timestamp;
 
+    // Regra de limite que abriu o episódio (nulo para alertas pontuais)
+    @Column(name = "regra", length = 50)
+    private String regra;
+
+    // Fim do episódio (nulo enquanto a condição persiste)
+    @Column(name = "timestamp_fim")
+    private LocalDateTime timestampFim;
+
+    @Column(name = "valor_pico", precision = 5, scale = 2)
+    private BigDecimal valorPico;
+
+    @Column(name = "timestamp_pico")
+    private LocalDateTime timestampPico;
+
     @Column(name = "data_criacao", nullable = false, updatable = false)
     private LocalDateTime dataCriacao;
 
@@ -200,6 +219,38 @@ public class Alerta {
         this.timestamp = timestamp;
     }
 
+    public String getRegra() {
+        return regra;
+    }
+
+    public void setRegra(String regra) {
+        this.regra = regra;
+    }
+
+    public LocalDateTime getTimestampFim() {
+        return timestampFim;
+    }
+
+    public void setTimestampFim(LocalDateTime timestampFim) {
+        this.timestampFim = timestampFim;
+    }
+
+    public BigDecimal getValorPico() {
+        return valorPico;
+    }
+
+    public void setValorPico(BigDecimal valorPico) {
+        this.valorPico = valorPico;
+    }
+
+    public LocalDateTime getTimestampPico() {
+        return timestampPico;
+    }
+
+    public void setTimestampPico(LocalDateTime timestampPico) {
+        this.timestampPico = timestampPico;
+    }
+
     public LocalDateTime getDataCriacao() {
         return dataCriacao;
     }
@@ -226,6 +277,10 @@ public class Alerta {
         return NivelAlerta.CRITICO.getDescricao().equals(nivel);
     }
 
+    public boolean isEpisodioAberto() {
+        return regra != null && timestampFim == null;
+    }
+
     public void marcarComoVisualizado() {
         this.status = StatusAlerta.VISUALIZADO.getDescricao();
     }
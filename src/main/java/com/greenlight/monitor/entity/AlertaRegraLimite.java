@@ -0,0 +1,138 @@
+package com.greenlight.monitor.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Sobrescrita dos limites de uma regra de alerta para uma escola ou um sensor.
+ * Limites nulos mantêm o valor herdado (sensor → escola → configuração);
+ * ativo = false desliga a regra no escopo.
+ */
+@Entity
+@Table(name = "alerta_regra_limite")
+public class AlertaRegraLimite {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "regra", nullable = false, length = 50)
+    private String regra;
+
+    // Exatamente um entre escola e sensor é informado
+    @Column(name = "id_escola")
+    private Long escolaId;
+
+    @Column(name = "id_sensor")
+    private Long sensorId;
+
+    @Column(name = "temperatura_min", precision = 5, scale = 2)
+    private BigDecimal temperaturaMin;
+
+    @Column(name = "temperatura_max", precision = 5, scale = 2)
+    private BigDecimal temperaturaMax;
+
+    @Column(name = "umidade_min", precision = 5, scale = 2)
+    private BigDecimal umidadeMin;
+
+    @Column(name = "umidade_max", precision = 5, scale = 2)
+    private BigDecimal umidadeMax;
+
+    @Column(name = "ativo", nullable = false)
+    private Boolean ativo = true;
+
+    @Column(name = "atualizado_em", nullable = false)
+    private LocalDateTime atualizadoEm;
+
+    // Construtores
+    public AlertaRegraLimite() {
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        atualizadoEm = LocalDateTime.now();
+    }
+
+    // Getters e Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getRegra() {
+        return regra;
+    }
+
+    public void setRegra(String regra) {
+        this.regra = regra;
+    }
+
+    public Long getEscolaId() {
+        return escolaId;
+    }
+
+    public void setEscolaId(Long escolaId) {
+        this.escolaId = escolaId;
+    }
+
+    public Long getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(Long sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    public BigDecimal getTemperaturaMin() {
+        return temperaturaMin;
+    }
+
+    public void setTemperaturaMin(BigDecimal temperaturaMin) {
+        this.temperaturaMin = temperaturaMin;
+    }
+
+    public BigDecimal getTemperaturaMax() {
+        return temperaturaMax;
+    }
+
+    public void setTemperaturaMax(BigDecimal temperaturaMax) {
+        this.temperaturaMax = temperaturaMax;
+    }
+
+    public BigDecimal getUmidadeMin() {
+        return umidadeMin;
+    }
+
+    public void setUmidadeMin(BigDecimal umidadeMin) {
+        this.umidadeMin = umidadeMin;
+    }
+
+    public BigDecimal getUmidadeMax() {
+        return umidadeMax;
+    }
+
+    public void setUmidadeMax(BigDecimal umidadeMax) {
+        this.umidadeMax = umidadeMax;
+    }
+
+    public Boolean getAtivo() {
+        return ativo;
+    }
+
+    public void setAtivo(Boolean ativo) {
+        this.ativo = ativo;
+    }
+
+    public LocalDateTime getAtualizadoEm() {
+        return atualizadoEm;
+    }
+
+    public void setAtualizadoEm(LocalDateTime atualizadoEm) {
+        this.atualizadoEm = atualizadoEm;
+    }
+}
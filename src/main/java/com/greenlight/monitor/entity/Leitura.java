@@ -17,8 +17,10 @@ import java.util.List;
 @Table(name = "leitura")
 public class Leitura {
 
+    // Sequência com alocação em blocos (pooled optimizer) para permitir inserts em lote via JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "leitura_seq")
+    @SequenceGenerator(name = "leitura_seq", sequenceName = "leitura_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Sensor é obrigatório")
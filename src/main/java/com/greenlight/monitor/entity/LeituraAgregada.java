@@ -0,0 +1,209 @@
+package com.greenlight.monitor.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Agregado das leituras de um sensor em um intervalo de tempo (minuto, hora ou dia).
+ * Mantido incrementalmente durante a ingestão; guarda contagem, soma, mínimo, máximo e
+ * soma dos quadrados de temperatura e umidade, o que permite calcular média e desvio padrão
+ * de qualquer período combinando os intervalos sem ler as leituras brutas.
+ */
+@Entity
+@Table(name = "leitura_agregada")
+@IdClass(LeituraAgregadaId.class)
+public class LeituraAgregada {
+
+    /**
+     * Resolução do agregado, da mais fina para a mais grossa
+     */
+    public enum Resolucao {
+        MINUTO(ChronoUnit.MINUTES),
+        HORA(ChronoUnit.HOURS),
+        DIA(ChronoUnit.DAYS);
+
+        private final ChronoUnit unidade;
+
+        Resolucao(ChronoUnit unidade) {
+            this.unidade = unidade;
+        }
+
+        public ChronoUnit getUnidade() {
+            return unidade;
+        }
+
+        /**
+         * Início do intervalo que contém o instante
+         */
+        public LocalDateTime inicioDoIntervalo(LocalDateTime instante) {
+            return instante.truncatedTo(unidade);
+        }
+
+        /**
+         * Primeiro início de intervalo igual ou posterior ao instante
+         */
+        public LocalDateTime proximoInicio(LocalDateTime instante) {
+            LocalDateTime inicio = inicioDoIntervalo(instante);
+            return inicio.equals(instante) ? inicio : inicio.plus(1, unidade);
+        }
+
+        /**
+         * Resolução imediatamente mais fina (null abaixo de MINUTO: leituras brutas)
+         */
+        public Resolucao menor() {
+            return ordinal() == 0 ? null : values()[ordinal() - 1];
+        }
+    }
+
+    @Id
+    @Column(name = "id_sensor", nullable = false)
+    private Long sensorId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "resolucao", nullable = false, length = 10)
+    private Resolucao resolucao;
+
+    @Id
+    @Column(name = "inicio", nullable = false)
+    private LocalDateTime inicio;
+
+    @Column(name = "quantidade", nullable = false)
+    private long quantidade;
+
+    @Column(name = "temperatura_soma", nullable = false)
+    private double temperaturaSoma;
+
+    @Column(name = "temperatura_min", nullable = false)
+    private double temperaturaMin;
+
+    @Column(name = "temperatura_max", nullable = false)
+    private double temperaturaMax;
+
+    @Column(name = "temperatura_soma_quadrados", nullable = false)
+    private double temperaturaSomaQuadrados;
+
+    @Column(name = "umidade_soma", nullable = false)
+    private double umidadeSoma;
+
+    @Column(name = "umidade_min", nullable = false)
+    private double umidadeMin;
+
+    @Column(name = "umidade_max", nullable = false)
+    private double umidadeMax;
+
+    @Column(name = "umidade_soma_quadrados", nullable = false)
+    private double umidadeSomaQuadrados;
+
+    // Construtores
+    public LeituraAgregada() {
+    }
+
+    // Getters e Setters
+    public Long getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(Long sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    public Resolucao getResolucao() {
+        return resolucao;
+    }
+
+    public void setResolucao(Resolucao resolucao) {
+        this.resolucao = resolucao;
+    }
+
+    public LocalDateTime getInicio() {
+        return inicio;
+    }
+
+    public void setInicio(LocalDateTime inicio) {
+        this.inicio = inicio;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+
+    public void setQuantidade(long quantidade) {
+        this.quantidade = quantidade;
+    }
+
+    public double getTemperaturaSoma() {
+        return temperaturaSoma;
+    }
+
+    public void setTemperaturaSoma(double temperaturaSoma) {
+        this.temperaturaSoma = temperaturaSoma;
+    }
+
+    public double getTemperaturaMin() {
+        return temperaturaMin;
+    }
+
+    public void setTemperaturaMin(double temperaturaMin) {
+        this.temperaturaMin = temperaturaMin;
+    }
+
+    public double getTemperaturaMax() {
+        return temperaturaMax;
+    }
+
+    public void setTemperaturaMax(double temperaturaMax) {
+        this.temperaturaMax = temperaturaMax;
+    }
+
+    public double getTemperaturaSomaQuadrados() {
+        return temperaturaSomaQuadrados;
+    }
+
+    public void setTemperaturaSomaQuadrados(double temperaturaSomaQuadrados) {
+        this.temperaturaSomaQuadrados = temperaturaSomaQuadrados;
+    }
+
+    public double getUmidadeSoma() {
+        return umidadeSoma;
+    }
+
+    public void setUmidadeSoma(double umidadeSoma) {
+        this.umidadeSoma = umidadeSoma;
+    }
+
+    public double getUmidadeMin() {
+        return umidadeMin;
+    }
+
+    public void setUmidadeMin(double umidadeMin) {
+        this.umidadeMin = umidadeMin;
+    }
+
+    public double getUmidadeMax() {
+        return umidadeMax;
+    }
+
+    public void setUmidadeMax(double umidadeMax) {
+        this.umidadeMax = umidadeMax;
+    }
+
+    public double getUmidadeSomaQuadrados() {
+        return umidadeSomaQuadrados;
+    }
+
+    public void setUmidadeSomaQuadrados(double umidadeSomaQuadrados) {
+        this.umidadeSomaQuadrados = umidadeSomaQuadrados;
+    }
+
+    @Override
+    public String toString() {
+        return "LeituraAgregada{" +
+                "sensorId=" + sensorId +
+                ", resolucao=" + resolucao +
+                ", inicio=" + inicio +
+                ", quantidade=" + quantidade +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package com.greenlight.monitor.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Chave composta de LeituraAgregada: sensor, resolução e início do intervalo.
+ */
+public class LeituraAgregadaId implements Serializable {
+
+    private Long sensorId;
+    private LeituraAgregada.Resolucao resolucao;
+    private LocalDateTime inicio;
+
+    public LeituraAgregadaId() {
+    }
+
+    public LeituraAgregadaId(Long sensorId, LeituraAgregada.Resolucao resolucao, LocalDateTime inicio) {
+        this.sensorId = sensorId;
+        this.resolucao = resolucao;
+        this.inicio = inicio;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LeituraAgregadaId that)) return false;
+        return Objects.equals(sensorId, that.sensorId) &&
+                resolucao == that.resolucao &&
+                Objects.equals(inicio, that.inicio);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sensorId, resolucao, inicio);
+    }
+}
@@ -0,0 +1,119 @@
+package com.greenlight.monitor.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Estado atual de um sensor: última leitura recebida e último nível de alerta.
+ * Uma linha por sensor, atualizada a cada leitura ingerida (somente se for mais recente),
+ * para consultar as últimas leituras sem percorrer o histórico da tabela leitura.
+ */
+@Entity
+@Table(name = "sensor_estado")
+public class SensorEstado {
+
+    @Id
+    @Column(name = "id_sensor")
+    private Long sensorId;
+
+    @Column(name = "id_leitura", nullable = false)
+    private Long leituraId;
+
+    @Column(name = "temperatura", nullable = false, precision = 5, scale = 2)
+    private BigDecimal temperatura;
+
+    @Column(name = "umidade", nullable = false, precision = 5, scale = 2)
+    private BigDecimal umidade;
+
+    @Column(name = "timestamp_leitura", nullable = false)
+    private LocalDateTime timestampLeitura;
+
+    @Column(name = "atualizado_em", nullable = false)
+    private LocalDateTime atualizadoEm;
+
+    @Column(name = "ultimo_nivel_alerta", length = 20)
+    private String ultimoNivelAlerta;
+
+    @Column(name = "ultimo_alerta_em")
+    private LocalDateTime ultimoAlertaEm;
+
+    // Construtores
+    public SensorEstado() {
+    }
+
+    // Getters e Setters
+    public Long getSensorId() {
+        return sensorId;
+    }
+
+    public void setSensorId(Long sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    public Long getLeituraId() {
+        return leituraId;
+    }
+
+    public void setLeituraId(Long leituraId) {
+        this.leituraId = leituraId;
+    }
+
+    public BigDecimal getTemperatura() {
+        return temperatura;
+    }
+
+    public void setTemperatura(BigDecimal temperatura) {
+        this.temperatura = temperatura;
+    }
+
+    public BigDecimal getUmidade() {
+        return umidade;
+    }
+
+    public void setUmidade(BigDecimal umidade) {
+        this.umidade = umidade;
+    }
+
+    public LocalDateTime getTimestampLeitura() {
+        return timestampLeitura;
+    }
+
+    public void setTimestampLeitura(LocalDateTime timestampLeitura) {
+        this.timestampLeitura = timestampLeitura;
+    }
+
+    public LocalDateTime getAtualizadoEm() {
+        return atualizadoEm;
+    }
+
+    public void setAtualizadoEm(LocalDateTime atualizadoEm) {
+        this.atualizadoEm = atualizadoEm;
+    }
+
+    public String getUltimoNivelAlerta() {
+        return ultimoNivelAlerta;
+    }
+
+    public void setUltimoNivelAlerta(String ultimoNivelAlerta) {
+        this.ultimoNivelAlerta = ultimoNivelAlerta;
+    }
+
+    public LocalDateTime getUltimoAlertaEm() {
+        return ultimoAlertaEm;
+    }
+
+    public void setUltimoAlertaEm(LocalDateTime ultimoAlertaEm) {
+        this.ultimoAlertaEm = ultimoAlertaEm;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorEstado{" +
+                "sensorId=" + sensorId +
+                ", leituraId=" + leituraId +
+                ", timestampLeitura=" + timestampLeitura +
+                ", ultimoNivelAlerta='" + ultimoNivelAlerta + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,12 @@
+package com.greenlight.monitor.repository;
+
+import com.greenlight.monitor.entity.AlertaRegraLimite;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositório das sobrescritas de limites das regras de alerta por escola/sensor.
+ */
+@Repository
+public interface AlertaRegraLimiteRepository extends JpaRepository<AlertaRegraLimite, Long> {
+}
@@ -3,11 +3,15 @@ package com.greenlight.monitor.repository;
 import com.greenlight.monitor.entity.Alerta;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -17,6 +21,16 @@ import java.util.List;
 @Repository
 public interface AlertaRepository extends JpaRepository<Alerta, Long> {
 
+    // Filtros comuns da busca paginada por chave (keyset)
+    String FILTROS_SCROLL =
+           "(:escolaId IS NULL OR s.escola.id = :escolaId) AND " +
+           "(:sensorId IS NULL OR s.id = :sensorId) AND " +
+           "(:tipo IS NULL OR LOWER(a.tipo) LIKE LOWER(CONCAT('%', :tipo, '%'))) AND " +
+           "(:nivel IS NULL OR LOWER(a.nivel) = LOWER(:nivel)) AND " +
+           "(:status IS NULL OR LOWER(a.status) = LOWER(:status)) AND " +
+           "(:inicio IS NULL OR a.timestamp >= :inicio) AND " +
+           "(:fim IS NULL OR a.timestamp <= :fim) ";
+
     /**
      * Busca alertas por tipo
      */
@@ -126,6 +140,39 @@ public interface AlertaRepository extends JpaRepository<Alerta, Long> {
                                @Param("fim") LocalDateTime fim,
                                Pageable pageable);
 
+    /**
+     * Primeira página da busca por chave (keyset) com filtros, ordenada por (timestamp, id) decrescente.
+     * A leitura é carregada junto para montar o resumo sem consultas adicionais.
+     */
+    @Query("SELECT a FROM Alerta a JOIN FETCH a.leitura l JOIN l.sensor s WHERE " + FILTROS_SCROLL +
+           "ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<Alerta> findSliceByFiltros(@Param("escolaId") Long escolaId,
+                                     @Param("sensorId") Long sensorId,
+                                     @Param("tipo") String tipo,
+                                     @Param("nivel") String nivel,
+                                     @Param("status") String status,
+                                     @Param("inicio") LocalDateTime inicio,
+                                     @Param("fim") LocalDateTime fim,
+                                     Pageable pageable);
+
+    /**
+     * Página seguinte ao cursor (timestamp, id) da busca por chave com filtros
+     */
+    @Query("SELECT a FROM Alerta a JOIN FETCH a.leitura l JOIN l.sensor s WHERE " + FILTROS_SCROLL + "AND " +
+           "a.timestamp <= :cursorTimestamp AND " +
+           "(a.timestamp < :cursorTimestamp OR a.id < :cursorId) " +
+           "ORDER BY a.timestamp DESC, a.id DESC")
+    Slice<Alerta> findSliceByFiltrosApos(@Param("escolaId") Long escolaId,
+                                         @Param("sensorId") Long sensorId,
+                                         @Param("tipo") String tipo,
+                                         @Param("nivel") String nivel,
+                                         @Param("status") String status,
+                                         @Param("inicio") LocalDateTime inicio,
+                                         @Param("fim") LocalDateTime fim,
+                                         @Param("cursorTimestamp") LocalDateTime cursorTimestamp,
+                                         @Param("cursorId") Long cursorId,
+                                         Pageable pageable);
+
     /**
      * Conta alertas ativos
      */
@@ -190,6 +237,96 @@ public interface AlertaRepository extends JpaRepository<Alerta, Long> {
     @Query("SELECT a FROM Alerta a WHERE a.timestamp >= :limite ORDER BY a.timestamp DESC")
     List<Alerta> findAlertasRecentes(@Param("limite") LocalDateTime limite);
 
+    /**
+     * Último alerta de cada (sensor, tipo) a partir do limite: [sensorId, tipo, timestamp]
+     */
+    @Query("SELECT s.id, a.tipo, MAX(a.timestamp) FROM Alerta a JOIN a.leitura l JOIN l.sensor s " +
+           "WHERE a.timestamp >= :limite GROUP BY s.id, a.tipo")
+    List<Object[]> findUltimoAlertaPorSensorETipo(@Param("limite") LocalDateTime limite);
+
+    /**
+     * Atualiza a mensagem de um alerta (enriquecimento assíncrono pela IA), apenas se o alerta
+     * ainda tiver o tipo e o nível para os quais a mensagem foi gerada (um episódio elevado
+     * nesse meio tempo não recebe o texto do nível anterior)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Alerta a SET a.mensagem = :mensagem, a.dataAtualizacao = :atualizadoEm " +
+           "WHERE a.id = :id AND a.tipo = :tipo AND a.nivel = :nivel")
+    int atualizarMensagem(@Param("id") Long id,
+                          @Param("tipo") String tipo,
+                          @Param("nivel") String nivel,
+                          @Param("mensagem") String mensagem,
+                          @Param("atualizadoEm") LocalDateTime atualizadoEm);
+
+    /**
+     * Episódios abertos: [alertaId, sensorId, regra, valorPico]
+     */
+    @Query("SELECT a.id, l.sensor.id, a.regra, a.valorPico FROM Alerta a JOIN a.leitura l " +
+           "WHERE a.regra IS NOT NULL AND a.timestampFim IS NULL")
+    List<Object[]> findEpisodiosAbertos();
+
+    /**
+     * Episódios abertos de um sensor: [alertaId, sensorId, regra, valorPico]
+     */
+    @Query("SELECT a.id, l.sensor.id, a.regra, a.valorPico FROM Alerta a JOIN a.leitura l " +
+           "WHERE l.sensor.id = :sensorId AND a.regra IS NOT NULL AND a.timestampFim IS NULL")
+    List<Object[]> findEpisodiosAbertosBySensorId(@Param("sensorId") Long sensorId);
+
+    /**
+     * Alertas mais recentes com a leitura carregada (carga inicial do dashboard)
+     */
+    @Query("SELECT a FROM Alerta a JOIN FETCH a.leitura l ORDER BY a.timestamp DESC, a.id DESC")
+    List<Alerta> findRecentesComLeitura(Pageable pageable);
+
+    /**
+     * Episódios abertos de uma escola
+     */
+    @Query("SELECT a FROM Alerta a JOIN FETCH a.leitura l WHERE l.sensor.escola.id = :escolaId AND " +
+           "a.regra IS NOT NULL AND a.timestampFim IS NULL ORDER BY a.timestamp DESC")
+    List<Alerta> findEpisodiosAbertosByEscolaId(@Param("escolaId") Long escolaId);
+
+    /**
+     * Episódios que se sobrepõem ao período [inicio, fim] (inclui os ainda abertos)
+     */
+    @Query("SELECT a FROM Alerta a JOIN FETCH a.leitura l WHERE a.regra IS NOT NULL AND " +
+           "a.timestamp <= :fim AND (a.timestampFim IS NULL OR a.timestampFim >= :inicio) " +
+           "ORDER BY a.timestamp DESC")
+    List<Alerta> findEpisodiosNoPeriodo(@Param("inicio") LocalDateTime inicio,
+                                        @Param("fim") LocalDateTime fim);
+
+    /**
+     * Episódios encerrados de um sensor, do mais recente ao mais antigo
+     */
+    @Query("SELECT a FROM Alerta a WHERE a.leitura.sensor.id = :sensorId AND a.regra IS NOT NULL AND " +
+           "a.timestampFim IS NOT NULL ORDER BY a.timestampFim DESC")
+    Page<Alerta> findEpisodiosEncerradosBySensorId(@Param("sensorId") Long sensorId, Pageable pageable);
+
+    /**
+     * Quantidade de episódios abertos
+     */
+    @Query("SELECT COUNT(a) FROM Alerta a WHERE a.regra IS NOT NULL AND a.timestampFim IS NULL")
+    long countEpisodiosAbertos();
+
+    /**
+     * Atualiza o pico de um episódio aberto
+     */
+    @Modifying
+    @Query("UPDATE Alerta a SET a.valorPico = :valor, a.timestampPico = :timestampPico, " +
+           "a.dataAtualizacao = :atualizadoEm WHERE a.id = :id AND a.timestampFim IS NULL")
+    int atualizarPicoEpisodio(@Param("id") Long id,
+                              @Param("valor") BigDecimal valor,
+                              @Param("timestampPico") LocalDateTime timestampPico,
+                              @Param("atualizadoEm") LocalDateTime atualizadoEm);
+
+    /**
+     * Encerra um episódio
+     */
+    @Modifying
+    @Query("UPDATE Alerta a SET a.timestampFim = :fim, a.dataAtualizacao = :fim " +
+           "WHERE a.id = :id AND a.timestampFim IS NULL")
+    int encerrarEpisodio(@Param("id") Long id, @Param("fim") LocalDateTime fim);
+
     /**
      * Busca alertas não visualizados
      */
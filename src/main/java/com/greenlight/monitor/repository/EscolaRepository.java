@@ -3,6 +3,7 @@ package com.greenlight.monitor.repository;
 import com.greenlight.monitor.entity.Escola;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,6 +18,13 @@ import java.util.Optional;
 @Repository
 public interface EscolaRepository extends JpaRepository<Escola, Long> {
 
+    // Filtros comuns da busca paginada por chave (keyset)
+    String FILTROS_SCROLL =
+           "(:nome IS NULL OR LOWER(e.nome) LIKE LOWER(CONCAT('%', :nome, '%'))) AND " +
+           "(:cidade IS NULL OR LOWER(e.cidade) LIKE LOWER(CONCAT('%', :cidade, '%'))) AND " +
+           "(:estado IS NULL OR LOWER(e.estado) = LOWER(:estado)) AND " +
+           "(:ativo IS NULL OR e.ativo = :ativo) ";
+
     /**
      * Busca escolas ativas
      */
@@ -81,6 +89,30 @@ public interface EscolaRepository extends JpaRepository<Escola, Long> {
                                @Param("ativo") Boolean ativo,
                                Pageable pageable);
 
+    /**
+     * Primeira página da busca por chave (keyset) com filtros, ordenada por (nome, id)
+     */
+    @Query("SELECT e FROM Escola e WHERE " + FILTROS_SCROLL + "ORDER BY e.nome, e.id")
+    Slice<Escola> findSliceByFiltros(@Param("nome") String nome,
+                                     @Param("cidade") String cidade,
+                                     @Param("estado") String estado,
+                                     @Param("ativo") Boolean ativo,
+                                     Pageable pageable);
+
+    /**
+     * Página seguinte ao cursor (nome, id) da busca por chave com filtros
+     */
+    @Query("SELECT e FROM Escola e WHERE " + FILTROS_SCROLL + "AND " +
+           "e.nome >= :cursorNome AND (e.nome > :cursorNome OR e.id > :cursorId) " +
+           "ORDER BY e.nome, e.id")
+    Slice<Escola> findSliceByFiltrosApos(@Param("nome") String nome,
+                                         @Param("cidade") String cidade,
+                                         @Param("estado") String estado,
+                                         @Param("ativo") Boolean ativo,
+                                         @Param("cursorNome") String cursorNome,
+                                         @Param("cursorId") Long cursorId,
+                                         Pageable pageable);
+
     /**
      * Conta escolas ativas
      */
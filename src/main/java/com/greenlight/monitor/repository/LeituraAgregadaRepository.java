@@ -0,0 +1,46 @@
+package com.greenlight.monitor.repository;
+
+import com.greenlight.monitor.dto.EstatisticasLeituraDTO;
+import com.greenlight.monitor.entity.LeituraAgregada;
+import com.greenlight.monitor.entity.LeituraAgregadaId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositório para consulta dos agregados de leituras (minuto, hora e dia).
+ * A escrita é feita em lote via JDBC pelo LeituraAgregadaService.
+ */
+@Repository
+public interface LeituraAgregadaRepository extends JpaRepository<LeituraAgregada, LeituraAgregadaId> {
+
+    /**
+     * Combina os agregados de uma resolução cujos intervalos começam em [inicio, fim)
+     */
+    @Query("SELECT new com.greenlight.monitor.dto.EstatisticasLeituraDTO(" +
+           "SUM(a.quantidade), SUM(a.temperaturaSoma), MIN(a.temperaturaMin), MAX(a.temperaturaMax), " +
+           "SUM(a.temperaturaSomaQuadrados), SUM(a.umidadeSoma), MIN(a.umidadeMin), MAX(a.umidadeMax), " +
+           "SUM(a.umidadeSomaQuadrados)) " +
+           "FROM LeituraAgregada a WHERE a.sensorId IN :sensorIds AND a.resolucao = :resolucao AND " +
+           "a.inicio >= :inicio AND a.inicio < :fim")
+    EstatisticasLeituraDTO calcularEstatisticas(@Param("sensorIds") Collection<Long> sensorIds,
+                                                @Param("resolucao") LeituraAgregada.Resolucao resolucao,
+                                                @Param("inicio") LocalDateTime inicio,
+                                                @Param("fim") LocalDateTime fim);
+
+    /**
+     * Soma de temperatura e quantidade de leituras por sensor e hora do dia, a partir de uma data
+     *
+     * @return linhas [sensorId, hora (0-23), soma das temperaturas, quantidade]
+     */
+    @Query("SELECT a.sensorId, EXTRACT(HOUR FROM a.inicio), SUM(a.temperaturaSoma), SUM(a.quantidade) " +
+           "FROM LeituraAgregada a WHERE a.resolucao = :resolucao AND a.inicio >= :inicio " +
+           "GROUP BY a.sensorId, EXTRACT(HOUR FROM a.inicio)")
+    List<Object[]> findTemperaturaPorHoraDoDia(@Param("resolucao") LeituraAgregada.Resolucao resolucao,
+                                               @Param("inicio") LocalDateTime inicio);
+}
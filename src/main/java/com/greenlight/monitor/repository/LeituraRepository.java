@@ -1,15 +1,19 @@
 package com.greenlight.monitor.repository;
 
+import com.greenlight.monitor.dto.EstatisticasLeituraDTO;
 import com.greenlight.monitor.entity.Leitura;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +23,15 @@ import java.util.Optional;
 @Repository
 public interface LeituraRepository extends JpaRepository<Leitura, Long> {
 
+    // Filtros comuns da busca paginada por chave (keyset)
+    String FILTROS_SCROLL =
+           "(:sensorId IS NULL OR l.sensor.id = :sensorId) AND " +
+           "(:escolaId IS NULL OR l.sensor.escola.id = :escolaId) AND " +
+           "(:inicio IS NULL OR l.timestamp >= :inicio) AND " +
+           "(:fim IS NULL OR l.timestamp <= :fim) AND " +
+           "(:tempMin IS NULL OR l.temperatura >= :tempMin) AND " +
+           "(:tempMax IS NULL OR l.temperatura <= :tempMax) ";
+
     /**
      * Busca leituras por sensor
      */
@@ -118,6 +131,36 @@ public interface LeituraRepository extends JpaRepository<Leitura, Long> {
                                 @Param("tempMax") BigDecimal tempMax,
                                 Pageable pageable);
 
+    /**
+     * Primeira página da busca por chave (keyset) com filtros, ordenada por (timestamp, id) decrescente
+     */
+    @Query("SELECT l FROM Leitura l WHERE " + FILTROS_SCROLL +
+           "ORDER BY l.timestamp DESC, l.id DESC")
+    Slice<Leitura> findSliceByFiltros(@Param("sensorId") Long sensorId,
+                                      @Param("escolaId") Long escolaId,
+                                      @Param("inicio") LocalDateTime inicio,
+                                      @Param("fim") LocalDateTime fim,
+                                      @Param("tempMin") BigDecimal tempMin,
+                                      @Param("tempMax") BigDecimal tempMax,
+                                      Pageable pageable);
+
+    /**
+     * Página seguinte ao cursor (timestamp, id) da busca por chave com filtros
+     */
+    @Query("SELECT l FROM Leitura l WHERE " + FILTROS_SCROLL + "AND " +
+           "l.timestamp <= :cursorTimestamp AND " +
+           "(l.timestamp < :cursorTimestamp OR l.id < :cursorId) " +
+           "ORDER BY l.timestamp DESC, l.id DESC")
+    Slice<Leitura> findSliceByFiltrosApos(@Param("sensorId") Long sensorId,
+                                          @Param("escolaId") Long escolaId,
+                                          @Param("inicio") LocalDateTime inicio,
+                                          @Param("fim") LocalDateTime fim,
+                                          @Param("tempMin") BigDecimal tempMin,
+                                          @Param("tempMax") BigDecimal tempMax,
+                                          @Param("cursorTimestamp") LocalDateTime cursorTimestamp,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable pageable);
+
     /**
      * Conta leituras por sensor
      */
@@ -152,15 +195,48 @@ public interface LeituraRepository extends JpaRepository<Leitura, Long> {
                                                             @Param("inicio") LocalDateTime inicio,
                                                             @Param("fim") LocalDateTime fim);
 
+    /**
+     * Calcula as estatísticas das leituras brutas de um conjunto de sensores em [inicio, fim)
+     */
+    @Query("SELECT new com.greenlight.monitor.dto.EstatisticasLeituraDTO(COUNT(l), " +
+           "SUM(CAST(l.temperatura AS Double)), MIN(CAST(l.temperatura AS Double)), " +
+           "MAX(CAST(l.temperatura AS Double)), SUM(CAST(l.temperatura AS Double) * CAST(l.temperatura AS Double)), " +
+           "SUM(CAST(l.umidade AS Double)), MIN(CAST(l.umidade AS Double)), " +
+           "MAX(CAST(l.umidade AS Double)), SUM(CAST(l.umidade AS Double) * CAST(l.umidade AS Double))) " +
+           "FROM Leitura l WHERE l.sensor.id IN :sensorIds AND l.timestamp >= :inicio AND l.timestamp < :fim")
+    EstatisticasLeituraDTO calcularEstatisticas(@Param("sensorIds") Collection<Long> sensorIds,
+                                                @Param("inicio") LocalDateTime inicio,
+                                                @Param("fim") LocalDateTime fim);
+
     /**
      * Busca leituras recentes (última hora)
      */
     @Query("SELECT l FROM Leitura l WHERE l.timestamp >= :limite ORDER BY l.timestamp DESC")
     List<Leitura> findLeiturasRecentes(@Param("limite") LocalDateTime limite);
 
+    /**
+     * Valores das leituras a partir de um instante, em ordem cronológica
+     * (linhas: id do sensor, timestamp, temperatura, umidade), sem carregar as entidades
+     */
+    @Query("SELECT l.sensor.id, l.timestamp, l.temperatura, l.umidade FROM Leitura l " +
+           "WHERE l.timestamp >= :inicio ORDER BY l.timestamp, l.id")
+    List<Object[]> findValoresDesde(@Param("inicio") LocalDateTime inicio);
+
+    /**
+     * Valores das leituras de um sensor no intervalo [inicio, fim), em ordem cronológica
+     * (linhas: timestamp, temperatura, umidade)
+     */
+    @Query("SELECT l.timestamp, l.temperatura, l.umidade FROM Leitura l " +
+           "WHERE l.sensor.id = :sensorId AND l.timestamp >= :inicio AND l.timestamp < :fim " +
+           "ORDER BY l.timestamp, l.id")
+    List<Object[]> findValoresBySensorIdEntre(@Param("sensorId") Long sensorId,
+                                              @Param("inicio") LocalDateTime inicio,
+                                              @Param("fim") LocalDateTime fim);
+
     /**
      * Remove leituras antigas (para limpeza de dados)
      */
+    @Modifying
     @Query("DELETE FROM Leitura l WHERE l.timestamp < :limite")
     void deleteLeiturasAntigas(@Param("limite") LocalDateTime limite);
 }
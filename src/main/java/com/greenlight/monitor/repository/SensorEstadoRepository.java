@@ -0,0 +1,13 @@
+package com.greenlight.monitor.repository;
+
+import com.greenlight.monitor.entity.SensorEstado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositório para o estado atual dos sensores.
+ * A escrita é feita via JDBC pelo SensorEstadoService (upsert condicional ao timestamp).
+ */
+@Repository
+public interface SensorEstadoRepository extends JpaRepository<SensorEstado, Long> {
+}
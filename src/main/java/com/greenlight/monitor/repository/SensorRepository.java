@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositório para operações de banco de dados da entidade Sensor.
@@ -16,6 +17,24 @@ import java.util.List;
 @Repository
 public interface SensorRepository extends JpaRepository<Sensor, Long> {
 
+    /**
+     * Busca todos os sensores já com a escola carregada (usado pelo registro em memória)
+     */
+    @Query("SELECT s FROM Sensor s JOIN FETCH s.escola")
+    List<Sensor> findAllComEscola();
+
+    /**
+     * Busca sensor por ID já com a escola carregada
+     */
+    @Query("SELECT s FROM Sensor s JOIN FETCH s.escola WHERE s.id = :id")
+    Optional<Sensor> findByIdComEscola(@Param("id") Long id);
+
+    /**
+     * Busca sensores de uma escola já com a escola carregada
+     */
+    @Query("SELECT s FROM Sensor s JOIN FETCH s.escola WHERE s.escola.id = :escolaId")
+    List<Sensor> findByEscolaIdComEscola(@Param("escolaId") Long escolaId);
+
     /**
      * Busca sensores ativos
      */
@@ -1,27 +1,39 @@
 package com.greenlight.monitor.service;
 
+import com.greenlight.monitor.dto.EstatisticasLeituraDTO;
 import com.greenlight.monitor.entity.Alerta;
 import com.greenlight.monitor.entity.Escola;
 import com.greenlight.monitor.entity.Leitura;
-import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.ChatClient;
-import org.springframework.ai.chat.ChatResponse;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Serviço de IA para geração de alertas personalizados e análises inteligentes.
@@ -33,29 +45,81 @@ public class AIAlertService {
 
     private static final Logger logger = LoggerFactory.getLogger(AIAlertService.class);
 
-    @Autowired(required = false)
-    private ChatClient chatClient;
+    @Autowired
+    private ChatClientResiliente chatClient;
 
     @Autowired
     private LeituraService leituraService;
 
+    @Autowired
+    private LeituraAgregadaService leituraAgregadaService;
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.ai.cache.max-size:1000}")
+    private long cacheTamanhoMaximo;
+
+    @Value("${app.ai.cache.ttl:30m}")
+    private Duration cacheTtl;
+
+    @Value("${app.ai.cache.temperature-step:0.5}")
+    private double passoTemperatura;
+
+    @Value("${app.ai.cache.humidity-step:5.0}")
+    private double passoUmidade;
+
+    /**
+     * Impressão digital normalizada do prompt de alerta: leituras com o mesmo tipo, nível,
+     * escola e faixas de temperatura/umidade recebem a mesma mensagem da IA
+     */
+    private record ChaveMensagem(String tipo, String nivel, long escolaId, long faixaTemperatura, long faixaUmidade) {
+    }
+
+    /**
+     * Pedido de mensagem para um alerta, usado na geração em lote
+     */
+    public record PedidoAlerta(Leitura leitura, String tipo, String nivel) {
+    }
+
+    private static final String MARCADOR_LOTE = "### ALERTA";
+
+    private static final Pattern PADRAO_MARCADOR_LOTE =
+            Pattern.compile("^\\W*" + Pattern.quote(MARCADOR_LOTE) + "\\s+(\\d+)\\W*$", Pattern.MULTILINE);
+
+    // Mensagens geradas pela IA por impressão digital do prompt; a entrada fica em andamento durante a
+    // chamada e é removida se ela falhar (apenas respostas bem-sucedidas permanecem)
+    private AsyncCache<ChaveMensagem, String> mensagensCache;
+
+    @PostConstruct
+    public void init() {
+        mensagensCache = Caffeine.newBuilder()
+                .maximumSize(cacheTamanhoMaximo)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, mensagensCache.synchronous(), "ai.alert.messages");
+        logger.info("Cache de mensagens da IA: máximo {} entradas, expiração {}, faixas de {}°C e {}%",
+                cacheTamanhoMaximo, cacheTtl, passoTemperatura, passoUmidade);
+    }
+
     /**
-     * Gera mensagem de alerta personalizada usando IA
+     * Gera mensagem de alerta personalizada usando IA.
+     * O texto da IA é reaproveitado entre leituras com a mesma impressão digital;
+     * a identificação do sensor e os valores medidos são sempre os da leitura.
      */
     public String generatePersonalizedAlert(Leitura leitura, String tipoAlerta, String nivelAlerta) {
-        if (chatClient == null) {
+        if (!chatClient.isDisponivel()) {
             logger.warn("Spring AI não configurado, usando mensagem padrão");
             return generateDefaultAlert(leitura, tipoAlerta, nivelAlerta);
         }
 
         try {
-            String prompt = buildAlertPrompt(leitura, tipoAlerta, nivelAlerta);
-            
-            ChatResponse response = chatClient.call(new Prompt(prompt));
-            String aiMessage = response.getResult().getOutput().getContent();
-            
-            logger.info("Mensagem de alerta gerada pela IA para sensor {}", leitura.getSensor().getId());
-            return aiMessage;
+            SensorInfo sensor = getSensorInfo(leitura);
+            return formatarMensagem(sensor, leitura, gerarMensagem(sensor, chaveMensagem(sensor, leitura, tipoAlerta, nivelAlerta)));
             
         } catch (Exception e) {
             logger.error("Erro ao gerar alerta com IA, usando mensagem padrão: {}", e.getMessage());
@@ -63,19 +127,140 @@ public class AIAlertService {
         }
     }
 
+    /**
+     * Gera as mensagens de vários alertas com uma única chamada à IA.
+     * Chaves já em cache não são enviadas; se a resposta não puder ser separada
+     * em uma mensagem por chave, cada chave restante é gerada individualmente.
+     *
+     * @return mensagens na mesma ordem dos pedidos; vazio quando a IA não gerou a mensagem
+     *         (indisponível, circuito aberto ou erro) e o alerta deve manter a mensagem atual
+     */
+    public List<Optional<String>> generatePersonalizedAlerts(List<PedidoAlerta> pedidos) {
+        if (!chatClient.isDisponivel()) {
+            logger.warn("Spring AI não configurado, alertas mantêm a mensagem padrão");
+            return pedidos.stream().map(p -> Optional.<String>empty()).toList();
+        }
+
+        // Chaves distintas do lote que ainda não estão em cache
+        List<SensorInfo> sensores = new ArrayList<>(pedidos.size());
+        List<ChaveMensagem> chaves = new ArrayList<>(pedidos.size());
+        Map<ChaveMensagem, SensorInfo> pendentes = new LinkedHashMap<>();
+        for (PedidoAlerta pedido : pedidos) {
+            SensorInfo sensor = sensorRegistryService.findSensor(pedido.leitura().getSensor().getId()).orElse(null);
+            ChaveMensagem chave = sensor == null ? null
+                    : chaveMensagem(sensor, pedido.leitura(), pedido.tipo(), pedido.nivel());
+            sensores.add(sensor);
+            chaves.add(chave);
+            if (chave != null && mensagensCache.getIfPresent(chave) == null) {
+                pendentes.putIfAbsent(chave, sensor);
+            }
+        }
+
+        if (pendentes.size() > 1) {
+            gerarMensagensEmLote(pendentes);
+        }
+
+        List<Optional<String>> mensagens = new ArrayList<>(pedidos.size());
+        for (int i = 0; i < pedidos.size(); i++) {
+            PedidoAlerta pedido = pedidos.get(i);
+            try {
+                if (sensores.get(i) == null) {
+                    throw new IllegalStateException("Sensor não encontrado com ID: " + pedido.leitura().getSensor().getId());
+                }
+                // Em cache após o lote; caso contrário, chamada individual
+                mensagens.add(Optional.of(formatarMensagem(sensores.get(i), pedido.leitura(),
+                        gerarMensagem(sensores.get(i), chaves.get(i)))));
+            } catch (Exception e) {
+                logger.error("Erro ao gerar alerta com IA, alerta mantém a mensagem atual: {}", e.getMessage());
+                mensagens.add(Optional.empty());
+            }
+        }
+        return mensagens;
+    }
+
+    /**
+     * Gera em uma única chamada as mensagens das chaves pendentes e as coloca no cache
+     */
+    private void gerarMensagensEmLote(Map<ChaveMensagem, SensorInfo> pendentes) {
+        try {
+            String resposta = chatClient.chamar(buildBatchAlertPrompt(pendentes));
+            List<String> mensagens = separarMensagensLote(resposta, pendentes.size());
+            if (mensagens == null) {
+                logger.warn("Resposta da IA para {} alertas fora do formato esperado, gerando individualmente",
+                        pendentes.size());
+                return;
+            }
+
+            int i = 0;
+            for (ChaveMensagem chave : pendentes.keySet()) {
+                mensagensCache.put(chave, CompletableFuture.completedFuture(mensagens.get(i++)));
+            }
+            logger.info("Mensagens de {} alertas geradas pela IA em uma única chamada", pendentes.size());
+
+        } catch (Exception e) {
+            logger.warn("Erro ao gerar lote de {} alertas com IA, gerando individualmente: {}",
+                    pendentes.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Mensagem da IA para a chave, a partir do cache ou de uma chamada individual.
+     * Requisições concorrentes com a mesma chave aguardam uma única chamada à IA. A chamada é feita
+     * fora do compute do cache: só a inserção do future em andamento ocorre sob o lock da entrada,
+     * e as demais chaves (e o despejo) não ficam bloqueadas durante a resposta da IA.
+     */
+    private String gerarMensagem(SensorInfo sensor, ChaveMensagem chave) {
+        CompletableFuture<String> emAndamento = new CompletableFuture<>();
+        // A função só devolve o future (sem bloquear); hits e misses continuam nas estatísticas
+        CompletableFuture<String> existente = mensagensCache.get(chave, (c, executor) -> emAndamento);
+        if (existente != emAndamento) {
+            try {
+                // A espera é limitada pelo timeout da chamada em andamento
+                return existente.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException causa ? causa : e;
+            }
+        }
+
+        try {
+            String resposta = chatClient.chamar(buildAlertPrompt(sensor, chave));
+            logger.info("Mensagem de alerta gerada pela IA para sensor {}", sensor.id());
+            emAndamento.complete(resposta);
+            return resposta;
+        } catch (RuntimeException e) {
+            // Future com falha é removido do cache: a próxima requisição tenta de novo
+            emAndamento.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ChaveMensagem chaveMensagem(SensorInfo sensor, Leitura leitura, String tipoAlerta, String nivelAlerta) {
+        return new ChaveMensagem(tipoAlerta, nivelAlerta, sensor.escolaId(),
+                faixa(leitura.getTemperatura(), passoTemperatura),
+                faixa(leitura.getUmidade(), passoUmidade));
+    }
+
+    /**
+     * Identificação do sensor e valores medidos seguidos do texto da IA
+     */
+    private String formatarMensagem(SensorInfo sensor, Leitura leitura, String aiMessage) {
+        return String.format("%s - %s: %.1f°C, %.1f%% de umidade%n%n%s",
+                sensor.nomeEscola(), sensor.localizacao(),
+                leitura.getTemperatura(), leitura.getUmidade(), aiMessage);
+    }
+
     /**
      * Gera recomendações de ações preventivas usando IA
      */
     public String generatePreventiveRecommendations(Escola escola, List<Leitura> leituras) {
-        if (chatClient == null) {
+        if (!chatClient.isDisponivel()) {
             return generateDefaultRecommendations(escola, leituras);
         }
 
         try {
             String prompt = buildRecommendationsPrompt(escola, leituras);
             
-            ChatResponse response = chatClient.call(new Prompt(prompt));
-            String recommendations = response.getResult().getOutput().getContent();
+            String recommendations = chatClient.chamar(prompt);
             
             logger.info("Recomendações geradas pela IA para escola {}", escola.getId());
             return recommendations;
@@ -90,21 +275,22 @@ public class AIAlertService {
      * Analisa padrões climáticos e gera insights usando IA
      */
     public String analyzeClimatePatterns(Escola escola, LocalDateTime inicio, LocalDateTime fim) {
-        if (chatClient == null) {
+        if (!chatClient.isDisponivel()) {
             return "Análise de IA não disponível. Configure a chave da API OpenAI para habilitar esta funcionalidade.";
         }
 
         try {
-            List<Leitura> leituras = leituraService.findByEscolaIdAndTimestampBetween(escola.getId(), inicio, fim);
+            // Estatísticas a partir dos agregados, sem carregar as leituras do período
+            EstatisticasLeituraDTO estatisticas =
+                    leituraAgregadaService.calcularEstatisticasEscola(escola.getId(), inicio, fim);
             
-            if (leituras.isEmpty()) {
+            if (estatisticas.isVazio()) {
                 return "Não há dados suficientes para análise no período especificado.";
             }
 
-            String prompt = buildAnalysisPrompt(escola, leituras, inicio, fim);
+            String prompt = buildAnalysisPrompt(escola, estatisticas, inicio, fim);
             
-            ChatResponse response = chatClient.call(new Prompt(prompt));
-            String analysis = response.getResult().getOutput().getContent();
+            String analysis = chatClient.chamar(prompt);
             
             logger.info("Análise de padrões climáticos gerada para escola {}", escola.getId());
             return analysis;
@@ -119,7 +305,7 @@ public class AIAlertService {
      * Gera relatório de risco climático usando IA
      */
     public String generateRiskAssessment(Escola escola) {
-        if (chatClient == null) {
+        if (!chatClient.isDisponivel()) {
             return generateDefaultRiskAssessment(escola);
         }
 
@@ -131,8 +317,7 @@ public class AIAlertService {
 
             String prompt = buildRiskAssessmentPrompt(escola, leituras);
             
-            ChatResponse response = chatClient.call(new Prompt(prompt));
-            String riskAssessment = response.getResult().getOutput().getContent();
+            String riskAssessment = chatClient.chamar(prompt);
             
             logger.info("Avaliação de risco gerada para escola {}", escola.getId());
             return riskAssessment;
@@ -144,26 +329,23 @@ public class AIAlertService {
     }
 
     /**
-     * Constrói prompt para geração de alerta personalizado
+     * Constrói prompt para geração de alerta personalizado.
+     * Usa apenas os dados da chave (faixas em vez de valores exatos, sem sala nem horário),
+     * para que a resposta valha para todas as leituras que compartilham a chave.
      */
-    private String buildAlertPrompt(Leitura leitura, String tipoAlerta, String nivelAlerta) {
-        Sensor sensor = leitura.getSensor();
-        Escola escola = sensor.getEscola();
-        
+    private String buildAlertPrompt(SensorInfo sensor, ChaveMensagem chave) {
         return String.format("""
             Você é um especialista em monitoramento climático escolar. Gere uma mensagem de alerta clara e acionável.
             
             CONTEXTO:
             - Escola: %s
             - Localização: %s, %s
-            - Sensor: %s
             - Tipo de Alerta: %s
             - Nível: %s
             
-            DADOS ATUAIS:
-            - Temperatura: %.1f°C
-            - Umidade: %.1f%%
-            - Horário: %s
+            DADOS ATUAIS (faixa medida no ambiente):
+            - Temperatura: entre %.1f°C e %.1f°C
+            - Umidade: entre %.1f%% e %.1f%%
             
             INSTRUÇÕES:
             1. Crie uma mensagem clara e objetiva (máximo 200 palavras)
@@ -171,20 +353,99 @@ public class AIAlertService {
             3. Sugira 2-3 ações imediatas que a escola pode tomar
             4. Use linguagem acessível para gestores escolares
             5. Seja específico sobre a urgência baseada no nível do alerta
+            6. Refira-se ao local como "o ambiente monitorado", sem citar sala, horário ou valores exatos
             
             Mensagem de alerta:
             """,
-            escola.getNome(),
-            escola.getCidade(), escola.getEstado(),
-            sensor.getLocalizacao(),
-            tipoAlerta,
-            nivelAlerta,
-            leitura.getTemperatura(),
-            leitura.getUmidade(),
-            leitura.getTimestamp().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
+            sensor.nomeEscola(),
+            sensor.cidade(), sensor.estado(),
+            chave.tipo(),
+            chave.nivel(),
+            chave.faixaTemperatura() * passoTemperatura, (chave.faixaTemperatura() + 1) * passoTemperatura,
+            chave.faixaUmidade() * passoUmidade, (chave.faixaUmidade() + 1) * passoUmidade
         );
     }
 
+    /**
+     * Constrói prompt que pede uma mensagem rotulada para cada chave do lote
+     */
+    private String buildBatchAlertPrompt(Map<ChaveMensagem, SensorInfo> pendentes) {
+        StringBuilder situacoes = new StringBuilder();
+        int numero = 1;
+        for (Map.Entry<ChaveMensagem, SensorInfo> entrada : pendentes.entrySet()) {
+            ChaveMensagem chave = entrada.getKey();
+            SensorInfo sensor = entrada.getValue();
+            situacoes.append(String.format(
+                    "%d. Escola: %s (%s, %s) | Tipo: %s | Nível: %s | Temperatura: entre %.1f°C e %.1f°C | Umidade: entre %.1f%% e %.1f%%%n",
+                    numero++, sensor.nomeEscola(), sensor.cidade(), sensor.estado(), chave.tipo(), chave.nivel(),
+                    chave.faixaTemperatura() * passoTemperatura, (chave.faixaTemperatura() + 1) * passoTemperatura,
+                    chave.faixaUmidade() * passoUmidade, (chave.faixaUmidade() + 1) * passoUmidade));
+        }
+
+        return String.format("""
+            Você é um especialista em monitoramento climático escolar. Gere uma mensagem de alerta clara e acionável
+            para CADA uma das %d situações abaixo.
+            
+            SITUAÇÕES:
+            %s
+            INSTRUÇÕES:
+            1. Cada mensagem deve ser clara e objetiva (máximo 200 palavras)
+            2. Inclua o risco específico para os estudantes
+            3. Sugira 2-3 ações imediatas que a escola pode tomar
+            4. Use linguagem acessível para gestores escolares
+            5. Seja específico sobre a urgência baseada no nível do alerta
+            6. Refira-se ao local como "o ambiente monitorado", sem citar sala, horário ou valores exatos
+            
+            FORMATO DA RESPOSTA:
+            Inicie cada mensagem com uma linha contendo apenas o marcador "%s N" (N = número da situação),
+            na ordem das situações, sem nenhum texto antes do primeiro marcador.
+            """,
+            pendentes.size(), situacoes, MARCADOR_LOTE);
+    }
+
+    /**
+     * Separa a resposta do lote em uma mensagem por situação.
+     *
+     * @return mensagens na ordem das situações, ou null se faltar ou sobrar alguma
+     */
+    private static List<String> separarMensagensLote(String resposta, int quantidade) {
+        if (resposta == null) {
+            return null;
+        }
+        String[] mensagens = new String[quantidade];
+        Matcher marcador = PADRAO_MARCADOR_LOTE.matcher(resposta);
+        int numero = -1;
+        int inicioTexto = -1;
+        while (true) {
+            boolean encontrou = marcador.find();
+            if (numero >= 1 && numero <= quantidade && mensagens[numero - 1] == null) {
+                String texto = resposta.substring(inicioTexto, encontrou ? marcador.start() : resposta.length()).strip();
+                mensagens[numero - 1] = texto.isEmpty() ? null : texto;
+            } else if (numero != -1) {
+                return null;
+            }
+            if (!encontrou) {
+                break;
+            }
+            numero = Integer.parseInt(marcador.group(1));
+            inicioTexto = marcador.end();
+        }
+
+        for (String mensagem : mensagens) {
+            if (mensagem == null) {
+                return null;
+            }
+        }
+        return List.of(mensagens);
+    }
+
+    /**
+     * Índice da faixa de tamanho {@code passo} que contém o valor
+     */
+    private static long faixa(BigDecimal valor, double passo) {
+        return (long) Math.floor(valor.doubleValue() / passo);
+    }
+
     /**
      * Constrói prompt para geração de recomendações preventivas
      */
@@ -225,24 +486,8 @@ public class AIAlertService {
     /**
      * Constrói prompt para análise de padrões climáticos
      */
-    private String buildAnalysisPrompt(Escola escola, List<Leitura> leituras, LocalDateTime inicio, LocalDateTime fim) {
-        // Calcular estatísticas básicas
-        double tempMedia = leituras.stream()
-            .mapToDouble(l -> l.getTemperatura().doubleValue())
-            .average().orElse(0.0);
-        
-        double umidadeMedia = leituras.stream()
-            .mapToDouble(l -> l.getUmidade().doubleValue())
-            .average().orElse(0.0);
-
-        double tempMax = leituras.stream()
-            .mapToDouble(l -> l.getTemperatura().doubleValue())
-            .max().orElse(0.0);
-
-        double tempMin = leituras.stream()
-            .mapToDouble(l -> l.getTemperatura().doubleValue())
-            .min().orElse(0.0);
-
+    private String buildAnalysisPrompt(Escola escola, EstatisticasLeituraDTO estatisticas,
+                                       LocalDateTime inicio, LocalDateTime fim) {
         return String.format("""
             Você é um meteorologista especializado em microclima escolar. Analise os padrões climáticos.
             
@@ -254,7 +499,9 @@ public class AIAlertService {
             - Temperatura média: %.1f°C
             - Temperatura máxima: %.1f°C
             - Temperatura mínima: %.1f°C
+            - Desvio padrão da temperatura: %.1f°C
             - Umidade média: %.1f%%
+            - Umidade mínima/máxima: %.1f%% / %.1f%%
             
             ANÁLISE SOLICITADA:
             1. Identifique padrões e tendências nos dados
@@ -269,8 +516,14 @@ public class AIAlertService {
             escola.getCidade(), escola.getEstado(),
             inicio.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")),
             fim.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")),
-            leituras.size(),
-            tempMedia, tempMax, tempMin, umidadeMedia
+            estatisticas.getQuantidade(),
+            estatisticas.getTemperaturaMedia(),
+            estatisticas.getTemperaturaMaxima(),
+            estatisticas.getTemperaturaMinima(),
+            estatisticas.getTemperaturaDesvioPadrao(),
+            estatisticas.getUmidadeMedia(),
+            estatisticas.getUmidadeMinima(),
+            estatisticas.getUmidadeMaxima()
         );
     }
 
@@ -309,22 +562,30 @@ public class AIAlertService {
      * Gera mensagem de alerta padrão quando IA não está disponível
      */
     private String generateDefaultAlert(Leitura leitura, String tipoAlerta, String nivelAlerta) {
-        Sensor sensor = leitura.getSensor();
-        Escola escola = sensor.getEscola();
-        
+        SensorInfo sensor = getSensorInfo(leitura);
+
         return String.format(
             "ALERTA %s: %s detectado na escola %s (%s). " +
             "Temperatura: %.1f°C, Umidade: %.1f%%. " +
             "Recomenda-se verificar as condições do ambiente e tomar medidas preventivas conforme necessário.",
             nivelAlerta.toUpperCase(),
             tipoAlerta,
-            escola.getNome(),
-            sensor.getLocalizacao(),
+            sensor.nomeEscola(),
+            sensor.localizacao(),
             leitura.getTemperatura(),
             leitura.getUmidade()
         );
     }
 
+    /**
+     * Obtém os dados do sensor da leitura a partir do registro em memória
+     */
+    private SensorInfo getSensorInfo(Leitura leitura) {
+        Long sensorId = leitura.getSensor().getId();
+        return sensorRegistryService.findSensor(sensorId)
+                .orElseThrow(() -> new IllegalStateException("Sensor não encontrado com ID: " + sensorId));
+    }
+
     /**
      * Gera recomendações padrão quando IA não está disponível
      */
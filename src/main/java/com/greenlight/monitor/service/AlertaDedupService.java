@@ -0,0 +1,127 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaDedupProperties;
+import com.greenlight.monitor.repository.AlertaRepository;
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Supressão de alertas repetidos em memória, por (sensor, tipo), com janela configurável por tipo.
+ * Substitui a consulta ao banco feita para cada alerta candidato. A reserva é atômica por chave,
+ * então threads concorrentes do listener processando o mesmo sensor emitem no máximo um alerta
+ * por janela. O estado é local à instância e é recarregado do banco na inicialização.
+ */
+@Service
+public class AlertaDedupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertaDedupService.class);
+
+    private record Chave(long sensorId, String tipo) {
+    }
+
+    /**
+     * Reserva de emissão. Comparada por identidade, para que a liberação de uma reserva
+     * desfeita nunca remova a reserva de outra thread.
+     */
+    public static final class Reserva {
+        private final Chave chave;
+        private final LocalDateTime expiraEm;
+
+        private Reserva(Chave chave, LocalDateTime expiraEm) {
+            this.chave = chave;
+            this.expiraEm = expiraEm;
+        }
+    }
+
+    @Autowired
+    private AlertaRepository alertaRepository;
+
+    @Autowired
+    private AlertaDedupProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Chave, Reserva> reservas = new ConcurrentHashMap<>();
+
+    private Counter emitidos;
+    private Counter suprimidos;
+
+    @PostConstruct
+    public void init() {
+        emitidos = Counter.builder("alerts.dedup")
+                .description("Alertas candidatos liberados ou suprimidos pela janela de repetição")
+                .tag("result", "emitted")
+                .register(meterRegistry);
+        suprimidos = Counter.builder("alerts.dedup")
+                .description("Alertas candidatos liberados ou suprimidos pela janela de repetição")
+                .tag("result", "suppressed")
+                .register(meterRegistry);
+
+        // Aquecimento: último alerta de cada (sensor, tipo) dentro da maior janela configurada
+        LocalDateTime agora = LocalDateTime.now();
+        List<Object[]> ultimos = alertaRepository.findUltimoAlertaPorSensorETipo(
+                agora.minus(properties.getMaiorJanela()));
+        for (Object[] linha : ultimos) {
+            long sensorId = ((Number) linha[0]).longValue();
+            String tipo = (String) linha[1];
+            LocalDateTime expiraEm = ((LocalDateTime) linha[2]).plus(properties.getJanela(tipo));
+            if (expiraEm.isAfter(agora)) {
+                Chave chave = new Chave(sensorId, tipo);
+                reservas.put(chave, new Reserva(chave, expiraEm));
+            }
+        }
+        logger.info("Supressão de alertas carregada com {} janelas ativas", reservas.size());
+    }
+
+    /**
+     * Tenta reservar a emissão de um alerta do tipo para o sensor.
+     * Retorna null se já houver alerta do mesmo tipo dentro da janela. Em uma transação ativa,
+     * a reserva é liberada automaticamente se a transação for desfeita.
+     */
+    public Reserva tentarReservar(long sensorId, String tipo) {
+        LocalDateTime agora = LocalDateTime.now();
+        Chave chave = new Chave(sensorId, tipo);
+        Reserva nova = new Reserva(chave, agora.plus(properties.getJanela(tipo)));
+
+        // compute é atômico por chave: apenas uma thread vê a janela livre
+        Reserva resultado = reservas.compute(chave, (c, atual) ->
+                atual == null || !atual.expiraEm.isAfter(agora) ? nova : atual);
+
+        if (resultado != nova) {
+            suprimidos.increment();
+            return null;
+        }
+
+        emitidos.increment();
+        Transacoes.seNaoConfirmar(() -> liberar(nova));
+        return nova;
+    }
+
+    /**
+     * Libera uma reserva quando o alerta não chegou a ser salvo
+     */
+    public void liberar(Reserva reserva) {
+        reservas.remove(reserva.chave, reserva);
+    }
+
+    /**
+     * Remove janelas expiradas
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.dedup.purge-interval:60000}")
+    public void limparExpirados() {
+        LocalDateTime agora = LocalDateTime.now();
+        reservas.entrySet().removeIf(e -> !e.getValue().expiraEm.isAfter(agora));
+    }
+}
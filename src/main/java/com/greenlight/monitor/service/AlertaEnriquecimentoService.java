@@ -0,0 +1,262 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Alerta;
+import com.greenlight.monitor.repository.AlertaRepository;
+import com.greenlight.monitor.service.AIAlertService.PedidoAlerta;
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Enriquece a mensagem dos alertas com IA fora da transação de ingestão.
+ * O alerta é salvo com a mensagem padrão; após o commit, a geração do texto é enviada para um
+ * executor limitado e, quando a resposta chega, a mensagem é atualizada e o alerta atualizado
+ * é publicado em "alerts.updated". Com a fila cheia, ou quando a IA não gera a mensagem (falha ou
+ * circuito aberto), o alerta mantém a mensagem padrão e nada é publicado.
+ * Os alertas pendentes são agrupados em lotes (janela curta ou tamanho máximo) e cada lote
+ * é gerado com uma única chamada à IA.
+ */
+@Service
+@ConditionalOnProperty(name = "spring.ai.openai.api-key")
+public class AlertaEnriquecimentoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertaEnriquecimentoService.class);
+
+    @Autowired
+    private AIAlertService aiAlertService;
+
+    @Autowired
+    private AlertaRepository alertaRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.alerts.enrichment.threads:4}")
+    private int threads;
+
+    @Value("${app.alerts.enrichment.queue-capacity:500}")
+    private int capacidadeFila;
+
+    @Value("${app.alerts.enrichment.batch.window:250ms}")
+    private Duration janelaLote;
+
+    @Value("${app.alerts.enrichment.batch.max-size:20}")
+    private int tamanhoMaximoLote;
+
+    // Tipo e nível do alerta no momento do agendamento: a mensagem só é gravada se continuarem os mesmos
+    private record Pendente(Alerta alerta, String tipo, String nivel, long inicio) {
+    }
+
+    // Alertas aguardando a formação de um lote
+    private BlockingQueue<Pendente> pendentes;
+
+    private Thread agrupador;
+    private volatile boolean ativo = true;
+
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate transactionTemplate;
+
+    private Timer latencia;
+    private Counter enriquecidos;
+    private Counter falhas;
+    private Counter rejeitados;
+    private Counter semMensagem;
+    private Counter obsoletos;
+    private DistributionSummary tamanhoLote;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "alerta-ia-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Lotes esperando uma thread; o limite de alertas é dado pela fila de pendentes
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadeFila / tamanhoMaximoLote)), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        pendentes = new ArrayBlockingQueue<>(capacidadeFila);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        agrupador = new Thread(this::agrupar, "alerta-ia-lote");
+        agrupador.setDaemon(true);
+        agrupador.start();
+
+        Gauge.builder("alerts.enrichment.queue.size", pendentes, BlockingQueue::size)
+                .description("Alertas aguardando enriquecimento pela IA")
+                .register(meterRegistry);
+        Gauge.builder("alerts.enrichment.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Alertas sendo enriquecidos pela IA")
+                .register(meterRegistry);
+        latencia = Timer.builder("alerts.enrichment.latency")
+                .description("Tempo entre o commit do alerta e a publicação da mensagem enriquecida")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        enriquecidos = Counter.builder("alerts.enrichment").tag("result", "success").register(meterRegistry);
+        falhas = Counter.builder("alerts.enrichment").tag("result", "error").register(meterRegistry);
+        rejeitados = Counter.builder("alerts.enrichment").tag("result", "rejected").register(meterRegistry);
+        semMensagem = Counter.builder("alerts.enrichment").tag("result", "fallback").register(meterRegistry);
+        obsoletos = Counter.builder("alerts.enrichment").tag("result", "stale").register(meterRegistry);
+        tamanhoLote = DistributionSummary.builder("alerts.enrichment.batch.size")
+                .description("Alertas por chamada de enriquecimento")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ativo = false;
+        agrupador.interrupt();
+        agrupador.join(TimeUnit.SECONDS.toMillis(1));
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("{} alertas não foram enriquecidos antes do encerramento", executor.shutdownNow().size());
+        }
+    }
+
+    /**
+     * Agenda o enriquecimento do alerta para depois do commit da transação corrente
+     * (ou imediatamente, fora de transação). Nunca bloqueia a thread chamadora.
+     */
+    public void enriquecerAposCommit(Alerta alerta) {
+        Transacoes.aposCommit(() -> agendar(alerta));
+    }
+
+    private void agendar(Alerta alerta) {
+        if (!pendentes.offer(new Pendente(alerta, alerta.getTipo(), alerta.getNivel(), System.nanoTime()))) {
+            rejeitados.increment();
+            logger.warn("Fila de enriquecimento cheia, alerta {} mantém a mensagem padrão", alerta.getId());
+        }
+    }
+
+    /**
+     * Forma lotes com os alertas pendentes: o lote fecha ao atingir o tamanho máximo
+     * ou quando a janela, contada a partir do primeiro alerta, termina
+     */
+    private void agrupar() {
+        while (ativo) {
+            try {
+                Pendente primeiro = pendentes.poll(1, TimeUnit.SECONDS);
+                if (primeiro == null) {
+                    continue;
+                }
+
+                List<Pendente> lote = new ArrayList<>(tamanhoMaximoLote);
+                lote.add(primeiro);
+                long prazo = System.nanoTime() + janelaLote.toNanos();
+                while (lote.size() < tamanhoMaximoLote) {
+                    long restante = prazo - System.nanoTime();
+                    Pendente proximo = restante > 0 ? pendentes.poll(restante, TimeUnit.NANOSECONDS) : pendentes.poll();
+                    if (proximo == null) {
+                        break;
+                    }
+                    lote.add(proximo);
+                }
+                despachar(lote);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void despachar(List<Pendente> lote) {
+        try {
+            executor.execute(() -> enriquecer(lote));
+        } catch (RejectedExecutionException e) {
+            rejeitados.increment(lote.size());
+            logger.warn("Executor de enriquecimento saturado, {} alertas mantêm a mensagem padrão", lote.size());
+        }
+    }
+
+    private void enriquecer(List<Pendente> lote) {
+        tamanhoLote.record(lote.size());
+
+        List<Optional<String>> mensagens;
+        try {
+            // As leituras já estão carregadas (entidades destacadas); o sensor é usado apenas pelo ID
+            mensagens = aiAlertService.generatePersonalizedAlerts(lote.stream()
+                    .map(p -> new PedidoAlerta(p.alerta().getLeitura(), p.tipo(), p.nivel()))
+                    .toList());
+        } catch (Exception e) {
+            falhas.increment(lote.size());
+            logger.error("Erro ao enriquecer lote de {} alertas: {}", lote.size(), e.getMessage());
+            lote.forEach(p -> latencia.record(System.nanoTime() - p.inicio(), TimeUnit.NANOSECONDS));
+            return;
+        }
+
+        for (int i = 0; i < lote.size(); i++) {
+            Pendente pendente = lote.get(i);
+            if (mensagens.get(i).isPresent()) {
+                atualizar(pendente, mensagens.get(i).get());
+            } else {
+                // Sem texto da IA: a mensagem da regra é mantida e nenhuma atualização é publicada
+                semMensagem.increment();
+                latencia.record(System.nanoTime() - pendente.inicio(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void atualizar(Pendente pendente, String mensagem) {
+        Alerta alerta = pendente.alerta();
+        try {
+            // Mensagem e notificação no outbox na mesma transação: uma falha desfaz as duas
+            Boolean atualizado = transactionTemplate.execute(status -> {
+                if (alertaRepository.atualizarMensagem(alerta.getId(), pendente.tipo(), pendente.nivel(),
+                        mensagem, LocalDateTime.now()) == 0) {
+                    return false;
+                }
+                alerta.setMensagem(mensagem);
+                notificationService.sendAlertUpdated(alerta);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(atualizado)) {
+                // Removido, ou elevado para outro nível (com novo enriquecimento agendado)
+                obsoletos.increment();
+                logger.debug("Alerta {} removido ou elevado antes do enriquecimento, mensagem descartada",
+                        alerta.getId());
+                return;
+            }
+            enriquecidos.increment();
+
+        } catch (Exception e) {
+            falhas.increment();
+            logger.error("Erro ao enriquecer alerta {}: {}", alerta.getId(), e.getMessage());
+        } finally {
+            latencia.record(System.nanoTime() - pendente.inicio(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaRegrasProperties;
+import com.greenlight.monitor.config.AlertaRegrasProperties.Regra;
+import com.greenlight.monitor.entity.AlertaRegraLimite;
+import com.greenlight.monitor.repository.AlertaRegraLimiteRepository;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import com.greenlight.monitor.util.LongObjectMap;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compila as regras de alerta (configuração + sobrescritas por escola/sensor do banco)
+ * em uma tabela de decisão com limites primitivos, avaliada em uma única passada por leitura.
+ * A tabela é imutável e substituída por inteiro a cada recarga. A recarga aplica apenas as
+ * sobrescritas do banco: as definições ({@code app.alerts.rules.definitions}: regras, grupos,
+ * níveis e limites padrão) são lidas na inicialização e só mudam com um reinício da aplicação.
+ */
+@Service
+public class AlertaRegraService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertaRegraService.class);
+
+    // Limites por regra na tabela: temperatura mín/máx, umidade mín/máx
+    private static final int LIMITES_POR_REGRA = 4;
+
+    // Uma regra por bit no resultado da avaliação
+    private static final int MAXIMO_REGRAS = Long.SIZE;
+
+    /**
+     * Dados da regra usados na criação do alerta
+     */
+    public record RegraAlerta(String id, String grupo, String tipo, String nivel, String mensagem) {
+    }
+
+    /**
+     * Valor acompanhado como pico do episódio, conforme o limite principal da regra
+     */
+    public enum MetricaPico {
+        TEMPERATURA_MAXIMA, TEMPERATURA_MINIMA, UMIDADE_MAXIMA, UMIDADE_MINIMA
+    }
+
+    /**
+     * Tabela de decisão compilada. Limites desligados são NaN (nenhuma comparação é satisfeita).
+     */
+    public static final class TabelaRegras {
+
+        private final RegraAlerta[] regras;
+        private final Map<String, Integer> indices;
+        // Bits das regras do mesmo grupo de cada regra
+        private final long[] mascaraGrupo;
+        // Histerese por regra: temperatura, umidade (alarga os limites para sair do episódio)
+        private final double[] histerese;
+        private final MetricaPico[] metricaPico;
+        private final double[] limitesPadrao;
+        private final LongObjectMap<double[]> limitesPorEscola;
+        // Já combinados com as sobrescritas da escola do sensor
+        private final LongObjectMap<double[]> limitesPorSensor;
+
+        private TabelaRegras(RegraAlerta[] regras, Map<String, Integer> indices, long[] mascaraGrupo,
+                             double[] histerese, MetricaPico[] metricaPico, double[] limitesPadrao,
+                             LongObjectMap<double[]> limitesPorEscola, LongObjectMap<double[]> limitesPorSensor) {
+            this.regras = regras;
+            this.indices = indices;
+            this.mascaraGrupo = mascaraGrupo;
+            this.histerese = histerese;
+            this.metricaPico = metricaPico;
+            this.limitesPadrao = limitesPadrao;
+            this.limitesPorEscola = limitesPorEscola;
+            this.limitesPorSensor = limitesPorSensor;
+        }
+
+        /**
+         * Avalia todas as regras para a leitura.
+         *
+         * @param escolaId escola do sensor, ou -1 se desconhecida
+         * @return bits (índice da regra) das regras disparadas, na ordem de prioridade
+         */
+        public long avaliar(long sensorId, long escolaId, double temperatura, double umidade) {
+            double[] limites = limites(sensorId, escolaId);
+
+            long disparadas = 0;
+            long bloqueadas = 0;
+            for (int i = 0, j = 0; i < regras.length; i++, j += LIMITES_POR_REGRA) {
+                long bit = 1L << i;
+                if ((bloqueadas & bit) == 0
+                        && temperatura >= limites[j] && temperatura <= limites[j + 1]
+                        && umidade >= limites[j + 2] && umidade <= limites[j + 3]) {
+                    disparadas |= bit;
+                    bloqueadas |= mascaraGrupo[i];
+                }
+            }
+            return disparadas;
+        }
+
+        /**
+         * Avalia as condições de permanência (limites alargados pela histerese), sem exclusão por grupo.
+         * Um episódio aberto continua enquanto alguma regra do seu grupo permanecer satisfeita.
+         *
+         * @return bits (índice da regra) das regras cuja condição de permanência é satisfeita
+         */
+        public long avaliarPermanencia(long sensorId, long escolaId, double temperatura, double umidade) {
+            double[] limites = limites(sensorId, escolaId);
+
+            long satisfeitas = 0;
+            for (int i = 0, j = 0, h = 0; i < regras.length; i++, j += LIMITES_POR_REGRA, h += 2) {
+                if (temperatura >= limites[j] - histerese[h] && temperatura <= limites[j + 1] + histerese[h]
+                        && umidade >= limites[j + 2] - histerese[h + 1] && umidade <= limites[j + 3] + histerese[h + 1]) {
+                    satisfeitas |= 1L << i;
+                }
+            }
+            return satisfeitas;
+        }
+
+        private double[] limites(long sensorId, long escolaId) {
+            double[] limites = limitesPorSensor.get(sensorId);
+            if (limites == null) {
+                limites = escolaId >= 0 ? limitesPorEscola.get(escolaId) : null;
+                if (limites == null) {
+                    limites = limitesPadrao;
+                }
+            }
+            return limites;
+        }
+
+        /**
+         * Valor de pico da regra para a leitura
+         */
+        public double valorPico(int indice, double temperatura, double umidade) {
+            return switch (metricaPico[indice]) {
+                case TEMPERATURA_MAXIMA, TEMPERATURA_MINIMA -> temperatura;
+                case UMIDADE_MAXIMA, UMIDADE_MINIMA -> umidade;
+            };
+        }
+
+        /**
+         * Indica se o valor é mais extremo que o pico atual, no sentido da regra
+         */
+        public boolean isMaisExtremo(int indice, double valor, double picoAtual) {
+            return switch (metricaPico[indice]) {
+                case TEMPERATURA_MAXIMA, UMIDADE_MAXIMA -> valor > picoAtual;
+                case TEMPERATURA_MINIMA, UMIDADE_MINIMA -> valor < picoAtual;
+            };
+        }
+
+        /**
+         * Índice da regra pelo id, ou -1 se ela não existe nesta tabela
+         */
+        public int indice(String regraId) {
+            Integer indice = indices.get(regraId);
+            return indice != null ? indice : -1;
+        }
+
+        public long getMascaraGrupo(int indice) {
+            return mascaraGrupo[indice];
+        }
+
+        /**
+         * Indica se há sobrescritas por escola (a avaliação precisa da escola do sensor)
+         */
+        public boolean temLimitesPorEscola() {
+            return !limitesPorEscola.isEmpty();
+        }
+
+        public RegraAlerta getRegra(int indice) {
+            return regras[indice];
+        }
+
+        public int size() {
+            return regras.length;
+        }
+    }
+
+    @Autowired
+    private AlertaRegrasProperties properties;
+
+    @Autowired
+    private AlertaRegraLimiteRepository alertaRegraLimiteRepository;
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    private volatile TabelaRegras tabela;
+
+    @PostConstruct
+    public void init() {
+        // Configuração inválida impede a inicialização
+        tabela = compilar();
+        logger.info("Regras de alerta compiladas: {} regras", tabela.size());
+    }
+
+    /**
+     * Tabela de decisão atual (os índices das regras valem apenas para esta instância)
+     */
+    public TabelaRegras getTabela() {
+        return tabela;
+    }
+
+    /**
+     * Avalia as regras de uma tabela para uma leitura
+     *
+     * @return bits das regras disparadas (ver {@link TabelaRegras#getRegra(int)} na mesma tabela)
+     */
+    public long avaliar(TabelaRegras tabela, long sensorId, BigDecimal temperatura, BigDecimal umidade) {
+        return tabela.avaliar(sensorId, escolaDoSensor(tabela, sensorId),
+                temperatura.doubleValue(), umidade.doubleValue());
+    }
+
+    /**
+     * Avalia as regras de uma tabela para valores quaisquer do sensor (ex.: uma previsão)
+     */
+    public long avaliar(TabelaRegras tabela, long sensorId, double temperatura, double umidade) {
+        return tabela.avaliar(sensorId, escolaDoSensor(tabela, sensorId), temperatura, umidade);
+    }
+
+    /**
+     * Avalia as condições de permanência (com histerese) das regras de uma tabela para uma leitura
+     */
+    public long avaliarPermanencia(TabelaRegras tabela, long sensorId, BigDecimal temperatura, BigDecimal umidade) {
+        return tabela.avaliarPermanencia(sensorId, escolaDoSensor(tabela, sensorId),
+                temperatura.doubleValue(), umidade.doubleValue());
+    }
+
+    private long escolaDoSensor(TabelaRegras tabela, long sensorId) {
+        if (!tabela.temLimitesPorEscola()) {
+            return -1;
+        }
+        SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(sensorId);
+        return sensor != null ? sensor.escolaId() : -1;
+    }
+
+    /**
+     * Recompila as regras com as sobrescritas atuais do banco (as definições da configuração
+     * continuam as da inicialização)
+     *
+     * @return quantidade de regras compiladas
+     * @throws IllegalStateException se a configuração for inválida (a tabela anterior continua em uso)
+     */
+    public int recarregar() {
+        TabelaRegras nova = compilar();
+        tabela = nova;
+        logger.debug("Regras de alerta recarregadas: {} regras", nova.size());
+        return nova.size();
+    }
+
+    /**
+     * Recarga periódica para aplicar alterações nas sobrescritas do banco
+     */
+    @Scheduled(fixedDelayString = "${app.alerts.rules.refresh-interval:60000}",
+               initialDelayString = "${app.alerts.rules.refresh-interval:60000}")
+    public void recarregarPeriodicamente() {
+        try {
+            recarregar();
+        } catch (RuntimeException e) {
+            logger.error("Erro ao recarregar regras de alerta, mantendo as anteriores: {}", e.getMessage());
+        }
+    }
+
+    private TabelaRegras compilar() {
+        List<Regra> definicoes = properties.getDefinitions();
+        if (definicoes.size() > MAXIMO_REGRAS) {
+            throw new IllegalStateException("Máximo de " + MAXIMO_REGRAS + " regras de alerta");
+        }
+
+        int quantidade = definicoes.size();
+        RegraAlerta[] regras = new RegraAlerta[quantidade];
+        long[] mascaraGrupo = new long[quantidade];
+        double[] histerese = new double[quantidade * 2];
+        MetricaPico[] metricaPico = new MetricaPico[quantidade];
+        double[] limitesPadrao = new double[quantidade * LIMITES_POR_REGRA];
+        Map<String, Integer> indices = new HashMap<>();
+        Map<String, Long> grupos = new HashMap<>();
+
+        for (int i = 0; i < quantidade; i++) {
+            Regra regra = definicoes.get(i);
+            if (regra.getId() == null || regra.getTipo() == null || regra.getNivel() == null) {
+                throw new IllegalStateException("Regra de alerta " + (i + 1) + " sem id, tipo ou nível");
+            }
+            if (indices.put(regra.getId(), i) != null) {
+                throw new IllegalStateException("Regra de alerta duplicada: " + regra.getId());
+            }
+            regras[i] = new RegraAlerta(regra.getId(), regra.getGrupo(), regra.getTipo(), regra.getNivel(),
+                    regra.getMensagem());
+            grupos.merge(regra.getGrupo(), 1L << i, (a, b) -> a | b);
+
+            int j = i * LIMITES_POR_REGRA;
+            limitesPadrao[j] = limite(regra.getTemperaturaMin(), Double.NEGATIVE_INFINITY);
+            limitesPadrao[j + 1] = limite(regra.getTemperaturaMax(), Double.POSITIVE_INFINITY);
+            limitesPadrao[j + 2] = limite(regra.getUmidadeMin(), Double.NEGATIVE_INFINITY);
+            limitesPadrao[j + 3] = limite(regra.getUmidadeMax(), Double.POSITIVE_INFINITY);
+            if (limitesPadrao[j] > limitesPadrao[j + 1] || limitesPadrao[j + 2] > limitesPadrao[j + 3]) {
+                throw new IllegalStateException("Limite mínimo maior que o máximo na regra " + regra.getId());
+            }
+
+            histerese[i * 2] = limite(regra.getHistereseTemperatura(), properties.getHysteresisTemperature());
+            histerese[i * 2 + 1] = limite(regra.getHistereseUmidade(), properties.getHysteresisHumidity());
+            if (regra.getTemperaturaMin() != null) {
+                metricaPico[i] = MetricaPico.TEMPERATURA_MAXIMA;
+            } else if (regra.getTemperaturaMax() != null) {
+                metricaPico[i] = MetricaPico.TEMPERATURA_MINIMA;
+            } else if (regra.getUmidadeMin() != null) {
+                metricaPico[i] = MetricaPico.UMIDADE_MAXIMA;
+            } else {
+                metricaPico[i] = MetricaPico.UMIDADE_MINIMA;
+            }
+        }
+        for (int i = 0; i < quantidade; i++) {
+            mascaraGrupo[i] = grupos.get(definicoes.get(i).getGrupo());
+        }
+
+        // Sobrescritas: primeiro escolas, depois sensores (sobre os limites da sua escola)
+        List<AlertaRegraLimite> sobrescritas = alertaRegraLimiteRepository.findAll();
+        Map<Long, double[]> porEscola = new HashMap<>();
+        Map<Long, double[]> porSensor = new HashMap<>();
+        for (AlertaRegraLimite limite : sobrescritas) {
+            Integer indice = indices.get(limite.getRegra());
+            if (indice == null || (limite.getEscolaId() == null) == (limite.getSensorId() == null)) {
+                logger.warn("Sobrescrita de limite {} ignorada: regra desconhecida ou escopo inválido", limite.getId());
+                continue;
+            }
+            if (limite.getEscolaId() != null) {
+                aplicar(porEscola.computeIfAbsent(limite.getEscolaId(), id -> limitesPadrao.clone()), indice, limite);
+            }
+        }
+        for (AlertaRegraLimite limite : sobrescritas) {
+            Integer indice = indices.get(limite.getRegra());
+            if (indice == null || limite.getSensorId() == null || limite.getEscolaId() != null) {
+                continue;
+            }
+            double[] limites = porSensor.computeIfAbsent(limite.getSensorId(), id -> {
+                SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(id);
+                double[] base = sensor != null ? porEscola.get(sensor.escolaId()) : null;
+                return (base != null ? base : limitesPadrao).clone();
+            });
+            aplicar(limites, indice, limite);
+        }
+
+        return new TabelaRegras(regras, Map.copyOf(indices), mascaraGrupo, histerese, metricaPico, limitesPadrao,
+                paraLongObjectMap(porEscola), paraLongObjectMap(porSensor));
+    }
+
+    private static void aplicar(double[] limites, int indice, AlertaRegraLimite limite) {
+        int j = indice * LIMITES_POR_REGRA;
+        if (Boolean.FALSE.equals(limite.getAtivo())) {
+            limites[j] = Double.NaN;
+            return;
+        }
+        limites[j] = limite(limite.getTemperaturaMin(), limites[j]);
+        limites[j + 1] = limite(limite.getTemperaturaMax(), limites[j + 1]);
+        limites[j + 2] = limite(limite.getUmidadeMin(), limites[j + 2]);
+        limites[j + 3] = limite(limite.getUmidadeMax(), limites[j + 3]);
+    }
+
+    private static double limite(Double valor, double padrao) {
+        return valor != null ? valor : padrao;
+    }
+
+    private static double limite(BigDecimal valor, double herdado) {
+        return valor != null ? valor.doubleValue() : herdado;
+    }
+
+    private static LongObjectMap<double[]> paraLongObjectMap(Map<Long, double[]> mapa) {
+        LongObjectMap.Builder<double[]> builder = LongObjectMap.builder(mapa.size());
+        mapa.forEach(builder::put);
+        return builder.build();
+    }
+}
@@ -1,13 +1,17 @@
 package com.greenlight.monitor.service;
 
+import com.greenlight.monitor.dto.AlertaResumoDTO;
+import com.greenlight.monitor.dto.SliceDTO;
 import com.greenlight.monitor.entity.Alerta;
 import com.greenlight.monitor.entity.Leitura;
 import com.greenlight.monitor.repository.AlertaRepository;
+import com.greenlight.monitor.util.CursorPaginacao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,17 +33,50 @@ public class AlertaService {
     private AlertaRepository alertaRepository;
 
     @Autowired(required = false)
-    private AIAlertService aiAlertService;
+    private AlertaEnriquecimentoService alertaEnriquecimentoService;
 
     @Autowired
     private NotificationService notificationService;
 
-    // Limites para alertas
-    private static final BigDecimal TEMP_CRITICA = BigDecimal.valueOf(35.0);
-    private static final BigDecimal TEMP_ALTA = BigDecimal.valueOf(30.0);
-    private static final BigDecimal TEMP_ELEVADA = BigDecimal.valueOf(28.0);
-    private static final BigDecimal UMIDADE_BAIXA = BigDecimal.valueOf(30.0);
-    private static final BigDecimal UMIDADE_ALTA = BigDecimal.valueOf(80.0);
+    @Autowired
+    private SensorEstadoService sensorEstadoService;
+
+    @Autowired
+    private AlertaDedupService alertaDedupService;
+
+    @Autowired
+    private AlertaRegraService alertaRegraService;
+
+    @Autowired
+    private JanelaAlertaService janelaAlertaService;
+
+    @Autowired
+    private EpisodioAlertaService episodioAlertaService;
+
+    @Autowired
+    private PrevisaoTemperaturaService previsaoTemperaturaService;
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    private final EpisodioAlertaService.AcoesEpisodio acoesEpisodio = new EpisodioAlertaService.AcoesEpisodio() {
+        @Override
+        public long abrir(Leitura leitura, AlertaRegraService.RegraAlerta regra, BigDecimal valorPico) {
+            return abrirEpisodio(leitura, regra, valorPico);
+        }
+
+        @Override
+        public void escalar(long alertaId, Leitura leitura, AlertaRegraService.RegraAlerta regra, BigDecimal valorPico) {
+            escalarEpisodio(alertaId, leitura, regra, valorPico);
+        }
+
+        @Override
+        public void encerrar(long alertaId, LocalDateTime fim) {
+            if (alertaRepository.encerrarEpisodio(alertaId, fim) > 0) {
+                logger.info("Episódio de alerta {} encerrado em {}", alertaId, fim);
+            }
+        }
+    };
 
     /**
      * Processa uma leitura e gera alertas conforme necessário
@@ -49,64 +86,104 @@ public class AlertaService {
             logger.debug("Processando leitura para alertas: Sensor {}, Temp: {}°C, Umidade: {}%",
                 leitura.getSensor().getId(), leitura.getTemperatura(), leitura.getUmidade());
 
-            // Verificar alertas de temperatura
-            processarAlertasTemperatura(leitura);
-
-            // Verificar alertas de umidade
-            processarAlertasUmidade(leitura);
+            // Avaliação das regras de temperatura, umidade e combinadas em uma única passada;
+            // cada grupo de regras mantém um episódio (um alerta) enquanto a condição persiste
+            AlertaRegraService.TabelaRegras tabela = alertaRegraService.getTabela();
+            long sensorId = leitura.getSensor().getId();
+            long disparadas = alertaRegraService.avaliar(tabela, sensorId,
+                    leitura.getTemperatura(), leitura.getUmidade());
+            long permanencia = alertaRegraService.avaliarPermanencia(tabela, sensorId,
+                    leitura.getTemperatura(), leitura.getUmidade());
+            episodioAlertaService.processar(leitura, tabela, disparadas, permanencia, acoesEpisodio);
+
+            // Alerta antecipado quando a previsão de curto prazo atinge o limite de calor
+            PrevisaoTemperaturaService.Previsao previsao =
+                    previsaoTemperaturaService.registrar(leitura, tabela, disparadas);
+            if (previsao != null) {
+                criarAlerta(leitura, previsao.tipo(), previsao.nivel(), previsao.mensagem());
+            }
 
-            // Verificar alertas combinados (temperatura + umidade)
-            processarAlertasCombinados(leitura);
+            // Condições sustentadas (médias e contagens sobre janelas de leituras do sensor)
+            for (JanelaAlertaService.RegraJanela regra : janelaAlertaService.registrar(leitura)) {
+                criarAlerta(leitura, regra.tipo(), regra.nivel(), regra.mensagem());
+            }
 
         } catch (Exception e) {
             logger.error("Erro ao processar alertas para leitura {}: {}", leitura.getId(), e.getMessage());
+            // Alerta e notificação (outbox) são gravados na transação da leitura: a falha desfaz os dois
+            throw e;
         }
     }
 
     /**
-     * Processa alertas relacionados à temperatura
+     * Processa um lote de leituras e gera alertas conforme necessário
      */
-    private void processarAlertasTemperatura(Leitura leitura) {
-        BigDecimal temperatura = leitura.getTemperatura();
-
-        if (temperatura.compareTo(TEMP_CRITICA) >= 0) {
-            criarAlerta(leitura, "Calor Extremo", "Crítico", 
-                "Temperatura crítica detectada. Risco extremo para a saúde dos estudantes.");
-        } else if (temperatura.compareTo(TEMP_ALTA) >= 0) {
-            criarAlerta(leitura, "Calor Intenso", "Alto", 
-                "Temperatura muito alta detectada. Medidas preventivas necessárias.");
-        } else if (temperatura.compareTo(TEMP_ELEVADA) >= 0) {
-            criarAlerta(leitura, "Temperatura Elevada", "Médio", 
-                "Temperatura acima do confortável. Monitoramento recomendado.");
+    public void processarLeituras(List<Leitura> leituras) {
+        // Locks dos episódios adquiridos em ordem antes do lote: mantidos até o commit
+        episodioAlertaService.bloquear(leituras.stream().map(leitura -> leitura.getSensor().getId()).toList());
+        for (Leitura leitura : leituras) {
+            processarLeitura(leitura);
         }
     }
 
     /**
-     * Processa alertas relacionados à umidade
+     * Abre um episódio: cria o alerta da regra disparada
+     *
+     * @return ID do alerta
      */
-    private void processarAlertasUmidade(Leitura leitura) {
-        BigDecimal umidade = leitura.getUmidade();
-
-        if (umidade.compareTo(UMIDADE_BAIXA) <= 0) {
-            criarAlerta(leitura, "Umidade Baixa", "Médio", 
-                "Umidade muito baixa detectada. Pode causar desconforto respiratório.");
-        } else if (umidade.compareTo(UMIDADE_ALTA) >= 0) {
-            criarAlerta(leitura, "Umidade Alta", "Médio", 
-                "Umidade muito alta detectada. Ambiente pode ficar abafado.");
+    private long abrirEpisodio(Leitura leitura, AlertaRegraService.RegraAlerta regra, BigDecimal valorPico) {
+        Alerta alerta = new Alerta();
+        alerta.setLeitura(leitura);
+        alerta.setRegra(regra.id());
+        alerta.setTipo(regra.tipo());
+        alerta.setNivel(regra.nivel());
+        alerta.setStatus("Emitido");
+        alerta.setTimestamp(LocalDateTime.now());
+        alerta.setValorPico(valorPico);
+        alerta.setTimestampPico(leitura.getTimestamp());
+        alerta.setMensagem(regra.mensagem());
+
+        alerta = save(alerta);
+        logger.info("Episódio de alerta aberto: ID {}, Tipo: {}, Nível: {}", alerta.getId(), regra.tipo(), regra.nivel());
+
+        sensorEstadoService.registrarAlerta(leitura.getSensor().getId(), regra.nivel(), alerta.getTimestamp());
+        dashboardService.registrarAlerta(null, null, alerta);
+        notificationService.sendAlert(alerta);
+        if (alertaEnriquecimentoService != null) {
+            alertaEnriquecimentoService.enriquecerAposCommit(alerta);
         }
+        return alerta.getId();
     }
 
     /**
-     * Processa alertas combinados (temperatura + umidade)
+     * Eleva um episódio aberto para uma regra de maior prioridade do mesmo grupo (ex.: Calor Intenso
+     * para Calor Extremo), atualizando o mesmo alerta e publicando-o em "alerts.updated"
      */
-    private void processarAlertasCombinados(Leitura leitura) {
-        BigDecimal temperatura = leitura.getTemperatura();
-        BigDecimal umidade = leitura.getUmidade();
-
-        // Índice de calor simplificado
-        if (temperatura.compareTo(TEMP_ELEVADA) >= 0 && umidade.compareTo(BigDecimal.valueOf(70)) >= 0) {
-            criarAlerta(leitura, "Índice de Calor Elevado", "Alto", 
-                "Combinação de temperatura e umidade alta. Sensação térmica muito desconfortável.");
+    private void escalarEpisodio(long alertaId, Leitura leitura, AlertaRegraService.RegraAlerta regra,
+                                 BigDecimal valorPico) {
+        Alerta alerta = alertaRepository.findById(alertaId).orElse(null);
+        if (alerta == null) {
+            return;
+        }
+        String statusAnterior = alerta.getStatus();
+        String nivelAnterior = alerta.getNivel();
+
+        alerta.setLeitura(leitura);
+        alerta.setRegra(regra.id());
+        alerta.setTipo(regra.tipo());
+        alerta.setNivel(regra.nivel());
+        alerta.setStatus("Emitido");
+        alerta.setValorPico(valorPico);
+        alerta.setTimestampPico(leitura.getTimestamp());
+        alerta.setMensagem(regra.mensagem());
+        alerta = save(alerta);
+        logger.info("Episódio de alerta {} elevado para {} ({})", alertaId, regra.tipo(), regra.nivel());
+
+        sensorEstadoService.registrarAlerta(leitura.getSensor().getId(), regra.nivel(), LocalDateTime.now());
+        dashboardService.registrarAlerta(statusAnterior, nivelAnterior, alerta);
+        notificationService.sendAlertUpdated(alerta);
+        if (alertaEnriquecimentoService != null) {
+            alertaEnriquecimentoService.enriquecerAposCommit(alerta);
         }
     }
 
@@ -114,52 +191,47 @@ public class AlertaService {
      * Cria um novo alerta
      */
     private void criarAlerta(Leitura leitura, String tipo, String nivel, String mensagemPadrao) {
-        try {
-            // Verificar se já existe alerta similar recente para evitar spam
-            if (existeAlertaRecente(leitura.getSensor().getId(), tipo)) {
-                logger.debug("Alerta similar já existe para sensor {}, tipo {}", 
-                    leitura.getSensor().getId(), tipo);
-                return;
-            }
+        // Reservar a janela de repetição (sensor, tipo) em memória para evitar spam
+        AlertaDedupService.Reserva reserva = alertaDedupService.tentarReservar(leitura.getSensor().getId(), tipo);
+        if (reserva == null) {
+            logger.debug("Alerta similar já existe para sensor {}, tipo {}", 
+                leitura.getSensor().getId(), tipo);
+            return;
+        }
 
+        try {
             Alerta alerta = new Alerta();
             alerta.setLeitura(leitura);
             alerta.setTipo(tipo);
             alerta.setNivel(nivel);
             alerta.setStatus("Emitido");
             alerta.setTimestamp(LocalDateTime.now());
-
-            // Gerar mensagem personalizada com IA (se disponível)
-            String mensagem = mensagemPadrao;
-            if (aiAlertService != null) {
-                try {
-                    mensagem = aiAlertService.generatePersonalizedAlert(leitura, tipo, nivel);
-                } catch (Exception e) {
-                    logger.warn("Erro ao gerar mensagem com IA, usando mensagem padrão: {}", e.getMessage());
-                }
-            }
-            alerta.setMensagem(mensagem);
+            // Mensagem padrão; a versão personalizada pela IA é gerada após o commit
+            alerta.setMensagem(mensagemPadrao);
 
             // Salvar alerta
             alerta = save(alerta);
             logger.info("Alerta criado: ID {}, Tipo: {}, Nível: {}", alerta.getId(), tipo, nivel);
 
+            // Atualizar último nível de alerta no estado do sensor
+            sensorEstadoService.registrarAlerta(leitura.getSensor().getId(), nivel, alerta.getTimestamp());
+            dashboardService.registrarAlerta(null, null, alerta);
+
             // Enviar notificação
             notificationService.sendAlert(alerta);
 
+            // Enriquecer mensagem com IA (se disponível) fora da transação de ingestão
+            if (alertaEnriquecimentoService != null) {
+                alertaEnriquecimentoService.enriquecerAposCommit(alerta);
+            }
+
         } catch (Exception e) {
             logger.error("Erro ao criar alerta: {}", e.getMessage());
+            alertaDedupService.liberar(reserva);
+            throw e;
         }
     }
 
-    /**
-     * Verifica se existe alerta recente similar
-     */
-    private boolean existeAlertaRecente(Long sensorId, String tipo) {
-        LocalDateTime limite = LocalDateTime.now().minusMinutes(30); // 30 minutos
-        return alertaRepository.existsAlertaRecente(sensorId, tipo, limite);
-    }
-
     /**
      * Busca todos os alertas
      */
@@ -236,6 +308,27 @@ public class AlertaService {
         return alertaRepository.findByFiltros(tipo, nivel, status, inicio, fim, pageable);
     }
 
+    /**
+     * Busca alertas com filtros por chave (keyset): custo constante por página, sem OFFSET nem COUNT.
+     * {@code cursor} é o token devolvido na página anterior (null para a primeira página).
+     */
+    @Transactional(readOnly = true)
+    public SliceDTO<AlertaResumoDTO> scrollByFiltros(Long escolaId, Long sensorId, String tipo, String nivel,
+                                                     String status, LocalDateTime inicio, LocalDateTime fim,
+                                                     String cursor, int size) {
+        Pageable pagina = CursorPaginacao.pagina(size);
+        Slice<Alerta> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = alertaRepository.findSliceByFiltros(escolaId, sensorId, tipo, nivel, status, inicio, fim, pagina);
+        } else {
+            CursorPaginacao posicao = CursorPaginacao.decodificar(cursor);
+            slice = alertaRepository.findSliceByFiltrosApos(escolaId, sensorId, tipo, nivel, status, inicio, fim,
+                    posicao.getTimestamp(), posicao.getId(), pagina);
+        }
+        return SliceDTO.from(slice, AlertaResumoDTO::from,
+                a -> CursorPaginacao.codificar(a.getTimestamp(), a.getId()));
+    }
+
     /**
      * Salva um alerta
      */
@@ -249,7 +342,9 @@ public class AlertaService {
     public Alerta create(Alerta alerta) {
         alerta.setId(null);
         alerta.setTimestamp(LocalDateTime.now());
-        return save(alerta);
+        alerta = save(alerta);
+        dashboardService.registrarAlerta(null, null, alerta);
+        return alerta;
     }
 
     /**
@@ -257,8 +352,11 @@ public class AlertaService {
      */
     public Alerta updateStatus(Long id, String novoStatus) {
         Alerta alerta = getById(id);
+        String statusAnterior = alerta.getStatus();
         alerta.setStatus(novoStatus);
-        return save(alerta);
+        alerta = save(alerta);
+        dashboardService.registrarAlerta(statusAnterior, alerta.getNivel(), alerta);
+        return alerta;
     }
 
     /**
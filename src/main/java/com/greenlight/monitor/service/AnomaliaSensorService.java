@@ -0,0 +1,274 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detecção de anomalias por sensor em relação à sua própria linha de base.
+ * Mantém média e variância móveis exponenciais (EWMA) de temperatura e umidade e um contador de
+ * leituras repetidas em campos primitivos da linha de base de cada sensor, sem alocação por leitura;
+ * cada linha de base tem o próprio lock. Desvios com z-score e diferença absoluta acima dos limites
+ * e sensores com valores travados são notificados pelo outbox, uma vez por ocorrência.
+ * A linha de base de um sensor alterada por uma transação que não confirmou é descartada e refeita
+ * na próxima leitura com as leituras confirmadas do banco.
+ */
+@Service
+public class AnomaliaSensorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnomaliaSensorService.class);
+
+    // Recurso da transação corrente com os sensores cujas linhas de base ela alterou
+    private static final Object SENSORES_DA_TRANSACAO = new Object();
+
+    // Estado de notificação por sensor (bits)
+    private static final byte EM_ANOMALIA_TEMPERATURA = 1;
+    private static final byte EM_ANOMALIA_UMIDADE = 2;
+    private static final byte TRAVADO = 4;
+
+    /**
+     * Linha de base de um sensor (acessada sob o lock do próprio objeto)
+     */
+    private static final class LinhaBase {
+        private long ultimoInstante = Long.MIN_VALUE;
+        private int quantidade;
+        private double mediaTemperatura;
+        private double varianciaTemperatura;
+        private double mediaUmidade;
+        private double varianciaUmidade;
+        private double ultimaTemperatura;
+        private double ultimaUmidade;
+        private int repeticoes;
+        private byte estado;
+    }
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private LeituraRepository leituraRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.alerts.anomaly.enabled:true}")
+    private boolean habilitado;
+
+    // Peso da leitura nova na média/variância móveis
+    @Value("${app.alerts.anomaly.alpha:0.05}")
+    private double alpha;
+
+    // Leituras mínimas antes de avaliar desvios
+    @Value("${app.alerts.anomaly.warmup-readings:30}")
+    private int leiturasAquecimento;
+
+    @Value("${app.alerts.anomaly.z-threshold:4.0}")
+    private double limiteZ;
+
+    // Diferença mínima em relação à média (evita alertas em salas muito estáveis)
+    @Value("${app.alerts.anomaly.min-delta-temperature:3.0}")
+    private double deltaMinimoTemperatura;
+
+    @Value("${app.alerts.anomaly.min-delta-humidity:10.0}")
+    private double deltaMinimoUmidade;
+
+    // Leituras consecutivas idênticas (temperatura e umidade) para considerar o sensor travado
+    @Value("${app.alerts.anomaly.stuck-readings:30}")
+    private int leiturasTravado;
+
+    // Leituras do banco usadas para refazer a linha de base após um rollback
+    @Value("${app.alerts.anomaly.rebuild-window:6h}")
+    private Duration janelaReconstrucao;
+
+    private final ConcurrentHashMap<Long, LinhaBase> linhas = new ConcurrentHashMap<>();
+
+    // Sensores cuja linha de base foi descartada após rollback (refeitas com as leituras do banco)
+    private final Set<Long> invalidados = ConcurrentHashMap.newKeySet();
+
+    private Counter anomaliasTemperatura;
+    private Counter anomaliasUmidade;
+    private Counter sensoresTravados;
+
+    @PostConstruct
+    public void init() {
+        anomaliasTemperatura = Counter.builder("sensor.anomalies").tag("type", "temperature").register(meterRegistry);
+        anomaliasUmidade = Counter.builder("sensor.anomalies").tag("type", "humidity").register(meterRegistry);
+        sensoresTravados = Counter.builder("sensor.anomalies").tag("type", "stuck").register(meterRegistry);
+        Gauge.builder("sensor.anomalies.tracked", linhas, Map::size)
+                .description("Sensores com linha de base em memória")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Atualiza a linha de base do sensor com a leitura e notifica anomalias novas
+     */
+    public void registrar(SensorInfo sensor, Leitura leitura) {
+        if (!habilitado) {
+            return;
+        }
+
+        LocalDateTime timestamp = leitura.getTimestamp();
+        long instante = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        double temperatura = leitura.getTemperatura().doubleValue();
+        double umidade = leitura.getUmidade().doubleValue();
+
+        // Valores copiados sob o lock para a notificação (fora dele)
+        int novas;
+        double mediaT;
+        double desvioT;
+        double mediaU;
+        double desvioU;
+        int repetidas;
+
+        LinhaBase linha = linhaDoSensor(sensor.id(), timestamp);
+        Transacoes.invalidarSeNaoConfirmar(SENSORES_DA_TRANSACAO, sensor.id(), this::invalidar);
+        synchronized (linha) {
+            if (instante <= linha.ultimoInstante) {
+                return;
+            }
+            mediaT = linha.mediaTemperatura;
+            desvioT = Math.sqrt(linha.varianciaTemperatura);
+            mediaU = linha.mediaUmidade;
+            desvioU = Math.sqrt(linha.varianciaUmidade);
+
+            novas = atualizar(linha, instante, temperatura, umidade);
+            repetidas = linha.repeticoes + 1;
+        }
+
+        if (novas != 0) {
+            notificar(sensor, novas, temperatura, mediaT, desvioT, umidade, mediaU, desvioU, repetidas);
+        }
+    }
+
+    /**
+     * Linha de base do sensor; após um rollback, refeita com as leituras confirmadas anteriores à
+     * leitura corrente (as anomalias já notificadas nelas não são notificadas de novo)
+     */
+    private LinhaBase linhaDoSensor(long sensorId, LocalDateTime timestamp) {
+        if (invalidados.remove(sensorId)) {
+            LinhaBase recarregada = new LinhaBase();
+            for (Object[] valor : leituraRepository.findValoresBySensorIdEntre(sensorId,
+                    timestamp.minus(janelaReconstrucao), timestamp)) {
+                long instante = ((LocalDateTime) valor[0]).toInstant(ZoneOffset.UTC).toEpochMilli();
+                if (instante > recarregada.ultimoInstante) {
+                    atualizar(recarregada, instante, ((BigDecimal) valor[1]).doubleValue(),
+                            ((BigDecimal) valor[2]).doubleValue());
+                }
+            }
+            linhas.put(sensorId, recarregada);
+            return recarregada;
+        }
+        return linhas.computeIfAbsent(sensorId, id -> new LinhaBase());
+    }
+
+    /**
+     * Descarta a linha de base do sensor (chamado quando a transação que a alterou não confirma)
+     */
+    private void invalidar(long sensorId) {
+        invalidados.add(sensorId);
+        linhas.remove(sensorId);
+    }
+
+    /**
+     * Avalia a leitura contra a linha de base e a incorpora (chamado sob o lock da linha)
+     *
+     * @return bits das anomalias que começaram com esta leitura
+     */
+    private int atualizar(LinhaBase linha, long instante, double temperatura, double umidade) {
+        byte anterior = linha.estado;
+        byte atual = anterior;
+
+        if (linha.quantidade == 0) {
+            linha.mediaTemperatura = temperatura;
+            linha.mediaUmidade = umidade;
+        } else {
+            atual = avaliarDesvio(atual, EM_ANOMALIA_TEMPERATURA, linha.quantidade, temperatura,
+                    linha.mediaTemperatura, linha.varianciaTemperatura, deltaMinimoTemperatura);
+            atual = avaliarDesvio(atual, EM_ANOMALIA_UMIDADE, linha.quantidade, umidade,
+                    linha.mediaUmidade, linha.varianciaUmidade, deltaMinimoUmidade);
+
+            linha.repeticoes = temperatura == linha.ultimaTemperatura && umidade == linha.ultimaUmidade
+                    ? linha.repeticoes + 1 : 0;
+            atual = linha.repeticoes + 1 >= leiturasTravado
+                    ? (byte) (atual | TRAVADO) : (byte) (atual & ~TRAVADO);
+
+            // Atualização incremental da média e variância exponenciais
+            double diferenca = temperatura - linha.mediaTemperatura;
+            double incremento = alpha * diferenca;
+            linha.mediaTemperatura += incremento;
+            linha.varianciaTemperatura = (1 - alpha) * (linha.varianciaTemperatura + diferenca * incremento);
+
+            diferenca = umidade - linha.mediaUmidade;
+            incremento = alpha * diferenca;
+            linha.mediaUmidade += incremento;
+            linha.varianciaUmidade = (1 - alpha) * (linha.varianciaUmidade + diferenca * incremento);
+        }
+        if (linha.quantidade < Integer.MAX_VALUE) {
+            linha.quantidade++;
+        }
+        linha.ultimoInstante = instante;
+        linha.ultimaTemperatura = temperatura;
+        linha.ultimaUmidade = umidade;
+        linha.estado = atual;
+
+        // Apenas transições para anomalia são notificadas
+        return atual & ~anterior;
+    }
+
+    /**
+     * Atualiza o bit de anomalia de uma métrica. A anomalia começa com |z| e |diferença| acima dos
+     * limites e termina quando |z| volta abaixo da metade do limite (histerese).
+     */
+    private byte avaliarDesvio(byte estadoAtual, byte bit, int leituras, double valor, double media,
+                               double variancia, double deltaMinimo) {
+        if (leituras < leiturasAquecimento) {
+            return estadoAtual;
+        }
+        double diferenca = Math.abs(valor - media);
+        double z = variancia > 0 ? diferenca / Math.sqrt(variancia) : Double.POSITIVE_INFINITY;
+        if (z >= limiteZ && diferenca >= deltaMinimo) {
+            return (byte) (estadoAtual | bit);
+        }
+        if (z < limiteZ / 2 || diferenca < deltaMinimo / 2) {
+            return (byte) (estadoAtual & ~bit);
+        }
+        return estadoAtual;
+    }
+
+    private void notificar(SensorInfo sensor, int novas, double temperatura, double mediaT, double desvioT,
+                           double umidade, double mediaU, double desvioU, int repetidas) {
+        if ((novas & EM_ANOMALIA_TEMPERATURA) != 0) {
+            anomaliasTemperatura.increment();
+            logger.warn("Anomalia de temperatura no sensor {}: {}°C (média {}°C)", sensor.id(), temperatura, mediaT);
+            notificationService.sendAnomalyAlert(sensor, "Temperatura", temperatura, mediaT, desvioT);
+        }
+        if ((novas & EM_ANOMALIA_UMIDADE) != 0) {
+            anomaliasUmidade.increment();
+            logger.warn("Anomalia de umidade no sensor {}: {}% (média {}%)", sensor.id(), umidade, mediaU);
+            notificationService.sendAnomalyAlert(sensor, "Umidade", umidade, mediaU, desvioU);
+        }
+        if ((novas & TRAVADO) != 0) {
+            sensoresTravados.increment();
+            logger.warn("Sensor {} possivelmente travado: {} leituras idênticas", sensor.id(), repetidas);
+            notificationService.sendStuckSensorAlert(sensor, temperatura, umidade, repetidas);
+        }
+    }
+}
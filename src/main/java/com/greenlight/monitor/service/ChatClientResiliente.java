@@ -0,0 +1,306 @@
+package com.greenlight.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proteção das chamadas ao ChatClient: timeout por chamada, limite de chamadas simultâneas (bulkhead)
+ * e circuit breaker por taxa de falhas. Com o circuito aberto ou o bulkhead cheio a chamada falha
+ * imediatamente com {@link ChatIndisponivelException}, e o chamador usa a mensagem padrão.
+ * Após o tempo de abertura, algumas chamadas de sondagem decidem se o circuito fecha ou reabre.
+ */
+@Service
+@ConditionalOnProperty(name = "spring.ai.openai.api-key")
+public class ChatClientResiliente {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatClientResiliente.class);
+
+    /**
+     * Chamada não realizada ou sem resposta (circuito aberto, bulkhead cheio, timeout ou erro da IA)
+     */
+    public static class ChatIndisponivelException extends RuntimeException {
+        public ChatIndisponivelException(String message) {
+            super(message);
+        }
+
+        public ChatIndisponivelException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public enum EstadoCircuito {
+        FECHADO, ABERTO, SEMIABERTO
+    }
+
+    @Autowired(required = false)
+    private ChatClient chatClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.ai.resilience.timeout:10s}")
+    private Duration timeout;
+
+    @Value("${app.ai.resilience.max-concurrent-calls:8}")
+    private int maxChamadasSimultaneas;
+
+    @Value("${app.ai.resilience.max-wait:200ms}")
+    private Duration esperaMaxima;
+
+    @Value("${app.ai.resilience.sliding-window-size:20}")
+    private int tamanhoJanela;
+
+    @Value("${app.ai.resilience.minimum-calls:10}")
+    private int chamadasMinimas;
+
+    @Value("${app.ai.resilience.failure-rate-threshold:50}")
+    private int limiteTaxaFalhas;
+
+    @Value("${app.ai.resilience.open-duration:30s}")
+    private Duration duracaoAberto;
+
+    @Value("${app.ai.resilience.half-open-calls:3}")
+    private int chamadasSemiaberto;
+
+    private Semaphore bulkhead;
+    private ThreadPoolExecutor executor;
+
+    // Estado do circuito, protegido por "this"
+    private EstadoCircuito estado = EstadoCircuito.FECHADO;
+    private boolean[] janela;
+    private int posicaoJanela;
+    private int chamadasNaJanela;
+    private int falhasNaJanela;
+    private long abertoAte;
+    private int sondasEmAndamento;
+    private int sondasComSucesso;
+
+    private Timer latencia;
+    private Counter sucessos;
+    private Counter falhas;
+    private Counter timeouts;
+    private Counter rejeitadasCircuito;
+    private Counter rejeitadasBulkhead;
+
+    @PostConstruct
+    public void init() {
+        bulkhead = new Semaphore(maxChamadasSimultaneas);
+        janela = new boolean[tamanhoJanela];
+
+        // Uma thread por permissão do bulkhead; a fila nunca acumula mais que o limite
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "chat-ia-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(maxChamadasSimultaneas, maxChamadasSimultaneas, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+
+        Gauge.builder("ai.chat.circuit.state", this, c -> c.getEstado().ordinal())
+                .description("Estado do circuit breaker da IA (0 = fechado, 1 = aberto, 2 = semiaberto)")
+                .register(meterRegistry);
+        Gauge.builder("ai.chat.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Chamadas simultâneas à IA ainda disponíveis")
+                .register(meterRegistry);
+        latencia = Timer.builder("ai.chat.latency")
+                .description("Duração das chamadas à IA")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        sucessos = Counter.builder("ai.chat.calls").tag("result", "success").register(meterRegistry);
+        falhas = Counter.builder("ai.chat.calls").tag("result", "error").register(meterRegistry);
+        timeouts = Counter.builder("ai.chat.calls").tag("result", "timeout").register(meterRegistry);
+        rejeitadasCircuito = Counter.builder("ai.chat.rejections").tag("reason", "circuit-open").register(meterRegistry);
+        rejeitadasBulkhead = Counter.builder("ai.chat.rejections").tag("reason", "bulkhead-full").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Indica se há um ChatClient configurado
+     */
+    public boolean isDisponivel() {
+        return chatClient != null;
+    }
+
+    /**
+     * Envia o prompt à IA e devolve o texto da resposta.
+     *
+     * @throws ChatIndisponivelException se a chamada for rejeitada, exceder o timeout ou falhar
+     */
+    public String chamar(String prompt) {
+        if (chatClient == null) {
+            throw new ChatIndisponivelException("ChatClient não configurado");
+        }
+        if (!permitirChamada()) {
+            rejeitadasCircuito.increment();
+            throw new ChatIndisponivelException("Circuit breaker da IA aberto");
+        }
+        if (!adquirirBulkhead()) {
+            cancelarPermissao();
+            rejeitadasBulkhead.increment();
+            throw new ChatIndisponivelException("Limite de chamadas simultâneas à IA atingido");
+        }
+
+        long inicio = System.nanoTime();
+        Future<String> resposta;
+        try {
+            // A permissão só é devolvida quando a chamada termina de fato, mesmo após o timeout
+            resposta = executor.submit(() -> {
+                try {
+                    return chatClient.call(new Prompt(prompt)).getResult().getOutput().getContent();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            cancelarPermissao();
+            throw new ChatIndisponivelException("Executor da IA indisponível", e);
+        }
+
+        try {
+            String conteudo = resposta.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            registrarResultado(true);
+            sucessos.increment();
+            return conteudo;
+        } catch (TimeoutException e) {
+            resposta.cancel(true);
+            registrarResultado(false);
+            timeouts.increment();
+            throw new ChatIndisponivelException("Timeout de " + timeout.toMillis() + " ms na chamada à IA", e);
+        } catch (ExecutionException e) {
+            registrarResultado(false);
+            falhas.increment();
+            throw new ChatIndisponivelException("Erro na chamada à IA: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resposta.cancel(true);
+            cancelarPermissao();
+            throw new ChatIndisponivelException("Chamada à IA interrompida", e);
+        } finally {
+            latencia.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Estado atual do circuit breaker
+     */
+    public synchronized EstadoCircuito getEstado() {
+        if (estado == EstadoCircuito.ABERTO && System.nanoTime() - abertoAte >= 0) {
+            return EstadoCircuito.SEMIABERTO;
+        }
+        return estado;
+    }
+
+    private boolean adquirirBulkhead() {
+        try {
+            return bulkhead.tryAcquire(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized boolean permitirChamada() {
+        if (estado == EstadoCircuito.ABERTO) {
+            if (System.nanoTime() - abertoAte < 0) {
+                return false;
+            }
+            transicionar(EstadoCircuito.SEMIABERTO);
+        }
+        if (estado == EstadoCircuito.SEMIABERTO) {
+            if (sondasEmAndamento >= chamadasSemiaberto) {
+                return false;
+            }
+            sondasEmAndamento++;
+        }
+        return true;
+    }
+
+    /**
+     * Devolve a permissão de uma chamada que não chegou a ser feita (sem contar como resultado)
+     */
+    private synchronized void cancelarPermissao() {
+        if (estado == EstadoCircuito.SEMIABERTO && sondasEmAndamento > 0) {
+            sondasEmAndamento--;
+        }
+    }
+
+    private synchronized void registrarResultado(boolean sucesso) {
+        switch (estado) {
+            case SEMIABERTO -> {
+                if (!sucesso) {
+                    abrir();
+                } else if (++sondasComSucesso >= chamadasSemiaberto) {
+                    transicionar(EstadoCircuito.FECHADO);
+                }
+            }
+            case FECHADO -> {
+                if (chamadasNaJanela == janela.length) {
+                    if (!janela[posicaoJanela]) {
+                        falhasNaJanela--;
+                    }
+                } else {
+                    chamadasNaJanela++;
+                }
+                janela[posicaoJanela] = sucesso;
+                posicaoJanela = (posicaoJanela + 1) % janela.length;
+                if (!sucesso) {
+                    falhasNaJanela++;
+                }
+                if (chamadasNaJanela >= chamadasMinimas && falhasNaJanela * 100 >= limiteTaxaFalhas * chamadasNaJanela) {
+                    abrir();
+                }
+            }
+            // Chamada iniciada antes da abertura: o resultado não altera o circuito
+            case ABERTO -> { }
+        }
+    }
+
+    private void abrir() {
+        abertoAte = System.nanoTime() + duracaoAberto.toNanos();
+        transicionar(EstadoCircuito.ABERTO);
+    }
+
+    private void transicionar(EstadoCircuito novo) {
+        if (novo == estado) {
+            return;
+        }
+        logger.warn("Circuit breaker da IA: {} -> {}", estado, novo);
+        estado = novo;
+        sondasEmAndamento = 0;
+        sondasComSucesso = 0;
+        if (novo == EstadoCircuito.FECHADO) {
+            chamadasNaJanela = 0;
+            falhasNaJanela = 0;
+            posicaoJanela = 0;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.LimitadorConexoesDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Controle adaptativo do número de consumidores dos listeners de leituras (AIMD).
+ * A cada intervalo observa a profundidade da fila, a latência média de processamento por mensagem
+ * e a saturação do pool de conexões do banco:
+ * <ul>
+ *   <li>congestionamento (latência acima do alvo ou threads aguardando conexão): redução multiplicativa;</li>
+ *   <li>fila acumulando sem congestionamento: aumento aditivo;</li>
+ *   <li>fila vazia por vários intervalos: redução aditiva até o mínimo.</li>
+ * </ul>
+ * O número pode ser fixado manualmente pelo endpoint administrativo. O prefetch não é ajustado:
+ * o container só o aplica a consumidores novos, e os existentes manteriam o valor antigo.
+ * Desligado por padrão ({@code app.rabbitmq.adaptive.enabled}).
+ */
+@Service
+public class ConsumoAdaptativoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumoAdaptativoService.class);
+
+    private static final String[] LISTENERS = {"sensorReadings", "sensorReadingsBatch"};
+
+    /**
+     * Estado corrente do controlador e últimos sinais observados
+     */
+    public record Estado(int consumidores, boolean fixado, String ultimaDecisao,
+                         long profundidadeFila, double latenciaMediaMs, int conexoesAtivas,
+                         int conexoesAguardando, LocalDateTime atualizadoEm) {
+    }
+
+    @Autowired
+    private RabbitListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rabbitmq.queue.sensor-readings:sensor.readings}")
+    private String fila;
+
+    @Value("${app.rabbitmq.listener.concurrency:3}")
+    private int consumidoresIniciais;
+
+    // Prefetch dos consumidores (fixo): mensagens que cada consumidor pode ter em mãos
+    @Value("${app.rabbitmq.listener.prefetch:10}")
+    private int prefetch;
+
+    @Value("${app.rabbitmq.adaptive.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${app.rabbitmq.adaptive.min-consumers:1}")
+    private int minimoConsumidores;
+
+    @Value("${app.rabbitmq.adaptive.max-consumers:20}")
+    private int maximoConsumidores;
+
+    // Fator da redução multiplicativa
+    @Value("${app.rabbitmq.adaptive.decrease-factor:0.5}")
+    private double fatorReducao;
+
+    @Value("${app.rabbitmq.adaptive.target-latency:250ms}")
+    private Duration latenciaAlvo;
+
+    // Fração de conexões ativas do pool considerada saturação
+    @Value("${app.rabbitmq.adaptive.pool-saturation:0.9}")
+    private double saturacaoPool;
+
+    // Intervalos com a fila vazia antes de liberar um consumidor
+    @Value("${app.rabbitmq.adaptive.idle-intervals:6}")
+    private int intervalosOciosos;
+
+    // Passos do controle e fixação manual (consulta o broker: ReentrantLock, sem prender threads virtuais)
+    private final ReentrantLock controle = new ReentrantLock();
+
+    private volatile int consumidores;
+    private volatile boolean fixado;
+    private volatile Estado estado;
+
+    private boolean aplicado;
+    private int ociosos;
+    private double tempoAnteriorNanos;
+    private double mensagensAnteriores;
+
+    private Counter aumentos;
+    private Counter reducoes;
+    private Counter liberacoes;
+    private Counter mantidos;
+
+    @PostConstruct
+    public void init() {
+        consumidores = limitar(consumidoresIniciais, minimoConsumidores, maximoConsumidores);
+        estado = new Estado(consumidores, false, "inicial", 0, 0, 0, 0, LocalDateTime.now());
+
+        Gauge.builder("rabbitmq.adaptive.consumers", this, s -> s.consumidores)
+                .description("Consumidores definidos pelo controle adaptativo")
+                .register(meterRegistry);
+        Gauge.builder("rabbitmq.adaptive.pinned", this, s -> s.fixado ? 1 : 0)
+                .description("1 quando os valores foram fixados manualmente")
+                .register(meterRegistry);
+        aumentos = Counter.builder("rabbitmq.adaptive.decisions").tag("action", "increase").register(meterRegistry);
+        reducoes = Counter.builder("rabbitmq.adaptive.decisions").tag("action", "decrease").register(meterRegistry);
+        liberacoes = Counter.builder("rabbitmq.adaptive.decisions").tag("action", "idle-decrease").register(meterRegistry);
+        mantidos = Counter.builder("rabbitmq.adaptive.decisions").tag("action", "hold").register(meterRegistry);
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * Fixa o número de consumidores (dentro dos limites configurados), suspendendo o controle automático
+     */
+    public Estado fixar(int novosConsumidores) {
+        controle.lock();
+        try {
+            fixado = true;
+            aplicar(limitar(novosConsumidores, minimoConsumidores, maximoConsumidores));
+            estado = new Estado(consumidores, true, "fixado", estado.profundidadeFila(),
+                    estado.latenciaMediaMs(), estado.conexoesAtivas(), estado.conexoesAguardando(), LocalDateTime.now());
+            logger.info("Consumo de leituras fixado manualmente: {} consumidores", consumidores);
+            return estado;
+        } finally {
+            controle.unlock();
+        }
+    }
+
+    /**
+     * Devolve o controle ao ajuste automático a partir dos valores correntes
+     */
+    public Estado liberar() {
+        controle.lock();
+        try {
+            fixado = false;
+            ociosos = 0;
+            estado = new Estado(consumidores, false, "liberado", estado.profundidadeFila(),
+                    estado.latenciaMediaMs(), estado.conexoesAtivas(), estado.conexoesAguardando(), LocalDateTime.now());
+            logger.info("Consumo de leituras devolvido ao controle adaptativo");
+            return estado;
+        } finally {
+            controle.unlock();
+        }
+    }
+
+    /**
+     * Um passo do controle: coleta os sinais e decide o próximo número de consumidores
+     */
+    @Scheduled(fixedDelayString = "${app.rabbitmq.adaptive.interval:10000}",
+               initialDelayString = "${app.rabbitmq.adaptive.interval:10000}")
+    public void ajustar() {
+        controle.lock();
+        try {
+            if (!habilitado) {
+                return;
+            }
+            if (!aplicado) {
+                // Assume o controle dos containers (desliga o escalonamento próprio até max-concurrency)
+                aplicar(consumidores);
+                aplicado = true;
+            }
+            long profundidade = profundidadeFila();
+            double latenciaMs = latenciaMediaMs();
+            int[] pool = estadoPool();
+            if (fixado) {
+                estado = new Estado(consumidores, true, "fixado", profundidade, latenciaMs,
+                        pool[0], pool[1], LocalDateTime.now());
+                return;
+            }
+
+            boolean congestionado = latenciaMs > latenciaAlvo.toMillis()
+                    || pool[1] > 0
+                    || (pool[2] > 0 && pool[0] >= pool[2] * saturacaoPool);
+            String decisao;
+            int novosConsumidores = consumidores;
+
+            if (congestionado) {
+                novosConsumidores = limitar((int) (consumidores * fatorReducao), minimoConsumidores, maximoConsumidores);
+                decisao = "decrease";
+                ociosos = 0;
+                reducoes.increment();
+            } else if (profundidade > (long) consumidores * prefetch) {
+                // Mais mensagens acumuladas do que os consumidores conseguem ter em mãos
+                novosConsumidores = limitar(consumidores + 1, minimoConsumidores, maximoConsumidores);
+                decisao = "increase";
+                ociosos = 0;
+                aumentos.increment();
+            } else if (profundidade == 0 && ++ociosos >= intervalosOciosos) {
+                novosConsumidores = limitar(consumidores - 1, minimoConsumidores, maximoConsumidores);
+                decisao = "idle-decrease";
+                ociosos = 0;
+                liberacoes.increment();
+            } else {
+                decisao = "hold";
+                mantidos.increment();
+            }
+
+            if (novosConsumidores != consumidores) {
+                logger.info("Consumo adaptativo ({}): consumidores {} -> {} " +
+                                "(fila {}, latência {} ms, pool {}/{} aguardando {})",
+                        decisao, consumidores, novosConsumidores, profundidade,
+                        String.format("%.1f", latenciaMs), pool[0], pool[2], pool[1]);
+                aplicar(novosConsumidores);
+            }
+            estado = new Estado(consumidores, false, decisao, profundidade, latenciaMs,
+                    pool[0], pool[1], LocalDateTime.now());
+        } finally {
+            controle.unlock();
+        }
+    }
+
+    /**
+     * Aplica o número de consumidores aos containers das leituras. Com max = concorrência, o escalonamento
+     * próprio do container fica desligado e apenas este controle altera o número de consumidores.
+     */
+    private void aplicar(int novosConsumidores) {
+        for (SimpleMessageListenerContainer container : containers()) {
+            if (novosConsumidores >= consumidores) {
+                container.setMaxConcurrentConsumers(novosConsumidores);
+                container.setConcurrentConsumers(novosConsumidores);
+            } else {
+                container.setConcurrentConsumers(novosConsumidores);
+                container.setMaxConcurrentConsumers(novosConsumidores);
+            }
+        }
+        consumidores = novosConsumidores;
+    }
+
+    private List<SimpleMessageListenerContainer> containers() {
+        List<SimpleMessageListenerContainer> containers = new ArrayList<>(LISTENERS.length);
+        for (String id : LISTENERS) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(id);
+            if (container instanceof SimpleMessageListenerContainer simples) {
+                containers.add(simples);
+            }
+        }
+        return containers;
+    }
+
+    private long profundidadeFila() {
+        try {
+            QueueInformation informacao = amqpAdmin.getQueueInfo(fila);
+            return informacao != null ? informacao.getMessageCount() : 0;
+        } catch (Exception e) {
+            logger.debug("Não foi possível consultar a fila {}: {}", fila, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Latência média por mensagem desde o passo anterior (tempo dos listeners / mensagens processadas)
+     */
+    private double latenciaMediaMs() {
+        Timer timer = meterRegistry.find("rabbitmq.listener.processing").tag("queue", fila).timer();
+        Counter mensagens = meterRegistry.find("rabbitmq.listener.messages").tag("queue", fila).counter();
+        if (timer == null || mensagens == null) {
+            return 0;
+        }
+        double tempo = timer.totalTime(TimeUnit.NANOSECONDS);
+        double total = mensagens.count();
+        double deltaTempo = tempo - tempoAnteriorNanos;
+        double deltaMensagens = total - mensagensAnteriores;
+        tempoAnteriorNanos = tempo;
+        mensagensAnteriores = total;
+        return deltaMensagens > 0 ? deltaTempo / deltaMensagens / 1_000_000.0 : 0;
+    }
+
+    /**
+     * Conexões ativas, threads aguardando conexão e tamanho máximo do pool do Hikari
+     */
+    private int[] estadoPool() {
+        try {
+            // Com threads virtuais a espera acontece no limitador, antes do Hikari
+            int aguardandoLimitador = dataSource.isWrapperFor(LimitadorConexoesDataSource.class)
+                    ? dataSource.unwrap(LimitadorConexoesDataSource.class).getAguardando() : 0;
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                if (pool != null) {
+                    return new int[]{pool.getActiveConnections(),
+                            pool.getThreadsAwaitingConnection() + aguardandoLimitador, hikari.getMaximumPoolSize()};
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Não foi possível consultar o pool de conexões: {}", e.getMessage());
+        }
+        return new int[]{0, 0, 0};
+    }
+
+    private static int limitar(int valor, int minimo, int maximo) {
+        return Math.max(minimo, Math.min(maximo, valor));
+    }
+}
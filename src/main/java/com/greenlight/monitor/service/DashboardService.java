@@ -0,0 +1,269 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.dto.AlertaResumoDTO;
+import com.greenlight.monitor.entity.Alerta;
+import com.greenlight.monitor.repository.AlertaRepository;
+import com.greenlight.monitor.util.Transacoes;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retrato (snapshot) das estatísticas do dashboard mantido em memória.
+ * Os contadores de alertas são atualizados de forma incremental pelo AlertaService (após o commit)
+ * e reconciliados periodicamente com o banco; escolas e sensores vêm do SensorRegistryService e
+ * do SensorHeartbeatService. A página do dashboard e a API /api/dashboard/stats apenas leem o
+ * snapshot corrente, cuja versão só muda quando o conteúdo muda (ETag); cada nova versão é
+ * enviada também pelo canal de tempo real.
+ */
+@Service
+public class DashboardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardService.class);
+
+    private static final String NIVEL_CRITICO = "Crítico";
+
+    /**
+     * Estatísticas publicadas na API (JSON)
+     */
+    public record Estatisticas(long versao, LocalDateTime atualizadoEm, long totalEscolas,
+                               long totalEscolasComSensores, long sensoresAtivos, long sensoresOffline,
+                               long alertasAtivos, long alertasCriticos, List<AlertaResumoDTO> alertasRecentes) {
+    }
+
+    /**
+     * Escola com sensores ativos exibida na lista do dashboard
+     */
+    public record EscolaDashboard(long id, String nome, String cidade, String estado, int sensoresAtivos) {
+    }
+
+    /**
+     * Snapshot imutável lido pelo dashboard
+     *
+     * @param inicio início desta instância (epoch millis): a versão recomeça a cada inicialização
+     */
+    public record Snapshot(long inicio, Estatisticas estatisticas, List<EscolaDashboard> escolasComSensores) {
+
+        /**
+         * ETag {@code "<inicio>-<versao>"}: a versão sozinha se repetiria após um reinício ou entre instâncias
+         */
+        public String etag() {
+            return "\"" + inicio + "-" + estatisticas.versao() + "\"";
+        }
+    }
+
+    @Autowired
+    private AlertaRepository alertaRepository;
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    @Autowired
+    private SensorHeartbeatService sensorHeartbeatService;
+
+    @Autowired
+    private TempoRealService tempoRealService;
+
+    @Value("${app.dashboard.recent-alerts:10}")
+    private int limiteRecentes;
+
+    private final LongAdder alertasAtivos = new LongAdder();
+    private final LongAdder alertasCriticos = new LongAdder();
+
+    // Alertas mais recentes primeiro (acesso sob o monitor da própria fila)
+    private final Deque<AlertaResumoDTO> recentes = new ArrayDeque<>();
+
+    private final long inicio = System.currentTimeMillis();
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(
+            new Snapshot(inicio, new Estatisticas(0L, LocalDateTime.now(), 0L, 0L, 0L, 0L, 0L, 0L, List.of()), List.of()));
+
+    private final AtomicBoolean alterado = new AtomicBoolean(true);
+
+    @PostConstruct
+    public void init() {
+        reconciliarAlertas();
+        List<Alerta> ultimos = alertaRepository.findRecentesComLeitura(PageRequest.of(0, limiteRecentes));
+        synchronized (recentes) {
+            for (Alerta alerta : ultimos) {
+                recentes.addLast(AlertaResumoDTO.from(alerta));
+            }
+        }
+        reconstruir();
+        logger.info("Snapshot do dashboard inicializado: {} alertas ativos, {} críticos",
+                alertasAtivos.sum(), alertasCriticos.sum());
+    }
+
+    /**
+     * Snapshot corrente (sem acesso ao banco)
+     */
+    public Snapshot getSnapshot() {
+        if (alterado.get()) {
+            reconstruir();
+        }
+        return snapshot.get();
+    }
+
+    /**
+     * Registra a criação ou alteração de um alerta. Os contadores e a lista de recentes são
+     * atualizados após o commit da transação corrente (ou imediatamente, sem transação ativa).
+     *
+     * @param statusAnterior status antes da alteração (null para alerta novo)
+     * @param nivelAnterior  nível antes da alteração (null para alerta novo)
+     */
+    public void registrarAlerta(String statusAnterior, String nivelAnterior, Alerta alerta) {
+        // Resumo montado ainda dentro da transação, com a leitura acessível
+        AlertaResumoDTO resumo = AlertaResumoDTO.from(alerta);
+        int deltaAtivos = ativo(alerta.getStatus()) - ativo(statusAnterior);
+        int deltaCriticos = critico(alerta.getStatus(), alerta.getNivel()) - critico(statusAnterior, nivelAnterior);
+
+        Transacoes.aposCommit(() -> aplicar(resumo, deltaAtivos, deltaCriticos));
+    }
+
+    private void aplicar(AlertaResumoDTO resumo, int deltaAtivos, int deltaCriticos) {
+        alertasAtivos.add(deltaAtivos);
+        alertasCriticos.add(deltaCriticos);
+        synchronized (recentes) {
+            recentes.removeIf(r -> r.id().equals(resumo.id()));
+            recentes.addFirst(resumo);
+            // Alterações de alertas antigos não devem empurrar os mais novos para fora da lista
+            if (recentes.size() > limiteRecentes) {
+                List<AlertaResumoDTO> ordenados = new ArrayList<>(recentes);
+                ordenados.sort(Comparator.comparing(AlertaResumoDTO::timestamp).reversed());
+                recentes.clear();
+                recentes.addAll(ordenados.subList(0, limiteRecentes));
+            }
+        }
+        // O snapshot é reconstruído na próxima leitura (getSnapshot) ou na atualização agendada,
+        // fora da thread que confirmou a transação do alerta
+        alterado.set(true);
+
+        SensorRegistryService.SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(resumo.sensorId());
+        if (sensor != null) {
+            tempoRealService.publicarAlerta(sensor.escolaId(), resumo);
+        }
+    }
+
+    /**
+     * Reconstrói o snapshot periodicamente: o estado online/offline dos sensores e o registro de
+     * escolas mudam sem passar pelo AlertaService
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.refresh-interval:5000}")
+    public void atualizar() {
+        alterado.set(true);
+        reconstruir();
+    }
+
+    /**
+     * Corrige eventuais divergências dos contadores de alertas (ex.: alterações feitas fora da
+     * aplicação) a partir das contagens do banco
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.reconcile-interval:300000}",
+               initialDelayString = "${app.dashboard.reconcile-interval:300000}")
+    public void reconciliarAlertas() {
+        try {
+            long ativos = alertaRepository.countAlertasAtivos();
+            long criticos = alertaRepository.countAlertasCriticosAtivos();
+            long divergenciaAtivos = ativos - alertasAtivos.sum();
+            long divergenciaCriticos = criticos - alertasCriticos.sum();
+            if (divergenciaAtivos != 0 || divergenciaCriticos != 0) {
+                alertasAtivos.add(divergenciaAtivos);
+                alertasCriticos.add(divergenciaCriticos);
+                alterado.set(true);
+                logger.debug("Contadores do dashboard reconciliados: ativos {} ({}), críticos {} ({})",
+                        ativos, divergenciaAtivos, criticos, divergenciaCriticos);
+            }
+        } catch (Exception e) {
+            logger.warn("Falha ao reconciliar contadores do dashboard: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Monta um novo snapshot; a versão só avança quando o conteúdo difere do anterior
+     */
+    private synchronized void reconstruir() {
+        if (!alterado.getAndSet(false)) {
+            return;
+        }
+
+        Set<Long> offline = sensorHeartbeatService.getSensoresOffline();
+        long sensoresAtivos = 0;
+        long sensoresOffline = 0;
+        for (SensorRegistryService.SensorInfo sensor : sensorRegistryService.getSensores()) {
+            if (!sensor.ativo() || !sensor.escolaAtiva()) {
+                continue;
+            }
+            if (offline.contains(sensor.id())) {
+                sensoresOffline++;
+            } else {
+                sensoresAtivos++;
+            }
+        }
+
+        long totalEscolas = 0;
+        List<EscolaDashboard> escolas = new ArrayList<>();
+        for (SensorRegistryService.EscolaInfo escola : sensorRegistryService.getEscolas()) {
+            if (!escola.ativo()) {
+                continue;
+            }
+            totalEscolas++;
+            int ativosDaEscola = 0;
+            for (long sensorId : escola.sensorIds()) {
+                SensorRegistryService.SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(sensorId);
+                if (sensor != null && sensor.ativo()) {
+                    ativosDaEscola++;
+                }
+            }
+            if (ativosDaEscola > 0) {
+                escolas.add(new EscolaDashboard(escola.id(), escola.nome(), escola.cidade(), escola.estado(),
+                        ativosDaEscola));
+            }
+        }
+        escolas.sort(Comparator.comparing(EscolaDashboard::nome, String.CASE_INSENSITIVE_ORDER));
+
+        List<AlertaResumoDTO> alertasRecentes;
+        synchronized (recentes) {
+            alertasRecentes = List.copyOf(recentes);
+        }
+
+        Snapshot atual = snapshot.get();
+        Estatisticas anterior = atual.estatisticas();
+        Estatisticas candidata = new Estatisticas(anterior.versao(), anterior.atualizadoEm(), totalEscolas,
+                escolas.size(), sensoresAtivos, sensoresOffline, Math.max(0L, alertasAtivos.sum()),
+                Math.max(0L, alertasCriticos.sum()), alertasRecentes);
+        List<EscolaDashboard> escolasComSensores = List.copyOf(escolas);
+        if (candidata.equals(anterior) && escolasComSensores.equals(atual.escolasComSensores())) {
+            return;
+        }
+
+        Estatisticas nova = new Estatisticas(anterior.versao() + 1, LocalDateTime.now(), candidata.totalEscolas(),
+                candidata.totalEscolasComSensores(), candidata.sensoresAtivos(), candidata.sensoresOffline(),
+                candidata.alertasAtivos(), candidata.alertasCriticos(), candidata.alertasRecentes());
+        snapshot.set(new Snapshot(inicio, nova, escolasComSensores));
+        tempoRealService.publicarEstatisticas(nova);
+    }
+
+    private static int ativo(String status) {
+        return "Emitido".equals(status) || "Em Andamento".equals(status) ? 1 : 0;
+    }
+
+    private static int critico(String status, String nivel) {
+        return ativo(status) == 1 && NIVEL_CRITICO.equals(nivel) ? 1 : 0;
+    }
+}
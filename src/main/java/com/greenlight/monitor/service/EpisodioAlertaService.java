@@ -0,0 +1,301 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.repository.AlertaRepository;
+import com.greenlight.monitor.service.AlertaRegraService.RegraAlerta;
+import com.greenlight.monitor.service.AlertaRegraService.TabelaRegras;
+import com.greenlight.monitor.util.Transacoes;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Episódios de alerta por sensor e grupo de regras, com histerese.
+ * Um episódio é aberto quando uma regra do grupo é disparada e permanece aberto enquanto alguma
+ * regra do grupo satisfizer os limites alargados pela histerese; nesse período o mesmo registro
+ * de alerta é atualizado (pico e escalonamento de nível) em vez de novos alertas serem inseridos.
+ * O estado fica em memória. Dentro de uma transação o lock do sensor só é liberado após o commit ou
+ * rollback: outro consumidor não enxerga um episódio ainda não confirmado (e não o atualiza nem abre
+ * um duplicado a partir dele). Se a transação não confirmar, o estado do sensor é recarregado do banco.
+ */
+@Service
+public class EpisodioAlertaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EpisodioAlertaService.class);
+
+    /**
+     * Operações sobre o registro de alerta do episódio, executadas pelo AlertaService
+     */
+    public interface AcoesEpisodio {
+
+        /**
+         * Abre o episódio inserindo o alerta (uma falha propaga e desfaz a transação da leitura)
+         *
+         * @return ID do alerta criado
+         */
+        long abrir(Leitura leitura, RegraAlerta regra, BigDecimal valorPico);
+
+        /**
+         * Eleva o episódio para uma regra de maior prioridade do mesmo grupo
+         */
+        void escalar(long alertaId, Leitura leitura, RegraAlerta regra, BigDecimal valorPico);
+
+        /**
+         * Encerra o episódio
+         */
+        void encerrar(long alertaId, LocalDateTime fim);
+    }
+
+    private static final class Episodio {
+        private final long alertaId;
+        private String regra;
+        private BigDecimal pico;
+
+        private Episodio(long alertaId, String regra, BigDecimal pico) {
+            this.alertaId = alertaId;
+            this.regra = regra;
+            this.pico = pico;
+        }
+    }
+
+    /**
+     * Episódios abertos de um sensor, por grupo de regras
+     */
+    private static final class EpisodiosSensor {
+        // As ações do episódio acessam o banco: ReentrantLock em vez de synchronized evita
+        // prender a thread portadora quando o consumidor roda em thread virtual
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Episodio> porGrupo = new HashMap<>();
+        // Estado descartado após rollback: recarregado do banco por quem adquirir o lock
+        private volatile boolean invalidado;
+    }
+
+    // Recurso da transação corrente com os sensores cujo lock ela mantém
+    private static final Object LOCKS_DA_TRANSACAO = new Object();
+
+    @Autowired
+    private AlertaRepository alertaRepository;
+
+    @Autowired
+    private AlertaRegraService alertaRegraService;
+
+    // Espera máxima pelo lock de um sensor mantido por outra transação; excedida, a leitura é
+    // repetida como falha transitória
+    @Value("${app.alerts.episodes.lock-timeout:10s}")
+    private Duration esperaLock;
+
+    private final ConcurrentHashMap<Long, EpisodiosSensor> episodios = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        List<Object[]> abertos = alertaRepository.findEpisodiosAbertos();
+        for (Object[] linha : abertos) {
+            adicionarEpisodio(episodios.computeIfAbsent((Long) linha[1], id -> new EpisodiosSensor()), linha);
+        }
+        logger.info("{} episódios de alerta abertos carregados", abertos.size());
+    }
+
+    /**
+     * Adquire, em ordem crescente de ID, os locks dos sensores de um lote processado em uma única
+     * transação. Transações concorrentes com sensores em comum esperam umas pelas outras sem deadlock.
+     */
+    public void bloquear(Collection<Long> sensorIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (long sensorId : new TreeSet<>(sensorIds)) {
+            bloquear(estado(sensorId));
+        }
+    }
+
+    /**
+     * Abre, atualiza ou encerra os episódios do sensor da leitura.
+     *
+     * @param disparadas  regras disparadas pela leitura (entrada)
+     * @param permanencia regras cuja condição de permanência (com histerese) é satisfeita
+     */
+    public void processar(Leitura leitura, TabelaRegras tabela, long disparadas, long permanencia,
+                          AcoesEpisodio acoes) {
+        long sensorId = leitura.getSensor().getId();
+        EpisodiosSensor estado = estado(sensorId);
+        double temperatura = leitura.getTemperatura().doubleValue();
+        double umidade = leitura.getUmidade().doubleValue();
+
+        boolean liberarAoFimDaTransacao = bloquear(estado);
+        try {
+            if (estado.invalidado) {
+                recarregar(sensorId, estado);
+            }
+            long processados = 0;
+            for (int i = 0; i < tabela.size(); i++) {
+                if ((processados & (1L << i)) != 0) {
+                    continue;
+                }
+                long grupo = tabela.getMascaraGrupo(i);
+                processados |= grupo;
+                processarGrupo(leitura, tabela, tabela.getRegra(i).grupo(),
+                        disparadas & grupo, permanencia & grupo, temperatura, umidade, estado, acoes);
+            }
+            encerrarGruposRemovidos(leitura, tabela, estado, acoes);
+        } catch (RuntimeException e) {
+            estado.invalidado = true;
+            throw e;
+        } finally {
+            if (!liberarAoFimDaTransacao) {
+                estado.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adquire o lock do sensor. Em uma transação o lock fica com ela até o commit ou rollback
+     * (adquirido uma única vez por transação); se ela não confirmar, o estado do sensor é
+     * invalidado antes da liberação.
+     *
+     * @return true se o lock será liberado ao fim da transação
+     */
+    private boolean bloquear(EpisodiosSensor estado) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            estado.lock.lock();
+            return false;
+        }
+
+        Set<EpisodiosSensor> mantidos = Transacoes.recurso(LOCKS_DA_TRANSACAO, LinkedHashSet::new,
+                (locks, confirmada) -> {
+                    for (EpisodiosSensor mantido : locks) {
+                        if (!confirmada) {
+                            mantido.invalidado = true;
+                        }
+                        mantido.lock.unlock();
+                    }
+                });
+        if (mantidos.contains(estado)) {
+            return true;
+        }
+        try {
+            if (!estado.lock.tryLock(esperaLock.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new CannotAcquireLockException("Lock dos episódios do sensor não obtido em " + esperaLock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrompido aguardando o lock dos episódios do sensor", e);
+        }
+        mantidos.add(estado);
+        return true;
+    }
+
+    private void processarGrupo(Leitura leitura, TabelaRegras tabela, String grupo, long disparadas,
+                                   long permanencia, double temperatura, double umidade,
+                                   EpisodiosSensor estado, AcoesEpisodio acoes) {
+        Episodio episodio = estado.porGrupo.get(grupo);
+
+        if (episodio == null) {
+            if (disparadas == 0) {
+                return;
+            }
+            int indice = Long.numberOfTrailingZeros(disparadas);
+            BigDecimal pico = decimal(tabela.valorPico(indice, temperatura, umidade));
+            long alertaId = acoes.abrir(leitura, tabela.getRegra(indice), pico);
+            estado.porGrupo.put(grupo, new Episodio(alertaId, tabela.getRegra(indice).id(), pico));
+            return;
+        }
+
+        if (permanencia == 0) {
+            acoes.encerrar(episodio.alertaId, leitura.getTimestamp());
+            estado.porGrupo.remove(grupo);
+            return;
+        }
+
+        int atual = tabela.indice(episodio.regra);
+        if (disparadas != 0 && (atual < 0 || Long.numberOfTrailingZeros(disparadas) < atual)) {
+            int indice = Long.numberOfTrailingZeros(disparadas);
+            BigDecimal pico = decimal(tabela.valorPico(indice, temperatura, umidade));
+            acoes.escalar(episodio.alertaId, leitura, tabela.getRegra(indice), pico);
+            episodio.regra = tabela.getRegra(indice).id();
+            episodio.pico = pico;
+            return;
+        }
+
+        if (atual >= 0) {
+            double valor = tabela.valorPico(atual, temperatura, umidade);
+            if (episodio.pico == null || tabela.isMaisExtremo(atual, valor, episodio.pico.doubleValue())) {
+                BigDecimal pico = decimal(valor);
+                alertaRepository.atualizarPicoEpisodio(episodio.alertaId, pico, leitura.getTimestamp(),
+                        LocalDateTime.now());
+                episodio.pico = pico;
+            }
+        }
+    }
+
+    /**
+     * Encerra episódios de grupos que deixaram de existir na configuração
+     */
+    private void encerrarGruposRemovidos(Leitura leitura, TabelaRegras tabela, EpisodiosSensor estado,
+                                         AcoesEpisodio acoes) {
+        Iterator<Map.Entry<String, Episodio>> iterator = estado.porGrupo.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Episodio> entrada = iterator.next();
+            int indice = tabela.indice(entrada.getValue().regra);
+            if (indice < 0 || !tabela.getRegra(indice).grupo().equals(entrada.getKey())) {
+                acoes.encerrar(entrada.getValue().alertaId, leitura.getTimestamp());
+                iterator.remove();
+            }
+        }
+    }
+
+    private EpisodiosSensor estado(long sensorId) {
+        return episodios.computeIfAbsent(sensorId, id -> new EpisodiosSensor());
+    }
+
+    /**
+     * Recarrega do banco os episódios abertos do sensor (sob o lock do sensor)
+     */
+    private void recarregar(long sensorId, EpisodiosSensor estado) {
+        estado.porGrupo.clear();
+        for (Object[] linha : alertaRepository.findEpisodiosAbertosBySensorId(sensorId)) {
+            adicionarEpisodio(estado, linha);
+        }
+        estado.invalidado = false;
+    }
+
+    /**
+     * Registra um episódio aberto a partir da linha [alertaId, sensorId, regra, valorPico].
+     * O grupo é resolvido pelo id da regra na tabela atual no próximo processamento.
+     */
+    private void adicionarEpisodio(EpisodiosSensor estado, Object[] linha) {
+        String regra = (String) linha[2];
+        estado.porGrupo.put(grupoDaRegra(regra), new Episodio((Long) linha[0], regra, (BigDecimal) linha[3]));
+    }
+
+    private String grupoDaRegra(String regra) {
+        TabelaRegras tabela = alertaRegraService.getTabela();
+        int indice = tabela.indice(regra);
+        // Regra removida: o episódio é encerrado no próximo processamento do sensor
+        return indice >= 0 ? tabela.getRegra(indice).grupo() : "?" + regra;
+    }
+
+    private static BigDecimal decimal(double valor) {
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP);
+    }
+}
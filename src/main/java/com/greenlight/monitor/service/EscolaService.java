@@ -1,10 +1,14 @@
 package com.greenlight.monitor.service;
 
+import com.greenlight.monitor.dto.EscolaResumoDTO;
+import com.greenlight.monitor.dto.SliceDTO;
 import com.greenlight.monitor.entity.Escola;
 import com.greenlight.monitor.repository.EscolaRepository;
+import com.greenlight.monitor.util.CursorPaginacao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,6 +25,9 @@ public class EscolaService {
     @Autowired
     private EscolaRepository escolaRepository;
 
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
     /**
      * Busca todas as escolas
      */
@@ -86,6 +93,25 @@ public class EscolaService {
         return escolaRepository.findByFiltros(nome, cidade, estado, ativo, pageable);
     }
 
+    /**
+     * Busca escolas com filtros por chave (keyset) ordenadas por nome, sem OFFSET nem COUNT.
+     * {@code cursor} é o token devolvido na página anterior (null para a primeira página).
+     */
+    @Transactional(readOnly = true)
+    public SliceDTO<EscolaResumoDTO> scrollByFiltros(String nome, String cidade, String estado, Boolean ativo,
+                                                     String cursor, int size) {
+        Pageable pagina = CursorPaginacao.pagina(size);
+        Slice<Escola> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = escolaRepository.findSliceByFiltros(nome, cidade, estado, ativo, pagina);
+        } else {
+            CursorPaginacao posicao = CursorPaginacao.decodificar(cursor);
+            slice = escolaRepository.findSliceByFiltrosApos(nome, cidade, estado, ativo,
+                    posicao.getValor(), posicao.getId(), pagina);
+        }
+        return SliceDTO.from(slice, EscolaResumoDTO::from, e -> CursorPaginacao.codificar(e.getNome(), e.getId()));
+    }
+
     /**
      * Busca escolas com sensores ativos
      */
@@ -99,7 +125,9 @@ public class EscolaService {
      */
     public Escola save(Escola escola) {
         validateEscola(escola);
-        return escolaRepository.save(escola);
+        Escola salva = escolaRepository.save(escola);
+        sensorRegistryService.refreshEscolaAposCommit(salva.getId());
+        return salva;
     }
 
     /**
@@ -131,7 +159,9 @@ public class EscolaService {
     public Escola ativar(Long id) {
         Escola escola = getById(id);
         escola.setAtivo(true);
-        return escolaRepository.save(escola);
+        Escola salva = escolaRepository.save(escola);
+        sensorRegistryService.refreshEscolaAposCommit(id);
+        return salva;
     }
 
     /**
@@ -140,7 +170,9 @@ public class EscolaService {
     public Escola desativar(Long id) {
         Escola escola = getById(id);
         escola.setAtivo(false);
-        return escolaRepository.save(escola);
+        Escola salva = escolaRepository.save(escola);
+        sensorRegistryService.refreshEscolaAposCommit(id);
+        return salva;
     }
 
     /**
@@ -158,6 +190,7 @@ public class EscolaService {
             throw new RuntimeException("Escola não encontrada com ID: " + id);
         }
         escolaRepository.deleteById(id);
+        sensorRegistryService.refreshEscolaAposCommit(id);
     }
 
     /**
@@ -0,0 +1,383 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaJanelaProperties;
+import com.greenlight.monitor.config.AlertaJanelaProperties.Agregacao;
+import com.greenlight.monitor.config.AlertaJanelaProperties.Comparacao;
+import com.greenlight.monitor.config.AlertaJanelaProperties.Metrica;
+import com.greenlight.monitor.config.AlertaJanelaProperties.Regra;
+import com.greenlight.monitor.config.AlertaJanelaProperties.TipoJanela;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Regras de alerta sobre condições sustentadas: mantém em memória, por sensor e regra,
+ * janelas de leituras em buffers circulares de primitivos (valores em centésimos) com
+ * agregados incrementais, avaliados em O(1) amortizado por leitura.
+ * As janelas são reconstruídas a partir da tabela leitura na inicialização; as de um sensor
+ * alterado por uma transação que não confirmou são descartadas e reconstruídas do banco na
+ * próxima leitura do sensor, para que a leitura reentregue seja avaliada de novo.
+ */
+@Service
+public class JanelaAlertaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JanelaAlertaService.class);
+
+    // Recurso da transação corrente com os sensores cujas janelas ela alterou
+    private static final Object SENSORES_DA_TRANSACAO = new Object();
+
+    /**
+     * Dados da regra usados na criação do alerta
+     */
+    public record RegraJanela(String id, String tipo, String nivel, String mensagem) {
+    }
+
+    @Autowired
+    private AlertaJanelaProperties properties;
+
+    @Autowired
+    private LeituraRepository leituraRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<Regra> definicoes;
+    private RegraJanela[] regras;
+    private Duration maiorDuracao;
+
+    private final ConcurrentHashMap<Long, JanelasSensor> janelas = new ConcurrentHashMap<>();
+
+    // Sensores cujas janelas foram descartadas após rollback (reconstruídas do banco)
+    private final Set<Long> invalidados = ConcurrentHashMap.newKeySet();
+
+    private Counter foraDeOrdem;
+
+    @PostConstruct
+    public void init() {
+        foraDeOrdem = Counter.builder("alerts.windows.out-of-order")
+                .description("Leituras ignoradas pelas janelas por não serem mais recentes que a última do sensor")
+                .register(meterRegistry);
+
+        definicoes = List.copyOf(properties.getDefinitions());
+        regras = new RegraJanela[definicoes.size()];
+        Set<String> ids = new HashSet<>();
+        maiorDuracao = properties.getWarmup();
+        for (int i = 0; i < definicoes.size(); i++) {
+            Regra regra = definicoes.get(i);
+            validar(regra, ids);
+            regras[i] = new RegraJanela(regra.getId(), regra.getTipo(), regra.getNivel(), regra.getMensagem());
+            if (regra.getDuracao() != null && regra.getDuracao().compareTo(maiorDuracao) > 0) {
+                maiorDuracao = regra.getDuracao();
+            }
+        }
+
+        if (regras.length == 0) {
+            return;
+        }
+
+        // Reconstrói as janelas com as leituras recentes (sem gerar alertas)
+        long inicio = System.currentTimeMillis();
+        List<Object[]> valores = leituraRepository.findValoresDesde(LocalDateTime.now().minus(maiorDuracao));
+        for (Object[] valor : valores) {
+            adicionar(janelas.computeIfAbsent((Long) valor[0], id -> new JanelasSensor(criarJanelas())),
+                    (LocalDateTime) valor[1], (BigDecimal) valor[2], (BigDecimal) valor[3]);
+        }
+        logger.info("Janelas de {} regras reconstruídas com {} leituras de {} sensores em {} ms",
+                regras.length, valores.size(), janelas.size(), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Adiciona a leitura às janelas do seu sensor e devolve as regras satisfeitas.
+     * Leituras mais antigas que a última já processada para o sensor são ignoradas.
+     */
+    public List<RegraJanela> registrar(Leitura leitura) {
+        if (regras.length == 0) {
+            return List.of();
+        }
+
+        long sensorId = leitura.getSensor().getId();
+        long disparadas = adicionar(janelasDoSensor(sensorId, leitura.getTimestamp()), leitura.getTimestamp(),
+                leitura.getTemperatura(), leitura.getUmidade());
+        Transacoes.invalidarSeNaoConfirmar(SENSORES_DA_TRANSACAO, sensorId, this::invalidar);
+        if (disparadas == 0) {
+            return List.of();
+        }
+
+        List<RegraJanela> resultado = new ArrayList<>(Long.bitCount(disparadas));
+        while (disparadas != 0) {
+            resultado.add(regras[Long.numberOfTrailingZeros(disparadas)]);
+            disparadas &= disparadas - 1;
+        }
+        return resultado;
+    }
+
+    /**
+     * Janelas do sensor; após um rollback, reconstruídas com as leituras confirmadas anteriores à
+     * leitura corrente (as do próprio lote, já gravadas na transação, ficam de fora)
+     */
+    private JanelasSensor janelasDoSensor(long sensorId, LocalDateTime timestamp) {
+        if (invalidados.remove(sensorId)) {
+            JanelasSensor recarregado = new JanelasSensor(criarJanelas());
+            for (Object[] valor : leituraRepository.findValoresBySensorIdEntre(sensorId,
+                    timestamp.minus(maiorDuracao), timestamp)) {
+                adicionar(recarregado, (LocalDateTime) valor[0], (BigDecimal) valor[1], (BigDecimal) valor[2]);
+            }
+            janelas.put(sensorId, recarregado);
+            return recarregado;
+        }
+        return janelas.computeIfAbsent(sensorId, id -> new JanelasSensor(criarJanelas()));
+    }
+
+    private long adicionar(JanelasSensor sensor, LocalDateTime timestamp, BigDecimal temperatura, BigDecimal umidade) {
+        // Apenas diferenças entre instantes são usadas; o fuso é irrelevante
+        long instante = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        int temperaturaCentesimos = centesimos(temperatura);
+        int umidadeCentesimos = centesimos(umidade);
+
+        // Consumidores concorrentes podem processar leituras do mesmo sensor
+        synchronized (sensor) {
+            if (instante <= sensor.ultimoInstante) {
+                foraDeOrdem.increment();
+                return 0;
+            }
+            sensor.ultimoInstante = instante;
+
+            long disparadas = 0;
+            for (int i = 0; i < sensor.janelas.length; i++) {
+                int valor = definicoes.get(i).getMetrica() == Metrica.TEMPERATURA
+                        ? temperaturaCentesimos : umidadeCentesimos;
+                if (sensor.janelas[i].adicionar(instante, valor)) {
+                    disparadas |= 1L << i;
+                }
+            }
+            return disparadas;
+        }
+    }
+
+    /**
+     * Descarta as janelas do sensor (chamado quando a transação que as alterou não confirma)
+     */
+    private void invalidar(long sensorId) {
+        invalidados.add(sensorId);
+        janelas.remove(sensorId);
+    }
+
+    private Janela[] criarJanelas() {
+        Janela[] resultado = new Janela[definicoes.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            Regra regra = definicoes.get(i);
+            int limite = (int) Math.round(regra.getLimite() * 100);
+            boolean maiorOuIgual = regra.getComparacao() == Comparacao.MAIOR_OU_IGUAL;
+            if (regra.getAgregacao() == Agregacao.CONTAGEM) {
+                resultado[i] = new JanelaContagem(regra.getAmostras(), regra.getMinimo(), limite, maiorOuIgual);
+            } else if (regra.getJanela() == TipoJanela.FIXA) {
+                resultado[i] = new JanelaMediaFixa(regra.getDuracao().toMillis(), regra.getAmostrasMinimas(),
+                        limite, maiorOuIgual);
+            } else {
+                resultado[i] = new JanelaMediaDeslizante(regra.getDuracao().toMillis(), regra.getCapacidade(),
+                        regra.getAmostrasMinimas(), limite, maiorOuIgual);
+            }
+        }
+        return resultado;
+    }
+
+    private static void validar(Regra regra, Set<String> ids) {
+        if (regra.getId() == null || regra.getTipo() == null || regra.getNivel() == null) {
+            throw new IllegalStateException("Regra de janela sem id, tipo ou nível");
+        }
+        if (!ids.add(regra.getId())) {
+            throw new IllegalStateException("Regra de janela duplicada: " + regra.getId());
+        }
+        if (ids.size() > Long.SIZE) {
+            throw new IllegalStateException("Máximo de " + Long.SIZE + " regras de janela");
+        }
+        if (regra.getAgregacao() == Agregacao.CONTAGEM) {
+            if (regra.getAmostras() < 1 || regra.getMinimo() < 1 || regra.getMinimo() > regra.getAmostras()) {
+                throw new IllegalStateException("Regra " + regra.getId() + ": requer 1 <= minimo <= amostras");
+            }
+        } else if (regra.getDuracao() == null || regra.getDuracao().isZero() || regra.getDuracao().isNegative()
+                || regra.getAmostrasMinimas() < 1 || regra.getCapacidade() < regra.getAmostrasMinimas()) {
+            throw new IllegalStateException("Regra " + regra.getId() + ": requer duracao, amostras-minimas e capacidade válidas");
+        }
+    }
+
+    private static int centesimos(BigDecimal valor) {
+        return valor.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValue();
+    }
+
+    private static boolean atende(long soma, long quantidade, int limite, boolean maiorOuIgual) {
+        // Média comparada sem divisão: soma / quantidade >= limite  <=>  soma >= limite * quantidade
+        return maiorOuIgual ? soma >= limite * quantidade : soma <= limite * quantidade;
+    }
+
+    /**
+     * Janelas das regras de um sensor (na ordem das regras)
+     */
+    private static final class JanelasSensor {
+        private final Janela[] janelas;
+        private long ultimoInstante = Long.MIN_VALUE;
+
+        private JanelasSensor(Janela[] janelas) {
+            this.janelas = janelas;
+        }
+    }
+
+    private interface Janela {
+        /**
+         * Adiciona uma leitura (instantes crescentes) e indica se a regra está satisfeita
+         */
+        boolean adicionar(long instante, int valor);
+    }
+
+    /**
+     * Média das leituras dos últimos "duracao" ms, com soma incremental.
+     * Só é avaliada depois que a janela cobre toda a duração (alguma leitura já saiu dela),
+     * para que um único pico após um intervalo sem dados não dispare a regra.
+     */
+    private static final class JanelaMediaDeslizante implements Janela {
+        private final long duracao;
+        private final int amostrasMinimas;
+        private final int limite;
+        private final boolean maiorOuIgual;
+        private final long[] instantes;
+        private final int[] valores;
+        private int inicio;
+        private int tamanho;
+        private long soma;
+        private boolean coberta;
+
+        private JanelaMediaDeslizante(long duracao, int capacidade, int amostrasMinimas, int limite, boolean maiorOuIgual) {
+            this.duracao = duracao;
+            this.amostrasMinimas = amostrasMinimas;
+            this.limite = limite;
+            this.maiorOuIgual = maiorOuIgual;
+            this.instantes = new long[capacidade];
+            this.valores = new int[capacidade];
+        }
+
+        @Override
+        public boolean adicionar(long instante, int valor) {
+            long corte = instante - duracao;
+            boolean removeu = false;
+            while (tamanho > 0 && instantes[inicio] <= corte) {
+                removerMaisAntiga();
+                removeu = true;
+            }
+            if (removeu) {
+                // Janela esvaziada: houve um intervalo sem leituras maior que a duração
+                coberta = tamanho > 0;
+            }
+            if (tamanho == instantes.length) {
+                // Buffer cheio: leituras densas, a janela já cobre o período mantido
+                removerMaisAntiga();
+                coberta = true;
+            }
+
+            int fim = (inicio + tamanho) % instantes.length;
+            instantes[fim] = instante;
+            valores[fim] = valor;
+            soma += valor;
+            tamanho++;
+
+            return coberta && tamanho >= amostrasMinimas && atende(soma, tamanho, limite, maiorOuIgual);
+        }
+
+        private void removerMaisAntiga() {
+            soma -= valores[inicio];
+            inicio = (inicio + 1) % instantes.length;
+            tamanho--;
+        }
+    }
+
+    /**
+     * Média por períodos consecutivos de "duracao" ms; a regra é avaliada
+     * na primeira leitura de um novo período, com os dados do período encerrado
+     */
+    private static final class JanelaMediaFixa implements Janela {
+        private final long duracao;
+        private final int amostrasMinimas;
+        private final int limite;
+        private final boolean maiorOuIgual;
+        private long periodo = Long.MIN_VALUE;
+        private long soma;
+        private int quantidade;
+
+        private JanelaMediaFixa(long duracao, int amostrasMinimas, int limite, boolean maiorOuIgual) {
+            this.duracao = duracao;
+            this.amostrasMinimas = amostrasMinimas;
+            this.limite = limite;
+            this.maiorOuIgual = maiorOuIgual;
+        }
+
+        @Override
+        public boolean adicionar(long instante, int valor) {
+            long atual = Math.floorDiv(instante, duracao);
+            boolean satisfeita = false;
+            if (atual != periodo) {
+                satisfeita = quantidade >= amostrasMinimas && atende(soma, quantidade, limite, maiorOuIgual);
+                periodo = atual;
+                soma = 0;
+                quantidade = 0;
+            }
+            soma += valor;
+            quantidade++;
+            return satisfeita;
+        }
+    }
+
+    /**
+     * Quantidade de leituras que atendem o limite entre as últimas "amostras" leituras
+     */
+    private static final class JanelaContagem implements Janela {
+        private final int minimo;
+        private final int limite;
+        private final boolean maiorOuIgual;
+        private final boolean[] atendidas;
+        private int posicao;
+        private int tamanho;
+        private int quantidadeAtendidas;
+
+        private JanelaContagem(int amostras, int minimo, int limite, boolean maiorOuIgual) {
+            this.minimo = minimo;
+            this.limite = limite;
+            this.maiorOuIgual = maiorOuIgual;
+            this.atendidas = new boolean[amostras];
+        }
+
+        @Override
+        public boolean adicionar(long instante, int valor) {
+            boolean atendida = maiorOuIgual ? valor >= limite : valor <= limite;
+            if (tamanho == atendidas.length) {
+                if (atendidas[posicao]) {
+                    quantidadeAtendidas--;
+                }
+            } else {
+                tamanho++;
+            }
+            atendidas[posicao] = atendida;
+            if (atendida) {
+                quantidadeAtendidas++;
+            }
+            posicao = (posicao + 1) % atendidas.length;
+            return quantidadeAtendidas >= minimo;
+        }
+    }
+}
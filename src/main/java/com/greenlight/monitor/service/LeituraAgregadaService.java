@@ -0,0 +1,479 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.dto.EstatisticasLeituraDTO;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.LeituraAgregada.Resolucao;
+import com.greenlight.monitor.repository.LeituraAgregadaRepository;
+import com.greenlight.monitor.repository.LeituraRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mantém os agregados de leituras por sensor (minuto, hora e dia) e responde consultas
+ * estatísticas de períodos combinando a resolução mais grossa que cobre cada trecho do período.
+ * Os agregados são atualizados na mesma transação da ingestão (SensorReadingListener).
+ */
+@Service
+public class LeituraAgregadaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeituraAgregadaService.class);
+
+    private static final String UPSERT_POSTGRESQL = """
+            INSERT INTO leitura_agregada (id_sensor, resolucao, inicio, quantidade,
+                temperatura_soma, temperatura_min, temperatura_max, temperatura_soma_quadrados,
+                umidade_soma, umidade_min, umidade_max, umidade_soma_quadrados)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (id_sensor, resolucao, inicio) DO UPDATE SET
+                quantidade = leitura_agregada.quantidade + EXCLUDED.quantidade,
+                temperatura_soma = leitura_agregada.temperatura_soma + EXCLUDED.temperatura_soma,
+                temperatura_min = LEAST(leitura_agregada.temperatura_min, EXCLUDED.temperatura_min),
+                temperatura_max = GREATEST(leitura_agregada.temperatura_max, EXCLUDED.temperatura_max),
+                temperatura_soma_quadrados = leitura_agregada.temperatura_soma_quadrados + EXCLUDED.temperatura_soma_quadrados,
+                umidade_soma = leitura_agregada.umidade_soma + EXCLUDED.umidade_soma,
+                umidade_min = LEAST(leitura_agregada.umidade_min, EXCLUDED.umidade_min),
+                umidade_max = GREATEST(leitura_agregada.umidade_max, EXCLUDED.umidade_max),
+                umidade_soma_quadrados = leitura_agregada.umidade_soma_quadrados + EXCLUDED.umidade_soma_quadrados
+            """;
+
+    private static final String UPDATE = """
+            UPDATE leitura_agregada SET
+                quantidade = quantidade + ?,
+                temperatura_soma = temperatura_soma + ?,
+                temperatura_min = LEAST(temperatura_min, ?),
+                temperatura_max = GREATEST(temperatura_max, ?),
+                temperatura_soma_quadrados = temperatura_soma_quadrados + ?,
+                umidade_soma = umidade_soma + ?,
+                umidade_min = LEAST(umidade_min, ?),
+                umidade_max = GREATEST(umidade_max, ?),
+                umidade_soma_quadrados = umidade_soma_quadrados + ?
+            WHERE id_sensor = ? AND resolucao = ? AND inicio = ?
+            """;
+
+    private static final String INSERT = """
+            INSERT INTO leitura_agregada (id_sensor, resolucao, inicio, quantidade,
+                temperatura_soma, temperatura_min, temperatura_max, temperatura_soma_quadrados,
+                umidade_soma, umidade_min, umidade_max, umidade_soma_quadrados)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String COLUNAS = """
+            id_sensor, resolucao, inicio, quantidade,
+                temperatura_soma, temperatura_min, temperatura_max, temperatura_soma_quadrados,
+                umidade_soma, umidade_min, umidade_max, umidade_soma_quadrados""";
+
+    private static final String[] MEDIDAS = {"quantidade", "temperatura_soma", "temperatura_min",
+            "temperatura_max", "temperatura_soma_quadrados", "umidade_soma", "umidade_min", "umidade_max",
+            "umidade_soma_quadrados"};
+
+    // Impede que a ingestão altere os agregados entre a leitura das linhas brutas e a gravação do
+    // recálculo (a ingestão grava a leitura e o agregado na mesma transação)
+    private static final String BLOQUEIO_POSTGRESQL = "LOCK TABLE leitura_agregada IN SHARE ROW EXCLUSIVE MODE";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LeituraAgregadaRepository leituraAgregadaRepository;
+
+    @Autowired
+    private LeituraRepository leituraRepository;
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // PostgreSQL: INSERT ... ON CONFLICT (seguro com consumidores concorrentes);
+    // demais bancos (H2 em desenvolvimento): UPDATE seguido de INSERT dos intervalos ausentes
+    private boolean upsertNativo;
+
+    private final AtomicBoolean reconstrucaoEmAndamento = new AtomicBoolean(false);
+
+    // Recálculo de cada resolução a partir das linhas de origem e remoção dos intervalos sem
+    // origem, montados no dialeto do banco
+    private final Map<Resolucao, String> recalculos = new EnumMap<>(Resolucao.class);
+    private final Map<Resolucao, String> remocoesOrfaos = new EnumMap<>(Resolucao.class);
+
+    @PostConstruct
+    public void init() {
+        String banco = jdbcTemplate.execute((ConnectionCallback<String>) conn ->
+                conn.getMetaData().getDatabaseProductName());
+        upsertNativo = "PostgreSQL".equalsIgnoreCase(banco);
+        logger.info("Agregados de leituras usando {}", upsertNativo ? "INSERT ... ON CONFLICT" : "UPDATE/INSERT");
+
+        for (Resolucao resolucao : Resolucao.values()) {
+            recalculos.put(resolucao, substituir(resolucao == Resolucao.DIA
+                    ? selecionarDasHoras() : selecionarDasLeituras(resolucao)));
+            remocoesOrfaos.put(resolucao, removerOrfaos(resolucao));
+        }
+    }
+
+    /**
+     * Acumula as leituras nos agregados de minuto, hora e dia.
+     * As leituras do lote são pré-agregadas em memória: cada intervalo afetado gera uma única escrita.
+     */
+    @Transactional
+    public void registrar(List<Leitura> leituras) {
+        Map<Chave, Acumulador> intervalos = new HashMap<>();
+        for (Leitura leitura : leituras) {
+            for (Resolucao resolucao : Resolucao.values()) {
+                acumular(intervalos, leitura.getSensor().getId(), resolucao, leitura.getTimestamp(),
+                        leitura.getTemperatura().doubleValue(), leitura.getUmidade().doubleValue());
+            }
+        }
+        gravar(intervalos);
+    }
+
+    /**
+     * Calcula as estatísticas de um sensor no período [inicio, fim)
+     */
+    @Transactional(readOnly = true)
+    public EstatisticasLeituraDTO calcularEstatisticasSensor(Long sensorId, LocalDateTime inicio, LocalDateTime fim) {
+        return calcularEstatisticas(List.of(sensorId), inicio, fim);
+    }
+
+    /**
+     * Calcula as estatísticas de todos os sensores de uma escola no período [inicio, fim)
+     */
+    @Transactional(readOnly = true)
+    public EstatisticasLeituraDTO calcularEstatisticasEscola(Long escolaId, LocalDateTime inicio, LocalDateTime fim) {
+        long[] ids = sensorRegistryService.getSensorIdsDaEscola(escolaId);
+        List<Long> sensorIds = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            sensorIds.add(id);
+        }
+        return calcularEstatisticas(sensorIds, inicio, fim);
+    }
+
+    /**
+     * Calcula as estatísticas de um conjunto de sensores no período [inicio, fim).
+     * Os dias completos vêm dos agregados diários, as bordas das horas completas, depois dos
+     * minutos completos, e só os trechos menores que um minuto nas pontas leem leituras brutas.
+     */
+    @Transactional(readOnly = true)
+    public EstatisticasLeituraDTO calcularEstatisticas(Collection<Long> sensorIds, LocalDateTime inicio, LocalDateTime fim) {
+        if (sensorIds.isEmpty()) {
+            return EstatisticasLeituraDTO.vazio();
+        }
+        return calcularTrecho(sensorIds, inicio, fim, Resolucao.DIA);
+    }
+
+    private EstatisticasLeituraDTO calcularTrecho(Collection<Long> sensorIds, LocalDateTime inicio,
+                                                  LocalDateTime fim, Resolucao resolucao) {
+        if (!inicio.isBefore(fim)) {
+            return EstatisticasLeituraDTO.vazio();
+        }
+        if (resolucao == null) {
+            return leituraRepository.calcularEstatisticas(sensorIds, inicio, fim);
+        }
+
+        LocalDateTime inicioAlinhado = resolucao.proximoInicio(inicio);
+        LocalDateTime fimAlinhado = resolucao.inicioDoIntervalo(fim);
+        if (!inicioAlinhado.isBefore(fimAlinhado)) {
+            // Nenhum intervalo completo nesta resolução
+            return calcularTrecho(sensorIds, inicio, fim, resolucao.menor());
+        }
+
+        return leituraAgregadaRepository.calcularEstatisticas(sensorIds, resolucao, inicioAlinhado, fimAlinhado)
+                .combinar(calcularTrecho(sensorIds, inicio, inicioAlinhado, resolucao.menor()))
+                .combinar(calcularTrecho(sensorIds, fimAlinhado, fim, resolucao.menor()));
+    }
+
+    public boolean isReconstrucaoEmAndamento() {
+        return reconstrucaoEmAndamento.get();
+    }
+
+    /**
+     * Reconstrói os agregados a partir das leituras brutas para os dias em [de, ate), incluindo o
+     * dia atual. Cada hora é recalculada em sua própria transação: os agregados de minuto e hora
+     * são regravados (INSERT ... ON CONFLICT DO UPDATE no PostgreSQL, MERGE nos demais) com os
+     * valores calculados das leituras, e os intervalos sem leituras são removidos. O agregado do
+     * dia é recalculado no fim, a partir dos agregados de hora. No PostgreSQL cada transação
+     * bloqueia a escrita nos agregados enquanto recalcula, para que a ingestão concorrente não
+     * seja somada a um valor já recalculado nem sobrescrita por ele.
+     *
+     * @return quantidade de dias reconstruídos
+     */
+    @Async
+    public CompletableFuture<Integer> reconstruir(LocalDate de, LocalDate ate) {
+        if (!reconstrucaoEmAndamento.compareAndSet(false, true)) {
+            logger.warn("Reconstrução dos agregados já está em andamento");
+            return CompletableFuture.completedFuture(0);
+        }
+
+        try {
+            LocalDate amanha = LocalDate.now().plusDays(1);
+            LocalDate limite = ate.isAfter(amanha) ? amanha : ate;
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            int dias = 0;
+
+            logger.info("Iniciando reconstrução dos agregados de leituras de {} a {}", de, limite);
+            for (LocalDate dia = de; dia.isBefore(limite); dia = dia.plusDays(1)) {
+                reconstruirDia(transactionTemplate, dia);
+                dias++;
+            }
+            logger.info("Reconstrução dos agregados concluída: {} dias", dias);
+            return CompletableFuture.completedFuture(dias);
+
+        } catch (Exception e) {
+            logger.error("Erro na reconstrução dos agregados de leituras", e);
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            reconstrucaoEmAndamento.set(false);
+        }
+    }
+
+    /**
+     * Recalcula os agregados de um dia, uma hora por transação para limitar o tempo de bloqueio
+     */
+    private void reconstruirDia(TransactionTemplate transactionTemplate, LocalDate dia) {
+        LocalDateTime inicioDia = dia.atStartOfDay();
+        LocalDateTime fimDia = inicioDia.plusDays(1);
+
+        for (LocalDateTime hora = inicioDia; hora.isBefore(fimDia); hora = hora.plusHours(1)) {
+            LocalDateTime inicio = hora;
+            transactionTemplate.executeWithoutResult(status -> {
+                bloquearIngestao();
+                recalcular(Resolucao.MINUTO, inicio, inicio.plusHours(1));
+                recalcular(Resolucao.HORA, inicio, inicio.plusHours(1));
+            });
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            bloquearIngestao();
+            recalcular(Resolucao.DIA, inicioDia, fimDia);
+        });
+
+        logger.debug("Agregados do dia {} reconstruídos", dia);
+    }
+
+    private void bloquearIngestao() {
+        if (upsertNativo) {
+            jdbcTemplate.execute(BLOQUEIO_POSTGRESQL);
+        }
+    }
+
+    /**
+     * Regrava os intervalos da resolução que começam em [inicio, fim) e remove os que ficaram sem origem
+     */
+    private void recalcular(Resolucao resolucao, LocalDateTime inicio, LocalDateTime fim) {
+        jdbcTemplate.update(recalculos.get(resolucao), inicio, fim);
+        jdbcTemplate.update(remocoesOrfaos.get(resolucao), inicio, fim, inicio, fim);
+    }
+
+    /**
+     * Expressão que trunca um timestamp ao início do intervalo da resolução
+     */
+    private String truncar(Resolucao resolucao, String coluna) {
+        String unidade = switch (resolucao) {
+            case MINUTO -> "minute";
+            case HORA -> "hour";
+            case DIA -> "day";
+        };
+        return upsertNativo
+                ? "date_trunc('" + unidade + "', " + coluna + ")"
+                : "DATE_TRUNC(" + unidade.toUpperCase() + ", " + coluna + ")";
+    }
+
+    /**
+     * Medidas por intervalo calculadas das leituras brutas com timestamp em [?, ?)
+     */
+    private String selecionarDasLeituras(Resolucao resolucao) {
+        String inicio = truncar(resolucao, "timestamp");
+        String t = "CAST(temperatura AS DOUBLE PRECISION)";
+        String u = "CAST(umidade AS DOUBLE PRECISION)";
+        return "SELECT id_sensor, '" + resolucao.name() + "' AS resolucao, " + inicio + " AS inicio, " +
+               "COUNT(*) AS quantidade, " +
+               "SUM(" + t + ") AS temperatura_soma, MIN(" + t + ") AS temperatura_min, " +
+               "MAX(" + t + ") AS temperatura_max, SUM(" + t + " * " + t + ") AS temperatura_soma_quadrados, " +
+               "SUM(" + u + ") AS umidade_soma, MIN(" + u + ") AS umidade_min, " +
+               "MAX(" + u + ") AS umidade_max, SUM(" + u + " * " + u + ") AS umidade_soma_quadrados " +
+               "FROM leitura WHERE timestamp >= ? AND timestamp < ? GROUP BY id_sensor, " + inicio;
+    }
+
+    /**
+     * Medidas diárias combinadas dos agregados de hora que começam em [?, ?)
+     */
+    private String selecionarDasHoras() {
+        String inicio = truncar(Resolucao.DIA, "inicio");
+        return "SELECT id_sensor, 'DIA' AS resolucao, " + inicio + " AS inicio, " +
+               "SUM(quantidade) AS quantidade, " +
+               "SUM(temperatura_soma) AS temperatura_soma, MIN(temperatura_min) AS temperatura_min, " +
+               "MAX(temperatura_max) AS temperatura_max, SUM(temperatura_soma_quadrados) AS temperatura_soma_quadrados, " +
+               "SUM(umidade_soma) AS umidade_soma, MIN(umidade_min) AS umidade_min, " +
+               "MAX(umidade_max) AS umidade_max, SUM(umidade_soma_quadrados) AS umidade_soma_quadrados " +
+               "FROM leitura_agregada WHERE resolucao = 'HORA' AND inicio >= ? AND inicio < ? " +
+               "GROUP BY id_sensor, " + inicio;
+    }
+
+    /**
+     * Grava o resultado da consulta substituindo (não somando) as medidas dos intervalos existentes
+     */
+    private String substituir(String consulta) {
+        StringBuilder sql = new StringBuilder();
+        if (upsertNativo) {
+            sql.append("INSERT INTO leitura_agregada (").append(COLUNAS).append(") ").append(consulta)
+                    .append(" ON CONFLICT (id_sensor, resolucao, inicio) DO UPDATE SET ");
+            for (int i = 0; i < MEDIDAS.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(MEDIDAS[i]).append(" = EXCLUDED.").append(MEDIDAS[i]);
+            }
+            return sql.toString();
+        }
+
+        sql.append("MERGE INTO leitura_agregada a USING (").append(consulta).append(") o ")
+                .append("ON a.id_sensor = o.id_sensor AND a.resolucao = o.resolucao AND a.inicio = o.inicio ")
+                .append("WHEN MATCHED THEN UPDATE SET ");
+        for (int i = 0; i < MEDIDAS.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(MEDIDAS[i]).append(" = o.").append(MEDIDAS[i]);
+        }
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(COLUNAS).append(") VALUES (")
+                .append("o.id_sensor, o.resolucao, o.inicio");
+        for (String medida : MEDIDAS) {
+            sql.append(", o.").append(medida);
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Remove os intervalos da resolução que começam em [?, ?) e não têm mais linhas de origem em [?, ?)
+     */
+    private String removerOrfaos(Resolucao resolucao) {
+        String origem = resolucao == Resolucao.DIA
+                ? "SELECT 1 FROM leitura_agregada h WHERE h.id_sensor = a.id_sensor AND h.resolucao = 'HORA' " +
+                  "AND h.inicio >= ? AND h.inicio < ?"
+                : "SELECT 1 FROM leitura l WHERE l.id_sensor = a.id_sensor AND l.timestamp >= ? AND l.timestamp < ? " +
+                  "AND " + truncar(resolucao, "l.timestamp") + " = a.inicio";
+        return "DELETE FROM leitura_agregada a WHERE a.resolucao = '" + resolucao.name() + "' " +
+               "AND a.inicio >= ? AND a.inicio < ? AND NOT EXISTS (" + origem + ")";
+    }
+
+    private void acumular(Map<Chave, Acumulador> intervalos, long sensorId, Resolucao resolucao,
+                          LocalDateTime timestamp, double temperatura, double umidade) {
+        Chave chave = new Chave(sensorId, resolucao, resolucao.inicioDoIntervalo(timestamp));
+        intervalos.computeIfAbsent(chave, c -> new Acumulador()).adicionar(temperatura, umidade);
+    }
+
+    /**
+     * Grava os intervalos acumulados em lote JDBC. As chaves são ordenadas para que
+     * consumidores concorrentes bloqueiem as linhas sempre na mesma ordem (evita deadlock).
+     */
+    private void gravar(Map<Chave, Acumulador> intervalos) {
+        if (intervalos.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Chave, Acumulador>> entradas = new ArrayList<>(intervalos.entrySet());
+        entradas.sort(Map.Entry.comparingByKey(Chave.ORDEM));
+
+        if (upsertNativo) {
+            jdbcTemplate.batchUpdate(UPSERT_POSTGRESQL, entradas, entradas.size(), (ps, e) -> {
+                Chave chave = e.getKey();
+                Acumulador a = e.getValue();
+                ps.setLong(1, chave.sensorId());
+                ps.setString(2, chave.resolucao().name());
+                ps.setObject(3, chave.inicio());
+                a.preencher(ps, 4);
+            });
+            return;
+        }
+
+        int[][] atualizados = jdbcTemplate.batchUpdate(UPDATE, entradas, entradas.size(), (ps, e) -> {
+            Chave chave = e.getKey();
+            e.getValue().preencher(ps, 1);
+            ps.setLong(10, chave.sensorId());
+            ps.setString(11, chave.resolucao().name());
+            ps.setObject(12, chave.inicio());
+        });
+
+        List<Map.Entry<Chave, Acumulador>> ausentes = new ArrayList<>();
+        for (int i = 0; i < entradas.size(); i++) {
+            if (atualizados[0][i] == 0) {
+                ausentes.add(entradas.get(i));
+            }
+        }
+        if (!ausentes.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, ausentes, ausentes.size(), (ps, e) -> {
+                Chave chave = e.getKey();
+                ps.setLong(1, chave.sensorId());
+                ps.setString(2, chave.resolucao().name());
+                ps.setObject(3, chave.inicio());
+                e.getValue().preencher(ps, 4);
+            });
+        }
+    }
+
+    /**
+     * Identifica um intervalo agregado
+     */
+    private record Chave(long sensorId, Resolucao resolucao, LocalDateTime inicio) {
+
+        static final Comparator<Chave> ORDEM = Comparator.comparingLong(Chave::sensorId)
+                .thenComparing(Chave::resolucao)
+                .thenComparing(Chave::inicio);
+    }
+
+    /**
+     * Acumulador mutável dos momentos de um intervalo
+     */
+    private static final class Acumulador {
+        private long quantidade;
+        private double temperaturaSoma;
+        private double temperaturaMin = Double.POSITIVE_INFINITY;
+        private double temperaturaMax = Double.NEGATIVE_INFINITY;
+        private double temperaturaSomaQuadrados;
+        private double umidadeSoma;
+        private double umidadeMin = Double.POSITIVE_INFINITY;
+        private double umidadeMax = Double.NEGATIVE_INFINITY;
+        private double umidadeSomaQuadrados;
+
+        void adicionar(double temperatura, double umidade) {
+            quantidade++;
+            temperaturaSoma += temperatura;
+            temperaturaMin = Math.min(temperaturaMin, temperatura);
+            temperaturaMax = Math.max(temperaturaMax, temperatura);
+            temperaturaSomaQuadrados += temperatura * temperatura;
+            umidadeSoma += umidade;
+            umidadeMin = Math.min(umidadeMin, umidade);
+            umidadeMax = Math.max(umidadeMax, umidade);
+            umidadeSomaQuadrados += umidade * umidade;
+        }
+
+        /**
+         * Preenche os nove parâmetros de medidas a partir da posição indicada
+         */
+        void preencher(PreparedStatement ps, int posicao) throws SQLException {
+            ps.setLong(posicao, quantidade);
+            ps.setDouble(posicao + 1, temperaturaSoma);
+            ps.setDouble(posicao + 2, temperaturaMin);
+            ps.setDouble(posicao + 3, temperaturaMax);
+            ps.setDouble(posicao + 4, temperaturaSomaQuadrados);
+            ps.setDouble(posicao + 5, umidadeSoma);
+            ps.setDouble(posicao + 6, umidadeMin);
+            ps.setDouble(posicao + 7, umidadeMax);
+            ps.setDouble(posicao + 8, umidadeSomaQuadrados);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.greenlight.monitor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gerencia o particionamento por intervalo de tempo da tabela leitura (PostgreSQL).
+ * Cria antecipadamente as partições futuras e aplica a retenção removendo partições
+ * inteiras em vez de executar DELETE linha a linha.
+ * A conversão da tabela existente para particionada está em db/postgresql/V2__leitura_particionada.sql.
+ */
+@Service
+@ConditionalOnProperty(name = "app.leitura.partitioning.enabled", havingValue = "true")
+public class LeituraParticaoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeituraParticaoService.class);
+
+    private static final String TABELA = "leitura";
+    private static final DateTimeFormatter SUFIXO = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern LIMITE_SUPERIOR = Pattern.compile("TO \\('([^']+)'\\)");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Granularidade das partições: DAYS, WEEKS ou MONTHS
+    @Value("${app.leitura.partitioning.interval:MONTHS}")
+    private ChronoUnit intervalo;
+
+    // Quantidade de partições futuras mantidas criadas
+    @Value("${app.leitura.partitioning.premake:3}")
+    private int particoesFuturas;
+
+    // detach: desanexa e mantém a tabela para arquivamento | drop: remove a partição
+    @Value("${app.leitura.partitioning.retention-mode:drop}")
+    private String modoRetencao;
+
+    // Dias de leituras mantidos (0 desabilita a retenção automática)
+    @Value("${app.leitura.partitioning.retention-days:0}")
+    private int diasRetencao;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        if (intervalo != ChronoUnit.DAYS && intervalo != ChronoUnit.WEEKS && intervalo != ChronoUnit.MONTHS) {
+            throw new IllegalStateException("Intervalo de particionamento não suportado: " + intervalo);
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        garantirParticoesFuturas();
+    }
+
+    /**
+     * Cria as partições do intervalo atual e dos próximos intervalos, se ainda não existirem
+     */
+    @Scheduled(cron = "${app.leitura.partitioning.maintenance-cron:0 15 0 * * *}")
+    public void garantirParticoesFuturas() {
+        LocalDateTime inicio = inicioDoIntervalo(LocalDate.now()).atStartOfDay();
+        for (int i = 0; i <= particoesFuturas; i++) {
+            LocalDateTime fim = inicio.plus(1, intervalo);
+            criarParticao(inicio, fim);
+            inicio = fim;
+        }
+    }
+
+    /**
+     * Aplica a retenção configurada (executada diariamente). A chamada interna não passa pelo
+     * proxy de {@code @Transactional}: exclusão dos alertas e remoção das partições na mesma transação.
+     */
+    @Scheduled(cron = "${app.leitura.partitioning.retention-cron:0 30 0 * * *}")
+    public void aplicarRetencao() {
+        if (diasRetencao > 0) {
+            LocalDateTime limite = LocalDateTime.now().minusDays(diasRetencao);
+            transactionTemplate.execute(status -> removerParticoesAte(limite));
+        }
+    }
+
+    /**
+     * Remove (ou desanexa) todas as partições cujo limite superior é anterior ou igual ao limite.
+     * Partições que contêm o limite são mantidas inteiras.
+     *
+     * @return quantidade de partições removidas
+     */
+    @Transactional
+    public int removerParticoesAte(LocalDateTime limite) {
+        int removidas = 0;
+        for (Particao particao : listarParticoes()) {
+            if (particao.fim() == null || particao.fim().isAfter(limite)) {
+                continue;
+            }
+
+            // A FK alerta -> leitura não existe em tabela particionada; remover os alertas órfãos antes
+            int alertas = jdbcTemplate.update("DELETE FROM alerta WHERE id_leitura IN (SELECT id FROM "
+                    + particao.nome() + ")");
+            jdbcTemplate.execute("ALTER TABLE " + TABELA + " DETACH PARTITION " + particao.nome());
+            if ("drop".equalsIgnoreCase(modoRetencao)) {
+                jdbcTemplate.execute("DROP TABLE " + particao.nome());
+            }
+
+            logger.info("Partição {} ({}) removida pela retenção ({} alertas associados excluídos)",
+                    particao.nome(), modoRetencao, alertas);
+            removidas++;
+        }
+        return removidas;
+    }
+
+    /**
+     * Lista as partições da tabela leitura com seus limites superiores
+     */
+    public List<Particao> listarParticoes() {
+        List<Particao> particoes = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass ORDER BY c.relname",
+                rs -> {
+                    String nome = rs.getString(1);
+                    Matcher matcher = LIMITE_SUPERIOR.matcher(rs.getString(2));
+                    // A partição DEFAULT não tem limite e nunca é removida pela retenção
+                    LocalDateTime fim = matcher.find()
+                            ? LocalDateTime.parse(matcher.group(1).replace(' ', 'T'))
+                            : null;
+                    particoes.add(new Particao(nome, fim));
+                },
+                TABELA);
+        return particoes;
+    }
+
+    private void criarParticao(LocalDateTime inicio, LocalDateTime fim) {
+        String nome = TABELA + "_p" + inicio.format(SUFIXO);
+        try {
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    nome, TABELA, inicio, fim));
+            logger.debug("Partição {} garantida [{} - {})", nome, inicio, fim);
+        } catch (Exception e) {
+            // Ex.: linhas desse intervalo já caíram na partição DEFAULT; as próximas continuarão nela
+            logger.error("Erro ao criar partição {} [{} - {}): leituras do intervalo irão para a partição DEFAULT",
+                    nome, inicio, fim, e);
+        }
+    }
+
+    private LocalDate inicioDoIntervalo(LocalDate data) {
+        switch (intervalo) {
+            case MONTHS:
+                return data.with(TemporalAdjusters.firstDayOfMonth());
+            case WEEKS:
+                return data.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            default:
+                return data;
+        }
+    }
+
+    /**
+     * Partição da tabela leitura e seu limite superior (exclusivo)
+     */
+    public record Particao(String nome, LocalDateTime fim) {
+    }
+}
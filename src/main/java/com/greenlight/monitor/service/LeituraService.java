@@ -1,14 +1,20 @@
 package com.greenlight.monitor.service;
 
+import com.greenlight.monitor.dto.EstatisticasLeituraDTO;
+import com.greenlight.monitor.dto.LeituraResumoDTO;
+import com.greenlight.monitor.dto.SliceDTO;
 import com.greenlight.monitor.entity.Leitura;
 import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.util.CursorPaginacao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -23,6 +29,15 @@ public class LeituraService {
     @Autowired
     private LeituraRepository leituraRepository;
 
+    @Autowired
+    private LeituraAgregadaService leituraAgregadaService;
+
+    @Autowired
+    private SensorEstadoService sensorEstadoService;
+
+    @Autowired(required = false)
+    private LeituraParticaoService leituraParticaoService;
+
     /**
      * Busca todas as leituras
      */
@@ -69,7 +84,10 @@ public class LeituraService {
      */
     @Transactional(readOnly = true)
     public Optional<Leitura> findUltimaLeituraBySensorId(Long sensorId) {
-        return leituraRepository.findFirstBySensorIdOrderByTimestampDesc(sensorId);
+        // O estado atual do sensor aponta direto para a última leitura, sem ordenar o histórico
+        Optional<Leitura> ultima = sensorEstadoService.findEstado(sensorId)
+                .flatMap(estado -> leituraRepository.findById(estado.leituraId()));
+        return ultima.isPresent() ? ultima : leituraRepository.findFirstBySensorIdOrderByTimestampDesc(sensorId);
     }
 
     /**
@@ -88,6 +106,14 @@ public class LeituraService {
         return leituraRepository.findBySensorIdAndTimestampBetween(sensorId, inicio, fim);
     }
 
+    /**
+     * Busca leituras por escola e período
+     */
+    @Transactional(readOnly = true)
+    public List<Leitura> findByEscolaIdAndTimestampBetween(Long escolaId, LocalDateTime inicio, LocalDateTime fim) {
+        return leituraRepository.findByEscolaIdAndTimestampBetween(escolaId, inicio, fim);
+    }
+
     /**
      * Busca leituras paginadas com filtros
      */
@@ -98,6 +124,27 @@ public class LeituraService {
         return leituraRepository.findByFiltros(sensorId, escolaId, inicio, fim, tempMin, tempMax, pageable);
     }
 
+    /**
+     * Busca leituras com filtros por chave (keyset): custo constante por página, sem OFFSET nem COUNT.
+     * {@code cursor} é o token devolvido na página anterior (null para a primeira página).
+     */
+    @Transactional(readOnly = true)
+    public SliceDTO<LeituraResumoDTO> scrollByFiltros(Long sensorId, Long escolaId, LocalDateTime inicio,
+                                                      LocalDateTime fim, BigDecimal tempMin, BigDecimal tempMax,
+                                                      String cursor, int size) {
+        Pageable pagina = CursorPaginacao.pagina(size);
+        Slice<Leitura> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = leituraRepository.findSliceByFiltros(sensorId, escolaId, inicio, fim, tempMin, tempMax, pagina);
+        } else {
+            CursorPaginacao posicao = CursorPaginacao.decodificar(cursor);
+            slice = leituraRepository.findSliceByFiltrosApos(sensorId, escolaId, inicio, fim, tempMin, tempMax,
+                    posicao.getTimestamp(), posicao.getId(), pagina);
+        }
+        return SliceDTO.from(slice, LeituraResumoDTO::from,
+                l -> CursorPaginacao.codificar(l.getTimestamp(), l.getId()));
+    }
+
     /**
      * Salva uma leitura
      */
@@ -106,6 +153,26 @@ public class LeituraService {
         return leituraRepository.save(leitura);
     }
 
+    /**
+     * Salva um lote de leituras na mesma transação (inserts agrupados em lote pelo Hibernate)
+     */
+    public List<Leitura> saveAll(List<Leitura> leituras) {
+        leituras.forEach(this::validateLeitura);
+        return leituraRepository.saveAll(leituras);
+    }
+
+    /**
+     * Verifica se a leitura passa nas validações, sem lançar exceção
+     */
+    public boolean isValida(Leitura leitura) {
+        try {
+            validateLeitura(leitura);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * Cria uma nova leitura
      */
@@ -131,19 +198,25 @@ public class LeituraService {
     }
 
     /**
-     * Calcula média de temperatura por sensor em um período
+     * Calcula média de temperatura por sensor em um período [inicio, fim) a partir dos agregados
      */
     @Transactional(readOnly = true)
     public Optional<BigDecimal> calcularMediaTemperatura(Long sensorId, LocalDateTime inicio, LocalDateTime fim) {
-        return leituraRepository.findMediaTemperaturaBySensorAndPeriodo(sensorId, inicio, fim);
+        EstatisticasLeituraDTO estatisticas = leituraAgregadaService.calcularEstatisticasSensor(sensorId, inicio, fim);
+        return estatisticas.isVazio() ? Optional.empty() : Optional.of(arredondar(estatisticas.getTemperaturaMedia()));
     }
 
     /**
-     * Calcula média de umidade por sensor em um período
+     * Calcula média de umidade por sensor em um período [inicio, fim) a partir dos agregados
      */
     @Transactional(readOnly = true)
     public Optional<BigDecimal> calcularMediaUmidade(Long sensorId, LocalDateTime inicio, LocalDateTime fim) {
-        return leituraRepository.findMediaUmidadeBySensorAndPeriodo(sensorId, inicio, fim);
+        EstatisticasLeituraDTO estatisticas = leituraAgregadaService.calcularEstatisticasSensor(sensorId, inicio, fim);
+        return estatisticas.isVazio() ? Optional.empty() : Optional.of(arredondar(estatisticas.getUmidadeMedia()));
+    }
+
+    private BigDecimal arredondar(double valor) {
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP);
     }
 
     /**
@@ -172,10 +245,15 @@ public class LeituraService {
     }
 
     /**
-     * Remove leituras antigas (para limpeza de dados)
+     * Remove leituras antigas (para limpeza de dados).
+     * Com a tabela particionada, remove partições inteiras em vez de excluir linha a linha.
      */
     public void limparLeiturasAntigas(int diasParaManter) {
         LocalDateTime limite = LocalDateTime.now().minusDays(diasParaManter);
+        if (leituraParticaoService != null) {
+            leituraParticaoService.removerParticoesAte(limite);
+            return;
+        }
         leituraRepository.deleteLeiturasAntigas(limite);
     }
 
@@ -0,0 +1,271 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.dto.SensorReadingDTO;
+import com.greenlight.monitor.util.ErrosTransitorios;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processamento das leituras ordenado por sensor (modo app.rabbitmq.listener.mode=sharded).
+ * Um único consumidor recebe as mensagens na ordem da fila e as distribui, pelo hash do sensorId,
+ * entre N shards; cada shard tem uma única thread, que processa suas leituras em lotes na ordem de
+ * chegada. Assim as leituras de um mesmo sensor nunca são processadas em paralelo nem fora de
+ * ordem, enquanto shards diferentes rodam em paralelo.
+ * <p>
+ * O ack é manual e feito pelo shard após o commit; o número de mensagens em processamento é
+ * limitado pelo prefetch do consumidor. Falhas transitórias (banco ou conexão indisponível) são
+ * tentadas de novo no próprio shard, com espera crescente, sem perder a ordem nem enviar nada para
+ * a DLQ. Um lote com falha determinística é reprocessado mensagem a mensagem e apenas as que
+ * falharem de novo são rejeitadas sem reenfileirar (vão para a DLQ), assim como leituras fora dos
+ * limites.
+ */
+@Service
+public class LeituraShardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeituraShardService.class);
+
+    // Mistura os bits do sensorId para distribuir IDs com padrões regulares entre os shards
+    private static final long MISTURA = 0x9E3779B97F4A7C15L;
+
+    private record Entrega(SensorReadingDTO leitura, Channel canal, long deliveryTag) {
+    }
+
+    private final class Shard implements Runnable {
+        private final int indice;
+        private final BlockingQueue<Entrega> fila = new LinkedBlockingQueue<>();
+        private final Thread thread;
+
+        private Shard(int indice) {
+            this.indice = indice;
+            this.thread = new Thread(this, "leitura-shard-" + indice);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Entrega> lote = new ArrayList<>(tamanhoLote);
+            while (ativo) {
+                try {
+                    Entrega primeira = fila.poll(1, TimeUnit.SECONDS);
+                    if (primeira == null) {
+                        continue;
+                    }
+                    lote.add(primeira);
+                    fila.drainTo(lote, tamanhoLote - 1);
+                    processarLote(lote);
+                } catch (InterruptedException e) {
+                    // Mensagens sem ack são reentregues pelo broker quando o canal fecha
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lote.clear();
+                }
+            }
+        }
+    }
+
+    @Autowired
+    private SensorReadingListener sensorReadingListener;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rabbitmq.listener.sharded.shards:8}")
+    private int quantidadeShards;
+
+    @Value("${app.rabbitmq.listener.batch.size:100}")
+    private int tamanhoLote;
+
+    @Value("${app.rabbitmq.listener.mode:single}")
+    private String modo;
+
+    // Espera antes de repetir após falha transitória: dobra a cada tentativa, até max-backoff
+    @Value("${app.rabbitmq.listener.retry.backoff:1s}")
+    private Duration esperaInicial;
+
+    @Value("${app.rabbitmq.listener.retry.max-backoff:30s}")
+    private Duration esperaMaxima;
+
+    private Shard[] shards = new Shard[0];
+    private volatile boolean ativo = true;
+
+    private Timer latencia;
+    private Counter rejeitadas;
+    private Counter repetidas;
+
+    @PostConstruct
+    public void init() {
+        if (!"sharded".equals(modo)) {
+            return;
+        }
+        shards = new Shard[quantidadeShards];
+        for (int i = 0; i < quantidadeShards; i++) {
+            shards[i] = new Shard(i);
+            Gauge.builder("sensor.readings.shard.queue.size", shards[i].fila, BlockingQueue::size)
+                    .description("Leituras recebidas aguardando o shard")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+            shards[i].thread.start();
+        }
+        latencia = Timer.builder("sensor.readings.shard.batch.latency")
+                .description("Tempo de processamento de um lote de um shard, com o commit")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rejeitadas = Counter.builder("sensor.readings.shard.rejected")
+                .description("Leituras rejeitadas para a DLQ pelo processamento em shards")
+                .register(meterRegistry);
+        repetidas = Counter.builder("sensor.readings.shard.retried")
+                .description("Novas tentativas após falhas transitórias no processamento em shards")
+                .register(meterRegistry);
+        logger.info("Processamento de leituras em {} shards ordenados por sensor", quantidadeShards);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ativo = false;
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+        for (Shard shard : shards) {
+            shard.thread.join(TimeUnit.SECONDS.toMillis(1));
+            // Mensagens sem ack são reentregues pelo broker quando o canal fecha
+            if (!shard.fila.isEmpty()) {
+                logger.warn("Shard {} encerrado com {} leituras pendentes (serão reentregues)",
+                        shard.indice, shard.fila.size());
+            }
+        }
+    }
+
+    /**
+     * Recebe as leituras na ordem da fila e encaminha cada uma ao shard do seu sensor
+     */
+    @RabbitListener(id = "sensorReadingsSharded",
+                    queues = "${app.rabbitmq.queue.sensor-readings:sensor.readings}",
+                    containerFactory = "shardedRabbitListenerContainerFactory",
+                    autoStartup = "#{'${app.rabbitmq.listener.mode:single}' == 'sharded'}")
+    public void distribuir(SensorReadingDTO readingDTO, Channel channel,
+                           @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        shards[shard(readingDTO.getSensorId())].fila.add(new Entrega(readingDTO, channel, deliveryTag));
+    }
+
+    private int shard(Long sensorId) {
+        if (sensorId == null) {
+            return 0;
+        }
+        long misturado = sensorId * MISTURA;
+        return Math.floorMod((int) (misturado ^ (misturado >>> 32)), shards.length);
+    }
+
+    private void processarLote(List<Entrega> lote) throws InterruptedException {
+        List<SensorReadingDTO> leituras = new ArrayList<>(lote.size());
+        for (Entrega entrega : lote) {
+            leituras.add(entrega.leitura());
+        }
+
+        long espera = esperaInicial.toMillis();
+        while (true) {
+            long inicio = System.nanoTime();
+            try {
+                Set<SensorReadingDTO> foraDosLimites = sensorReadingListener.processSensorReadingBatch(leituras);
+                latencia.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                for (Entrega entrega : lote) {
+                    if (foraDosLimites.contains(entrega.leitura())) {
+                        rejeitar(entrega);
+                    } else {
+                        confirmar(entrega);
+                    }
+                }
+                return;
+            } catch (Exception e) {
+                if (!ErrosTransitorios.isTransitorio(e)) {
+                    logger.warn("Falha no lote de {} leituras, reprocessando individualmente: {}",
+                            lote.size(), e.getMessage());
+                    break;
+                }
+                logger.warn("Falha transitória no lote de {} leituras, nova tentativa em {} ms: {}",
+                        lote.size(), espera, e.getMessage());
+                espera = aguardar(espera);
+            }
+        }
+
+        // Na mesma ordem, para isolar a leitura com problema sem perder a ordem das demais
+        for (Entrega entrega : lote) {
+            processarIndividualmente(entrega);
+        }
+    }
+
+    private void processarIndividualmente(Entrega entrega) throws InterruptedException {
+        long espera = esperaInicial.toMillis();
+        while (true) {
+            try {
+                sensorReadingListener.processSensorReading(entrega.leitura());
+                confirmar(entrega);
+                return;
+            } catch (Exception e) {
+                if (!ErrosTransitorios.isTransitorio(e)) {
+                    logger.error("Leitura do sensor {} rejeitada para a DLQ: {}",
+                            entrega.leitura().getSensorId(), e.getMessage());
+                    rejeitar(entrega);
+                    return;
+                }
+                logger.warn("Falha transitória na leitura do sensor {}, nova tentativa em {} ms: {}",
+                        entrega.leitura().getSensorId(), espera, e.getMessage());
+                espera = aguardar(espera);
+            }
+        }
+    }
+
+    /**
+     * Espera antes de uma nova tentativa; no encerramento interrompe o shard, deixando as
+     * mensagens sem ack para o broker reentregar
+     *
+     * @return próxima espera
+     */
+    private long aguardar(long espera) throws InterruptedException {
+        repetidas.increment();
+        Thread.sleep(espera);
+        if (!ativo) {
+            throw new InterruptedException("Shard encerrado durante nova tentativa");
+        }
+        return Math.min(espera * 2, esperaMaxima.toMillis());
+    }
+
+    private void confirmar(Entrega entrega) {
+        try {
+            entrega.canal().basicAck(entrega.deliveryTag(), false);
+        } catch (Exception e) {
+            // Canal fechado: a mensagem será reentregue (entrega "pelo menos uma vez")
+            logger.warn("Falha no ack da leitura do sensor {}: {}", entrega.leitura().getSensorId(), e.getMessage());
+        }
+    }
+
+    private void rejeitar(Entrega entrega) {
+        rejeitadas.increment();
+        try {
+            entrega.canal().basicNack(entrega.deliveryTag(), false, false);
+        } catch (Exception e) {
+            logger.warn("Falha ao rejeitar a leitura do sensor {}: {}", entrega.leitura().getSensorId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Outbox transacional das notificações publicadas no RabbitMQ.
+ * A mensagem é gravada na tabela notificacao_outbox na transação corrente (junto com o alerta),
+ * de modo que um rollback não publica nada e uma falha do broker não perde a mensagem.
+ * Um relay em thread própria lê as linhas pendentes em lotes (FOR UPDATE SKIP LOCKED no
+ * PostgreSQL, permitindo várias instâncias), publica o lote inteiro sem esperar cada envio,
+ * aguarda as confirmações do broker (publisher confirms) e remove as linhas confirmadas.
+ * Linhas não confirmadas são reenviadas com espera crescente: a entrega é "pelo menos uma vez",
+ * e o message_id "outbox-&lt;id&gt;" permite aos consumidores descartar duplicatas.
+ */
+@Service
+public class NotificacaoOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificacaoOutboxService.class);
+
+    private static final String INSERT = """
+            INSERT INTO notificacao_outbox (exchange, routing_key, tipo_payload, payload, criado_em, tentativas, proxima_tentativa)
+            VALUES (?, ?, ?, ?, ?, 0, ?)
+            """;
+
+    private static final String SELECT_PENDENTES = """
+            SELECT id, exchange, routing_key, tipo_payload, payload, tentativas FROM notificacao_outbox
+            WHERE proxima_tentativa <= ? ORDER BY id LIMIT ? FOR UPDATE
+            """;
+
+    /**
+     * Linha pendente do outbox
+     */
+    private record Pendente(long id, String exchange, String routingKey, String tipoPayload, String payload,
+                            int tentativas) {
+    }
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private MessageConverter messageConverter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.notifications.outbox.batch-size:100}")
+    private int tamanhoLote;
+
+    // Intervalo máximo entre verificações (o commit de uma mensagem acorda o relay antes)
+    @Value("${app.notifications.outbox.poll-interval:1s}")
+    private Duration intervaloVerificacao;
+
+    @Value("${app.notifications.outbox.confirm-timeout:5s}")
+    private Duration tempoConfirmacao;
+
+    // Espera antes de reenviar: retry-backoff x 2^(tentativas - 1), até max-backoff
+    @Value("${app.notifications.outbox.retry-backoff:1s}")
+    private Duration esperaReenvio;
+
+    @Value("${app.notifications.outbox.max-backoff:5m}")
+    private Duration esperaMaxima;
+
+    // Intervalo mínimo entre as contagens de linhas pendentes feitas pelo relay (gauge)
+    @Value("${app.notifications.outbox.pending-count-interval:15s}")
+    private Duration intervaloContagem;
+
+    private String selectPendentes;
+    private boolean confirmacoes;
+    private TransactionTemplate transactionTemplate;
+
+    private final Semaphore sinal = new Semaphore(0);
+    private Thread relay;
+    private volatile boolean ativo = true;
+
+    // Última contagem de linhas pendentes (o gauge não consulta o banco a cada coleta)
+    private volatile long pendentes;
+    private long proximaContagem;
+
+    private Timer latenciaLote;
+    private Counter confirmadas;
+    private Counter rejeitadas;
+    private Counter falhas;
+
+    @PostConstruct
+    public void init() {
+        String banco = jdbcTemplate.execute((ConnectionCallback<String>) conn ->
+                conn.getMetaData().getDatabaseProductName());
+        // PostgreSQL: linhas bloqueadas por outra instância do relay são puladas
+        selectPendentes = "PostgreSQL".equalsIgnoreCase(banco)
+                ? SELECT_PENDENTES.strip() + " SKIP LOCKED" : SELECT_PENDENTES;
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        confirmacoes = rabbitTemplate.getConnectionFactory().isPublisherConfirms();
+        if (!confirmacoes) {
+            logger.warn("Publisher confirms desativados (spring.rabbitmq.publisher-confirm-type): " +
+                    "o outbox considera entregue toda mensagem enviada sem erro");
+        }
+
+        latenciaLote = Timer.builder("notifications.outbox.batch.latency")
+                .description("Tempo para publicar e confirmar um lote do outbox")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        confirmadas = Counter.builder("notifications.outbox.published").tag("result", "confirmed").register(meterRegistry);
+        rejeitadas = Counter.builder("notifications.outbox.published").tag("result", "nack").register(meterRegistry);
+        falhas = Counter.builder("notifications.outbox.published").tag("result", "error").register(meterRegistry);
+        Gauge.builder("notifications.outbox.pending", this, s -> s.pendentes)
+                .description("Mensagens aguardando publicação (contadas pelo relay a cada pending-count-interval)")
+                .register(meterRegistry);
+
+        proximaContagem = System.nanoTime();
+        relay = new Thread(this::executarRelay, "outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ativo = false;
+        relay.interrupt();
+        relay.join(tempoConfirmacao.toMillis() + 1000);
+    }
+
+    /**
+     * Grava a mensagem no outbox na transação corrente; será publicada após o commit
+     */
+    public void registrar(String exchange, String routingKey, Object payload) {
+        Message mensagem = messageConverter.toMessage(payload, new MessageProperties());
+        Object tipo = mensagem.getMessageProperties().getHeaders().get(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+        LocalDateTime agora = LocalDateTime.now();
+        jdbcTemplate.update(INSERT, exchange, routingKey, tipo != null ? tipo.toString() : null,
+                new String(mensagem.getBody(), StandardCharsets.UTF_8), agora, agora);
+
+        Transacoes.aposCommit(sinal::release);
+    }
+
+    private void executarRelay() {
+        while (ativo) {
+            try {
+                sinal.tryAcquire(intervaloVerificacao.toMillis(), TimeUnit.MILLISECONDS);
+                sinal.drainPermits();
+                // Lotes cheios indicam mais linhas pendentes
+                while (ativo && publicarLote() == tamanhoLote) {
+                    sinal.drainPermits();
+                }
+                contarPendentes();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Erro no relay do outbox de notificações: {}", e.getMessage());
+                try {
+                    Thread.sleep(intervaloVerificacao.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Publica um lote de linhas pendentes e remove as confirmadas (em uma transação que mantém
+     * as linhas bloqueadas até o fim das confirmações)
+     *
+     * @return quantidade de linhas lidas
+     */
+    private int publicarLote() {
+        Integer lidas = transactionTemplate.execute(status -> {
+            List<Pendente> lote = jdbcTemplate.query(selectPendentes, (rs, i) -> new Pendente(rs.getLong("id"),
+                    rs.getString("exchange"), rs.getString("routing_key"), rs.getString("tipo_payload"),
+                    rs.getString("payload"), rs.getInt("tentativas")), LocalDateTime.now(), tamanhoLote);
+            if (lote.isEmpty()) {
+                return 0;
+            }
+
+            long inicio = System.nanoTime();
+            // Envio de todo o lote antes de aguardar as confirmações
+            List<CorrelationData> correlacoes = new ArrayList<>(lote.size());
+            for (Pendente pendente : lote) {
+                correlacoes.add(enviar(pendente));
+            }
+
+            List<Object[]> confirmados = new ArrayList<>(lote.size());
+            List<Object[]> reenvios = new ArrayList<>();
+            long prazo = System.nanoTime() + tempoConfirmacao.toNanos();
+            for (int i = 0; i < lote.size(); i++) {
+                Pendente pendente = lote.get(i);
+                if (aguardarConfirmacao(pendente, correlacoes.get(i), prazo)) {
+                    confirmados.add(new Object[]{pendente.id()});
+                } else {
+                    reenvios.add(new Object[]{LocalDateTime.now().plus(espera(pendente.tentativas() + 1)), pendente.id()});
+                }
+            }
+
+            jdbcTemplate.batchUpdate("DELETE FROM notificacao_outbox WHERE id = ?", confirmados);
+            if (!reenvios.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE notificacao_outbox SET tentativas = tentativas + 1, " +
+                        "proxima_tentativa = ? WHERE id = ?", reenvios);
+                logger.warn("{} de {} notificações do outbox sem confirmação, serão reenviadas",
+                        reenvios.size(), lote.size());
+            }
+            latenciaLote.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            return lote.size();
+        });
+        return lidas != null ? lidas : 0;
+    }
+
+    /**
+     * Envia a linha sem aguardar a confirmação
+     *
+     * @return correlação da confirmação, ou null se o envio falhou
+     */
+    private CorrelationData enviar(Pendente pendente) {
+        MessageProperties propriedades = new MessageProperties();
+        propriedades.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        propriedades.setContentEncoding(StandardCharsets.UTF_8.name());
+        propriedades.setMessageId("outbox-" + pendente.id());
+        if (pendente.tipoPayload() != null) {
+            propriedades.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, pendente.tipoPayload());
+        }
+        Message mensagem = new Message(pendente.payload().getBytes(StandardCharsets.UTF_8), propriedades);
+
+        CorrelationData correlacao = new CorrelationData(String.valueOf(pendente.id()));
+        try {
+            rabbitTemplate.send(pendente.exchange(), pendente.routingKey(), mensagem, correlacao);
+            return correlacao;
+        } catch (Exception e) {
+            logger.debug("Falha ao enviar notificação {} do outbox: {}", pendente.id(), e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean aguardarConfirmacao(Pendente pendente, CorrelationData correlacao, long prazo) {
+        if (correlacao == null) {
+            falhas.increment();
+            return false;
+        }
+        if (!confirmacoes) {
+            confirmadas.increment();
+            return true;
+        }
+
+        try {
+            long restante = Math.max(0, prazo - System.nanoTime());
+            CorrelationData.Confirm confirmacao = correlacao.getFuture().get(restante, TimeUnit.NANOSECONDS);
+            if (confirmacao.isAck()) {
+                confirmadas.increment();
+                return true;
+            }
+            rejeitadas.increment();
+            logger.debug("Notificação {} do outbox rejeitada pelo broker: {}", pendente.id(), confirmacao.getReason());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            falhas.increment();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            falhas.increment();
+            return false;
+        }
+    }
+
+    private Duration espera(int tentativas) {
+        Duration espera = esperaReenvio.multipliedBy(1L << Math.min(tentativas - 1, 20));
+        return espera.compareTo(esperaMaxima) > 0 ? esperaMaxima : espera;
+    }
+
+    /**
+     * Atualiza a contagem de linhas pendentes, no máximo uma vez por pending-count-interval
+     */
+    private void contarPendentes() {
+        long agora = System.nanoTime();
+        if (agora - proximaContagem < 0) {
+            return;
+        }
+        proximaContagem = agora + intervaloContagem.toNanos();
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notificacao_outbox", Long.class);
+        pendentes = total != null ? total : 0;
+    }
+}
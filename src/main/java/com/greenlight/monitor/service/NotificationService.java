@@ -4,13 +4,14 @@ import com.greenlight.monitor.dto.AlertDTO;
 import com.greenlight.monitor.dto.SensorReadingDTO;
 import com.greenlight.monitor.entity.Alerta;
 import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -25,138 +26,261 @@ public class NotificationService {
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private RabbitPublicadorService rabbitPublicadorService;
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    @Autowired
+    private NotificacaoOutboxService notificacaoOutboxService;
 
     @Value("${app.rabbitmq.exchange.alerts:alerts.exchange}")
     private String alertsExchange;
 
     /**
-     * Envia alerta via RabbitMQ
+     * Envia alerta via RabbitMQ. A mensagem é gravada no outbox na transação corrente e
+     * publicada pelo relay após o commit (exceções propagam para desfazer a transação).
      */
     public void sendAlert(Alerta alerta) {
-        try {
-            AlertDTO alertDTO = convertToDTO(alerta);
-            
-            // Determinar routing key baseado no nível do alerta
-            String routingKey = determineRoutingKey(alerta.getNivel());
-            
-            // Enviar para exchange de alertas
-            rabbitTemplate.convertAndSend(alertsExchange, routingKey, alertDTO);
-            
-            logger.info("Alerta enviado via RabbitMQ: ID {}, Tipo: {}, Nível: {}", 
-                alerta.getId(), alerta.getTipo(), alerta.getNivel());
-            
-        } catch (Exception e) {
-            logger.error("Erro ao enviar alerta via RabbitMQ: {}", alerta.getId(), e);
-        }
+        AlertDTO alertDTO = convertToDTO(alerta);
+
+        // Determinar routing key baseado no nível do alerta
+        String routingKey = determineRoutingKey(alerta.getNivel());
+
+        notificacaoOutboxService.registrar(alertsExchange, routingKey, alertDTO);
+
+        logger.info("Alerta registrado para envio via RabbitMQ: ID {}, Tipo: {}, Nível: {}",
+            alerta.getId(), alerta.getTipo(), alerta.getNivel());
+    }
+
+    /**
+     * Envia alerta atualizado (ex.: mensagem enriquecida pela IA) via RabbitMQ, pelo outbox
+     */
+    public void sendAlertUpdated(Alerta alerta) {
+        AlertDTO alertDTO = convertToDTO(alerta);
+
+        notificacaoOutboxService.registrar(alertsExchange, "alerts.updated", alertDTO);
+
+        logger.info("Alerta atualizado registrado para envio via RabbitMQ: ID {}", alerta.getId());
     }
 
     /**
      * Envia notificação de bateria baixa
      */
-    public void sendLowBatteryAlert(Sensor sensor, Integer batteryLevel) {
+    public void sendLowBatteryAlert(SensorInfo sensor, Integer batteryLevel) {
         try {
             Map<String, Object> metadata = new HashMap<>();
-            metadata.put("sensor_id", sensor.getId());
+            metadata.put("sensor_id", sensor.id());
             metadata.put("battery_level", batteryLevel);
             metadata.put("alert_type", "LOW_BATTERY");
-            metadata.put("school_name", sensor.getEscola().getNome());
-            metadata.put("sensor_location", sensor.getLocalizacao());
+            metadata.put("school_name", sensor.nomeEscola());
+            metadata.put("sensor_location", sensor.localizacao());
 
             AlertDTO alertDTO = new AlertDTO();
-            alertDTO.setSensorId(sensor.getId());
-            alertDTO.setEscolaId(sensor.getEscola().getId());
+            alertDTO.setSensorId(sensor.id());
+            alertDTO.setEscolaId(sensor.escolaId());
             alertDTO.setTipo("Bateria Baixa");
             alertDTO.setNivel("Médio");
             alertDTO.setStatus("Emitido");
             alertDTO.setTimestamp(LocalDateTime.now());
-            alertDTO.setNomeEscola(sensor.getEscola().getNome());
-            alertDTO.setLocalizacaoSensor(sensor.getLocalizacao());
+            alertDTO.setNomeEscola(sensor.nomeEscola());
+            alertDTO.setLocalizacaoSensor(sensor.localizacao());
             alertDTO.setMetadata(metadata);
             alertDTO.setMensagem(String.format(
                 "Bateria baixa detectada no sensor %s da escola %s. Nível atual: %d%%",
-                sensor.getLocalizacao(), sensor.getEscola().getNome(), batteryLevel
+                sensor.localizacao(), sensor.nomeEscola(), batteryLevel
             ));
 
-            rabbitTemplate.convertAndSend(alertsExchange, "alerts.maintenance", alertDTO);
+            rabbitPublicadorService.publicar(alertsExchange, "alerts.maintenance", alertDTO);
             
-            logger.info("Alerta de bateria baixa enviado para sensor {}", sensor.getId());
+            logger.info("Alerta de bateria baixa enviado para sensor {}", sensor.id());
             
         } catch (Exception e) {
-            logger.error("Erro ao enviar alerta de bateria baixa para sensor {}: {}", sensor.getId(), e.getMessage());
+            logger.error("Erro ao enviar alerta de bateria baixa para sensor {}: {}", sensor.id(), e.getMessage());
         }
     }
 
     /**
      * Envia notificação de sinal fraco
      */
-    public void sendWeakSignalAlert(Sensor sensor, Integer signalStrength) {
+    public void sendWeakSignalAlert(SensorInfo sensor, Integer signalStrength) {
         try {
             Map<String, Object> metadata = new HashMap<>();
-            metadata.put("sensor_id", sensor.getId());
+            metadata.put("sensor_id", sensor.id());
             metadata.put("signal_strength", signalStrength);
             metadata.put("alert_type", "WEAK_SIGNAL");
-            metadata.put("school_name", sensor.getEscola().getNome());
-            metadata.put("sensor_location", sensor.getLocalizacao());
+            metadata.put("school_name", sensor.nomeEscola());
+            metadata.put("sensor_location", sensor.localizacao());
 
             AlertDTO alertDTO = new AlertDTO();
-            alertDTO.setSensorId(sensor.getId());
-            alertDTO.setEscolaId(sensor.getEscola().getId());
+            alertDTO.setSensorId(sensor.id());
+            alertDTO.setEscolaId(sensor.escolaId());
             alertDTO.setTipo("Sinal Fraco");
             alertDTO.setNivel("Baixo");
             alertDTO.setStatus("Emitido");
             alertDTO.setTimestamp(LocalDateTime.now());
-            alertDTO.setNomeEscola(sensor.getEscola().getNome());
-            alertDTO.setLocalizacaoSensor(sensor.getLocalizacao());
+            alertDTO.setNomeEscola(sensor.nomeEscola());
+            alertDTO.setLocalizacaoSensor(sensor.localizacao());
             alertDTO.setMetadata(metadata);
             alertDTO.setMensagem(String.format(
                 "Sinal fraco detectado no sensor %s da escola %s. Intensidade: %d dBm",
-                sensor.getLocalizacao(), sensor.getEscola().getNome(), signalStrength
+                sensor.localizacao(), sensor.nomeEscola(), signalStrength
             ));
 
-            rabbitTemplate.convertAndSend(alertsExchange, "alerts.maintenance", alertDTO);
+            rabbitPublicadorService.publicar(alertsExchange, "alerts.maintenance", alertDTO);
             
-            logger.info("Alerta de sinal fraco enviado para sensor {}", sensor.getId());
+            logger.info("Alerta de sinal fraco enviado para sensor {}", sensor.id());
             
         } catch (Exception e) {
-            logger.error("Erro ao enviar alerta de sinal fraco para sensor {}: {}", sensor.getId(), e.getMessage());
+            logger.error("Erro ao enviar alerta de sinal fraco para sensor {}: {}", sensor.id(), e.getMessage());
         }
     }
 
     /**
      * Envia notificação de possível movimentação do sensor
      */
-    public void sendSensorMovementAlert(Sensor sensor, String newLocation) {
+    public void sendSensorMovementAlert(SensorInfo sensor, String newLocation) {
         try {
             Map<String, Object> metadata = new HashMap<>();
-            metadata.put("sensor_id", sensor.getId());
-            metadata.put("expected_location", sensor.getLocalizacao());
+            metadata.put("sensor_id", sensor.id());
+            metadata.put("expected_location", sensor.localizacao());
             metadata.put("detected_location", newLocation);
             metadata.put("alert_type", "SENSOR_MOVEMENT");
-            metadata.put("school_name", sensor.getEscola().getNome());
+            metadata.put("school_name", sensor.nomeEscola());
 
             AlertDTO alertDTO = new AlertDTO();
-            alertDTO.setSensorId(sensor.getId());
-            alertDTO.setEscolaId(sensor.getEscola().getId());
+            alertDTO.setSensorId(sensor.id());
+            alertDTO.setEscolaId(sensor.escolaId());
             alertDTO.setTipo("Movimentação de Sensor");
             alertDTO.setNivel("Alto");
             alertDTO.setStatus("Emitido");
             alertDTO.setTimestamp(LocalDateTime.now());
-            alertDTO.setNomeEscola(sensor.getEscola().getNome());
-            alertDTO.setLocalizacaoSensor(sensor.getLocalizacao());
+            alertDTO.setNomeEscola(sensor.nomeEscola());
+            alertDTO.setLocalizacaoSensor(sensor.localizacao());
             alertDTO.setMetadata(metadata);
             alertDTO.setMensagem(String.format(
                 "Possível movimentação detectada no sensor da escola %s. " +
                 "Localização esperada: %s, Localização detectada: %s",
-                sensor.getEscola().getNome(), sensor.getLocalizacao(), newLocation
+                sensor.nomeEscola(), sensor.localizacao(), newLocation
             ));
 
-            rabbitTemplate.convertAndSend(alertsExchange, "alerts.security", alertDTO);
+            rabbitPublicadorService.publicar(alertsExchange, "alerts.security", alertDTO);
             
-            logger.warn("Alerta de movimentação de sensor enviado para sensor {}", sensor.getId());
+            logger.warn("Alerta de movimentação de sensor enviado para sensor {}", sensor.id());
             
         } catch (Exception e) {
-            logger.error("Erro ao enviar alerta de movimentação para sensor {}: {}", sensor.getId(), e.getMessage());
+            logger.error("Erro ao enviar alerta de movimentação para sensor {}: {}", sensor.id(), e.getMessage());
+        }
+    }
+
+    /**
+     * Envia notificação de leitura fora da linha de base do sensor, pelo outbox na transação corrente
+     *
+     * @param metrica "Temperatura" ou "Umidade"
+     */
+    public void sendAnomalyAlert(SensorInfo sensor, String metrica, double valor, double media, double desvioPadrao) {
+        double zScore = desvioPadrao > 0 ? (valor - media) / desvioPadrao : 0;
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("sensor_id", sensor.id());
+        metadata.put("metric", metrica);
+        metadata.put("value", valor);
+        metadata.put("baseline_mean", media);
+        metadata.put("baseline_stddev", desvioPadrao);
+        metadata.put("z_score", zScore);
+        metadata.put("alert_type", "ANOMALY");
+        metadata.put("school_name", sensor.nomeEscola());
+        metadata.put("sensor_location", sensor.localizacao());
+
+        String unidade = "Temperatura".equals(metrica) ? "°C" : "%";
+
+        AlertDTO alertDTO = new AlertDTO();
+        alertDTO.setSensorId(sensor.id());
+        alertDTO.setEscolaId(sensor.escolaId());
+        alertDTO.setTipo("Anomalia de " + metrica);
+        alertDTO.setNivel("Médio");
+        alertDTO.setStatus("Emitido");
+        alertDTO.setTimestamp(LocalDateTime.now());
+        alertDTO.setNomeEscola(sensor.nomeEscola());
+        alertDTO.setLocalizacaoSensor(sensor.localizacao());
+        alertDTO.setMetadata(metadata);
+        alertDTO.setMensagem(String.format(
+            "%s fora do padrão no sensor %s da escola %s: %.1f%s (habitual %.1f%s)",
+            metrica, sensor.localizacao(), sensor.nomeEscola(), valor, unidade, media, unidade
+        ));
+
+        notificacaoOutboxService.registrar(alertsExchange, "alerts.anomaly", alertDTO);
+
+        logger.info("Alerta de anomalia de {} registrado para envio para sensor {}", metrica.toLowerCase(), sensor.id());
+    }
+
+    /**
+     * Envia notificação de sensor com leituras repetidas (possível defeito), pelo outbox
+     */
+    public void sendStuckSensorAlert(SensorInfo sensor, double temperatura, double umidade, int leiturasRepetidas) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("sensor_id", sensor.id());
+        metadata.put("temperature", temperatura);
+        metadata.put("humidity", umidade);
+        metadata.put("repeated_readings", leiturasRepetidas);
+        metadata.put("alert_type", "STUCK_SENSOR");
+        metadata.put("school_name", sensor.nomeEscola());
+        metadata.put("sensor_location", sensor.localizacao());
+
+        AlertDTO alertDTO = new AlertDTO();
+        alertDTO.setSensorId(sensor.id());
+        alertDTO.setEscolaId(sensor.escolaId());
+        alertDTO.setTipo("Sensor Travado");
+        alertDTO.setNivel("Médio");
+        alertDTO.setStatus("Emitido");
+        alertDTO.setTimestamp(LocalDateTime.now());
+        alertDTO.setNomeEscola(sensor.nomeEscola());
+        alertDTO.setLocalizacaoSensor(sensor.localizacao());
+        alertDTO.setMetadata(metadata);
+        alertDTO.setMensagem(String.format(
+            "Sensor %s da escola %s repetiu a mesma leitura (%.1f°C, %.1f%%) %d vezes. Verifique o dispositivo.",
+            sensor.localizacao(), sensor.nomeEscola(), temperatura, umidade, leiturasRepetidas
+        ));
+
+        notificacaoOutboxService.registrar(alertsExchange, "alerts.maintenance", alertDTO);
+
+        logger.info("Alerta de sensor travado registrado para envio para sensor {}", sensor.id());
+    }
+
+    /**
+     * Envia notificação de sensor sem leituras dentro do tempo esperado
+     */
+    public void sendSensorOfflineAlert(SensorInfo sensor, LocalDateTime ultimaLeitura, Duration silencio) {
+        try {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("sensor_id", sensor.id());
+            metadata.put("last_reading", ultimaLeitura);
+            metadata.put("silence_minutes", silencio.toMinutes());
+            metadata.put("alert_type", "SENSOR_OFFLINE");
+            metadata.put("school_name", sensor.nomeEscola());
+            metadata.put("sensor_location", sensor.localizacao());
+
+            AlertDTO alertDTO = new AlertDTO();
+            alertDTO.setSensorId(sensor.id());
+            alertDTO.setEscolaId(sensor.escolaId());
+            alertDTO.setTipo(Alerta.TipoAlerta.SENSOR_OFFLINE.getDescricao());
+            alertDTO.setNivel("Médio");
+            alertDTO.setStatus("Emitido");
+            alertDTO.setTimestamp(LocalDateTime.now());
+            alertDTO.setNomeEscola(sensor.nomeEscola());
+            alertDTO.setLocalizacaoSensor(sensor.localizacao());
+            alertDTO.setMetadata(metadata);
+            alertDTO.setMensagem(String.format(
+                "Sensor %s da escola %s sem leituras há %d minutos (última em %s). Verifique energia e conexão.",
+                sensor.localizacao(), sensor.nomeEscola(), silencio.toMinutes(), ultimaLeitura
+            ));
+
+            rabbitPublicadorService.publicar(alertsExchange, "alerts.maintenance", alertDTO);
+
+            logger.info("Alerta de sensor offline enviado para sensor {}", sensor.id());
+
+        } catch (Exception e) {
+            logger.error("Erro ao enviar alerta de sensor offline para sensor {}: {}", sensor.id(), e.getMessage());
         }
     }
 
@@ -185,7 +309,7 @@ public class NotificationService {
                 readingDTO.getUmidade().doubleValue()
             ));
 
-            rabbitTemplate.convertAndSend(alertsExchange, "alerts.system", alertDTO);
+            rabbitPublicadorService.publicar(alertsExchange, "alerts.system", alertDTO);
             
             logger.error("Alerta de falha no processamento enviado para sensor {}", readingDTO.getSensorId());
             
@@ -202,7 +326,7 @@ public class NotificationService {
             // Adicionar destinatários baseado no tipo e nível do alerta
             alertDTO.setCanaisNotificacao(Arrays.asList("email"));
             
-            rabbitTemplate.convertAndSend(alertsExchange, "alerts.email", alertDTO);
+            rabbitPublicadorService.publicar(alertsExchange, "alerts.email", alertDTO);
             
             logger.info("Notificação por email enviada para alerta {}", alertDTO.getAlertId());
             
@@ -220,7 +344,7 @@ public class NotificationService {
             if (alertDTO.isCritico()) {
                 alertDTO.setCanaisNotificacao(Arrays.asList("sms"));
                 
-                rabbitTemplate.convertAndSend(alertsExchange, "alerts.sms", alertDTO);
+                rabbitPublicadorService.publicar(alertsExchange, "alerts.sms", alertDTO);
                 
                 logger.info("Notificação por SMS enviada para alerta crítico {}", alertDTO.getAlertId());
             }
@@ -234,18 +358,23 @@ public class NotificationService {
      * Converte entidade Alerta para DTO
      */
     private AlertDTO convertToDTO(Alerta alerta) {
+        // Dados de sensor/escola vêm do registro em memória, evitando carregar os proxies lazy
+        Sensor sensor = alerta.getLeitura().getSensor();
+        SensorInfo info = sensorRegistryService.findSensor(sensor.getId())
+                .orElseThrow(() -> new IllegalStateException("Sensor não encontrado com ID: " + sensor.getId()));
+
         AlertDTO dto = new AlertDTO();
         dto.setAlertId(alerta.getId());
         dto.setLeituraId(alerta.getLeitura().getId());
-        dto.setSensorId(alerta.getLeitura().getSensor().getId());
-        dto.setEscolaId(alerta.getLeitura().getSensor().getEscola().getId());
+        dto.setSensorId(info.id());
+        dto.setEscolaId(info.escolaId());
         dto.setTipo(alerta.getTipo());
         dto.setMensagem(alerta.getMensagem());
         dto.setNivel(alerta.getNivel());
         dto.setStatus(alerta.getStatus());
         dto.setTimestamp(alerta.getTimestamp());
-        dto.setNomeEscola(alerta.getLeitura().getSensor().getEscola().getNome());
-        dto.setLocalizacaoSensor(alerta.getLeitura().getSensor().getLocalizacao());
+        dto.setNomeEscola(info.nomeEscola());
+        dto.setLocalizacaoSensor(info.localizacao());
         dto.setTemperatura(alerta.getLeitura().getTemperatura().doubleValue());
         dto.setUmidade(alerta.getLeitura().getUmidade().doubleValue());
         
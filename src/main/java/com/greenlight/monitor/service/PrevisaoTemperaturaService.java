@@ -0,0 +1,347 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.LeituraAgregada;
+import com.greenlight.monitor.repository.LeituraAgregadaRepository;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.service.AlertaRegraService.RegraAlerta;
+import com.greenlight.monitor.service.AlertaRegraService.TabelaRegras;
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Previsão de curto prazo da temperatura de cada sensor para alertas antecipados de calor.
+ * Usa Holt-Winters aditivo com sazonalidade diária (24 índices horários), adaptado a intervalos
+ * irregulares entre leituras: nível, tendência (°C por minuto) e índices sazonais são atualizados
+ * em O(1) a cada leitura. Os índices sazonais são inicializados com os agregados horários dos
+ * últimos dias. Quando a previsão para os próximos minutos atinge a regra de alerta configurada
+ * (com as sobrescritas da escola/sensor) e a leitura atual ainda não, é gerado um alerta "Previsão de Calor".
+ * O modelo de um sensor alterado por uma transação que não confirmou é descartado e refeito na próxima
+ * leitura com as leituras confirmadas do banco (mantendo os índices sazonais).
+ */
+@Service
+public class PrevisaoTemperaturaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrevisaoTemperaturaService.class);
+
+    private static final int HORAS_DIA = 24;
+
+    // Recurso da transação corrente com os sensores cujos modelos ela alterou
+    private static final Object SENSORES_DA_TRANSACAO = new Object();
+
+    // Intervalo mínimo (minutos) usado na estimativa da tendência, evita divisões por intervalos ínfimos
+    private static final double INTERVALO_MINIMO = 1.0;
+
+    /**
+     * Previsão que atingiu a regra de alerta
+     *
+     * @param minutos horizonte em que o limite é atingido
+     */
+    public record Previsao(String tipo, String nivel, String mensagem, double temperatura, long minutos) {
+    }
+
+    /**
+     * Estado do modelo de um sensor
+     */
+    private static final class Modelo {
+        private final double[] sazonal;
+        private double nivel;
+        private double tendencia;
+        private long ultimoInstante = Long.MIN_VALUE;
+        private int leituras;
+
+        private Modelo(double[] sazonal) {
+            this.sazonal = sazonal;
+        }
+    }
+
+    @Autowired
+    private LeituraAgregadaRepository leituraAgregadaRepository;
+
+    @Autowired
+    private LeituraRepository leituraRepository;
+
+    @Autowired
+    private AlertaRegraService alertaRegraService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.alerts.forecast.enabled:true}")
+    private boolean habilitado;
+
+    // Suavização do nível, da tendência e dos índices sazonais
+    @Value("${app.alerts.forecast.alpha:0.3}")
+    private double alpha;
+
+    @Value("${app.alerts.forecast.beta:0.1}")
+    private double beta;
+
+    @Value("${app.alerts.forecast.gamma:0.05}")
+    private double gamma;
+
+    // Horizontes avaliados: o mais curto e o mais longo
+    @Value("${app.alerts.forecast.min-horizon:30m}")
+    private Duration horizonteMinimo;
+
+    @Value("${app.alerts.forecast.horizon:60m}")
+    private Duration horizonte;
+
+    // Leituras desde o (re)início do modelo antes de prever
+    @Value("${app.alerts.forecast.warmup-readings:6}")
+    private int leiturasAquecimento;
+
+    // Intervalo sem leituras após o qual nível e tendência são reiniciados
+    @Value("${app.alerts.forecast.reset-gap:2h}")
+    private Duration intervaloReinicio;
+
+    // Tendência máxima considerada (°C por hora)
+    @Value("${app.alerts.forecast.max-trend-per-hour:6.0}")
+    private double tendenciaMaximaHora;
+
+    // Dias de agregados horários usados para inicializar a sazonalidade
+    @Value("${app.alerts.forecast.seasonality-days:7}")
+    private int diasSazonalidade;
+
+    // Regra cujo limite a previsão não deve atingir (a de maior prioridade do grupo também conta)
+    @Value("${app.alerts.forecast.rule:calor-extremo}")
+    private String regraId;
+
+    @Value("${app.alerts.forecast.tipo:Previsão de Calor}")
+    private String tipo;
+
+    @Value("${app.alerts.forecast.nivel:Alto}")
+    private String nivel;
+
+    private final ConcurrentHashMap<Long, Modelo> modelos = new ConcurrentHashMap<>();
+
+    // Perfis sazonais iniciais por sensor (consumidos na criação do modelo)
+    private final Map<Long, double[]> perfisIniciais = new ConcurrentHashMap<>();
+
+    // Sensores cujo modelo foi descartado após rollback (refeitos com as leituras do banco)
+    private final Set<Long> invalidados = ConcurrentHashMap.newKeySet();
+
+    private Counter previsoesAlerta;
+
+    @PostConstruct
+    public void init() {
+        previsoesAlerta = Counter.builder("alerts.forecast.raised")
+                .description("Previsões que atingiram a regra de alerta")
+                .register(meterRegistry);
+        Gauge.builder("alerts.forecast.models", modelos, Map::size)
+                .description("Sensores com modelo de previsão em memória")
+                .register(meterRegistry);
+
+        if (!habilitado || diasSazonalidade <= 0) {
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        List<Object[]> linhas = leituraAgregadaRepository.findTemperaturaPorHoraDoDia(
+                LeituraAgregada.Resolucao.HORA, LocalDateTime.now().minusDays(diasSazonalidade));
+        carregarPerfis(linhas);
+        logger.info("Sazonalidade diária de {} sensores inicializada com {} agregados horários em {} ms",
+                perfisIniciais.size(), linhas.size(), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Índices sazonais aditivos: média da hora do dia menos a média das horas com dados
+     */
+    private void carregarPerfis(List<Object[]> linhas) {
+        Map<Long, double[]> somas = new HashMap<>();
+        Map<Long, long[]> quantidades = new HashMap<>();
+        for (Object[] linha : linhas) {
+            long sensorId = ((Number) linha[0]).longValue();
+            int hora = ((Number) linha[1]).intValue();
+            somas.computeIfAbsent(sensorId, id -> new double[HORAS_DIA])[hora] += ((Number) linha[2]).doubleValue();
+            quantidades.computeIfAbsent(sensorId, id -> new long[HORAS_DIA])[hora] += ((Number) linha[3]).longValue();
+        }
+
+        for (Map.Entry<Long, double[]> entrada : somas.entrySet()) {
+            double[] soma = entrada.getValue();
+            long[] quantidade = quantidades.get(entrada.getKey());
+            double[] perfil = new double[HORAS_DIA];
+            double somaMedias = 0;
+            int horas = 0;
+            for (int h = 0; h < HORAS_DIA; h++) {
+                if (quantidade[h] > 0) {
+                    perfil[h] = soma[h] / quantidade[h];
+                    somaMedias += perfil[h];
+                    horas++;
+                }
+            }
+            if (horas == 0) {
+                continue;
+            }
+            double media = somaMedias / horas;
+            for (int h = 0; h < HORAS_DIA; h++) {
+                perfil[h] = quantidade[h] > 0 ? perfil[h] - media : 0;
+            }
+            perfisIniciais.put(entrada.getKey(), perfil);
+        }
+    }
+
+    /**
+     * Atualiza o modelo do sensor com a leitura e verifica a previsão.
+     *
+     * @param disparadas regras já disparadas pela própria leitura
+     * @return previsão que atinge a regra configurada, ou null
+     */
+    public Previsao registrar(Leitura leitura, TabelaRegras tabela, long disparadas) {
+        if (!habilitado) {
+            return null;
+        }
+
+        int indiceRegra = tabela.indice(regraId);
+        long sensorId = leitura.getSensor().getId();
+        LocalDateTime timestamp = leitura.getTimestamp();
+        long instante = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        double temperatura = leitura.getTemperatura().doubleValue();
+
+        double previstaCurta;
+        double previstaLonga;
+        Modelo modelo = modeloDoSensor(sensorId, timestamp);
+        Transacoes.invalidarSeNaoConfirmar(SENSORES_DA_TRANSACAO, sensorId, this::invalidar);
+        synchronized (modelo) {
+            if (instante <= modelo.ultimoInstante) {
+                return null;
+            }
+            atualizar(modelo, instante, timestamp.getHour(), temperatura);
+            if (modelo.leituras < leiturasAquecimento || indiceRegra < 0) {
+                return null;
+            }
+
+            int minutoDoDia = timestamp.getHour() * 60 + timestamp.getMinute();
+            previstaCurta = prever(modelo, minutoDoDia, horizonteMinimo.toMinutes());
+            previstaLonga = prever(modelo, minutoDoDia, horizonte.toMinutes());
+        }
+
+        // A leitura atual já atinge a regra (ou outra de maior prioridade do grupo): o alerta é o da regra
+        long grupo = tabela.getMascaraGrupo(indiceRegra);
+        if (atinge(disparadas, grupo, indiceRegra)) {
+            return null;
+        }
+
+        double umidade = leitura.getUmidade().doubleValue();
+        long minutos;
+        double prevista;
+        if (atinge(alertaRegraService.avaliar(tabela, sensorId, previstaCurta, umidade), grupo, indiceRegra)) {
+            minutos = horizonteMinimo.toMinutes();
+            prevista = previstaCurta;
+        } else if (atinge(alertaRegraService.avaliar(tabela, sensorId, previstaLonga, umidade), grupo, indiceRegra)) {
+            minutos = horizonte.toMinutes();
+            prevista = previstaLonga;
+        } else {
+            return null;
+        }
+
+        previsoesAlerta.increment();
+        RegraAlerta regra = tabela.getRegra(indiceRegra);
+        logger.info("Previsão de {}°C em até {} minutos para o sensor {} (regra {})",
+                String.format("%.1f", prevista), minutos, sensorId, regra.id());
+        String mensagem = String.format(
+                "Temperatura prevista de %.1f°C em até %d minutos (atual %.1f°C), atingindo o nível de \"%s\". " +
+                "Considere remanejar as turmas ou ventilar o ambiente.",
+                prevista, minutos, temperatura, regra.tipo());
+        return new Previsao(tipo, nivel, mensagem, prevista, minutos);
+    }
+
+    /**
+     * Modelo do sensor; após um rollback, refeito com as leituras confirmadas anteriores à leitura
+     * corrente (as do próprio lote, já gravadas na transação, ficam de fora)
+     */
+    private Modelo modeloDoSensor(long sensorId, LocalDateTime timestamp) {
+        if (invalidados.remove(sensorId)) {
+            Modelo recarregado = criarModelo(sensorId);
+            // Nível e tendência convergem em poucas leituras; um intervalo maior que reset-gap os reiniciaria
+            for (Object[] valor : leituraRepository.findValoresBySensorIdEntre(sensorId,
+                    timestamp.minus(intervaloReinicio), timestamp)) {
+                LocalDateTime momento = (LocalDateTime) valor[0];
+                long instante = momento.toInstant(ZoneOffset.UTC).toEpochMilli();
+                if (instante > recarregado.ultimoInstante) {
+                    atualizar(recarregado, instante, momento.getHour(), ((BigDecimal) valor[1]).doubleValue());
+                }
+            }
+            modelos.put(sensorId, recarregado);
+            return recarregado;
+        }
+        return modelos.computeIfAbsent(sensorId, this::criarModelo);
+    }
+
+    /**
+     * Descarta o modelo do sensor (chamado quando a transação que o alterou não confirma),
+     * guardando os índices sazonais para o modelo refeito
+     */
+    private void invalidar(long sensorId) {
+        invalidados.add(sensorId);
+        Modelo descartado = modelos.remove(sensorId);
+        if (descartado != null) {
+            synchronized (descartado) {
+                perfisIniciais.put(sensorId, descartado.sazonal.clone());
+            }
+        }
+    }
+
+    /**
+     * Atualização de Holt-Winters aditivo com intervalo irregular (tendência por minuto)
+     */
+    private void atualizar(Modelo modelo, long instante, int hora, double temperatura) {
+        double[] sazonal = modelo.sazonal;
+        double intervalo = (instante - modelo.ultimoInstante) / 60000.0;
+        modelo.ultimoInstante = instante;
+
+        if (modelo.leituras == 0 || intervalo > intervaloReinicio.toMinutes()) {
+            modelo.nivel = temperatura - sazonal[hora];
+            modelo.tendencia = 0;
+            modelo.leituras = 1;
+            return;
+        }
+
+        double nivelAnterior = modelo.nivel;
+        modelo.nivel = alpha * (temperatura - sazonal[hora])
+                + (1 - alpha) * (nivelAnterior + modelo.tendencia * intervalo);
+        double tendencia = beta * (modelo.nivel - nivelAnterior) / Math.max(intervalo, INTERVALO_MINIMO)
+                + (1 - beta) * modelo.tendencia;
+        double tendenciaMaxima = tendenciaMaximaHora / 60;
+        modelo.tendencia = Math.max(-tendenciaMaxima, Math.min(tendenciaMaxima, tendencia));
+        sazonal[hora] = gamma * (temperatura - modelo.nivel) + (1 - gamma) * sazonal[hora];
+        if (modelo.leituras < Integer.MAX_VALUE) {
+            modelo.leituras++;
+        }
+    }
+
+    private static double prever(Modelo modelo, int minutoDoDia, long minutos) {
+        int hora = (int) (((minutoDoDia + minutos) / 60) % HORAS_DIA);
+        return modelo.nivel + modelo.tendencia * minutos + modelo.sazonal[hora];
+    }
+
+    /**
+     * A regra ou outra de maior prioridade do seu grupo está entre as disparadas
+     */
+    private static boolean atinge(long disparadas, long grupo, int indiceRegra) {
+        long doGrupo = disparadas & grupo;
+        return doGrupo != 0 && Long.numberOfTrailingZeros(doGrupo) <= indiceRegra;
+    }
+
+    private Modelo criarModelo(long sensorId) {
+        double[] perfil = perfisIniciais.remove(sensorId);
+        return new Modelo(perfil != null ? perfil : new double[HORAS_DIA]);
+    }
+}
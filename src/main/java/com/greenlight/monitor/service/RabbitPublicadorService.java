@@ -0,0 +1,237 @@
+package com.greenlight.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publicação de notificações no RabbitMQ.
+ * No modo "simple" cada mensagem é enviada de forma síncrona pelo RabbitTemplate padrão.
+ * No modo "confirmed" as mensagens entram em uma fila limitada e uma thread publicadora as envia
+ * em lotes, cada lote em um único canal da conexão de publicação, com confirmações correlacionadas
+ * do broker: o número de mensagens sem confirmação é limitado (max-in-flight) e mensagens
+ * rejeitadas (nack) ou sem confirmação no prazo são reenviadas até max-retries.
+ */
+@Service
+public class RabbitPublicadorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitPublicadorService.class);
+
+    private record Envio(String exchange, String routingKey, Object payload, int tentativa) {
+    }
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    @Qualifier("publisherRabbitTemplate")
+    private RabbitTemplate publisherRabbitTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // simple: envio síncrono | confirmed: lotes com confirmação do broker
+    @Value("${app.rabbitmq.publisher.mode:simple}")
+    private String modo;
+
+    @Value("${app.rabbitmq.publisher.queue-capacity:10000}")
+    private int capacidadeFila;
+
+    @Value("${app.rabbitmq.publisher.batch-size:50}")
+    private int tamanhoLote;
+
+    @Value("${app.rabbitmq.publisher.max-in-flight:1000}")
+    private int maximoEmVoo;
+
+    @Value("${app.rabbitmq.publisher.confirm-timeout:10s}")
+    private Duration tempoConfirmacao;
+
+    @Value("${app.rabbitmq.publisher.max-retries:3}")
+    private int maximoTentativas;
+
+    private boolean confirmado;
+    private BlockingQueue<Envio> fila;
+    private Semaphore emVoo;
+    private Thread publicador;
+    private volatile boolean ativo = true;
+
+    private Timer latenciaEnvio;
+    private Timer latenciaConfirmacao;
+    private Counter confirmadas;
+    private Counter reenviadas;
+    private Counter descartadas;
+
+    @PostConstruct
+    public void init() {
+        latenciaEnvio = Timer.builder("rabbitmq.publish.send.latency")
+                .description("Tempo de envio de uma mensagem ao broker")
+                .tag("mode", modo)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        confirmado = "confirmed".equalsIgnoreCase(modo);
+        if (!confirmado) {
+            return;
+        }
+        if (!publisherRabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+            throw new IllegalStateException("app.rabbitmq.publisher.mode=confirmed requer " +
+                    "spring.rabbitmq.publisher-confirm-type=correlated");
+        }
+
+        fila = new ArrayBlockingQueue<>(capacidadeFila);
+        emVoo = new Semaphore(maximoEmVoo);
+        // Um lote inteiro precisa caber no limite de mensagens sem confirmação
+        tamanhoLote = Math.min(tamanhoLote, maximoEmVoo);
+
+        latenciaConfirmacao = Timer.builder("rabbitmq.publish.confirm.latency")
+                .description("Tempo entre o envio e a confirmação do broker")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        confirmadas = Counter.builder("rabbitmq.publish").tag("result", "ack").register(meterRegistry);
+        reenviadas = Counter.builder("rabbitmq.publish").tag("result", "retry").register(meterRegistry);
+        descartadas = Counter.builder("rabbitmq.publish").tag("result", "dropped").register(meterRegistry);
+        Gauge.builder("rabbitmq.publish.queue.size", fila, BlockingQueue::size)
+                .description("Mensagens aguardando envio")
+                .register(meterRegistry);
+        Gauge.builder("rabbitmq.publish.in.flight", emVoo, s -> maximoEmVoo - s.availablePermits())
+                .description("Mensagens enviadas aguardando confirmação")
+                .register(meterRegistry);
+
+        publicador = new Thread(this::publicarLotes, "rabbit-publicador");
+        publicador.setDaemon(true);
+        publicador.start();
+        logger.info("Publicação com confirmações ativa: lotes de {}, até {} mensagens sem confirmação",
+                tamanhoLote, maximoEmVoo);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ativo = false;
+        if (publicador != null) {
+            publicador.interrupt();
+            publicador.join(TimeUnit.SECONDS.toMillis(1));
+            if (!fila.isEmpty()) {
+                logger.warn("{} notificações não foram publicadas antes do encerramento", fila.size());
+            }
+        }
+    }
+
+    /**
+     * Publica a mensagem. No modo "confirmed" apenas a enfileira (nunca bloqueia o chamador);
+     * com a fila cheia a mensagem é descartada.
+     */
+    public void publicar(String exchange, String routingKey, Object payload) {
+        if (!confirmado) {
+            long inicio = System.nanoTime();
+            rabbitTemplate.convertAndSend(exchange, routingKey, payload);
+            latenciaEnvio.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            return;
+        }
+        enfileirar(new Envio(exchange, routingKey, payload, 1));
+    }
+
+    private void enfileirar(Envio envio) {
+        if (!fila.offer(envio)) {
+            descartadas.increment();
+            logger.warn("Fila de publicação cheia, mensagem para {} descartada", envio.routingKey());
+        }
+    }
+
+    private void publicarLotes() {
+        List<Envio> lote = new ArrayList<>(tamanhoLote);
+        while (ativo) {
+            try {
+                Envio primeiro = fila.poll(1, TimeUnit.SECONDS);
+                if (primeiro == null) {
+                    continue;
+                }
+                lote.add(primeiro);
+                fila.drainTo(lote, tamanhoLote - 1);
+
+                // Reserva as vagas de confirmação antes do envio (bloqueia com o limite atingido)
+                emVoo.acquire(lote.size());
+                enviarLote(lote);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Envia o lote em um único canal dedicado, sem aguardar as confirmações
+     */
+    private void enviarLote(List<Envio> lote) {
+        // Enviados com sucesso (o lote pode falhar no meio)
+        int[] enviados = {0};
+        try {
+            publisherRabbitTemplate.invoke(operacoes -> {
+                for (Envio envio : lote) {
+                    CorrelationData correlacao = new CorrelationData();
+                    long inicio = System.nanoTime();
+                    operacoes.convertAndSend(envio.exchange(), envio.routingKey(), envio.payload(), correlacao);
+                    latenciaEnvio.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                    acompanharConfirmacao(envio, correlacao, inicio);
+                    enviados[0]++;
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.warn("Falha ao publicar lote de {} mensagens: {}", lote.size(), e.getMessage());
+        }
+
+        // Mensagens não enviadas: vagas liberadas e nova tentativa
+        for (int i = enviados[0]; i < lote.size(); i++) {
+            emVoo.release();
+            tentarNovamente(lote.get(i), "falha no envio");
+        }
+    }
+
+    private void acompanharConfirmacao(Envio envio, CorrelationData correlacao, long inicio) {
+        correlacao.getFuture()
+                .orTimeout(tempoConfirmacao.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((confirmacao, erro) -> {
+                    emVoo.release();
+                    latenciaConfirmacao.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                    if (erro == null && confirmacao.isAck()) {
+                        confirmadas.increment();
+                    } else {
+                        tentarNovamente(envio, erro != null ? "sem confirmação" : confirmacao.getReason());
+                    }
+                });
+    }
+
+    private void tentarNovamente(Envio envio, String motivo) {
+        if (envio.tentativa() >= maximoTentativas) {
+            descartadas.increment();
+            logger.error("Mensagem para {} descartada após {} tentativas: {}",
+                    envio.routingKey(), envio.tentativa(), motivo);
+            return;
+        }
+        reenviadas.increment();
+        logger.debug("Reenviando mensagem para {} ({}): {}", envio.routingKey(), envio.tentativa(), motivo);
+        enfileirar(new Envio(envio.exchange(), envio.routingKey(), envio.payload(), envio.tentativa() + 1));
+    }
+}
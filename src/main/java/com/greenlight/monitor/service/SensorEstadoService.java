@@ -0,0 +1,210 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.SensorEstado;
+import com.greenlight.monitor.repository.SensorEstadoRepository;
+import com.greenlight.monitor.service.SensorRegistryService.EscolaInfo;
+import com.greenlight.monitor.util.Transacoes;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantém o estado atual de cada sensor (última leitura e último nível de alerta)
+ * na tabela sensor_estado e em um mapa em memória.
+ * As consultas de últimas leituras custam O(sensores), independentemente do tamanho do histórico.
+ */
+@Service
+public class SensorEstadoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorEstadoService.class);
+
+    // Só sobrescreve o estado se a leitura for mais recente que a registrada
+    private static final String UPSERT_POSTGRESQL = """
+            INSERT INTO sensor_estado (id_sensor, id_leitura, temperatura, umidade, timestamp_leitura, atualizado_em)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (id_sensor) DO UPDATE SET
+                id_leitura = EXCLUDED.id_leitura,
+                temperatura = EXCLUDED.temperatura,
+                umidade = EXCLUDED.umidade,
+                timestamp_leitura = EXCLUDED.timestamp_leitura,
+                atualizado_em = EXCLUDED.atualizado_em
+            WHERE sensor_estado.timestamp_leitura <= EXCLUDED.timestamp_leitura
+            """;
+
+    // Mesma condição no MERGE dos demais bancos (H2 em desenvolvimento)
+    private static final String MERGE = """
+            MERGE INTO sensor_estado e
+            USING (SELECT CAST(? AS BIGINT) AS id_sensor, CAST(? AS BIGINT) AS id_leitura,
+                          CAST(? AS NUMERIC(5, 2)) AS temperatura, CAST(? AS NUMERIC(5, 2)) AS umidade,
+                          CAST(? AS TIMESTAMP(6)) AS timestamp_leitura, CAST(? AS TIMESTAMP(6)) AS atualizado_em) n
+            ON e.id_sensor = n.id_sensor
+            WHEN MATCHED AND e.timestamp_leitura <= n.timestamp_leitura THEN UPDATE SET
+                id_leitura = n.id_leitura,
+                temperatura = n.temperatura,
+                umidade = n.umidade,
+                timestamp_leitura = n.timestamp_leitura,
+                atualizado_em = n.atualizado_em
+            WHEN NOT MATCHED THEN
+                INSERT (id_sensor, id_leitura, temperatura, umidade, timestamp_leitura, atualizado_em)
+                VALUES (n.id_sensor, n.id_leitura, n.temperatura, n.umidade, n.timestamp_leitura, n.atualizado_em)
+            """;
+
+    /**
+     * Estado atual (imutável) de um sensor
+     */
+    public record EstadoSensor(long sensorId, long leituraId, BigDecimal temperatura, BigDecimal umidade,
+                               LocalDateTime timestamp, LocalDateTime atualizadoEm,
+                               String ultimoNivelAlerta, LocalDateTime ultimoAlertaEm) {
+
+        boolean isMaisRecenteQue(EstadoSensor outro) {
+            return outro == null || !timestamp.isBefore(outro.timestamp);
+        }
+
+        EstadoSensor comLeitura(EstadoSensor leitura) {
+            return new EstadoSensor(sensorId, leitura.leituraId, leitura.temperatura, leitura.umidade,
+                    leitura.timestamp, leitura.atualizadoEm, ultimoNivelAlerta, ultimoAlertaEm);
+        }
+
+        EstadoSensor comAlerta(String nivel, LocalDateTime em) {
+            return new EstadoSensor(sensorId, leituraId, temperatura, umidade, timestamp, atualizadoEm, nivel, em);
+        }
+    }
+
+    @Autowired
+    private SensorEstadoRepository sensorEstadoRepository;
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<Long, EstadoSensor> estados = new ConcurrentHashMap<>();
+
+    // PostgreSQL: INSERT ... ON CONFLICT condicional; demais bancos (H2 em desenvolvimento): MERGE
+    private boolean upsertNativo;
+
+    @PostConstruct
+    public void init() {
+        String banco = jdbcTemplate.execute((ConnectionCallback<String>) conn ->
+                conn.getMetaData().getDatabaseProductName());
+        upsertNativo = "PostgreSQL".equalsIgnoreCase(banco);
+
+        for (SensorEstado estado : sensorEstadoRepository.findAll()) {
+            estados.put(estado.getSensorId(), new EstadoSensor(estado.getSensorId(), estado.getLeituraId(),
+                    estado.getTemperatura(), estado.getUmidade(), estado.getTimestampLeitura(),
+                    estado.getAtualizadoEm(), estado.getUltimoNivelAlerta(), estado.getUltimoAlertaEm()));
+        }
+        logger.info("Estado atual carregado para {} sensores", estados.size());
+    }
+
+    /**
+     * Registra as leituras ingeridas como estado atual dos seus sensores.
+     * A tabela é atualizada na transação corrente; o mapa em memória, após o commit.
+     */
+    @Transactional
+    public void registrarLeituras(List<Leitura> leituras) {
+        // Apenas a leitura mais recente de cada sensor no lote
+        Map<Long, EstadoSensor> maisRecentes = new HashMap<>();
+        LocalDateTime agora = LocalDateTime.now();
+        for (Leitura leitura : leituras) {
+            long sensorId = leitura.getSensor().getId();
+            EstadoSensor estado = new EstadoSensor(sensorId, leitura.getId(), leitura.getTemperatura(),
+                    leitura.getUmidade(), leitura.getTimestamp(), agora, null, null);
+            maisRecentes.merge(sensorId, estado, (atual, novo) -> novo.isMaisRecenteQue(atual) ? novo : atual);
+        }
+
+        gravar(maisRecentes.values());
+        Transacoes.aposCommit(() -> maisRecentes.values().forEach(this::aplicarLeitura));
+    }
+
+    /**
+     * Registra o nível do último alerta emitido para o sensor
+     */
+    @Transactional
+    public void registrarAlerta(long sensorId, String nivel, LocalDateTime timestamp) {
+        jdbcTemplate.update("UPDATE sensor_estado SET ultimo_nivel_alerta = ?, ultimo_alerta_em = ? WHERE id_sensor = ?",
+                nivel, timestamp, sensorId);
+        Transacoes.aposCommit(() -> estados.computeIfPresent(sensorId, (id, estado) -> estado.comAlerta(nivel, timestamp)));
+    }
+
+    /**
+     * Estado atual de um sensor
+     */
+    public Optional<EstadoSensor> findEstado(long sensorId) {
+        return Optional.ofNullable(estados.get(sensorId));
+    }
+
+    /**
+     * Últimas leituras dos sensores de uma escola (sensores sem leitura são omitidos)
+     */
+    public List<EstadoSensor> findUltimasLeiturasDaEscola(long escolaId) {
+        long[] sensorIds = sensorRegistryService.getSensorIdsDaEscola(escolaId);
+        List<EstadoSensor> resultado = new ArrayList<>(sensorIds.length);
+        for (long sensorId : sensorIds) {
+            EstadoSensor estado = estados.get(sensorId);
+            if (estado != null) {
+                resultado.add(estado);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Últimas leituras de todos os sensores, agrupadas por ID da escola
+     */
+    public Map<Long, List<EstadoSensor>> findUltimasLeiturasPorEscola() {
+        Map<Long, List<EstadoSensor>> resultado = new LinkedHashMap<>();
+        for (EscolaInfo escola : sensorRegistryService.getEscolas()) {
+            resultado.put(escola.id(), findUltimasLeiturasDaEscola(escola.id()));
+        }
+        return resultado;
+    }
+
+    private void aplicarLeitura(EstadoSensor leitura) {
+        estados.compute(leitura.sensorId(), (id, atual) -> {
+            if (atual == null) {
+                return leitura;
+            }
+            return leitura.isMaisRecenteQue(atual) ? atual.comLeitura(leitura) : atual;
+        });
+    }
+
+    private void gravar(Collection<EstadoSensor> novos) {
+        List<EstadoSensor> lista = new ArrayList<>(novos);
+        // Ordem fixa de bloqueio entre consumidores concorrentes
+        lista.sort((a, b) -> Long.compare(a.sensorId(), b.sensorId()));
+
+        // A decisão entre inserir e atualizar fica com o banco: o mapa em memória só é atualizado
+        // após o commit e não reflete as transações em andamento
+        jdbcTemplate.batchUpdate(upsertNativo ? UPSERT_POSTGRESQL : MERGE, lista, lista.size(), this::preencher);
+    }
+
+    private void preencher(PreparedStatement ps, EstadoSensor estado) throws SQLException {
+        ps.setLong(1, estado.sensorId());
+        ps.setLong(2, estado.leituraId());
+        ps.setBigDecimal(3, estado.temperatura());
+        ps.setBigDecimal(4, estado.umidade());
+        ps.setObject(5, estado.timestamp());
+        ps.setObject(6, estado.atualizadoEm());
+    }
+}
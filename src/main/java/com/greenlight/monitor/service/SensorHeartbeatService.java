@@ -0,0 +1,314 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.service.SensorEstadoService.EstadoSensor;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detecção de sensores offline por batimento (última leitura recebida), sem consultas ao banco.
+ * Cada sensor ativo tem um prazo (última leitura + tempo limite) agendado em uma roda de
+ * temporização com hash: a leitura apenas atualiza o instante da última leitura, e o prazo é
+ * conferido quando a roda alcança a posição agendada (reagendado se houve leitura nesse meio tempo).
+ * O tempo limite acompanha o intervalo médio entre leituras de cada sensor.
+ * Os batimentos usam o relógio do servidor (instante de recebimento), nunca o timestamp informado
+ * pelo sensor: um relógio adiantado ou atrasado no dispositivo, ou leituras reenviadas, não alteram
+ * o estado online/offline. Na inicialização o estado é reconstruído a partir da última leitura de
+ * cada sensor (sensor_estado), limitada ao instante atual.
+ */
+@Service
+public class SensorHeartbeatService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorHeartbeatService.class);
+
+    // Peso do intervalo mais recente na média dos intervalos entre leituras
+    private static final double PESO_INTERVALO = 0.2;
+
+    /**
+     * Batimento de um sensor; também é o nó da lista da posição da roda em que está agendado
+     */
+    private static final class Batimento {
+        private final long sensorId;
+        private volatile long ultimaLeitura;
+        private volatile long tempoLimite;
+        private double intervaloMedio;
+        // Alterados sob o lock da roda
+        private volatile boolean agendado;
+        private volatile boolean offline;
+        private int rodadas;
+        private Batimento proximo;
+
+        private Batimento(long sensorId) {
+            this.sensorId = sensorId;
+        }
+    }
+
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
+    @Autowired
+    private SensorEstadoService sensorEstadoService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Resolução da roda (ms)
+    @Value("${app.sensors.heartbeat.tick:10000}")
+    private long tickMillis;
+
+    // Posições da roda (potência de 2); prazos mais longos que uma volta usam rodadas
+    @Value("${app.sensors.heartbeat.wheel-size:512}")
+    private int tamanhoRoda;
+
+    // Tempo limite enquanto o intervalo do sensor é desconhecido
+    @Value("${app.sensors.heartbeat.default-timeout:2h}")
+    private Duration tempoLimitePadrao;
+
+    // Tempo limite = intervalo médio x fator, entre min-timeout e max-timeout
+    @Value("${app.sensors.heartbeat.interval-factor:3.0}")
+    private double fatorIntervalo;
+
+    @Value("${app.sensors.heartbeat.min-timeout:5m}")
+    private Duration tempoLimiteMinimo;
+
+    @Value("${app.sensors.heartbeat.max-timeout:6h}")
+    private Duration tempoLimiteMaximo;
+
+    private Clock relogio = Clock.systemDefaultZone();
+
+    private final ConcurrentHashMap<Long, Batimento> batimentos = new ConcurrentHashMap<>();
+    private final Set<Long> offline = ConcurrentHashMap.newKeySet();
+
+    private final Object roda = new Object();
+    private Batimento[] posicoes;
+    private long ultimoTick;
+
+    private Counter eventosOffline;
+
+    @PostConstruct
+    public void init() {
+        posicoes = new Batimento[Integer.highestOneBit(Math.max(2, tamanhoRoda - 1)) << 1];
+        long agora = relogio.millis();
+        ultimoTick = agora / tickMillis;
+
+        // Estado reconstruído a partir da última leitura de cada sensor ativo
+        int silenciosos = 0;
+        synchronized (roda) {
+            for (SensorInfo sensor : sensorRegistryService.getSensores()) {
+                if (!sensor.ativo()) {
+                    continue;
+                }
+                Batimento batimento = new Batimento(sensor.id());
+                batimento.tempoLimite = tempoLimitePadrao.toMillis();
+                Optional<EstadoSensor> estado = sensorEstadoService.findEstado(sensor.id());
+                // Sem leitura registrada o prazo começa a contar agora; timestamps do dispositivo
+                // no futuro (relógio adiantado) não estendem o prazo
+                batimento.ultimaLeitura = Math.min(agora, estado.map(e -> millis(e.timestamp())).orElse(agora));
+                batimentos.put(sensor.id(), batimento);
+
+                long prazo = batimento.ultimaLeitura + batimento.tempoLimite;
+                if (prazo <= agora) {
+                    // Já estava sem leituras antes da inicialização: sem nova notificação
+                    batimento.offline = true;
+                    offline.add(sensor.id());
+                    silenciosos++;
+                } else {
+                    agendar(batimento, prazo);
+                }
+            }
+        }
+
+        eventosOffline = Counter.builder("sensors.offline.events")
+                .description("Sensores que deixaram de enviar leituras")
+                .register(meterRegistry);
+        Gauge.builder("sensors.offline", offline, Set::size)
+                .description("Sensores ativos sem leituras dentro do tempo limite")
+                .register(meterRegistry);
+
+        logger.info("Batimentos de {} sensores carregados ({} sem leituras recentes)", batimentos.size(), silenciosos);
+    }
+
+    /**
+     * Registra o batimento de um sensor no instante de recebimento (chamado a cada leitura)
+     */
+    public void registrar(long sensorId) {
+        long instante = relogio.millis();
+        Batimento batimento = batimentos.get(sensorId);
+        if (batimento == null) {
+            batimento = batimentos.computeIfAbsent(sensorId, this::novoBatimento);
+        }
+
+        synchronized (batimento) {
+            long anterior = batimento.ultimaLeitura;
+            if (instante <= anterior) {
+                return;
+            }
+            long intervalo = instante - anterior;
+            // Intervalos maiores que o tempo limite são interrupções, não a cadência do sensor
+            if (anterior > 0 && intervalo <= batimento.tempoLimite) {
+                batimento.intervaloMedio = batimento.intervaloMedio == 0 ? intervalo
+                        : PESO_INTERVALO * intervalo + (1 - PESO_INTERVALO) * batimento.intervaloMedio;
+                batimento.tempoLimite = Math.max(tempoLimiteMinimo.toMillis(), Math.min(tempoLimiteMaximo.toMillis(),
+                        (long) (batimento.intervaloMedio * fatorIntervalo)));
+            }
+            batimento.ultimaLeitura = instante;
+        }
+
+        // Caminho comum: o prazo já agendado é conferido (e reagendado) pela roda
+        if (batimento.agendado && !batimento.offline) {
+            return;
+        }
+
+        boolean voltou;
+        synchronized (roda) {
+            voltou = batimento.offline;
+            batimento.offline = false;
+            if (!batimento.agendado) {
+                agendar(batimento, batimento.ultimaLeitura + batimento.tempoLimite);
+            }
+        }
+        if (voltou && offline.remove(sensorId)) {
+            logger.info("Sensor {} voltou a enviar leituras", sensorId);
+        }
+    }
+
+    /**
+     * IDs dos sensores ativos sem leituras dentro do tempo limite
+     */
+    public Set<Long> getSensoresOffline() {
+        // Sensores desativados depois de ficarem offline deixam de ser listados
+        offline.removeIf(id -> {
+            SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(id);
+            return sensor == null || !sensor.ativo();
+        });
+        return Set.copyOf(offline);
+    }
+
+    /**
+     * Verifica se o sensor está offline
+     */
+    public boolean isOffline(long sensorId) {
+        return offline.contains(sensorId);
+    }
+
+    /**
+     * Avança a roda até o instante atual, conferindo os prazos das posições percorridas
+     */
+    @Scheduled(fixedDelayString = "${app.sensors.heartbeat.tick:10000}")
+    public void avancar() {
+        long agora = relogio.millis();
+        List<Batimento> expirados = new ArrayList<>();
+
+        synchronized (roda) {
+            long tickAtual = agora / tickMillis;
+            while (ultimoTick < tickAtual) {
+                ultimoTick++;
+                int indice = (int) (ultimoTick & (posicoes.length - 1));
+                Batimento batimento = posicoes[indice];
+                posicoes[indice] = null;
+
+                while (batimento != null) {
+                    Batimento proximo = batimento.proximo;
+                    batimento.proximo = null;
+                    if (batimento.rodadas > 0) {
+                        batimento.rodadas--;
+                        batimento.proximo = posicoes[indice];
+                        posicoes[indice] = batimento;
+                    } else {
+                        conferir(batimento, agora, expirados);
+                    }
+                    batimento = proximo;
+                }
+            }
+        }
+
+        for (Batimento batimento : expirados) {
+            notificarOffline(batimento, agora);
+        }
+    }
+
+    /**
+     * Confere o prazo de um batimento retirado da roda (sob o lock da roda)
+     */
+    private void conferir(Batimento batimento, long agora, List<Batimento> expirados) {
+        batimento.agendado = false;
+        SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(batimento.sensorId);
+        if (sensor == null || !sensor.ativo()) {
+            // Sensor desativado ou removido: deixa de ser acompanhado até voltar a enviar leituras
+            batimentos.remove(batimento.sensorId);
+            return;
+        }
+
+        long prazo = batimento.ultimaLeitura + batimento.tempoLimite;
+        if (prazo > agora) {
+            agendar(batimento, prazo);
+            return;
+        }
+
+        batimento.offline = true;
+        // Leitura registrada concorrentemente após a conferência: desfaz
+        if (batimento.ultimaLeitura + batimento.tempoLimite > agora) {
+            batimento.offline = false;
+            agendar(batimento, batimento.ultimaLeitura + batimento.tempoLimite);
+            return;
+        }
+        offline.add(batimento.sensorId);
+        expirados.add(batimento);
+    }
+
+    /**
+     * Agenda o batimento na posição do prazo (sob o lock da roda)
+     */
+    private void agendar(Batimento batimento, long prazo) {
+        long ticks = Math.max(1, (prazo + tickMillis - 1) / tickMillis - ultimoTick);
+        int indice = (int) ((ultimoTick + ticks) & (posicoes.length - 1));
+        batimento.rodadas = (int) Math.min(Integer.MAX_VALUE, (ticks - 1) / posicoes.length);
+        batimento.proximo = posicoes[indice];
+        posicoes[indice] = batimento;
+        batimento.agendado = true;
+    }
+
+    private void notificarOffline(Batimento batimento, long agora) {
+        eventosOffline.increment();
+        SensorInfo sensor = sensorRegistryService.getSensorSeCarregado(batimento.sensorId);
+        LocalDateTime ultimaLeitura = LocalDateTime.ofInstant(Instant.ofEpochMilli(batimento.ultimaLeitura),
+                ZoneId.systemDefault());
+        Duration silencio = Duration.ofMillis(agora - batimento.ultimaLeitura);
+        logger.warn("Sensor {} sem leituras desde {} ({} min)", batimento.sensorId, ultimaLeitura, silencio.toMinutes());
+        if (sensor != null) {
+            notificationService.sendSensorOfflineAlert(sensor, ultimaLeitura, silencio);
+        }
+    }
+
+    private Batimento novoBatimento(long sensorId) {
+        Batimento batimento = new Batimento(sensorId);
+        batimento.tempoLimite = tempoLimitePadrao.toMillis();
+        return batimento;
+    }
+
+    private static long millis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
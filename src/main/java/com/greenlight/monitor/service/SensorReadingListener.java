@@ -2,17 +2,34 @@ package com.greenlight.monitor.service;
 
 import com.greenlight.monitor.dto.SensorReadingDTO;
 import com.greenlight.monitor.entity.Leitura;
-import com.greenlight.monitor.entity.Sensor;
 import com.greenlight.monitor.repository.SensorRepository;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import com.greenlight.monitor.util.ErrosTransitorios;
+import com.greenlight.monitor.util.Transacoes;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Serviço para processar mensagens de leituras de sensores recebidas via RabbitMQ.
@@ -25,19 +42,76 @@ public class SensorReadingListener {
     @Autowired
     private SensorRepository sensorRepository;
 
+    @Autowired
+    private SensorRegistryService sensorRegistryService;
+
     @Autowired
     private LeituraService leituraService;
 
+    @Autowired
+    private LeituraAgregadaService leituraAgregadaService;
+
+    @Autowired
+    private SensorEstadoService sensorEstadoService;
+
     @Autowired
     private AlertaService alertaService;
 
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private AnomaliaSensorService anomaliaSensorService;
+
+    @Autowired
+    private SensorHeartbeatService sensorHeartbeatService;
+
+    @Autowired
+    private TempoRealService tempoRealService;
+
+    @Autowired
+    private MessageConverter messageConverter;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Fila de espera das leituras com falha transitória (voltam à fila principal após o backoff)
+    @Value("${app.rabbitmq.queue.sensor-readings:sensor.readings}.retry")
+    private String filaReenvio;
+
+    // Transações do modo em lote (chamadas internas não passam pelo proxy de @Transactional)
+    private TransactionTemplate transactionTemplate;
+
+    private Counter adiadas;
+    private Counter reenfileiradas;
+    private Counter rejeitadas;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        adiadas = Counter.builder("sensor.readings.batch.delayed")
+                .description("Leituras do modo em lote enviadas à fila de espera após falha transitória")
+                .register(meterRegistry);
+        reenfileiradas = Counter.builder("sensor.readings.batch.requeued")
+                .description("Leituras do modo em lote devolvidas à fila sem espera (fila de espera indisponível)")
+                .register(meterRegistry);
+        rejeitadas = Counter.builder("sensor.readings.batch.rejected")
+                .description("Leituras do modo em lote rejeitadas para a DLQ")
+                .register(meterRegistry);
+    }
+
     /**
      * Processa leituras de sensores recebidas via RabbitMQ
      */
-    @RabbitListener(queues = "${app.rabbitmq.queue.sensor-readings:sensor.readings}")
+    @RabbitListener(id = "sensorReadings",
+                    queues = "${app.rabbitmq.queue.sensor-readings:sensor.readings}",
+                    autoStartup = "#{'${app.rabbitmq.listener.mode:single}' == 'single'}")
     @Transactional
     public void processSensorReading(SensorReadingDTO readingDTO) {
         logger.info("Recebida leitura do sensor: {}", readingDTO);
@@ -49,43 +123,51 @@ public class SensorReadingListener {
                 return;
             }
 
-            // Buscar sensor
-            Optional<Sensor> sensorOpt = sensorRepository.findById(readingDTO.getSensorId());
+            // Buscar sensor no registro em memória (sem consulta ao banco)
+            Optional<SensorInfo> sensorOpt = sensorRegistryService.findSensor(readingDTO.getSensorId());
             if (sensorOpt.isEmpty()) {
                 logger.error("Sensor não encontrado com ID: {}", readingDTO.getSensorId());
                 return;
             }
 
-            Sensor sensor = sensorOpt.get();
+            SensorInfo sensor = sensorOpt.get();
             
             // Verificar se sensor está ativo
-            if (!sensor.getAtivo()) {
-                logger.warn("Leitura recebida de sensor inativo: {}", sensor.getId());
+            if (!sensor.ativo()) {
+                logger.warn("Leitura recebida de sensor inativo: {}", sensor.id());
                 return;
             }
 
             // Criar leitura
-            Leitura leitura = new Leitura();
-            leitura.setSensor(sensor);
-            leitura.setTemperatura(readingDTO.getTemperatura());
-            leitura.setUmidade(readingDTO.getUmidade());
-            leitura.setTimestamp(readingDTO.getTimestamp() != null ? 
-                readingDTO.getTimestamp() : LocalDateTime.now());
-
-            // Salvar leitura
+            Leitura leitura = criarLeitura(readingDTO, sensor);
+
+            // Salvar leitura (fora dos limites: exceção, a mensagem vai para a DLQ)
             leitura = leituraService.save(leitura);
             logger.info("Leitura salva com sucesso: ID {}", leitura.getId());
 
+            // Atualizar agregados de minuto/hora/dia
+            leituraAgregadaService.registrar(List.of(leitura));
+
+            // Atualizar estado atual do sensor (última leitura)
+            sensorEstadoService.registrarLeituras(List.of(leitura));
+
             // Processar alertas baseados na leitura
             alertaService.processarLeitura(leitura);
 
-            // Verificar condições especiais do sensor
-            checkSensorConditions(readingDTO, sensor);
+            // Comparar a leitura com a linha de base do próprio sensor
+            anomaliaSensorService.registrar(sensor, leitura);
 
             // Atualizar estatísticas em tempo real (se necessário)
             updateRealTimeStats(sensor, leitura);
 
-            logger.info("Processamento da leitura concluído com sucesso para sensor {}", sensor.getId());
+            // Batimento e condições do sensor só após o commit: uma transação desfeita e repetida
+            // não registra a leitura nem notifica duas vezes
+            Transacoes.aposCommit(() -> {
+                sensorHeartbeatService.registrar(sensor.id());
+                checkSensorConditions(readingDTO, sensor);
+            });
+
+            logger.info("Processamento da leitura concluído com sucesso para sensor {}", sensor.id());
 
         } catch (Exception e) {
             logger.error("Erro ao processar leitura do sensor: {}", readingDTO, e);
@@ -94,15 +176,243 @@ public class SensorReadingListener {
         }
     }
 
+    /**
+     * Recebe um lote de leituras de sensores (modo app.rabbitmq.listener.mode=batch), com ack manual.
+     * O lote é persistido em uma única transação e as mensagens recebem ack após o commit. Se o lote falhar:
+     * <ul>
+     *   <li>falha transitória (banco ou conexão indisponível, deadlock, timeout): as mensagens vão
+     *       para a fila de espera e voltam à fila principal após o backoff, sem ocupar o consumidor;</li>
+     *   <li>falha determinística: cada mensagem é reprocessada em sua própria transação; apenas as
+     *       que falharem de novo vão para a DLQ, e as demais recebem ack.</li>
+     * </ul>
+     * Mensagens que não podem ser convertidas e leituras fora dos limites vão direto para a DLQ, sem
+     * afetar o restante do lote.
+     */
+    @RabbitListener(id = "sensorReadingsBatch",
+                    queues = "${app.rabbitmq.queue.sensor-readings:sensor.readings}",
+                    containerFactory = "batchRabbitListenerContainerFactory",
+                    autoStartup = "#{'${app.rabbitmq.listener.mode:single}' == 'batch'}")
+    public void receberLote(List<Message> mensagens, Channel canal) {
+        List<SensorReadingDTO> leituras = new ArrayList<>(mensagens.size());
+        List<Message> convertidas = new ArrayList<>(mensagens.size());
+        for (Message mensagem : mensagens) {
+            SensorReadingDTO leitura = converter(mensagem);
+            if (leitura == null) {
+                rejeitar(canal, mensagem);
+            } else {
+                leituras.add(leitura);
+                convertidas.add(mensagem);
+            }
+        }
+        if (leituras.isEmpty()) {
+            return;
+        }
+
+        try {
+            Set<SensorReadingDTO> foraDosLimites =
+                    transactionTemplate.execute(status -> processSensorReadingBatch(leituras));
+            for (int i = 0; i < leituras.size(); i++) {
+                if (foraDosLimites.contains(leituras.get(i))) {
+                    rejeitar(canal, convertidas.get(i));
+                } else {
+                    confirmar(canal, convertidas.get(i));
+                }
+            }
+            return;
+        } catch (Exception e) {
+            if (ErrosTransitorios.isTransitorio(e)) {
+                logger.warn("Falha transitória no lote de {} leituras, enviando à fila de espera: {}",
+                        leituras.size(), e.getMessage());
+                for (Message mensagem : convertidas) {
+                    adiar(canal, mensagem);
+                }
+                return;
+            }
+            logger.warn("Falha no lote de {} leituras, reprocessando individualmente: {}",
+                    leituras.size(), e.getMessage());
+        }
+
+        // Isola a mensagem com problema: as demais são gravadas e confirmadas
+        for (int i = 0; i < leituras.size(); i++) {
+            SensorReadingDTO leitura = leituras.get(i);
+            Message mensagem = convertidas.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> processSensorReading(leitura));
+                confirmar(canal, mensagem);
+            } catch (Exception e) {
+                if (ErrosTransitorios.isTransitorio(e)) {
+                    adiar(canal, mensagem);
+                } else {
+                    logger.error("Leitura do sensor {} rejeitada para a DLQ: {}", leitura.getSensorId(), e.getMessage());
+                    rejeitar(canal, mensagem);
+                }
+            }
+        }
+    }
+
+    /**
+     * Processa um lote de leituras de sensores em uma única transação, com inserts em lote.
+     * Usado pelo modo em lote ({@link #receberLote}) e pelo modo em shards (LeituraShardService).
+     *
+     * @return leituras fora dos limites, não gravadas (as mensagens devem ir para a DLQ, como no
+     *         processamento individual); comparadas por identidade
+     */
+    @Transactional
+    public Set<SensorReadingDTO> processSensorReadingBatch(List<SensorReadingDTO> readings) {
+        logger.info("Recebido lote com {} leituras de sensores", readings.size());
+
+        List<Leitura> leituras = new ArrayList<>(readings.size());
+        List<SensorReadingDTO> aceitas = new ArrayList<>(readings.size());
+        List<SensorInfo> sensores = new ArrayList<>(readings.size());
+        Set<SensorReadingDTO> foraDosLimites = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (SensorReadingDTO readingDTO : readings) {
+            if (!readingDTO.isValidReading()) {
+                logger.error("Leitura inválida recebida no lote: {}", readingDTO);
+                continue;
+            }
+
+            Optional<SensorInfo> sensorOpt = sensorRegistryService.findSensor(readingDTO.getSensorId());
+            if (sensorOpt.isEmpty()) {
+                logger.error("Sensor não encontrado com ID: {}", readingDTO.getSensorId());
+                continue;
+            }
+
+            SensorInfo sensor = sensorOpt.get();
+            if (!sensor.ativo()) {
+                logger.warn("Leitura recebida de sensor inativo: {}", sensor.id());
+                continue;
+            }
+
+            Leitura leitura = criarLeitura(readingDTO, sensor);
+            if (!leituraService.isValida(leitura)) {
+                logger.error("Leitura fora dos limites rejeitada para a DLQ: {}", readingDTO);
+                foraDosLimites.add(readingDTO);
+                continue;
+            }
+
+            leituras.add(leitura);
+            aceitas.add(readingDTO);
+            sensores.add(sensor);
+        }
+
+        if (leituras.isEmpty()) {
+            logger.warn("Nenhuma leitura válida no lote de {} mensagens", readings.size());
+            return foraDosLimites;
+        }
+
+        // Salvar todas as leituras do lote de uma vez
+        leituras = leituraService.saveAll(leituras);
+        logger.info("Lote de {} leituras salvo com sucesso", leituras.size());
+
+        // Atualizar agregados de minuto/hora/dia (pré-agregados por intervalo dentro do lote)
+        leituraAgregadaService.registrar(leituras);
+
+        // Atualizar estado atual dos sensores (última leitura de cada sensor no lote)
+        sensorEstadoService.registrarLeituras(leituras);
+
+        // Processar alertas sobre o lote inteiro
+        alertaService.processarLeituras(leituras);
+
+        for (int i = 0; i < leituras.size(); i++) {
+            anomaliaSensorService.registrar(sensores.get(i), leituras.get(i));
+            updateRealTimeStats(sensores.get(i), leituras.get(i));
+        }
+
+        // Se o lote for desfeito e reprocessado mensagem a mensagem, nada disto foi executado
+        Transacoes.aposCommit(() -> {
+            for (int i = 0; i < sensores.size(); i++) {
+                sensorHeartbeatService.registrar(sensores.get(i).id());
+                checkSensorConditions(aceitas.get(i), sensores.get(i));
+            }
+        });
+
+        logger.info("Processamento do lote concluído: {} de {} leituras aceitas", leituras.size(), readings.size());
+        return foraDosLimites;
+    }
+
+
+    /**
+     * Converte a mensagem em leitura; null se o conteúdo não for uma leitura válida em JSON
+     */
+    private SensorReadingDTO converter(Message mensagem) {
+        try {
+            // Sem cabeçalho de tipo do produtor: o JSON é lido como SensorReadingDTO
+            mensagem.getMessageProperties().setInferredArgumentType(SensorReadingDTO.class);
+            return (SensorReadingDTO) messageConverter.fromMessage(mensagem);
+        } catch (Exception e) {
+            logger.error("Mensagem de leitura ilegível rejeitada para a DLQ: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Envia a mensagem à fila de espera (volta à fila principal quando o TTL expira) e confirma a
+     * original, sem prender o consumidor durante o backoff. Se a fila de espera não aceitar a
+     * mensagem, ela volta à fila principal imediatamente.
+     */
+    private void adiar(Channel canal, Message mensagem) {
+        try {
+            rabbitTemplate.send("", filaReenvio, mensagem);
+        } catch (Exception e) {
+            logger.warn("Fila de espera indisponível, devolvendo a leitura à fila: {}", e.getMessage());
+            reenfileirar(canal, mensagem);
+            return;
+        }
+        adiadas.increment();
+        confirmar(canal, mensagem);
+    }
+
+    private void confirmar(Channel canal, Message mensagem) {
+        try {
+            canal.basicAck(mensagem.getMessageProperties().getDeliveryTag(), false);
+        } catch (Exception e) {
+            // Canal fechado: a mensagem será reentregue (entrega "pelo menos uma vez")
+            logger.warn("Falha no ack da leitura: {}", e.getMessage());
+        }
+    }
+
+    private void reenfileirar(Channel canal, Message mensagem) {
+        reenfileiradas.increment();
+        try {
+            canal.basicNack(mensagem.getMessageProperties().getDeliveryTag(), false, true);
+        } catch (Exception e) {
+            logger.warn("Falha ao devolver a leitura à fila: {}", e.getMessage());
+        }
+    }
+
+    private void rejeitar(Channel canal, Message mensagem) {
+        rejeitadas.increment();
+        try {
+            canal.basicNack(mensagem.getMessageProperties().getDeliveryTag(), false, false);
+        } catch (Exception e) {
+            logger.warn("Falha ao rejeitar a leitura: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cria a entidade Leitura a partir da mensagem recebida
+     */
+    private Leitura criarLeitura(SensorReadingDTO readingDTO, SensorInfo sensor) {
+        Leitura leitura = new Leitura();
+        // Referência ao sensor sem SELECT: o registro já confirmou que ele existe
+        leitura.setSensor(sensorRepository.getReferenceById(sensor.id()));
+        leitura.setTemperatura(readingDTO.getTemperatura());
+        leitura.setUmidade(readingDTO.getUmidade());
+        leitura.setTimestamp(readingDTO.getTimestamp() != null ? 
+            readingDTO.getTimestamp() : LocalDateTime.now());
+        return leitura;
+    }
+
     /**
      * Verifica condições especiais do sensor (bateria baixa, sinal fraco, etc.)
      */
-    private void checkSensorConditions(SensorReadingDTO readingDTO, Sensor sensor) {
+    private void checkSensorConditions(SensorReadingDTO readingDTO, SensorInfo sensor) {
         try {
             // Verificar bateria baixa
             if (readingDTO.isBatteryLow()) {
                 logger.warn("Bateria baixa detectada no sensor {}: {}%", 
-                    sensor.getId(), readingDTO.getBatteryLevel());
+                    sensor.id(), readingDTO.getBatteryLevel());
                 
                 notificationService.sendLowBatteryAlert(sensor, readingDTO.getBatteryLevel());
             }
@@ -110,40 +420,34 @@ public class SensorReadingListener {
             // Verificar sinal fraco
             if (readingDTO.isSignalWeak()) {
                 logger.warn("Sinal fraco detectado no sensor {}: {} dBm", 
-                    sensor.getId(), readingDTO.getSignalStrength());
+                    sensor.id(), readingDTO.getSignalStrength());
                 
                 notificationService.sendWeakSignalAlert(sensor, readingDTO.getSignalStrength());
             }
 
             // Verificar se a localização mudou (possível movimentação do sensor)
             if (readingDTO.getLocation() != null && 
-                !readingDTO.getLocation().equals(sensor.getLocalizacao())) {
+                !readingDTO.getLocation().equals(sensor.localizacao())) {
                 logger.warn("Possível movimentação do sensor {} detectada. " +
                     "Localização esperada: {}, Localização atual: {}", 
-                    sensor.getId(), sensor.getLocalizacao(), readingDTO.getLocation());
+                    sensor.id(), sensor.localizacao(), readingDTO.getLocation());
                 
                 notificationService.sendSensorMovementAlert(sensor, readingDTO.getLocation());
             }
 
         } catch (Exception e) {
-            logger.error("Erro ao verificar condições do sensor {}: {}", sensor.getId(), e.getMessage());
+            logger.error("Erro ao verificar condições do sensor {}: {}", sensor.id(), e.getMessage());
         }
     }
 
     /**
-     * Atualiza estatísticas em tempo real
+     * Encaminha a leitura aos dashboards conectados (após o commit, agrupada por sensor)
      */
-    private void updateRealTimeStats(Sensor sensor, Leitura leitura) {
+    private void updateRealTimeStats(SensorInfo sensor, Leitura leitura) {
         try {
-            // Aqui você pode implementar lógica para:
-            // - Atualizar cache de estatísticas
-            // - Enviar dados para dashboard em tempo real via WebSocket
-            // - Atualizar métricas de monitoramento
-            
-            logger.debug("Estatísticas atualizadas para sensor {}", sensor.getId());
-            
+            tempoRealService.publicarLeitura(sensor, leitura);
         } catch (Exception e) {
-            logger.error("Erro ao atualizar estatísticas para sensor {}: {}", sensor.getId(), e.getMessage());
+            logger.error("Erro ao atualizar estatísticas para sensor {}: {}", sensor.id(), e.getMessage());
         }
     }
 
@@ -0,0 +1,354 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Escola;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.EscolaRepository;
+import com.greenlight.monitor.repository.SensorRepository;
+import com.greenlight.monitor.util.LongObjectMap;
+import com.greenlight.monitor.util.Transacoes;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro em memória de sensores e escolas.
+ * Mantém um snapshot imutável, indexado por ID primitivo, para que o caminho de ingestão
+ * responda "o sensor existe, está ativo e a qual escola pertence" sem consultar o banco.
+ * O snapshot é atualizado incrementalmente quando escolas ou sensores mudam e
+ * reconciliado periodicamente com o banco. IDs não encontrados no banco ficam por algum tempo
+ * em um cache negativo limitado, para que leituras de sensores desconhecidos não consultem o
+ * banco (sob o lock de atualização) a cada mensagem.
+ */
+@Service
+public class SensorRegistryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorRegistryService.class);
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private EscolaRepository escolaRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.registry.unknown-cache.max-size:10000}")
+    private long desconhecidosTamanhoMaximo;
+
+    @Value("${app.registry.unknown-cache.ttl:60s}")
+    private Duration desconhecidosTtl;
+
+    // Serializa as atualizações do snapshot; as leituras não bloqueiam. ReentrantLock em vez de
+    // synchronized porque as atualizações consultam o banco (sem prender threads virtuais)
+    private final ReentrantLock atualizacao = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(LongObjectMap.empty(), LongObjectMap.empty(), 0L);
+
+    // IDs de sensores inexistentes no banco na última consulta
+    private Cache<Long, Boolean> desconhecidos;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter desconhecidosHits;
+
+    /**
+     * Dados de um sensor necessários na ingestão e nas notificações
+     */
+    public record SensorInfo(long id, long escolaId, String localizacao, String tipo, boolean ativo,
+                             String nomeEscola, String cidade, String estado, boolean escolaAtiva) {
+    }
+
+    /**
+     * Dados de uma escola e IDs de seus sensores
+     */
+    public record EscolaInfo(long id, String nome, String cidade, String estado, boolean ativo, long[] sensorIds) {
+    }
+
+    private record Snapshot(LongObjectMap<SensorInfo> sensores, LongObjectMap<EscolaInfo> escolas, long criadoEm) {
+    }
+
+    @PostConstruct
+    public void init() {
+        desconhecidos = Caffeine.newBuilder()
+                .maximumSize(desconhecidosTamanhoMaximo)
+                .expireAfterWrite(desconhecidosTtl)
+                .build();
+
+        hits = Counter.builder("sensor.registry.lookups").tag("result", "hit")
+                .description("Consultas ao registro de sensores atendidas pelo snapshot")
+                .register(meterRegistry);
+        misses = Counter.builder("sensor.registry.lookups").tag("result", "miss")
+                .description("Consultas ao registro de sensores que precisaram ir ao banco")
+                .register(meterRegistry);
+        desconhecidosHits = Counter.builder("sensor.registry.lookups").tag("result", "unknown")
+                .description("Consultas a sensores desconhecidos atendidas pelo cache negativo")
+                .register(meterRegistry);
+        Gauge.builder("sensor.registry.unknown.size", this, r -> r.desconhecidos.estimatedSize())
+                .description("Sensores desconhecidos no cache negativo")
+                .register(meterRegistry);
+        Gauge.builder("sensor.registry.snapshot.age", this, r -> r.getIdadeSnapshotMillis() / 1000.0)
+                .description("Idade do snapshot do registro de sensores")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("sensor.registry.size", this, r -> r.snapshot.sensores().size())
+                .description("Quantidade de sensores no registro em memória")
+                .register(meterRegistry);
+
+        recarregar();
+    }
+
+    /**
+     * Busca informações do sensor; consulta o banco apenas se o sensor não estiver no snapshot
+     * nem tiver sido consultado sem sucesso recentemente
+     */
+    public Optional<SensorInfo> findSensor(long sensorId) {
+        SensorInfo info = snapshot.sensores().get(sensorId);
+        if (info != null) {
+            hits.increment();
+            return Optional.of(info);
+        }
+        if (desconhecidos.getIfPresent(sensorId) != null) {
+            desconhecidosHits.increment();
+            return Optional.empty();
+        }
+
+        misses.increment();
+        return Optional.ofNullable(carregarSensor(sensorId));
+    }
+
+    /**
+     * Consulta no banco um sensor ausente do snapshot, registrando-o como desconhecido se não existir
+     */
+    private SensorInfo carregarSensor(long sensorId) {
+        atualizacao.lock();
+        try {
+            // Outra thread pode ter consultado o mesmo ID enquanto esta aguardava o lock
+            SensorInfo info = snapshot.sensores().get(sensorId);
+            if (info != null || desconhecidos.getIfPresent(sensorId) != null) {
+                return info;
+            }
+            info = refreshSensor(sensorId);
+            if (info == null) {
+                desconhecidos.put(sensorId, Boolean.TRUE);
+            }
+            return info;
+        } finally {
+            atualizacao.unlock();
+        }
+    }
+
+    /**
+     * Busca informações do sensor apenas no snapshot (sem acesso ao banco)
+     */
+    public SensorInfo getSensorSeCarregado(long sensorId) {
+        return snapshot.sensores().get(sensorId);
+    }
+
+    /**
+     * Busca informações da escola no snapshot
+     */
+    public Optional<EscolaInfo> findEscola(long escolaId) {
+        return Optional.ofNullable(snapshot.escolas().get(escolaId));
+    }
+
+    /**
+     * IDs dos sensores de uma escola
+     */
+    public long[] getSensorIdsDaEscola(long escolaId) {
+        EscolaInfo escola = snapshot.escolas().get(escolaId);
+        return escola != null ? escola.sensorIds() : new long[0];
+    }
+
+    /**
+     * Todos os sensores do snapshot
+     */
+    public List<SensorInfo> getSensores() {
+        return snapshot.sensores().values();
+    }
+
+    /**
+     * Todas as escolas do snapshot
+     */
+    public List<EscolaInfo> getEscolas() {
+        return snapshot.escolas().values();
+    }
+
+    /**
+     * Idade do snapshot atual em milissegundos
+     */
+    public long getIdadeSnapshotMillis() {
+        return System.currentTimeMillis() - snapshot.criadoEm();
+    }
+
+    /**
+     * Recarrega todo o snapshot a partir do banco
+     */
+    @Scheduled(fixedDelayString = "${app.registry.refresh-interval:300000}",
+               initialDelayString = "${app.registry.refresh-interval:300000}")
+    public void recarregar() {
+        atualizacao.lock();
+        try {
+            List<Sensor> sensores = sensorRepository.findAllComEscola();
+            List<Escola> escolas = escolaRepository.findAll();
+
+            Map<Long, List<Long>> sensoresPorEscola = new HashMap<>();
+            LongObjectMap.Builder<SensorInfo> sensoresBuilder = LongObjectMap.builder(sensores.size());
+            for (Sensor sensor : sensores) {
+                sensoresBuilder.put(sensor.getId(), toInfo(sensor));
+                sensoresPorEscola.computeIfAbsent(sensor.getEscola().getId(), k -> new ArrayList<>()).add(sensor.getId());
+            }
+
+            LongObjectMap.Builder<EscolaInfo> escolasBuilder = LongObjectMap.builder(escolas.size());
+            for (Escola escola : escolas) {
+                escolasBuilder.put(escola.getId(), toInfo(escola, sensoresPorEscola.getOrDefault(escola.getId(), List.of())));
+            }
+
+            snapshot = new Snapshot(sensoresBuilder.build(), escolasBuilder.build(), System.currentTimeMillis());
+            desconhecidos.invalidateAll();
+            logger.info("Registro de sensores recarregado: {} sensores, {} escolas", sensores.size(), escolas.size());
+        } finally {
+            atualizacao.unlock();
+        }
+    }
+
+    /**
+     * Atualiza no snapshot um sensor específico; remove-o se não existir mais no banco
+     */
+    public SensorInfo refreshSensor(long sensorId) {
+        atualizacao.lock();
+        try {
+            Optional<Sensor> sensorOpt = sensorRepository.findByIdComEscola(sensorId);
+            Snapshot atual = snapshot;
+
+            if (sensorOpt.isEmpty()) {
+                if (atual.sensores().containsKey(sensorId)) {
+                    SensorInfo antigo = atual.sensores().get(sensorId);
+                    snapshot = new Snapshot(atual.sensores().without(sensorId),
+                            removerSensorDaEscola(atual.escolas(), antigo.escolaId(), sensorId),
+                            System.currentTimeMillis());
+                }
+                return null;
+            }
+
+            Sensor sensor = sensorOpt.get();
+            desconhecidos.invalidate(sensorId);
+            SensorInfo info = toInfo(sensor);
+            LongObjectMap<EscolaInfo> escolas = atual.escolas();
+            SensorInfo antigo = atual.sensores().get(sensorId);
+            if (antigo != null && antigo.escolaId() != info.escolaId()) {
+                escolas = removerSensorDaEscola(escolas, antigo.escolaId(), sensorId);
+            }
+            EscolaInfo escola = escolas.get(info.escolaId());
+            if (escola == null || !contem(escola.sensorIds(), sensorId)) {
+                List<Long> ids = new ArrayList<>();
+                if (escola != null) {
+                    for (long id : escola.sensorIds()) {
+                        ids.add(id);
+                    }
+                }
+                ids.add(sensorId);
+                escolas = escolas.with(info.escolaId(), toInfo(sensor.getEscola(), ids));
+            }
+
+            snapshot = new Snapshot(atual.sensores().with(sensorId, info), escolas, System.currentTimeMillis());
+            return info;
+        } finally {
+            atualizacao.unlock();
+        }
+    }
+
+    /**
+     * Atualiza no snapshot uma escola e todos os seus sensores
+     */
+    public void refreshEscola(long escolaId) {
+        atualizacao.lock();
+        try {
+            Snapshot atual = snapshot;
+            Optional<Escola> escolaOpt = escolaRepository.findById(escolaId);
+            LongObjectMap<SensorInfo> sensores = atual.sensores();
+
+            EscolaInfo antiga = atual.escolas().get(escolaId);
+            if (antiga != null) {
+                for (long sensorId : antiga.sensorIds()) {
+                    sensores = sensores.without(sensorId);
+                }
+            }
+
+            if (escolaOpt.isEmpty()) {
+                snapshot = new Snapshot(sensores, atual.escolas().without(escolaId), System.currentTimeMillis());
+                return;
+            }
+
+            List<Long> ids = new ArrayList<>();
+            for (Sensor sensor : sensorRepository.findByEscolaIdComEscola(escolaId)) {
+                sensores = sensores.with(sensor.getId(), toInfo(sensor));
+                desconhecidos.invalidate(sensor.getId());
+                ids.add(sensor.getId());
+            }
+
+            snapshot = new Snapshot(sensores, atual.escolas().with(escolaId, toInfo(escolaOpt.get(), ids)),
+                    System.currentTimeMillis());
+            logger.debug("Escola {} atualizada no registro de sensores", escolaId);
+        } finally {
+            atualizacao.unlock();
+        }
+    }
+
+    /**
+     * Agenda a atualização da escola para depois do commit da transação corrente
+     * (ou executa imediatamente se não houver transação ativa)
+     */
+    public void refreshEscolaAposCommit(long escolaId) {
+        Transacoes.aposCommit(() -> refreshEscola(escolaId));
+    }
+
+    private LongObjectMap<EscolaInfo> removerSensorDaEscola(LongObjectMap<EscolaInfo> escolas, long escolaId, long sensorId) {
+        EscolaInfo escola = escolas.get(escolaId);
+        if (escola == null) {
+            return escolas;
+        }
+        long[] ids = Arrays.stream(escola.sensorIds()).filter(id -> id != sensorId).toArray();
+        return escolas.with(escolaId, new EscolaInfo(escola.id(), escola.nome(), escola.cidade(),
+                escola.estado(), escola.ativo(), ids));
+    }
+
+    private static boolean contem(long[] ids, long id) {
+        for (long i : ids) {
+            if (i == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SensorInfo toInfo(Sensor sensor) {
+        Escola escola = sensor.getEscola();
+        return new SensorInfo(sensor.getId(), escola.getId(), sensor.getLocalizacao(), sensor.getTipo(),
+                Boolean.TRUE.equals(sensor.getAtivo()), escola.getNome(), escola.getCidade(),
+                escola.getEstado(), Boolean.TRUE.equals(escola.getAtivo()));
+    }
+
+    private static EscolaInfo toInfo(Escola escola, List<Long> sensorIds) {
+        return new EscolaInfo(escola.getId(), escola.getNome(), escola.getCidade(), escola.getEstado(),
+                Boolean.TRUE.equals(escola.getAtivo()), sensorIds.stream().mapToLong(Long::longValue).toArray());
+    }
+}
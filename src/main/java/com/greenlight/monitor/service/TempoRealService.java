@@ -0,0 +1,370 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.dto.AlertaResumoDTO;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import com.greenlight.monitor.util.Transacoes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal de atualizações em tempo real (Server-Sent Events) para os dashboards.
+ * Leituras e alertas confirmados (após o commit) são acumulados e distribuídos a cada intervalo:
+ * leituras do mesmo sensor no intervalo são agrupadas (vai apenas a última), e cada assinante
+ * recebe somente os eventos das escolas assinadas. Cada assinante tem um buffer limitado drenado
+ * por um pool de envio; um assinante lento cujo buffer enche é desconectado em vez de atrasar os demais.
+ * A distribuição roda em uma thread própria, fora do agendador compartilhado do Spring, para que
+ * tarefas agendadas demoradas (reconciliações, recargas) não atrasem os dashboards.
+ */
+@Service
+public class TempoRealService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TempoRealService.class);
+
+    // Recurso da transação corrente com as leituras a distribuir após o commit
+    private static final Object LEITURAS_DA_TRANSACAO = new Object();
+
+    /**
+     * Leitura enviada no evento "leitura"
+     */
+    public record LeituraTempoReal(long sensorId, long escolaId, String localizacao, BigDecimal temperatura,
+                                   BigDecimal umidade, LocalDateTime timestamp) {
+    }
+
+    /**
+     * Alerta enviado no evento "alerta"
+     */
+    public record AlertaTempoReal(long escolaId, AlertaResumoDTO alerta) {
+    }
+
+    // nome null: comentário de keep-alive
+    private record Evento(String nome, long escolaId, Object dados) {
+    }
+
+    private final class Assinante {
+        private final SseEmitter emitter;
+        // Escolas assinadas em ordem (vazio: todas)
+        private final long[] escolas;
+        private final BlockingQueue<Evento> buffer;
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private volatile boolean encerrado;
+
+        private Assinante(SseEmitter emitter, long[] escolas) {
+            this.emitter = emitter;
+            this.escolas = escolas;
+            this.buffer = new ArrayBlockingQueue<>(capacidadeBuffer);
+        }
+
+        private boolean interessado(Evento evento) {
+            return evento.escolaId() < 0 || escolas.length == 0 || Arrays.binarySearch(escolas, evento.escolaId()) >= 0;
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.realtime.interval:1000}")
+    private long intervaloDistribuicao;
+
+    @Value("${app.realtime.max-subscribers:5000}")
+    private int maximoAssinantes;
+
+    @Value("${app.realtime.client-buffer:256}")
+    private int capacidadeBuffer;
+
+    @Value("${app.realtime.sender-threads:8}")
+    private int threadsEnvio;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuais;
+
+    @Value("${app.realtime.timeout:30m}")
+    private Duration tempoConexao;
+
+    @Value("${app.realtime.keep-alive:20s}")
+    private Duration intervaloKeepAlive;
+
+    @Value("${app.realtime.max-pending-events:1000}")
+    private int maximoEventosPendentes;
+
+    private final Set<Assinante> assinantes = ConcurrentHashMap.newKeySet();
+
+    // Última leitura de cada sensor no intervalo corrente
+    private final ConcurrentHashMap<Long, LeituraTempoReal> leiturasPendentes = new ConcurrentHashMap<>();
+    private BlockingQueue<Evento> eventosPendentes;
+
+    private ExecutorService envio;
+    private ScheduledExecutorService distribuicao;
+    private long ultimoKeepAlive = System.nanoTime();
+
+    private Counter leiturasAgrupadas;
+    private Counter eventosEnviados;
+    private Counter assinantesDescartados;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "tempo-real-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Cada assinante tem no máximo uma tarefa de envio pendente ou em execução; com threads
+        // virtuais a escrita bloqueada de um cliente lento não ocupa uma thread do pool
+        envio = threadsVirtuais
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tempo-real-", 1).factory())
+                : new ThreadPoolExecutor(threadsEnvio, threadsEnvio, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), threadFactory);
+        eventosPendentes = new ArrayBlockingQueue<>(maximoEventosPendentes);
+
+        Gauge.builder("realtime.subscribers", assinantes, Set::size)
+                .description("Dashboards conectados ao canal de tempo real")
+                .register(meterRegistry);
+        leiturasAgrupadas = Counter.builder("realtime.readings.coalesced")
+                .description("Leituras substituídas por outra mais nova do mesmo sensor no intervalo")
+                .register(meterRegistry);
+        eventosEnviados = Counter.builder("realtime.events.sent")
+                .description("Eventos enviados aos assinantes")
+                .register(meterRegistry);
+        assinantesDescartados = Counter.builder("realtime.subscribers.dropped")
+                .description("Assinantes desconectados por não acompanharem o ritmo dos eventos")
+                .register(meterRegistry);
+
+        distribuicao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tempo-real-distribuicao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        distribuicao.scheduleWithFixedDelay(this::distribuirComSeguranca,
+                intervaloDistribuicao, intervaloDistribuicao, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        distribuicao.shutdownNow();
+        for (Assinante assinante : assinantes) {
+            encerrar(assinante);
+        }
+        envio.shutdownNow();
+    }
+
+    /**
+     * Registra um novo assinante
+     *
+     * @param escolaIds escolas assinadas (vazio ou null: todas)
+     * @return emitter da conexão, ou null se o limite de assinantes foi atingido
+     */
+    public SseEmitter assinar(Collection<Long> escolaIds, DashboardService.Estatisticas estatisticasIniciais) {
+        if (assinantes.size() >= maximoAssinantes) {
+            return null;
+        }
+        long[] escolas = escolaIds == null ? new long[0]
+                : escolaIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        SseEmitter emitter = new SseEmitter(tempoConexao.toMillis());
+        Assinante assinante = new Assinante(emitter, escolas);
+        emitter.onCompletion(() -> remover(assinante));
+        emitter.onTimeout(() -> encerrar(assinante));
+        emitter.onError(erro -> remover(assinante));
+        assinantes.add(assinante);
+
+        // Estado inicial para o cliente não depender do próximo intervalo
+        if (estatisticasIniciais != null) {
+            entregar(assinante, new Evento("stats", -1, estatisticasIniciais));
+        }
+        logger.debug("Novo assinante de tempo real ({} escolas); total {}", escolas.length, assinantes.size());
+        return emitter;
+    }
+
+    /**
+     * Encaminha uma leitura para distribuição. Dentro de uma transação a leitura só é liberada
+     * após o commit; sem assinantes conectados nada é feito.
+     */
+    public void publicarLeitura(SensorInfo sensor, Leitura leitura) {
+        if (assinantes.isEmpty()) {
+            return;
+        }
+        LeituraTempoReal evento = new LeituraTempoReal(sensor.id(), sensor.escolaId(), sensor.localizacao(),
+                leitura.getTemperatura(), leitura.getUmidade(), leitura.getTimestamp());
+
+        // Uma única sincronização por transação, mesmo nos lotes
+        List<LeituraTempoReal> daTransacao = Transacoes.recurso(LEITURAS_DA_TRANSACAO, ArrayList::new,
+                (leituras, confirmada) -> {
+                    if (confirmada) {
+                        leituras.forEach(this::acumular);
+                    }
+                });
+        if (daTransacao == null) {
+            acumular(evento);
+        } else {
+            daTransacao.add(evento);
+        }
+    }
+
+    /**
+     * Encaminha um alerta criado ou alterado (chamado após o commit)
+     */
+    public void publicarAlerta(long escolaId, AlertaResumoDTO alerta) {
+        if (assinantes.isEmpty()) {
+            return;
+        }
+        if (!eventosPendentes.offer(new Evento("alerta", escolaId, new AlertaTempoReal(escolaId, alerta)))) {
+            logger.warn("Fila de eventos em tempo real cheia, alerta {} não distribuído", alerta.id());
+        }
+    }
+
+    /**
+     * Encaminha uma nova versão das estatísticas do dashboard (enviada a todos os assinantes)
+     */
+    public void publicarEstatisticas(DashboardService.Estatisticas estatisticas) {
+        if (assinantes.isEmpty()) {
+            return;
+        }
+        if (!eventosPendentes.offer(new Evento("stats", -1, estatisticas))) {
+            logger.warn("Fila de eventos em tempo real cheia, estatísticas não distribuídas");
+        }
+    }
+
+    private void acumular(LeituraTempoReal leitura) {
+        if (leiturasPendentes.put(leitura.sensorId(), leitura) != null) {
+            leiturasAgrupadas.increment();
+        }
+    }
+
+    /**
+     * Uma exceção não tratada cancelaria as execuções seguintes do executor agendado
+     */
+    private void distribuirComSeguranca() {
+        try {
+            distribuir();
+        } catch (Exception e) {
+            logger.error("Erro ao distribuir eventos de tempo real: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Distribui os eventos acumulados no intervalo aos buffers dos assinantes
+     */
+    private void distribuir() {
+        List<Evento> eventos = new ArrayList<>();
+        eventosPendentes.drainTo(eventos);
+        for (Long sensorId : leiturasPendentes.keySet()) {
+            LeituraTempoReal leitura = leiturasPendentes.remove(sensorId);
+            if (leitura != null) {
+                eventos.add(new Evento("leitura", leitura.escolaId(), leitura));
+            }
+        }
+
+        long agora = System.nanoTime();
+        if (agora - ultimoKeepAlive >= intervaloKeepAlive.toNanos()) {
+            eventos.add(new Evento(null, -1, null));
+            ultimoKeepAlive = agora;
+        }
+        if (eventos.isEmpty() || assinantes.isEmpty()) {
+            return;
+        }
+
+        for (Assinante assinante : assinantes) {
+            boolean algum = false;
+            for (Evento evento : eventos) {
+                if (!assinante.interessado(evento)) {
+                    continue;
+                }
+                if (!assinante.buffer.offer(evento)) {
+                    assinantesDescartados.increment();
+                    logger.info("Assinante de tempo real desconectado: buffer de {} eventos cheio", capacidadeBuffer);
+                    encerrar(assinante);
+                    algum = false;
+                    break;
+                }
+                algum = true;
+            }
+            if (algum) {
+                agendarEnvio(assinante);
+            }
+        }
+    }
+
+    private void entregar(Assinante assinante, Evento evento) {
+        if (assinante.buffer.offer(evento)) {
+            agendarEnvio(assinante);
+        }
+    }
+
+    private void agendarEnvio(Assinante assinante) {
+        if (!assinante.encerrado && assinante.enviando.compareAndSet(false, true)) {
+            envio.execute(() -> drenar(assinante));
+        }
+    }
+
+    private void drenar(Assinante assinante) {
+        try {
+            Evento evento;
+            while (!assinante.encerrado && (evento = assinante.buffer.poll()) != null) {
+                if (evento.nome() == null) {
+                    assinante.emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    assinante.emitter.send(SseEmitter.event()
+                            .name(evento.nome())
+                            .data(evento.dados(), MediaType.APPLICATION_JSON));
+                }
+                eventosEnviados.increment();
+            }
+        } catch (Exception e) {
+            // Cliente desconectado: o emitter notifica onError/onCompletion
+            logger.debug("Falha ao enviar evento em tempo real: {}", e.getMessage());
+            remover(assinante);
+        } finally {
+            assinante.enviando.set(false);
+        }
+        // Eventos que chegaram após o último poll e antes da liberação do envio
+        if (!assinante.buffer.isEmpty()) {
+            agendarEnvio(assinante);
+        }
+    }
+
+    private void encerrar(Assinante assinante) {
+        remover(assinante);
+        try {
+            assinante.emitter.complete();
+        } catch (Exception e) {
+            logger.debug("Erro ao encerrar conexão de tempo real: {}", e.getMessage());
+        }
+    }
+
+    private void remover(Assinante assinante) {
+        assinante.encerrado = true;
+        assinante.buffer.clear();
+        assinantes.remove(assinante);
+    }
+}
@@ -0,0 +1,86 @@
+package com.greenlight.monitor.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para paginação por chave (keyset): codifica a chave de ordenação do último
+ * registro retornado (timestamp ou nome) junto com o ID, que desempata registros iguais.
+ * O cliente apenas devolve o token recebido para obter a página seguinte.
+ */
+public final class CursorPaginacao {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public static final int TAMANHO_MAXIMO = 100;
+
+    private final long id;
+    private final String valor;
+
+    private CursorPaginacao(long id, String valor) {
+        this.id = id;
+        this.valor = valor;
+    }
+
+    public static String codificar(LocalDateTime timestamp, long id) {
+        return codificar(timestamp.toString(), id);
+    }
+
+    public static String codificar(String valor, long id) {
+        // ID primeiro: o valor pode conter qualquer caractere, inclusive o separador
+        String conteudo = id + ":" + valor;
+        return ENCODER.encodeToString(conteudo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um token; lança IllegalArgumentException se for inválido
+     */
+    public static CursorPaginacao decodificar(String token) {
+        String conteudo;
+        try {
+            conteudo = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido");
+        }
+
+        int separador = conteudo.indexOf(':');
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Cursor de paginação inválido");
+        }
+        try {
+            return new CursorPaginacao(Long.parseLong(conteudo.substring(0, separador)),
+                    conteudo.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido");
+        }
+    }
+
+    /**
+     * Paginação sem offset para o tamanho solicitado, limitado a {@link #TAMANHO_MAXIMO}
+     */
+    public static Pageable pagina(int tamanho) {
+        return PageRequest.ofSize(Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO)));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getValor() {
+        return valor;
+    }
+
+    public LocalDateTime getTimestamp() {
+        try {
+            return LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.greenlight.monitor.util;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+
+/**
+ * Classificação das falhas no processamento de mensagens.
+ * Falhas transitórias (banco ou conexão indisponível, bloqueio, timeout, deadlock) tendem a
+ * desaparecer em uma nova tentativa: a mensagem deve ser reprocessada, não enviada para a DLQ.
+ * As demais são tratadas como determinísticas (a mesma mensagem falharia de novo).
+ */
+public final class ErrosTransitorios {
+
+    // Classes de SQLState transitórias: conexão (08), rollback por serialização/deadlock (40),
+    // recursos insuficientes (53), intervenção do operador (57) e timeout (HYT, H2)
+    private static final String[] SQL_STATES = {"08", "40", "53", "57", "HYT"};
+
+    private ErrosTransitorios() {
+    }
+
+    /**
+     * Indica se a falha, ou alguma de suas causas, é transitória
+     */
+    public static boolean isTransitorio(Throwable erro) {
+        for (Throwable causa = erro; causa != null; causa = causa.getCause()) {
+            if (causa instanceof TransientDataAccessException
+                    || causa instanceof RecoverableDataAccessException
+                    || causa instanceof DataAccessResourceFailureException
+                    || causa instanceof CannotCreateTransactionException
+                    || causa instanceof SQLTransientException
+                    || causa instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (causa instanceof SQLException sql && sql.getSQLState() != null) {
+                for (String classe : SQL_STATES) {
+                    if (sql.getSQLState().startsWith(classe)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,185 @@
+package com.greenlight.monitor.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Mapa imutável de chaves long primitivas para objetos, com endereçamento aberto.
+ * Evita o boxing de Long e a alocação de nós nas consultas feitas no caminho de ingestão.
+ * Alterações ({@link #with}, {@link #without}) geram uma nova instância, de modo que
+ * leitores concorrentes sempre enxergam um snapshot consistente.
+ */
+public final class LongObjectMap<V> {
+
+    private static final LongObjectMap<?> EMPTY = new LongObjectMap<>(new long[2], new Object[2], 0);
+
+    private final long[] keys;
+    private final Object[] values;
+    private final int size;
+    private final int mask;
+
+    private LongObjectMap(long[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+        this.mask = keys.length - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> LongObjectMap<V> empty() {
+        return (LongObjectMap<V>) EMPTY;
+    }
+
+    public static <V> Builder<V> builder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * Busca o valor associado à chave, ou null se não existir
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = index(key, mask);
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retorna uma cópia do mapa com a chave associada ao valor informado
+     */
+    public LongObjectMap<V> with(long key, V value) {
+        Builder<V> builder = new Builder<>(size + 1);
+        forEachEntry(builder::put);
+        builder.put(key, value);
+        return builder.build();
+    }
+
+    /**
+     * Retorna uma cópia do mapa sem a chave informada
+     */
+    public LongObjectMap<V> without(long key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        Builder<V> builder = new Builder<>(size);
+        forEachEntry((k, v) -> {
+            if (k != key) {
+                builder.put(k, v);
+            }
+        });
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(EntryConsumer<V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEachValue(list::add);
+        return list;
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * Construtor de instâncias; não é thread-safe e não deve ser reutilizado após build()
+     */
+    public static final class Builder<V> {
+
+        private long[] keys;
+        private Object[] values;
+        private int size;
+
+        private Builder(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        public Builder<V> put(long key, V value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Valores nulos não são suportados");
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = index(key, mask);
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return this;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            return this;
+        }
+
+        public LongObjectMap<V> build() {
+            return new LongObjectMap<>(keys, values, size);
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = index(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.greenlight.monitor.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Ações vinculadas ao fim da transação corrente. Estado em memória alterado dentro de uma
+ * transação só é publicado após o commit, ou é descartado se ela não confirmar.
+ */
+public final class Transacoes {
+
+    private Transacoes() {
+    }
+
+    /**
+     * Executa a ação após o commit da transação corrente (imediatamente, fora de transação)
+     */
+    public static void aposCommit(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+
+    /**
+     * Executa a ação se a transação corrente não for confirmada (nada fora de transação)
+     */
+    public static void seNaoConfirmar(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    acao.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Objeto associado à transação corrente pela chave, criado na primeira chamada da transação.
+     * Ao fim da transação ele é desassociado e entregue a {@code aoConcluir}, com a indicação de commit.
+     *
+     * @return o objeto da transação, ou null fora de transação
+     */
+    public static <T> T recurso(Object chave, Supplier<T> criar, BiConsumer<T, Boolean> aoConcluir) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        T recurso = (T) TransactionSynchronizationManager.getResource(chave);
+        if (recurso == null) {
+            T novo = criar.get();
+            TransactionSynchronizationManager.bindResource(chave, novo);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(chave);
+                    aoConcluir.accept(novo, status == STATUS_COMMITTED);
+                }
+            });
+            recurso = novo;
+        }
+        return recurso;
+    }
+
+    /**
+     * Registra o sensor como alterado pela transação corrente. Se ela não confirmar,
+     * {@code invalidar} é chamado uma vez para cada sensor registrado com a mesma chave.
+     */
+    public static void invalidarSeNaoConfirmar(Object chave, long sensorId, LongConsumer invalidar) {
+        Set<Long> sensores = recurso(chave, HashSet::new, (alterados, confirmada) -> {
+            if (!confirmada) {
+                alterados.forEach(invalidar::accept);
+            }
+        });
+        if (sensores != null) {
+            sensores.add(sensorId);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+-- Migração: leitura e alerta passam de IDENTITY para sequências com alocação em blocos.
+-- O Hibernate desabilita o batching de INSERT para entidades com IDENTITY; com sequência
+-- + pooled optimizer (allocationSize = 50) os IDs são obtidos em blocos e os inserts
+-- são agrupados em lotes JDBC.
+--
+-- Aplicar manualmente no PostgreSQL antes de subir a versão com o perfil prod
+-- (ddl-auto: validate verifica a existência das sequências).
+
+BEGIN;
+
+-- leitura
+ALTER TABLE leitura ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE leitura ALTER COLUMN id DROP DEFAULT;
+CREATE SEQUENCE IF NOT EXISTS leitura_seq INCREMENT BY 50 START WITH 1;
+-- Com o pooled optimizer o valor da sequência é o limite superior do bloco:
+-- o próximo nextval deve ser >= MAX(id) + 50 para que o bloco comece após MAX(id)
+SELECT setval('leitura_seq', (SELECT COALESCE(MAX(id), 0) FROM leitura) + 50, false);
+
+-- alerta
+ALTER TABLE alerta ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE alerta ALTER COLUMN id DROP DEFAULT;
+CREATE SEQUENCE IF NOT EXISTS alerta_seq INCREMENT BY 50 START WITH 1;
+SELECT setval('alerta_seq', (SELECT COALESCE(MAX(id), 0) FROM alerta) + 50, false);
+
+-- Sequências antigas de colunas serial (se existirem) deixam de ser usadas
+DROP SEQUENCE IF EXISTS leitura_id_seq;
+DROP SEQUENCE IF EXISTS alerta_id_seq;
+
+COMMIT;
@@ -0,0 +1,82 @@
+-- Migração: leitura passa a ser uma tabela particionada por intervalo de timestamp.
+-- A retenção deixa de ser um DELETE linha a linha (que gera bloat e WAL proporcional ao
+-- volume apagado) e passa a ser DETACH/DROP de partições inteiras, feito pelo
+-- LeituraParticaoService (app.leitura.partitioning.*), que também cria as partições futuras.
+--
+-- Em tabelas particionadas a chave primária precisa incluir a coluna de particionamento,
+-- por isso a PK passa a ser (id, timestamp) e a FK alerta.id_leitura -> leitura.id é removida
+-- (não há mais unicidade garantida apenas por id). A consistência é mantida pela aplicação:
+-- os alertas de uma partição são excluídos antes de ela ser removida.
+--
+-- Aplicar manualmente no PostgreSQL (11+) após V1, com a aplicação parada.
+
+BEGIN;
+
+-- Remove as FKs que referenciam leitura
+DO $$
+DECLARE
+    fk RECORD;
+BEGIN
+    FOR fk IN
+        SELECT conrelid::regclass AS tabela, conname
+        FROM pg_constraint
+        WHERE contype = 'f' AND confrelid = 'leitura'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.tabela, fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE leitura RENAME TO leitura_antiga;
+
+CREATE TABLE leitura (
+    id           BIGINT        NOT NULL,
+    id_sensor    BIGINT        NOT NULL REFERENCES sensor (id),
+    temperatura  NUMERIC(5, 2) NOT NULL,
+    umidade      NUMERIC(5, 2) NOT NULL,
+    timestamp    TIMESTAMP(6)  NOT NULL,
+    data_criacao TIMESTAMP(6)  NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX idx_leitura_sensor_timestamp ON leitura (id_sensor, timestamp);
+CREATE INDEX idx_leitura_timestamp ON leitura (timestamp);
+
+-- Recebe leituras fora das partições existentes (ex.: timestamps muito antigos vindos do sensor)
+CREATE TABLE leitura_default PARTITION OF leitura DEFAULT;
+
+-- Partições mensais cobrindo os dados existentes; as futuras são criadas pela aplicação
+DO $$
+DECLARE
+    inicio DATE;
+    fim    DATE;
+BEGIN
+    SELECT date_trunc('month', MIN(timestamp))::date,
+           (date_trunc('month', MAX(timestamp)) + INTERVAL '1 month')::date
+    INTO inicio, fim
+    FROM leitura_antiga;
+
+    IF inicio IS NULL THEN
+        inicio := date_trunc('month', CURRENT_DATE)::date;
+        fim := (inicio + INTERVAL '1 month')::date;
+    END IF;
+
+    WHILE inicio < fim LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF leitura FOR VALUES FROM (%L) TO (%L)',
+                       'leitura_p' || to_char(inicio, 'YYYYMMDD'),
+                       inicio,
+                       (inicio + INTERVAL '1 month')::date);
+        inicio := (inicio + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO leitura (id, id_sensor, temperatura, umidade, timestamp, data_criacao)
+SELECT id, id_sensor, temperatura, umidade, timestamp, data_criacao
+FROM leitura_antiga;
+
+DROP TABLE leitura_antiga;
+
+CREATE INDEX IF NOT EXISTS idx_alerta_leitura ON alerta (id_leitura);
+
+COMMIT;
+
+ANALYZE leitura;
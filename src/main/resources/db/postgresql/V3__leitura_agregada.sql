@@ -0,0 +1,29 @@
+-- Migração: agregados de leituras por sensor em resolução de minuto, hora e dia.
+-- Mantidos incrementalmente pela ingestão (INSERT ... ON CONFLICT) e usados para médias,
+-- mínimos, máximos e desvio padrão de períodos sem varrer a tabela leitura.
+--
+-- Aplicar manualmente no PostgreSQL após V2. Os agregados das leituras existentes são
+-- gerados depois pelo endpoint POST /api/admin/leituras/agregados/reconstruir.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS leitura_agregada (
+    id_sensor                  BIGINT           NOT NULL REFERENCES sensor (id),
+    resolucao                  VARCHAR(10)      NOT NULL CHECK (resolucao IN ('MINUTO', 'HORA', 'DIA')),
+    inicio                     TIMESTAMP(6)     NOT NULL,
+    quantidade                 BIGINT           NOT NULL,
+    temperatura_soma           DOUBLE PRECISION NOT NULL,
+    temperatura_min            DOUBLE PRECISION NOT NULL,
+    temperatura_max            DOUBLE PRECISION NOT NULL,
+    temperatura_soma_quadrados DOUBLE PRECISION NOT NULL,
+    umidade_soma               DOUBLE PRECISION NOT NULL,
+    umidade_min                DOUBLE PRECISION NOT NULL,
+    umidade_max                DOUBLE PRECISION NOT NULL,
+    umidade_soma_quadrados     DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (id_sensor, resolucao, inicio)
+);
+
+-- A reconstrução remove os agregados de um dia por intervalo de início
+CREATE INDEX IF NOT EXISTS idx_leitura_agregada_inicio ON leitura_agregada (inicio);
+
+COMMIT;
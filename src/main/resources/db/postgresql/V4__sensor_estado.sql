@@ -0,0 +1,38 @@
+-- Migração: estado atual por sensor (última leitura e último nível de alerta).
+-- Mantido pela ingestão (upsert condicional ao timestamp da leitura) e carregado em memória
+-- na inicialização; substitui as consultas de "última leitura" que percorrem o histórico.
+--
+-- Aplicar manualmente no PostgreSQL após V3. O preenchimento inicial abaixo percorre a
+-- tabela leitura uma única vez.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS sensor_estado (
+    id_sensor           BIGINT        PRIMARY KEY REFERENCES sensor (id) ON DELETE CASCADE,
+    id_leitura          BIGINT        NOT NULL,
+    temperatura         NUMERIC(5, 2) NOT NULL,
+    umidade             NUMERIC(5, 2) NOT NULL,
+    timestamp_leitura   TIMESTAMP(6)  NOT NULL,
+    atualizado_em       TIMESTAMP(6)  NOT NULL,
+    ultimo_nivel_alerta VARCHAR(20),
+    ultimo_alerta_em    TIMESTAMP(6)
+);
+
+INSERT INTO sensor_estado (id_sensor, id_leitura, temperatura, umidade, timestamp_leitura, atualizado_em)
+SELECT DISTINCT ON (id_sensor) id_sensor, id, temperatura, umidade, timestamp, data_criacao
+FROM leitura
+ORDER BY id_sensor, timestamp DESC, id DESC
+ON CONFLICT (id_sensor) DO NOTHING;
+
+UPDATE sensor_estado e
+SET ultimo_nivel_alerta = ult.nivel,
+    ultimo_alerta_em = ult.timestamp
+FROM (
+    SELECT DISTINCT ON (l.id_sensor) l.id_sensor, a.nivel, a.timestamp
+    FROM alerta a
+    JOIN leitura l ON l.id = a.id_leitura
+    ORDER BY l.id_sensor, a.timestamp DESC
+) ult
+WHERE e.id_sensor = ult.id_sensor;
+
+COMMIT;
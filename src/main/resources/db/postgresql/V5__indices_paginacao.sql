@@ -0,0 +1,11 @@
+-- Migração: índices para a paginação por chave (keyset) das listagens JSON.
+-- Cada página é uma busca de intervalo no índice a partir do cursor (timestamp, id) ou
+-- (nome, id), com custo constante independentemente da profundidade da rolagem.
+--
+-- Aplicar manualmente no PostgreSQL após V4. CONCURRENTLY evita bloquear a ingestão,
+-- mas não pode ser executado dentro de transação (não usar BEGIN/COMMIT aqui).
+-- Em leitura (particionada), o índice é criado em cada partição.
+
+CREATE INDEX IF NOT EXISTS idx_leitura_timestamp_id ON leitura (timestamp DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_alerta_timestamp_id ON alerta (timestamp DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_escola_nome_id ON escola (nome, id);
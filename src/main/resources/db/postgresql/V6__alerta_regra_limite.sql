@@ -0,0 +1,31 @@
+-- Migração: sobrescritas dos limites das regras de alerta por escola ou por sensor.
+-- As regras são definidas em app.alerts.rules.definitions; cada linha ajusta os limites de
+-- uma regra (pelo id) em um escopo. Limites nulos herdam o valor do escopo acima
+-- (sensor → escola → configuração) e ativo = false desliga a regra no escopo.
+-- A aplicação recompila as regras periodicamente (app.alerts.rules.refresh-interval)
+-- ou via POST /api/admin/alertas/regras/recarregar.
+--
+-- Aplicar manualmente no PostgreSQL após V5.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS alerta_regra_limite (
+    id              BIGSERIAL     PRIMARY KEY,
+    regra           VARCHAR(50)   NOT NULL,
+    id_escola       BIGINT        REFERENCES escola (id) ON DELETE CASCADE,
+    id_sensor       BIGINT        REFERENCES sensor (id) ON DELETE CASCADE,
+    temperatura_min NUMERIC(5, 2),
+    temperatura_max NUMERIC(5, 2),
+    umidade_min     NUMERIC(5, 2),
+    umidade_max     NUMERIC(5, 2),
+    ativo           BOOLEAN       NOT NULL DEFAULT TRUE,
+    atualizado_em   TIMESTAMP(6)  NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT ck_alerta_regra_limite_escopo CHECK ((id_escola IS NULL) <> (id_sensor IS NULL))
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_alerta_regra_limite_escola
+    ON alerta_regra_limite (regra, id_escola) WHERE id_escola IS NOT NULL;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_alerta_regra_limite_sensor
+    ON alerta_regra_limite (regra, id_sensor) WHERE id_sensor IS NOT NULL;
+
+COMMIT;
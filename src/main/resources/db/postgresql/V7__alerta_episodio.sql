@@ -0,0 +1,24 @@
+-- Migração: alertas de regras de limite passam a ser episódios.
+-- Um episódio é aberto quando a regra é disparada e encerrado (timestamp_fim) quando a leitura
+-- sai da condição com histerese; enquanto aberto, o mesmo registro recebe o valor de pico e o
+-- escalonamento de nível, em vez de um novo alerta a cada janela de repetição.
+-- Alertas existentes (regra nula) continuam como alertas pontuais.
+--
+-- Aplicar manualmente no PostgreSQL após V6.
+
+BEGIN;
+
+ALTER TABLE alerta ADD COLUMN IF NOT EXISTS regra          VARCHAR(50);
+ALTER TABLE alerta ADD COLUMN IF NOT EXISTS timestamp_fim  TIMESTAMP(6);
+ALTER TABLE alerta ADD COLUMN IF NOT EXISTS valor_pico     NUMERIC(5, 2);
+ALTER TABLE alerta ADD COLUMN IF NOT EXISTS timestamp_pico TIMESTAMP(6);
+
+-- Episódios abertos (carregados na inicialização e a cada recarga de um sensor)
+CREATE INDEX IF NOT EXISTS idx_alerta_episodio_aberto
+    ON alerta (id_leitura) WHERE regra IS NOT NULL AND timestamp_fim IS NULL;
+
+-- Consultas de episódios por período
+CREATE INDEX IF NOT EXISTS idx_alerta_episodio_periodo
+    ON alerta (timestamp, timestamp_fim) WHERE regra IS NOT NULL;
+
+COMMIT;
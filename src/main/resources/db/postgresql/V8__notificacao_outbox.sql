@@ -0,0 +1,26 @@
+-- Migração: outbox transacional das notificações de alerta.
+-- Os alertas publicados no RabbitMQ são gravados nesta tabela na mesma transação que o
+-- registro em alerta; o relay da aplicação publica as linhas em lotes com confirmação do
+-- broker (publisher confirms) e remove as confirmadas. Linhas sem confirmação são
+-- reenviadas (entrega "pelo menos uma vez"; message_id = "outbox-<id>").
+--
+-- Aplicar manualmente no PostgreSQL após V7.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS notificacao_outbox (
+    id                BIGSERIAL      PRIMARY KEY,
+    exchange          VARCHAR(100)   NOT NULL,
+    routing_key       VARCHAR(100)   NOT NULL,
+    tipo_payload      VARCHAR(200),
+    payload           VARCHAR(10000) NOT NULL,
+    criado_em         TIMESTAMP(6)   NOT NULL,
+    tentativas        INTEGER        NOT NULL DEFAULT 0,
+    proxima_tentativa TIMESTAMP(6)   NOT NULL
+);
+
+-- Próximas linhas a publicar (FOR UPDATE SKIP LOCKED pelo relay)
+CREATE INDEX IF NOT EXISTS idx_notificacao_outbox_pendente
+    ON notificacao_outbox (proxima_tentativa, id);
+
+COMMIT;
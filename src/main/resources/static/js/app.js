@@ -6,7 +6,7 @@
 window.EscolaClimaMonitor = {
     // Configuration
     config: {
-        refreshInterval: 300000, // 5 minutes
+        refreshInterval: 30000, // 30 seconds (unchanged stats answer 304)
         alertTimeout: 5000, // 5 seconds
         animationDuration: 300
     },
@@ -195,15 +195,59 @@ window.EscolaClimaMonitor = {
 
     // Initialize real-time updates
     initRealTimeUpdates: function() {
-        // WebSocket or Server-Sent Events for real-time data
-        // This would be implemented for live sensor data updates
-        console.log('Real-time updates initialization placeholder');
+        // Server-Sent Events: readings (coalesced per sensor), alerts and dashboard stats
+        if (window.location.pathname !== '/dashboard' || typeof EventSource === 'undefined') {
+            return;
+        }
+
+        this.eventSource = new EventSource('/api/dashboard/stream');
+
+        this.eventSource.addEventListener('stats', event => {
+            this.updateDashboardStats(JSON.parse(event.data));
+        });
+
+        this.eventSource.addEventListener('leitura', event => {
+            this.updateSensorReading(JSON.parse(event.data));
+        });
+
+        this.eventSource.addEventListener('alerta', event => {
+            const data = JSON.parse(event.data);
+            if (data.alerta && data.alerta.status === 'Emitido') {
+                const type = data.alerta.nivel === 'Crítico' ? 'danger' : 'warning';
+                this.utils.showNotification(`${data.alerta.tipo}: ${data.alerta.mensagem}`, type);
+            }
+        });
+
+        // EventSource reconnects by itself; polling covers the gap while disconnected
+        this.eventSource.onerror = () => {
+            console.warn('Real-time connection lost, retrying');
+        };
+    },
+
+    // Update sensor values shown on the page, if present
+    updateSensorReading: function(data) {
+        const sensor = document.querySelector(`[data-sensor-id="${CSS.escape(String(data.sensorId))}"]`);
+        if (!sensor) {
+            return;
+        }
+        const temperatura = sensor.querySelector('[data-leitura="temperatura"]');
+        const umidade = sensor.querySelector('[data-leitura="umidade"]');
+        if (temperatura && data.temperatura !== null) {
+            temperatura.textContent = data.temperatura;
+        }
+        if (umidade && data.umidade !== null) {
+            umidade.textContent = data.umidade;
+        }
     },
 
     // Start auto-refresh for dashboard data
     startAutoRefresh: function() {
         if (window.location.pathname === '/dashboard') {
             setInterval(() => {
+                // Skip polling while the real-time channel is connected
+                if (this.eventSource && this.eventSource.readyState === EventSource.OPEN) {
+                    return;
+                }
                 this.refreshDashboardData();
             }, this.config.refreshInterval);
         }
@@ -211,11 +255,20 @@ window.EscolaClimaMonitor = {
 
     // Refresh dashboard data
     refreshDashboardData: function() {
-        // AJAX call to refresh dashboard statistics
-        fetch('/api/dashboard/stats')
-            .then(response => response.json())
+        // AJAX call to refresh dashboard statistics (304 when the snapshot version is unchanged)
+        const headers = this.dashboardEtag ? { 'If-None-Match': this.dashboardEtag } : {};
+        fetch('/api/dashboard/stats', { headers: headers, cache: 'no-store' })
+            .then(response => {
+                if (response.status === 304 || !response.ok) {
+                    return null;
+                }
+                this.dashboardEtag = response.headers.get('ETag');
+                return response.json();
+            })
             .then(data => {
-                this.updateDashboardStats(data);
+                if (data) {
+                    this.updateDashboardStats(data);
+                }
             })
             .catch(error => {
                 console.error('Error refreshing dashboard data:', error);
@@ -289,10 +342,13 @@ window.EscolaClimaMonitor = {
             const alertDiv = document.createElement('div');
             alertDiv.className = `alert alert-${type} alert-dismissible fade show position-fixed`;
             alertDiv.style.cssText = 'top: 20px; right: 20px; z-index: 9999; min-width: 300px;';
-            alertDiv.innerHTML = `
-                ${message}
-                <button type="button" class="btn-close" data-bs-dismiss="alert"></button>
-            `;
+            // Message is plain text (alert texts come from the server and the AI): never parse it as HTML
+            alertDiv.textContent = message;
+            const closeButton = document.createElement('button');
+            closeButton.type = 'button';
+            closeButton.className = 'btn-close';
+            closeButton.dataset.bsDismiss = 'alert';
+            alertDiv.appendChild(closeButton);
             
             document.body.appendChild(alertDiv);
             
@@ -0,0 +1,135 @@
+package com.greenlight.monitor.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Vazão (mensagens/s) e latência p99 do processamento das leituras com os consumidores em threads de
+ * plataforma (10 consumidores, o max-concurrency padrão) e em threads virtuais (200 consumidores,
+ * conexões limitadas pelo LimitadorConexoesDataSource ao tamanho do pool do Hikari).
+ * Cada mensagem faz uma chamada remota bloqueante de 20 ms (como a da IA), fora da transação, e uma
+ * transação curta no H2 que segura a conexão por mais 2 ms (a ida e volta ao banco).
+ * Executar com {@code mvn test -Dbenchmark=true -Dtest=ThreadsVirtuaisBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ThreadsVirtuaisBenchmarkTest {
+
+    private static final int MENSAGENS = 5_000;
+    private static final int TAMANHO_POOL = 10;
+    private static final long CHAMADA_REMOTA_MS = 20;
+    private static final long IDA_E_VOLTA_BANCO_MS = 2;
+
+    private record Resultado(double mensagensPorSegundo, double p99Ms, int falhas) {
+    }
+
+    @Test
+    void mensagensPorSegundoELatenciaP99() throws Exception {
+        // Aquecimento da JIT e do pool descartado
+        medir(false, 10, 500);
+        medir(true, 200, 500);
+
+        Resultado plataforma = medir(false, 10, MENSAGENS);
+        Resultado virtuais = medir(true, 200, MENSAGENS);
+
+        System.out.printf("Threads de plataforma (10 consumidores): %.0f mensagens/s, p99 %.1f ms%n",
+                plataforma.mensagensPorSegundo(), plataforma.p99Ms());
+        System.out.printf("Threads virtuais (200 consumidores, %d conexões): %.0f mensagens/s, p99 %.1f ms%n",
+                TAMANHO_POOL, virtuais.mensagensPorSegundo(), virtuais.p99Ms());
+        assertThat(plataforma.falhas()).isZero();
+        assertThat(virtuais.falhas()).isZero();
+    }
+
+    /**
+     * Processa {@code mensagens} já disponíveis na fila com {@code consumidores} consumidores em laço,
+     * como os do SimpleMessageListenerContainer, e mede o tempo de processamento de cada uma
+     * (o mesmo intervalo do timer rabbitmq.listener.processing)
+     */
+    private Resultado medir(boolean threadsVirtuais, int consumidores, int mensagens) throws Exception {
+        HikariDataSource hikari = new HikariDataSource();
+        hikari.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        hikari.setMaximumPoolSize(TAMANHO_POOL);
+        hikari.setMinimumIdle(TAMANHO_POOL);
+        hikari.setConnectionTimeout(Duration.ofSeconds(30).toMillis());
+        try (Connection conexao = hikari.getConnection(); Statement statement = conexao.createStatement()) {
+            statement.execute("CREATE TABLE leitura (id BIGINT AUTO_INCREMENT PRIMARY KEY, sensor_id BIGINT, " +
+                    "temperatura DECIMAL(5,2))");
+        }
+
+        try {
+            DataSource dataSource = threadsVirtuais
+                    ? new LimitadorConexoesDataSource(hikari, TAMANHO_POOL, Duration.ofSeconds(30))
+                    : hikari;
+            TaskExecutor executor = threadsVirtuais
+                    ? new VirtualThreadTaskExecutor("rabbit-listener-")
+                    : new SimpleAsyncTaskExecutor("rabbit-listener-");
+
+            AtomicInteger proxima = new AtomicInteger();
+            AtomicInteger falhas = new AtomicInteger();
+            long[] latencias = new long[mensagens];
+            CountDownLatch fim = new CountDownLatch(consumidores);
+
+            long inicio = System.nanoTime();
+            for (int c = 0; c < consumidores; c++) {
+                executor.execute(() -> {
+                    try {
+                        int mensagem;
+                        while ((mensagem = proxima.getAndIncrement()) < mensagens) {
+                            long recebida = System.nanoTime();
+                            try {
+                                processar(dataSource, mensagem);
+                            } catch (SQLException | InterruptedException e) {
+                                falhas.incrementAndGet();
+                            }
+                            latencias[mensagem] = System.nanoTime() - recebida;
+                        }
+                    } finally {
+                        fim.countDown();
+                    }
+                });
+            }
+            assertThat(fim.await(5, TimeUnit.MINUTES)).isTrue();
+            long decorrido = System.nanoTime() - inicio;
+
+            Arrays.sort(latencias);
+            double p99 = latencias[(int) Math.ceil(mensagens * 0.99) - 1] / 1e6;
+            return new Resultado(mensagens / (decorrido / 1e9), p99, falhas.get());
+        } finally {
+            hikari.close();
+        }
+    }
+
+    private static void processar(DataSource dataSource, int mensagem) throws SQLException, InterruptedException {
+        Thread.sleep(CHAMADA_REMOTA_MS);
+
+        try (Connection conexao = dataSource.getConnection()) {
+            conexao.setAutoCommit(false);
+            try (PreparedStatement insert = conexao.prepareStatement(
+                    "INSERT INTO leitura (sensor_id, temperatura) VALUES (?, ?)")) {
+                insert.setLong(1, mensagem % 100);
+                insert.setBigDecimal(2, BigDecimal.valueOf(20 + mensagem % 15));
+                insert.executeUpdate();
+            }
+            Thread.sleep(IDA_E_VOLTA_BANCO_MS);
+            conexao.commit();
+        }
+    }
+}
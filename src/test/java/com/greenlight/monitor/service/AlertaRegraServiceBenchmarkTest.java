@@ -0,0 +1,73 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.repository.AlertaRegraLimiteRepository;
+import com.greenlight.monitor.service.AlertaRegraService.TabelaRegras;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Leituras avaliadas por segundo: tabela de decisão compilada contra a cadeia de comparações BigDecimal original.
+ * Executar com {@code mvn test -Dbenchmark=true -Dtest=AlertaRegraServiceBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AlertaRegraServiceBenchmarkTest {
+
+    private static final int LEITURAS = 1 << 16;
+    private static final int RODADAS = 200;
+
+    @Test
+    void leiturasAvaliadasPorSegundo() {
+        AlertaRegraLimiteRepository limiteRepository = mock(AlertaRegraLimiteRepository.class);
+        when(limiteRepository.findAll()).thenReturn(List.of());
+        AlertaRegraService service = AlertaRegraServiceTest.servicoPadrao(limiteRepository);
+        TabelaRegras tabela = service.getTabela();
+
+        // Valores típicos de sala de aula, com escala de uma casa decimal como no banco
+        Random aleatorio = new Random(42);
+        BigDecimal[] temperaturas = new BigDecimal[LEITURAS];
+        BigDecimal[] umidades = new BigDecimal[LEITURAS];
+        for (int i = 0; i < LEITURAS; i++) {
+            temperaturas[i] = BigDecimal.valueOf(180 + aleatorio.nextInt(200), 1);
+            umidades[i] = BigDecimal.valueOf(200 + aleatorio.nextInt(700), 1);
+        }
+
+        IntToLongFunction legado = i -> AlertaRegraServiceTest.compararLegado(temperaturas[i], umidades[i]);
+        IntToLongFunction compilada = i -> service.avaliar(tabela, i & 1023, temperaturas[i], umidades[i]);
+
+        // Aquecimento da JIT descartado
+        medir(legado, temperaturas.length);
+        medir(compilada, temperaturas.length);
+        double vazaoLegado = medir(legado, temperaturas.length);
+        double vazaoCompilada = medir(compilada, temperaturas.length);
+
+        System.out.printf("Regras: %.0f leituras/s com a cadeia BigDecimal, %.0f leituras/s com a tabela compilada%n",
+                vazaoLegado, vazaoCompilada);
+        assertThat(vazaoCompilada).isPositive();
+    }
+
+    /**
+     * @return leituras avaliadas por segundo
+     */
+    private static double medir(IntToLongFunction avaliar, int leituras) {
+        long acumulado = 0;
+        long inicio = System.nanoTime();
+        for (int rodada = 0; rodada < RODADAS; rodada++) {
+            for (int i = 0; i < leituras; i++) {
+                acumulado += avaliar.applyAsLong(i);
+            }
+        }
+        long decorrido = System.nanoTime() - inicio;
+        // Evita que o resultado seja descartado pela JIT
+        assertThat(acumulado).isNotNegative();
+        return (double) leituras * RODADAS / (decorrido / 1e9);
+    }
+}
@@ -0,0 +1,163 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaRegrasProperties;
+import com.greenlight.monitor.config.AlertaRegrasProperties.Regra;
+import com.greenlight.monitor.entity.AlertaRegraLimite;
+import com.greenlight.monitor.repository.AlertaRegraLimiteRepository;
+import com.greenlight.monitor.service.AlertaRegraService.TabelaRegras;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tabela de decisão compilada das regras padrão contra a cadeia de comparações original, e recarga das sobrescritas
+ */
+class AlertaRegraServiceTest {
+
+    private static final long SENSOR_ID = 4L;
+
+    private static final BigDecimal TEMP_CRITICA = BigDecimal.valueOf(35.0);
+    private static final BigDecimal TEMP_ALTA = BigDecimal.valueOf(30.0);
+    private static final BigDecimal TEMP_ELEVADA = BigDecimal.valueOf(28.0);
+    private static final BigDecimal UMIDADE_BAIXA = BigDecimal.valueOf(30.0);
+    private static final BigDecimal UMIDADE_ALTA = BigDecimal.valueOf(80.0);
+    private static final BigDecimal UMIDADE_INDICE_CALOR = BigDecimal.valueOf(70);
+    private static final String[] TIPOS_LEGADO = {"Calor Extremo", "Calor Intenso", "Temperatura Elevada",
+            "Umidade Baixa", "Umidade Alta", "Índice de Calor Elevado"};
+
+    private AlertaRegraLimiteRepository limiteRepository;
+    private AlertaRegraService service;
+
+    @BeforeEach
+    void setUp() {
+        limiteRepository = mock(AlertaRegraLimiteRepository.class);
+        when(limiteRepository.findAll()).thenReturn(List.of());
+        service = servicoPadrao(limiteRepository);
+    }
+
+    @Test
+    void tabelaPadraoEquivaleAsComparacoesOriginais() {
+        TabelaRegras tabela = service.getTabela();
+        for (int t = 150; t <= 450; t += 5) {
+            for (int u = 100; u <= 950; u += 25) {
+                BigDecimal temperatura = BigDecimal.valueOf(t, 1);
+                BigDecimal umidade = BigDecimal.valueOf(u, 1);
+                assertThat(tipos(tabela, service.avaliar(tabela, SENSOR_ID, temperatura, umidade)))
+                        .as("%s°C, %s%%", temperatura, umidade)
+                        .isEqualTo(avaliarLegado(temperatura, umidade));
+            }
+        }
+    }
+
+    @Test
+    void recargaAplicaSobrescritasDoBancoSemReinicio() {
+        BigDecimal temperatura = BigDecimal.valueOf(31.0);
+        BigDecimal umidade = BigDecimal.valueOf(50.0);
+        assertThat(tipos(service.getTabela(), service.avaliar(service.getTabela(), SENSOR_ID, temperatura, umidade)))
+                .containsExactly("Calor Intenso");
+
+        AlertaRegraLimite limite = new AlertaRegraLimite();
+        limite.setRegra("calor-intenso");
+        limite.setSensorId(SENSOR_ID);
+        limite.setTemperaturaMin(BigDecimal.valueOf(32.0));
+        when(limiteRepository.findAll()).thenReturn(List.of(limite));
+        service.recarregar();
+
+        // A regra seguinte do grupo passa a ser a primeira satisfeita
+        assertThat(tipos(service.getTabela(), service.avaliar(service.getTabela(), SENSOR_ID, temperatura, umidade)))
+                .containsExactly("Temperatura Elevada");
+        assertThat(tipos(service.getTabela(), service.avaliar(service.getTabela(), SENSOR_ID + 1, temperatura, umidade)))
+                .containsExactly("Calor Intenso");
+    }
+
+    /**
+     * Serviço com as regras padrão de application.yml
+     */
+    static AlertaRegraService servicoPadrao(AlertaRegraLimiteRepository limiteRepository) {
+        AlertaRegrasProperties properties = new AlertaRegrasProperties();
+        properties.setDefinitions(List.of(
+                regra("calor-extremo", "temperatura", "Calor Extremo", "Crítico", 35.0, null, null, null),
+                regra("calor-intenso", "temperatura", "Calor Intenso", "Alto", 30.0, null, null, null),
+                regra("temperatura-elevada", "temperatura", "Temperatura Elevada", "Médio", 28.0, null, null, null),
+                regra("umidade-baixa", "umidade", "Umidade Baixa", "Médio", null, null, null, 30.0),
+                regra("umidade-alta", "umidade", "Umidade Alta", "Médio", null, null, 80.0, null),
+                regra("indice-calor", null, "Índice de Calor Elevado", "Alto", 28.0, null, 70.0, null)));
+        AlertaRegraService service = new AlertaRegraService();
+        ReflectionTestUtils.setField(service, "properties", properties);
+        ReflectionTestUtils.setField(service, "alertaRegraLimiteRepository", limiteRepository);
+        ReflectionTestUtils.setField(service, "sensorRegistryService", mock(SensorRegistryService.class));
+        service.init();
+        return service;
+    }
+
+    /**
+     * Tipos de alerta da cadeia de comparações que a tabela substituiu
+     */
+    static Set<String> avaliarLegado(BigDecimal temperatura, BigDecimal umidade) {
+        int disparadas = compararLegado(temperatura, umidade);
+        Set<String> tipos = new HashSet<>();
+        for (int i = 0; i < TIPOS_LEGADO.length; i++) {
+            if ((disparadas & (1 << i)) != 0) {
+                tipos.add(TIPOS_LEGADO[i]);
+            }
+        }
+        return tipos;
+    }
+
+    /**
+     * Comparações de AlertaService.processarLeitura antes da tabela (bits na ordem de TIPOS_LEGADO)
+     */
+    static int compararLegado(BigDecimal temperatura, BigDecimal umidade) {
+        int disparadas = 0;
+        if (temperatura.compareTo(TEMP_CRITICA) >= 0) {
+            disparadas |= 1;
+        } else if (temperatura.compareTo(TEMP_ALTA) >= 0) {
+            disparadas |= 1 << 1;
+        } else if (temperatura.compareTo(TEMP_ELEVADA) >= 0) {
+            disparadas |= 1 << 2;
+        }
+        if (umidade.compareTo(UMIDADE_BAIXA) <= 0) {
+            disparadas |= 1 << 3;
+        } else if (umidade.compareTo(UMIDADE_ALTA) >= 0) {
+            disparadas |= 1 << 4;
+        }
+        if (temperatura.compareTo(TEMP_ELEVADA) >= 0 && umidade.compareTo(UMIDADE_INDICE_CALOR) >= 0) {
+            disparadas |= 1 << 5;
+        }
+        return disparadas;
+    }
+
+    private static Set<String> tipos(TabelaRegras tabela, long disparadas) {
+        Set<String> tipos = new HashSet<>();
+        for (int i = 0; i < tabela.size(); i++) {
+            if ((disparadas & (1L << i)) != 0) {
+                tipos.add(tabela.getRegra(i).tipo());
+            }
+        }
+        return tipos;
+    }
+
+    private static Regra regra(String id, String grupo, String tipo, String nivel, Double temperaturaMin,
+                               Double temperaturaMax, Double umidadeMin, Double umidadeMax) {
+        Regra regra = new Regra();
+        regra.setId(id);
+        regra.setGrupo(grupo);
+        regra.setTipo(tipo);
+        regra.setNivel(nivel);
+        regra.setMensagem(tipo);
+        regra.setTemperaturaMin(temperaturaMin);
+        regra.setTemperaturaMax(temperaturaMax);
+        regra.setUmidadeMin(umidadeMin);
+        regra.setUmidadeMax(umidadeMax);
+        return regra;
+    }
+}
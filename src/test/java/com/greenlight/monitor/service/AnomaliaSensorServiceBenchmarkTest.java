@@ -0,0 +1,116 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Vazão do detector de anomalias com 1 e N threads sobre muitos sensores.
+ * Executar com {@code mvn test -Dbenchmark=true -Dtest=AnomaliaSensorServiceBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AnomaliaSensorServiceBenchmarkTest {
+
+    private static final int SENSORES = 10_000;
+    private static final int LEITURAS_POR_SENSOR = 200;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 4, 8, 0);
+
+    @Test
+    void vazaoComUmaEComVariasThreads() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // Aquecimento da JIT descartado
+        executar(threads);
+        double sequencial = executar(1);
+        double paralela = executar(threads);
+
+        System.out.printf("Anomalias: %.0f leituras/s com 1 thread, %.0f leituras/s com %d threads%n",
+                sequencial, paralela, threads);
+        assertThat(paralela).isPositive();
+    }
+
+    /**
+     * Cada thread processa, em ordem cronológica, as leituras de uma fatia dos sensores
+     *
+     * @return leituras por segundo
+     */
+    private double executar(int threads) throws Exception {
+        AnomaliaSensorService service = novoServico();
+        List<List<Object[]>> fatias = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Object[]> fatia = new ArrayList<>();
+            for (int minuto = 0; minuto < LEITURAS_POR_SENSOR; minuto++) {
+                for (int s = t; s < SENSORES; s += threads) {
+                    fatia.add(new Object[]{info(s), leitura(s, minuto)});
+                }
+            }
+            fatias.add(fatia);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long inicio = System.nanoTime();
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (List<Object[]> fatia : fatias) {
+                tarefas.add(executor.submit(() -> {
+                    for (Object[] item : fatia) {
+                        service.registrar((SensorInfo) item[0], (Leitura) item[1]);
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+            long decorrido = System.nanoTime() - inicio;
+            return (double) SENSORES * LEITURAS_POR_SENSOR / (decorrido / 1e9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static AnomaliaSensorService novoServico() {
+        AnomaliaSensorService service = new AnomaliaSensorService();
+        ReflectionTestUtils.setField(service, "notificationService", mock(NotificationService.class));
+        ReflectionTestUtils.setField(service, "leituraRepository", mock(LeituraRepository.class));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "habilitado", true);
+        ReflectionTestUtils.setField(service, "alpha", 0.05);
+        ReflectionTestUtils.setField(service, "leiturasAquecimento", 30);
+        ReflectionTestUtils.setField(service, "limiteZ", 4.0);
+        ReflectionTestUtils.setField(service, "deltaMinimoTemperatura", 3.0);
+        ReflectionTestUtils.setField(service, "deltaMinimoUmidade", 10.0);
+        ReflectionTestUtils.setField(service, "leiturasTravado", 30);
+        ReflectionTestUtils.setField(service, "janelaReconstrucao", Duration.ofHours(6));
+        service.init();
+        return service;
+    }
+
+    private static SensorInfo info(int sensor) {
+        return new SensorInfo(sensor, sensor / 20, "Sala " + sensor, "DHT22", true, "Escola", "Cidade", "SP", true);
+    }
+
+    private static Leitura leitura(int sensor, int minuto) {
+        Sensor entidade = new Sensor();
+        entidade.setId((long) sensor);
+        double temperatura = 24 + (sensor + minuto) % 5 * 0.5;
+        return new Leitura(entidade, BigDecimal.valueOf(temperatura), BigDecimal.valueOf(50 + minuto % 3),
+                INICIO.plusMinutes(minuto));
+    }
+}
@@ -0,0 +1,163 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Linha de base por sensor: desvios, sensor travado, leituras fora de ordem e rollback
+ */
+class AnomaliaSensorServiceTest {
+
+    private static final long SENSOR_ID = 11L;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 4, 8, 0);
+    private static final SensorInfo SENSOR = new SensorInfo(SENSOR_ID, 1L, "Sala 1", "DHT22", true,
+            "Escola", "Cidade", "SP", true);
+
+    private NotificationService notificationService;
+    private LeituraRepository leituraRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private AnomaliaSensorService service;
+
+    @BeforeEach
+    void setUp() {
+        notificationService = mock(NotificationService.class);
+        leituraRepository = mock(LeituraRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new AnomaliaSensorService();
+        ReflectionTestUtils.setField(service, "notificationService", notificationService);
+        ReflectionTestUtils.setField(service, "leituraRepository", leituraRepository);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "habilitado", true);
+        ReflectionTestUtils.setField(service, "alpha", 0.05);
+        ReflectionTestUtils.setField(service, "leiturasAquecimento", 30);
+        ReflectionTestUtils.setField(service, "limiteZ", 4.0);
+        ReflectionTestUtils.setField(service, "deltaMinimoTemperatura", 3.0);
+        ReflectionTestUtils.setField(service, "deltaMinimoUmidade", 10.0);
+        ReflectionTestUtils.setField(service, "leiturasTravado", 30);
+        ReflectionTestUtils.setField(service, "janelaReconstrucao", Duration.ofHours(6));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void desvioDaLinhaDeBaseNotificaUmaVezPorOcorrencia() {
+        aquecer(40);
+
+        registrar(40, 35.0, 50.0);
+        registrar(41, 35.0, 52.0);
+
+        verify(notificationService).sendAnomalyAlert(eq(SENSOR), eq("Temperatura"), eq(35.0), anyDouble(), anyDouble());
+        verify(notificationService, never()).sendAnomalyAlert(eq(SENSOR), eq("Umidade"), anyDouble(), anyDouble(),
+                anyDouble());
+        assertThat(meterRegistry.get("sensor.anomalies").tag("type", "temperature").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void desvioDuranteOAquecimentoNaoENotificado() {
+        aquecer(10);
+
+        registrar(10, 35.0, 50.0);
+
+        verify(notificationService, never()).sendAnomalyAlert(eq(SENSOR), eq("Temperatura"), anyDouble(), anyDouble(),
+                anyDouble());
+    }
+
+    @Test
+    void leiturasIdenticasIndicamSensorTravado() {
+        for (int minuto = 0; minuto < 35; minuto++) {
+            registrar(minuto, 22.0, 50.0);
+        }
+
+        verify(notificationService).sendStuckSensorAlert(SENSOR, 22.0, 50.0, 30);
+        verify(notificationService, never()).sendAnomalyAlert(eq(SENSOR), eq("Temperatura"), anyDouble(), anyDouble(),
+                anyDouble());
+    }
+
+    @Test
+    void leituraForaDeOrdemNaoAlteraALinhaDeBase() {
+        aquecer(40);
+
+        registrar(20, 35.0, 50.0);
+
+        verify(notificationService, never()).sendAnomalyAlert(eq(SENSOR), eq("Temperatura"), anyDouble(), anyDouble(),
+                anyDouble());
+    }
+
+    @Test
+    void rollbackRefazALinhaDeBaseComAsLeiturasConfirmadas() {
+        aquecer(40);
+
+        TransactionSynchronizationManager.initSynchronization();
+        registrar(40, 35.0, 50.0);
+        List<TransactionSynchronization> sincronizacoes = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizacoes.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // A notificação foi desfeita com a transação: a leitura reentregue notifica de novo
+        List<Object[]> confirmadas = new ArrayList<>();
+        for (int minuto = 0; minuto < 40; minuto++) {
+            confirmadas.add(new Object[]{INICIO.plusMinutes(minuto), temperaturaAquecimento(minuto),
+                    umidadeAquecimento(minuto)});
+        }
+        when(leituraRepository.findValoresBySensorIdEntre(SENSOR_ID, INICIO.plusMinutes(40).minusHours(6),
+                INICIO.plusMinutes(40))).thenReturn(confirmadas);
+        registrar(40, 35.0, 50.0);
+
+        verify(notificationService, times(2)).sendAnomalyAlert(eq(SENSOR), eq("Temperatura"), eq(35.0), anyDouble(),
+                anyDouble());
+    }
+
+    /**
+     * Leituras alternadas (24/26 °C, 50/52 %): média 25 °C, desvio padrão próximo de 1
+     */
+    private void aquecer(int leituras) {
+        for (int minuto = 0; minuto < leituras; minuto++) {
+            registrar(minuto, temperaturaAquecimento(minuto).doubleValue(), umidadeAquecimento(minuto).doubleValue());
+        }
+    }
+
+    private static BigDecimal temperaturaAquecimento(int minuto) {
+        return BigDecimal.valueOf(minuto % 2 == 0 ? 24.0 : 26.0);
+    }
+
+    private static BigDecimal umidadeAquecimento(int minuto) {
+        return BigDecimal.valueOf(minuto % 2 == 0 ? 50.0 : 52.0);
+    }
+
+    private void registrar(int minuto, double temperatura, double umidade) {
+        Sensor sensor = new Sensor();
+        sensor.setId(SENSOR_ID);
+        service.registrar(SENSOR, new Leitura(sensor, BigDecimal.valueOf(temperatura), BigDecimal.valueOf(umidade),
+                INICIO.plusMinutes(minuto)));
+    }
+}
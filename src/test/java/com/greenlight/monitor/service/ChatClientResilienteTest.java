@@ -0,0 +1,230 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.service.ChatClientResiliente.ChatIndisponivelException;
+import com.greenlight.monitor.service.ChatClientResiliente.EstadoCircuito;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Timeout, bulkhead e transições do circuit breaker contra um ChatClient simulado
+ */
+class ChatClientResilienteTest {
+
+    private static final int MAX_CHAMADAS = 2;
+    private static final Duration DURACAO_ABERTO = Duration.ofMillis(150);
+
+    private final AtomicInteger chamadasRecebidas = new AtomicInteger();
+    // Comportamento do ChatClient simulado na próxima chamada
+    private volatile Callable<String> resposta = () -> "ok";
+    private final CountDownLatch liberar = new CountDownLatch(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatClientResiliente cliente;
+
+    @BeforeEach
+    void setUp() {
+        ChatClient chatClient = mock(ChatClient.class);
+        when(chatClient.call(any(Prompt.class))).thenAnswer(invocation -> {
+            chamadasRecebidas.incrementAndGet();
+            return new ChatResponse(List.of(new Generation(resposta.call())));
+        });
+
+        meterRegistry = new SimpleMeterRegistry();
+        cliente = new ChatClientResiliente();
+        ReflectionTestUtils.setField(cliente, "chatClient", chatClient);
+        ReflectionTestUtils.setField(cliente, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cliente, "timeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(cliente, "maxChamadasSimultaneas", MAX_CHAMADAS);
+        ReflectionTestUtils.setField(cliente, "esperaMaxima", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(cliente, "tamanhoJanela", 4);
+        ReflectionTestUtils.setField(cliente, "chamadasMinimas", 4);
+        ReflectionTestUtils.setField(cliente, "limiteTaxaFalhas", 50);
+        ReflectionTestUtils.setField(cliente, "duracaoAberto", DURACAO_ABERTO);
+        ReflectionTestUtils.setField(cliente, "chamadasSemiaberto", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberar.countDown();
+        cliente.shutdown();
+    }
+
+    @Test
+    void chamadaAcimaDoTimeoutFalhaEDevolveAPermissaoDoBulkhead() throws InterruptedException {
+        ReflectionTestUtils.setField(cliente, "timeout", Duration.ofMillis(100));
+        cliente.init();
+        resposta = () -> {
+            liberar.await();
+            return "tarde demais";
+        };
+
+        assertThatThrownBy(() -> cliente.chamar("prompt"))
+                .isInstanceOf(ChatIndisponivelException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(contador("ai.chat.calls", "result", "timeout")).isEqualTo(1);
+        // A chamada cancelada é interrompida e libera a permissão
+        aguardar(() -> bulkheadDisponivel() == MAX_CHAMADAS);
+    }
+
+    @Test
+    void bulkheadCheioRejeitaSemChamarAIa() throws Exception {
+        cliente.init();
+        resposta = () -> {
+            liberar.await();
+            return "ok";
+        };
+        List<CompletableFuture<String>> emAndamento = List.of(
+                CompletableFuture.supplyAsync(() -> cliente.chamar("a")),
+                CompletableFuture.supplyAsync(() -> cliente.chamar("b")));
+        aguardar(() -> bulkheadDisponivel() == 0);
+
+        assertThatThrownBy(() -> cliente.chamar("c"))
+                .isInstanceOf(ChatIndisponivelException.class)
+                .hasMessageContaining("simultâneas");
+        assertThat(contador("ai.chat.rejections", "reason", "bulkhead-full")).isEqualTo(1);
+        assertThat(chamadasRecebidas).hasValue(MAX_CHAMADAS);
+
+        liberar.countDown();
+        for (CompletableFuture<String> chamada : emAndamento) {
+            assertThat(chamada.get(2, TimeUnit.SECONDS)).isEqualTo("ok");
+        }
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+    }
+
+    @Test
+    void circuitoAbreComTaxaDeFalhasERejeitaSemChamarAIa() {
+        cliente.init();
+        resposta = () -> "ok";
+        cliente.chamar("1");
+        cliente.chamar("2");
+        resposta = () -> {
+            throw new IllegalStateException("erro da IA");
+        };
+        falhar();
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+        // 2 falhas em 4 chamadas: 50%
+        falhar();
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+
+        assertThatThrownBy(() -> cliente.chamar("rejeitada"))
+                .isInstanceOf(ChatIndisponivelException.class)
+                .hasMessageContaining("aberto");
+        assertThat(contador("ai.chat.rejections", "reason", "circuit-open")).isEqualTo(1);
+        assertThat(chamadasRecebidas).hasValue(4);
+    }
+
+    @Test
+    void circuitoSemiabertoFechaAposSondasComSucesso() throws InterruptedException {
+        cliente.init();
+        abrirCircuito();
+        Thread.sleep(DURACAO_ABERTO.toMillis() + 50);
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.SEMIABERTO);
+
+        resposta = () -> "ok";
+        assertThat(cliente.chamar("sonda 1")).isEqualTo("ok");
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.SEMIABERTO);
+        assertThat(cliente.chamar("sonda 2")).isEqualTo("ok");
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+
+        // Janela zerada ao fechar: uma falha isolada não reabre o circuito
+        falhar();
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+    }
+
+    @Test
+    void circuitoSemiabertoReabreNaPrimeiraSondaComFalha() throws InterruptedException {
+        cliente.init();
+        abrirCircuito();
+        Thread.sleep(DURACAO_ABERTO.toMillis() + 50);
+
+        falhar();
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+        int recebidas = chamadasRecebidas.get();
+        assertThatThrownBy(() -> cliente.chamar("rejeitada"))
+                .isInstanceOf(ChatIndisponivelException.class)
+                .hasMessageContaining("aberto");
+        assertThat(chamadasRecebidas).hasValue(recebidas);
+    }
+
+    @Test
+    void circuitoSemiabertoLimitaAsSondasSimultaneas() throws Exception {
+        cliente.init();
+        abrirCircuito();
+        Thread.sleep(DURACAO_ABERTO.toMillis() + 50);
+
+        resposta = () -> {
+            liberar.await();
+            return "ok";
+        };
+        List<CompletableFuture<String>> sondas = List.of(
+                CompletableFuture.supplyAsync(() -> cliente.chamar("sonda 1")),
+                CompletableFuture.supplyAsync(() -> cliente.chamar("sonda 2")));
+        aguardar(() -> bulkheadDisponivel() == 0);
+
+        // Sem permissão do circuito: rejeitada antes do bulkhead
+        assertThatThrownBy(() -> cliente.chamar("excedente"))
+                .isInstanceOf(ChatIndisponivelException.class)
+                .hasMessageContaining("aberto");
+
+        liberar.countDown();
+        for (CompletableFuture<String> sonda : sondas) {
+            assertThat(sonda.get(2, TimeUnit.SECONDS)).isEqualTo("ok");
+        }
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.FECHADO);
+    }
+
+    private void abrirCircuito() {
+        resposta = () -> {
+            throw new IllegalStateException("erro da IA");
+        };
+        for (int i = 0; i < 4; i++) {
+            falhar();
+        }
+        assertThat(cliente.getEstado()).isEqualTo(EstadoCircuito.ABERTO);
+    }
+
+    private void falhar() {
+        assertThatThrownBy(() -> cliente.chamar("falha"))
+                .isInstanceOf(ChatIndisponivelException.class)
+                .hasMessageContaining("erro da IA");
+    }
+
+    private double contador(String nome, String tag, String valor) {
+        return meterRegistry.get(nome).tag(tag, valor).counter().count();
+    }
+
+    private double bulkheadDisponivel() {
+        return meterRegistry.get("ai.chat.bulkhead.available").gauge().value();
+    }
+
+    private static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicao.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condição não atingida em 5s").isLessThan(prazo);
+            Thread.sleep(10);
+        }
+    }
+}
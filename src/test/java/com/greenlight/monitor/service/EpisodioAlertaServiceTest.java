@@ -0,0 +1,202 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaRegrasProperties;
+import com.greenlight.monitor.config.AlertaRegrasProperties.Regra;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.AlertaRegraLimiteRepository;
+import com.greenlight.monitor.repository.AlertaRepository;
+import com.greenlight.monitor.service.AlertaRegraService.RegraAlerta;
+import com.greenlight.monitor.service.AlertaRegraService.TabelaRegras;
+import com.greenlight.monitor.service.EpisodioAlertaService.AcoesEpisodio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Abertura, escalonamento e encerramento de episódios com histerese, e estado após rollback
+ */
+class EpisodioAlertaServiceTest {
+
+    private static final long SENSOR_ID = 3L;
+
+    /**
+     * Ações do episódio registradas em ordem ("abrir:regra", "escalar:regra", "encerrar")
+     */
+    private static final class AcoesRegistradas implements AcoesEpisodio {
+        private final List<String> acoes = new ArrayList<>();
+        private long proximoId = 100;
+
+        @Override
+        public long abrir(Leitura leitura, RegraAlerta regra, BigDecimal valorPico) {
+            acoes.add("abrir:" + regra.id());
+            return proximoId++;
+        }
+
+        @Override
+        public void escalar(long alertaId, Leitura leitura, RegraAlerta regra, BigDecimal valorPico) {
+            acoes.add("escalar:" + regra.id());
+        }
+
+        @Override
+        public void encerrar(long alertaId, LocalDateTime fim) {
+            acoes.add("encerrar");
+        }
+    }
+
+    private final AcoesRegistradas acoes = new AcoesRegistradas();
+    private AlertaRepository alertaRepository;
+    private AlertaRegraService alertaRegraService;
+    private EpisodioAlertaService service;
+
+    @BeforeEach
+    void setUp() {
+        AlertaRegrasProperties properties = new AlertaRegrasProperties();
+        properties.setHysteresisTemperature(1.0);
+        properties.setDefinitions(List.of(
+                regra("calor-extremo", "Crítico", 35.0),
+                regra("calor-intenso", "Alto", 30.0)));
+        AlertaRegraLimiteRepository limiteRepository = mock(AlertaRegraLimiteRepository.class);
+        when(limiteRepository.findAll()).thenReturn(List.of());
+
+        alertaRegraService = new AlertaRegraService();
+        ReflectionTestUtils.setField(alertaRegraService, "properties", properties);
+        ReflectionTestUtils.setField(alertaRegraService, "alertaRegraLimiteRepository", limiteRepository);
+        ReflectionTestUtils.setField(alertaRegraService, "sensorRegistryService", mock(SensorRegistryService.class));
+        alertaRegraService.init();
+
+        alertaRepository = mock(AlertaRepository.class);
+        when(alertaRepository.findEpisodiosAbertos()).thenReturn(List.of());
+        when(alertaRepository.findEpisodiosAbertosBySensorId(anyLong())).thenReturn(List.of());
+
+        service = new EpisodioAlertaService();
+        ReflectionTestUtils.setField(service, "alertaRepository", alertaRepository);
+        ReflectionTestUtils.setField(service, "alertaRegraService", alertaRegraService);
+        ReflectionTestUtils.setField(service, "esperaLock", Duration.ofMillis(100));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void episodioPermaneceAbertoDentroDaHistereseEEscalaNoMesmoAlerta() {
+        processar(31.0);
+        // Abaixo do limite (30) mas dentro da histerese (1.0): mesmo episódio
+        processar(29.5);
+        processar(36.0);
+        // Abaixo do limite crítico: continua no nível mais alto já atingido
+        processar(34.0);
+        processar(28.9);
+
+        assertThat(acoes.acoes).containsExactly("abrir:calor-intenso", "escalar:calor-extremo", "encerrar");
+    }
+
+    @Test
+    void picoDoEpisodioAcompanhaOValorMaisExtremo() {
+        processar(31.0);
+        processar(32.5);
+        processar(32.0);
+
+        verify(alertaRepository).atualizarPicoEpisodio(eq(100L), eq(new BigDecimal("32.50")), any(), any());
+        assertThat(acoes.acoes).containsExactly("abrir:calor-intenso");
+    }
+
+    @Test
+    void leituraAbaixoDaHistereseNaoAbreNovoEpisodio() {
+        processar(29.5);
+        processar(25.0);
+
+        assertThat(acoes.acoes).isEmpty();
+    }
+
+    @Test
+    void rollbackDescartaOEpisodioNaoConfirmado() {
+        TransactionSynchronizationManager.initSynchronization();
+        processar(31.0);
+        concluirTransacao(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // O alerta não foi gravado: o estado recarregado do banco não tem o episódio
+        processar(31.0);
+        assertThat(acoes.acoes).containsExactly("abrir:calor-intenso", "abrir:calor-intenso");
+    }
+
+    @Test
+    void lockDoSensorFicaComATransacaoAteOCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        processar(31.0);
+
+        // Outra transação não vê o episódio não confirmado: espera e desiste como falha transitória
+        CompletableFuture<Void> concorrente = CompletableFuture.runAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                processar(31.0);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+        assertThatThrownBy(concorrente::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CannotAcquireLockException.class);
+
+        concluirTransacao(TransactionSynchronization.STATUS_COMMITTED);
+        CompletableFuture.runAsync(() -> processar(31.5)).get();
+        assertThat(acoes.acoes).containsExactly("abrir:calor-intenso");
+    }
+
+    private void processar(double temperatura) {
+        Sensor sensor = new Sensor();
+        sensor.setId(SENSOR_ID);
+        Leitura leitura = new Leitura(sensor, BigDecimal.valueOf(temperatura), BigDecimal.valueOf(50),
+                LocalDateTime.now());
+        TabelaRegras tabela = alertaRegraService.getTabela();
+        long disparadas = alertaRegraService.avaliar(tabela, SENSOR_ID, leitura.getTemperatura(), leitura.getUmidade());
+        long permanencia = alertaRegraService.avaliarPermanencia(tabela, SENSOR_ID, leitura.getTemperatura(),
+                leitura.getUmidade());
+        service.processar(leitura, tabela, disparadas, permanencia, acoes);
+    }
+
+    private static void concluirTransacao(int status) {
+        List<TransactionSynchronization> sincronizacoes = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization sincronizacao : sincronizacoes) {
+            sincronizacao.afterCompletion(status);
+        }
+    }
+
+    private static Regra regra(String id, String nivel, double temperaturaMin) {
+        Regra regra = new Regra();
+        regra.setId(id);
+        regra.setGrupo("temperatura");
+        regra.setTipo(id);
+        regra.setNivel(nivel);
+        regra.setMensagem(id);
+        regra.setTemperaturaMin(temperaturaMin);
+        return regra;
+    }
+}
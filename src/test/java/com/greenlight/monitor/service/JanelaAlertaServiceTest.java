@@ -0,0 +1,221 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaJanelaProperties;
+import com.greenlight.monitor.config.AlertaJanelaProperties.Agregacao;
+import com.greenlight.monitor.config.AlertaJanelaProperties.Regra;
+import com.greenlight.monitor.config.AlertaJanelaProperties.TipoJanela;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.service.JanelaAlertaService.RegraJanela;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Janelas deslizante (buffer circular), fixa e de contagem, leituras fora de ordem e rollback
+ */
+class JanelaAlertaServiceTest {
+
+    private static final long SENSOR_ID = 5L;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 4, 10, 0);
+
+    private final AlertaJanelaProperties properties = new AlertaJanelaProperties();
+    private LeituraRepository leituraRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private JanelaAlertaService service;
+
+    @BeforeEach
+    void setUp() {
+        leituraRepository = mock(LeituraRepository.class);
+        when(leituraRepository.findValoresDesde(any())).thenReturn(List.of());
+        meterRegistry = new SimpleMeterRegistry();
+        service = new JanelaAlertaService();
+        ReflectionTestUtils.setField(service, "properties", properties);
+        ReflectionTestUtils.setField(service, "leituraRepository", leituraRepository);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void mediaDeslizanteSoDisparaDepoisDeCobrirADuracao() {
+        configurar(deslizante(Duration.ofMinutes(10), 16));
+
+        // A cada 2 min: a primeira leitura sai da janela aos 10 min
+        for (int minuto = 0; minuto < 10; minuto += 2) {
+            assertThat(registrar(minuto, 31.0)).isEmpty();
+        }
+        assertThat(registrar(10, 31.0)).containsExactly("media");
+    }
+
+    @Test
+    void mediaDeslizanteAcompanhaAsLeiturasQueSaemDaJanela() {
+        configurar(deslizante(Duration.ofMinutes(10), 16));
+        for (int minuto = 0; minuto <= 10; minuto += 2) {
+            registrar(minuto, 31.0);
+        }
+
+        // Janela (10 min) com 31, 31, 31, 31, 28: média 30.4
+        assertThat(registrar(12, 28.0)).containsExactly("media");
+        // 31, 31, 31, 28, 28: média 29.8
+        assertThat(registrar(14, 28.0)).isEmpty();
+        // Saem os valores baixos: 28 + 4 x 32 → 31.2
+        for (int minuto = 16; minuto <= 20; minuto += 2) {
+            registrar(minuto, 32.0);
+        }
+        assertThat(registrar(22, 32.0)).containsExactly("media");
+    }
+
+    @Test
+    void bufferCheioDescartaAMaisAntigaEConsideraAJanelaCoberta() {
+        // Capacidade 4: leituras densas enchem o buffer antes de a duração ser coberta
+        configurar(deslizante(Duration.ofMinutes(10), 4));
+        for (int minuto = 0; minuto < 4; minuto++) {
+            assertThat(registrar(minuto, 30.0)).isEmpty();
+        }
+        assertThat(registrar(4, 30.0)).containsExactly("media");
+
+        // Média das últimas 4 leituras, com o buffer dando a volta
+        for (int minuto = 5; minuto < 9; minuto++) {
+            assertThat(registrar(minuto, 20.0)).isEmpty();
+        }
+        // 20, 20, 20, 50: média 27.5
+        assertThat(registrar(9, 50.0)).isEmpty();
+        // 20, 20, 50, 50: média 35
+        assertThat(registrar(10, 50.0)).containsExactly("media");
+    }
+
+    @Test
+    void intervaloSemLeiturasMaiorQueADuracaoReiniciaACobertura() {
+        configurar(deslizante(Duration.ofMinutes(10), 16));
+        for (int minuto = 0; minuto <= 10; minuto += 2) {
+            registrar(minuto, 31.0);
+        }
+
+        // Um único pico após o intervalo não dispara a regra
+        assertThat(registrar(40, 40.0)).isEmpty();
+        assertThat(registrar(42, 40.0)).isEmpty();
+    }
+
+    @Test
+    void mediaFixaAvaliaOPeriodoEncerrado() {
+        Regra regra = regra("fixa", Agregacao.MEDIA);
+        regra.setJanela(TipoJanela.FIXA);
+        regra.setDuracao(Duration.ofMinutes(10));
+        regra.setAmostrasMinimas(2);
+        configurar(regra);
+
+        registrar(0, 31.0);
+        registrar(5, 30.0);
+        // Período 10:00-10:10 encerrado com média 30.5
+        assertThat(registrar(10, 20.0)).containsExactly("fixa");
+        assertThat(registrar(15, 20.0)).isEmpty();
+        assertThat(registrar(20, 20.0)).isEmpty();
+    }
+
+    @Test
+    void contagemConsideraAsUltimasAmostras() {
+        Regra regra = regra("contagem", Agregacao.CONTAGEM);
+        regra.setLimite(32.0);
+        regra.setAmostras(5);
+        regra.setMinimo(3);
+        configurar(regra);
+
+        double[] valores = {33, 33, 20, 33, 20, 20, 33, 33};
+        List<Boolean> disparos = new ArrayList<>();
+        for (int i = 0; i < valores.length; i++) {
+            disparos.add(!registrar(i, valores[i]).isEmpty());
+        }
+        // 3 de 5 na 4ª leitura; a 6ª tira um 33 da janela e a 8ª, um 20
+        assertThat(disparos).containsExactly(false, false, false, true, true, false, false, true);
+    }
+
+    @Test
+    void leituraForaDeOrdemEIgnoradaEContada() {
+        configurar(deslizante(Duration.ofMinutes(10), 16));
+        registrar(10, 31.0);
+
+        assertThat(registrar(5, 40.0)).isEmpty();
+        assertThat(registrar(10, 40.0)).isEmpty();
+        assertThat(meterRegistry.get("alerts.windows.out-of-order").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void rollbackReconstroiAJanelaComAsLeiturasConfirmadas() {
+        configurar(deslizante(Duration.ofMinutes(10), 16));
+        for (int minuto = 0; minuto <= 8; minuto += 2) {
+            registrar(minuto, 31.0);
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(registrar(10, 31.0)).containsExactly("media");
+        List<TransactionSynchronization> sincronizacoes = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizacoes.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // A leitura reentregue é avaliada de novo sobre as leituras confirmadas do banco
+        List<Object[]> confirmadas = new ArrayList<>();
+        for (int minuto = 0; minuto <= 8; minuto += 2) {
+            confirmadas.add(new Object[]{INICIO.plusMinutes(minuto), BigDecimal.valueOf(31.0), BigDecimal.valueOf(50)});
+        }
+        when(leituraRepository.findValoresBySensorIdEntre(eq(SENSOR_ID), any(), eq(INICIO.plusMinutes(10))))
+                .thenReturn(confirmadas);
+        assertThat(registrar(10, 31.0)).containsExactly("media");
+    }
+
+    private void configurar(Regra regra) {
+        properties.setWarmup(Duration.ofMinutes(10));
+        properties.setDefinitions(List.of(regra));
+        service.init();
+    }
+
+    private List<String> registrar(int minuto, double temperatura) {
+        Sensor sensor = new Sensor();
+        sensor.setId(SENSOR_ID);
+        Leitura leitura = new Leitura(sensor, BigDecimal.valueOf(temperatura), BigDecimal.valueOf(50),
+                INICIO.plusMinutes(minuto));
+        return service.registrar(leitura).stream().map(RegraJanela::id).toList();
+    }
+
+    private static Regra deslizante(Duration duracao, int capacidade) {
+        Regra regra = regra("media", Agregacao.MEDIA);
+        regra.setJanela(TipoJanela.DESLIZANTE);
+        regra.setDuracao(duracao);
+        regra.setAmostrasMinimas(3);
+        regra.setCapacidade(capacidade);
+        return regra;
+    }
+
+    private static Regra regra(String id, Agregacao agregacao) {
+        Regra regra = new Regra();
+        regra.setId(id);
+        regra.setTipo(id);
+        regra.setNivel("Alto");
+        regra.setMensagem(id);
+        regra.setAgregacao(agregacao);
+        regra.setLimite(30.0);
+        return regra;
+    }
+}
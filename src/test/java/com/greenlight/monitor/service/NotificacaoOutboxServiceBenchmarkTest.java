@@ -0,0 +1,110 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.service.NotificacaoOutboxServiceTest.BrokerSimulado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Vazão do relay do outbox (mensagens publicadas e confirmadas por segundo) contra o broker simulado,
+ * que confirma cada mensagem 2 ms após recebê-la: lotes de 1 (uma confirmação aguardada por envio)
+ * e lotes de 100 enviados antes de aguardar as confirmações.
+ * Executar com {@code mvn test -Dbenchmark=true -Dtest=NotificacaoOutboxServiceBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NotificacaoOutboxServiceBenchmarkTest {
+
+    private static final int MENSAGENS = 5_000;
+
+    @Test
+    void mensagensConfirmadasPorSegundo() throws InterruptedException {
+        // Aquecimento da JIT descartado
+        medir(100);
+        double unitario = medir(1);
+        double emLote = medir(100);
+
+        System.out.printf("Outbox: %.0f mensagens/s com lotes de 1, %.0f mensagens/s com lotes de 100%n",
+                unitario, emLote);
+        assertThat(emLote).isPositive();
+    }
+
+    /**
+     * Grava as mensagens no outbox com o relay parado e mede o tempo até a última ser confirmada
+     *
+     * @return mensagens confirmadas por segundo
+     */
+    private double medir(int tamanhoLote) throws InterruptedException {
+        EmbeddedDatabase banco = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true).build();
+        BrokerSimulado broker = new BrokerSimulado();
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(banco);
+            jdbcTemplate.execute(NotificacaoOutboxServiceTest.TABELA);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(banco);
+
+            ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+            when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+            RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+            when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+            doAnswer(invocation -> {
+                broker.receber(invocation.getArgument(2), invocation.getArgument(3));
+                return null;
+            }).when(rabbitTemplate).send(any(), any(), any(Message.class), any(CorrelationData.class));
+
+            NotificacaoOutboxService service = new NotificacaoOutboxService();
+            ReflectionTestUtils.setField(service, "rabbitTemplate", rabbitTemplate);
+            ReflectionTestUtils.setField(service, "messageConverter", new Jackson2JsonMessageConverter());
+            ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+            ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+            ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(service, "tamanhoLote", tamanhoLote);
+            ReflectionTestUtils.setField(service, "intervaloVerificacao", Duration.ofMillis(20));
+            ReflectionTestUtils.setField(service, "tempoConfirmacao", Duration.ofSeconds(5));
+            ReflectionTestUtils.setField(service, "esperaReenvio", Duration.ofMillis(10));
+            ReflectionTestUtils.setField(service, "esperaMaxima", Duration.ofMillis(100));
+            ReflectionTestUtils.setField(service, "intervaloContagem", Duration.ofSeconds(1));
+
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (int i = 0; i < MENSAGENS; i++) {
+                    service.registrar("alerts.exchange", "alerts.high", Map.of("numero", i));
+                }
+            });
+
+            long inicio = System.nanoTime();
+            service.init();
+            try {
+                NotificacaoOutboxServiceTest.aguardar(() -> broker.recebidas.size() >= MENSAGENS
+                        && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notificacao_outbox", Long.class) == 0,
+                        Duration.ofMinutes(2));
+                long decorrido = System.nanoTime() - inicio;
+                return MENSAGENS / (decorrido / 1e9);
+            } finally {
+                service.shutdown();
+            }
+        } finally {
+            broker.derrubar();
+            banco.shutdown();
+        }
+    }
+}
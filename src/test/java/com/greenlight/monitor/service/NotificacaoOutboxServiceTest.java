@@ -0,0 +1,211 @@
+package com.greenlight.monitor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Relay do outbox de notificações contra um broker simulado que é derrubado no meio da publicação
+ */
+class NotificacaoOutboxServiceTest {
+
+    static final String TABELA = """
+            CREATE TABLE notificacao_outbox (
+                id                BIGINT AUTO_INCREMENT PRIMARY KEY,
+                exchange          VARCHAR(100)   NOT NULL,
+                routing_key       VARCHAR(100)   NOT NULL,
+                tipo_payload      VARCHAR(200),
+                payload           VARCHAR(10000) NOT NULL,
+                criado_em         TIMESTAMP(6)   NOT NULL,
+                tentativas        INTEGER        DEFAULT 0 NOT NULL,
+                proxima_tentativa TIMESTAMP(6)   NOT NULL
+            )
+            """;
+
+    /**
+     * Broker simulado: confirma cada mensagem de forma assíncrona enquanto está no ar; ao ser
+     * derrubado recusa novos envios e perde as confirmações ainda não enviadas
+     */
+    static final class BrokerSimulado {
+        // message_id -> corpo (reenvios de uma mesma linha usam o mesmo message_id)
+        final Map<String, String> recebidas = new ConcurrentHashMap<>();
+        private volatile boolean noAr = true;
+        private volatile ScheduledExecutorService confirmador = Executors.newSingleThreadScheduledExecutor();
+
+        void receber(Message mensagem, CorrelationData correlacao) {
+            if (!noAr) {
+                throw new AmqpConnectException(new ConnectException("broker fora do ar"));
+            }
+            recebidas.put(mensagem.getMessageProperties().getMessageId(),
+                    new String(mensagem.getBody(), StandardCharsets.UTF_8));
+            confirmador.schedule(() -> correlacao.getFuture().complete(new CorrelationData.Confirm(true, null)),
+                    2, TimeUnit.MILLISECONDS);
+        }
+
+        void derrubar() {
+            noAr = false;
+            confirmador.shutdownNow();
+        }
+
+        void religar() {
+            confirmador = Executors.newSingleThreadScheduledExecutor();
+            noAr = true;
+        }
+    }
+
+    private EmbeddedDatabase banco;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private BrokerSimulado broker;
+    private SimpleMeterRegistry meterRegistry;
+    private NotificacaoOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        banco = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbcTemplate = new JdbcTemplate(banco);
+        jdbcTemplate.execute(TABELA);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(banco);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        broker = new BrokerSimulado();
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+        doAnswer(invocation -> {
+            broker.receber(invocation.getArgument(2), invocation.getArgument(3));
+            return null;
+        }).when(rabbitTemplate).send(any(), any(), any(Message.class), any(CorrelationData.class));
+
+        service = new NotificacaoOutboxService();
+        ReflectionTestUtils.setField(service, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(service, "messageConverter", new Jackson2JsonMessageConverter());
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "tamanhoLote", 20);
+        ReflectionTestUtils.setField(service, "intervaloVerificacao", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(service, "tempoConfirmacao", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(service, "esperaReenvio", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(service, "esperaMaxima", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(service, "intervaloContagem", Duration.ofMillis(50));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.shutdown();
+        broker.derrubar();
+        banco.shutdown();
+    }
+
+    @Test
+    void publicaTodasAsMensagensQuandoOBrokerCaiNoMeioDoEnvio() throws InterruptedException {
+        int total = 300;
+        Thread produtor = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                int numero = i;
+                transactionTemplate.executeWithoutResult(status ->
+                        service.registrar("alerts.exchange", "alerts.high", Map.of("numero", numero)));
+            }
+        });
+        produtor.start();
+
+        aguardar(() -> broker.recebidas.size() >= total / 3, Duration.ofSeconds(10));
+        broker.derrubar();
+        Thread.sleep(300);
+        broker.religar();
+        produtor.join();
+
+        aguardar(() -> pendentes() == 0, Duration.ofSeconds(10));
+
+        Set<String> esperadas = new HashSet<>();
+        for (int i = 0; i < total; i++) {
+            esperadas.add("{\"numero\":" + i + "}");
+        }
+        // Entrega "pelo menos uma vez": nenhuma mensagem perdida, reenvios permitidos
+        assertThat(broker.recebidas).hasSize(total);
+        assertThat(new HashSet<>(broker.recebidas.values())).isEqualTo(esperadas);
+    }
+
+    @Test
+    void naoPublicaMensagemDeTransacaoDesfeita() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            service.registrar("alerts.exchange", "alerts.high", Map.of("numero", 1));
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status ->
+                service.registrar("alerts.exchange", "alerts.high", Map.of("numero", 2)));
+
+        aguardar(() -> !broker.recebidas.isEmpty() && pendentes() == 0, Duration.ofSeconds(5));
+        Thread.sleep(100);
+
+        assertThat(broker.recebidas.values()).containsExactly("{\"numero\":2}");
+    }
+
+    @Test
+    void relayContaAsMensagensPendentesParaOGauge() throws InterruptedException {
+        broker.derrubar();
+        for (int i = 0; i < 5; i++) {
+            int numero = i;
+            transactionTemplate.executeWithoutResult(status ->
+                    service.registrar("alerts.exchange", "alerts.high", Map.of("numero", numero)));
+        }
+        aguardar(() -> gaugePendentes() == 5, Duration.ofSeconds(5));
+
+        broker.religar();
+        aguardar(() -> gaugePendentes() == 0, Duration.ofSeconds(10));
+        assertThat(broker.recebidas).hasSize(5);
+    }
+
+    private double gaugePendentes() {
+        return meterRegistry.get("notifications.outbox.pending").gauge().value();
+    }
+
+    private long pendentes() {
+        Long pendentes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notificacao_outbox", Long.class);
+        return pendentes != null ? pendentes : 0;
+    }
+
+    static void aguardar(BooleanSupplier condicao, Duration limite) throws InterruptedException {
+        long prazo = System.nanoTime() + limite.toNanos();
+        while (!condicao.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condição não atingida em %s", limite).isLessThan(prazo);
+            Thread.sleep(10);
+        }
+    }
+}
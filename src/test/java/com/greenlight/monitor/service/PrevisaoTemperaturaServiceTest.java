@@ -0,0 +1,191 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.config.AlertaRegrasProperties;
+import com.greenlight.monitor.config.AlertaRegrasProperties.Regra;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.LeituraAgregada;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.AlertaRegraLimiteRepository;
+import com.greenlight.monitor.repository.LeituraAgregadaRepository;
+import com.greenlight.monitor.repository.LeituraRepository;
+import com.greenlight.monitor.service.AlertaRegraService.TabelaRegras;
+import com.greenlight.monitor.service.PrevisaoTemperaturaService.Previsao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Recorrências de Holt-Winters (nível, tendência e sazonalidade) e alerta antecipado de calor
+ */
+class PrevisaoTemperaturaServiceTest {
+
+    private static final long SENSOR_ID = 9L;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 4, 10, 0);
+    private static final double ALPHA = 0.3;
+    private static final double BETA = 0.1;
+    private static final double GAMMA = 0.05;
+
+    private LeituraAgregadaRepository leituraAgregadaRepository;
+    private AlertaRegraService alertaRegraService;
+    private PrevisaoTemperaturaService service;
+
+    @BeforeEach
+    void setUp() {
+        AlertaRegrasProperties properties = new AlertaRegrasProperties();
+        Regra regra = new Regra();
+        regra.setId("calor-extremo");
+        regra.setTipo("Calor Extremo");
+        regra.setNivel("Crítico");
+        regra.setTemperaturaMin(35.0);
+        properties.setDefinitions(List.of(regra));
+        AlertaRegraLimiteRepository limiteRepository = mock(AlertaRegraLimiteRepository.class);
+        when(limiteRepository.findAll()).thenReturn(List.of());
+        alertaRegraService = new AlertaRegraService();
+        ReflectionTestUtils.setField(alertaRegraService, "properties", properties);
+        ReflectionTestUtils.setField(alertaRegraService, "alertaRegraLimiteRepository", limiteRepository);
+        ReflectionTestUtils.setField(alertaRegraService, "sensorRegistryService", mock(SensorRegistryService.class));
+        alertaRegraService.init();
+
+        leituraAgregadaRepository = mock(LeituraAgregadaRepository.class);
+        service = new PrevisaoTemperaturaService();
+        ReflectionTestUtils.setField(service, "leituraAgregadaRepository", leituraAgregadaRepository);
+        ReflectionTestUtils.setField(service, "leituraRepository", mock(LeituraRepository.class));
+        ReflectionTestUtils.setField(service, "alertaRegraService", alertaRegraService);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "habilitado", true);
+        ReflectionTestUtils.setField(service, "alpha", ALPHA);
+        ReflectionTestUtils.setField(service, "beta", BETA);
+        ReflectionTestUtils.setField(service, "gamma", GAMMA);
+        ReflectionTestUtils.setField(service, "horizonteMinimo", Duration.ofMinutes(30));
+        ReflectionTestUtils.setField(service, "horizonte", Duration.ofMinutes(60));
+        ReflectionTestUtils.setField(service, "leiturasAquecimento", 6);
+        ReflectionTestUtils.setField(service, "intervaloReinicio", Duration.ofHours(2));
+        ReflectionTestUtils.setField(service, "tendenciaMaximaHora", 6.0);
+        ReflectionTestUtils.setField(service, "diasSazonalidade", 0);
+        ReflectionTestUtils.setField(service, "regraId", "calor-extremo");
+        ReflectionTestUtils.setField(service, "tipo", "Previsão de Calor");
+        ReflectionTestUtils.setField(service, "nivel", "Alto");
+    }
+
+    @Test
+    void primeiraLeituraIniciaONivelEAsSeguintesSeguemAsRecorrencias() {
+        service.init();
+        registrar(0, 20.0);
+        assertThat(campo("nivel")).isEqualTo(20.0);
+        assertThat(campo("tendencia")).isEqualTo(0.0);
+
+        registrar(10, 21.0);
+        double nivel = ALPHA * 21.0 + (1 - ALPHA) * 20.0;
+        double tendencia = BETA * (nivel - 20.0) / 10;
+        assertThat(campo("nivel")).isCloseTo(nivel, within(1e-9));
+        assertThat(campo("tendencia")).isCloseTo(tendencia, within(1e-9));
+        assertThat(sazonal()[10]).isCloseTo(GAMMA * (21.0 - nivel), within(1e-9));
+
+        // Intervalo irregular: a tendência (por minuto) é projetada pelo intervalo decorrido
+        double sazonal = sazonal()[10];
+        registrar(30, 21.5);
+        double nivelAnterior = nivel;
+        nivel = ALPHA * (21.5 - sazonal) + (1 - ALPHA) * (nivelAnterior + tendencia * 20);
+        tendencia = BETA * (nivel - nivelAnterior) / 20 + (1 - BETA) * tendencia;
+        assertThat(campo("nivel")).isCloseTo(nivel, within(1e-9));
+        assertThat(campo("tendencia")).isCloseTo(tendencia, within(1e-9));
+    }
+
+    @Test
+    void tendenciaLimitadaAoMaximoPorHora() {
+        service.init();
+        registrar(0, 20.0);
+        registrar(1, 40.0);
+
+        assertThat(campo("tendencia")).isEqualTo(6.0 / 60);
+    }
+
+    @Test
+    void intervaloMaiorQueOReinicioRecomecaNivelETendencia() {
+        service.init();
+        registrar(0, 20.0);
+        registrar(10, 22.0);
+        registrar(10 + 121, 26.0);
+
+        assertThat(campo("nivel")).isCloseTo(26.0 - sazonal()[12], within(1e-9));
+        assertThat(campo("tendencia")).isEqualTo(0.0);
+    }
+
+    @Test
+    void indicesSazonaisIniciaisVemDosAgregadosHorarios() {
+        ReflectionTestUtils.setField(service, "diasSazonalidade", 7);
+        // [sensorId, hora, soma, quantidade]: média 30 às 10h e 34 às 14h
+        when(leituraAgregadaRepository.findTemperaturaPorHoraDoDia(eq(LeituraAgregada.Resolucao.HORA), any()))
+                .thenReturn(List.of(
+                        new Object[]{SENSOR_ID, 10, 300.0, 10L},
+                        new Object[]{SENSOR_ID, 14, 340.0, 10L}));
+        service.init();
+
+        registrar(0, 29.0);
+        assertThat(sazonal()[10]).isEqualTo(-2.0);
+        assertThat(sazonal()[14]).isEqualTo(2.0);
+        assertThat(campo("nivel")).isEqualTo(31.0);
+    }
+
+    @Test
+    void previsaoAtingeARegraAntesDaLeitura() {
+        service.init();
+        Previsao previsao = null;
+        double temperatura = 28.0;
+        for (int minuto = 0; previsao == null && temperatura < 35.0; minuto += 10) {
+            temperatura = 28.0 + 0.05 * minuto;
+            previsao = registrar(minuto, temperatura);
+        }
+
+        assertThat(previsao).isNotNull();
+        assertThat(temperatura).isLessThan(35.0);
+        assertThat(previsao.temperatura()).isGreaterThanOrEqualTo(35.0);
+        assertThat(previsao.minutos()).isEqualTo(60);
+        assertThat(previsao.tipo()).isEqualTo("Previsão de Calor");
+    }
+
+    @Test
+    void temperaturaEstavelNaoGeraPrevisao() {
+        service.init();
+        for (int minuto = 0; minuto < 600; minuto += 10) {
+            assertThat(registrar(minuto, 33.0)).isNull();
+        }
+    }
+
+    private Previsao registrar(int minuto, double temperatura) {
+        Sensor sensor = new Sensor();
+        sensor.setId(SENSOR_ID);
+        Leitura leitura = new Leitura(sensor, BigDecimal.valueOf(temperatura), BigDecimal.valueOf(50),
+                INICIO.plusMinutes(minuto));
+        TabelaRegras tabela = alertaRegraService.getTabela();
+        long disparadas = alertaRegraService.avaliar(tabela, SENSOR_ID, leitura.getTemperatura(), leitura.getUmidade());
+        return service.registrar(leitura, tabela, disparadas);
+    }
+
+    private Object modelo() {
+        Map<?, ?> modelos = (Map<?, ?>) ReflectionTestUtils.getField(service, "modelos");
+        return modelos.get(SENSOR_ID);
+    }
+
+    private double campo(String nome) {
+        return (double) ReflectionTestUtils.getField(modelo(), nome);
+    }
+
+    private double[] sazonal() {
+        return (double[]) ReflectionTestUtils.getField(modelo(), "sazonal");
+    }
+}
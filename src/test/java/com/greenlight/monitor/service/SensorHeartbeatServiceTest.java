@@ -0,0 +1,180 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.service.SensorEstadoService.EstadoSensor;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Roda de temporização dos batimentos com relógio controlado
+ */
+class SensorHeartbeatServiceTest {
+
+    private static final long SENSOR_ID = 7L;
+    private static final long INICIO = 1_700_000_000_000L;
+
+    /**
+     * Relógio do servidor avançado manualmente
+     */
+    private static final class RelogioManual extends Clock {
+        private long agora = INICIO;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(agora);
+        }
+
+        @Override
+        public long millis() {
+            return agora;
+        }
+    }
+
+    private final RelogioManual relogio = new RelogioManual();
+    private final SensorInfo sensor = new SensorInfo(SENSOR_ID, 1L, "Sala 1", "DHT22", true,
+            "Escola", "Cidade", "SP", true);
+
+    private SensorEstadoService sensorEstadoService;
+    private NotificationService notificationService;
+    private SensorHeartbeatService service;
+
+    @BeforeEach
+    void setUp() {
+        SensorRegistryService sensorRegistryService = mock(SensorRegistryService.class);
+        when(sensorRegistryService.getSensores()).thenReturn(List.of(sensor));
+        when(sensorRegistryService.getSensorSeCarregado(SENSOR_ID)).thenReturn(sensor);
+        sensorEstadoService = mock(SensorEstadoService.class);
+        when(sensorEstadoService.findEstado(anyLong())).thenReturn(Optional.empty());
+        notificationService = mock(NotificationService.class);
+
+        service = new SensorHeartbeatService();
+        ReflectionTestUtils.setField(service, "sensorRegistryService", sensorRegistryService);
+        ReflectionTestUtils.setField(service, "sensorEstadoService", sensorEstadoService);
+        ReflectionTestUtils.setField(service, "notificationService", notificationService);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "relogio", relogio);
+        ReflectionTestUtils.setField(service, "tickMillis", 1000L);
+        // Volta de 8 s: o tempo limite padrão exige mais de uma volta
+        ReflectionTestUtils.setField(service, "tamanhoRoda", 8);
+        ReflectionTestUtils.setField(service, "tempoLimitePadrao", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(service, "fatorIntervalo", 3.0);
+        ReflectionTestUtils.setField(service, "tempoLimiteMinimo", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "tempoLimiteMaximo", Duration.ofSeconds(60));
+    }
+
+    @Test
+    void relogioAdiantadoDoSensorNaoEstendeOPrazo() {
+        iniciarComUltimaLeitura(Duration.ofDays(1));
+
+        avancar(Duration.ofSeconds(9));
+        assertThat(service.isOffline(SENSOR_ID)).isFalse();
+        avancar(Duration.ofSeconds(2));
+        assertThat(service.isOffline(SENSOR_ID)).isTrue();
+
+        // Silêncio prolongado: uma única notificação
+        avancar(Duration.ofMinutes(2));
+        verify(notificationService, times(1)).sendSensorOfflineAlert(eq(sensor), any(), any());
+    }
+
+    @Test
+    void relogioAtrasadoDoSensorNaoDerrubaSensorQueEnviaLeituras() {
+        // Timestamp do dispositivo um dia atrás: já sem leituras recentes na inicialização, sem notificação
+        iniciarComUltimaLeitura(Duration.ofDays(-1));
+        assertThat(service.isOffline(SENSOR_ID)).isTrue();
+
+        for (int i = 0; i < 30; i++) {
+            service.registrar(SENSOR_ID);
+            assertThat(service.isOffline(SENSOR_ID)).isFalse();
+            avancar(Duration.ofSeconds(2));
+        }
+
+        assertThat(service.getSensoresOffline()).isEmpty();
+        verify(notificationService, never()).sendSensorOfflineAlert(any(), any(), any());
+    }
+
+    @Test
+    void tempoLimiteAcompanhaACadenciaDoSensor() {
+        iniciarComUltimaLeitura(null);
+        for (int i = 0; i < 5; i++) {
+            avancar(Duration.ofSeconds(4));
+            service.registrar(SENSOR_ID);
+        }
+
+        // Cadência de 4 s x fator 3: offline após 12 s sem leituras
+        avancar(Duration.ofSeconds(11));
+        assertThat(service.isOffline(SENSOR_ID)).isFalse();
+        avancar(Duration.ofSeconds(2));
+        assertThat(service.isOffline(SENSOR_ID)).isTrue();
+        verify(notificationService, times(1)).sendSensorOfflineAlert(eq(sensor), any(), any());
+    }
+
+    @Test
+    void sensorOfflineVoltaComNovaLeituraENotificaDeNovoAposNovoSilencio() {
+        iniciarComUltimaLeitura(null);
+        avancar(Duration.ofSeconds(11));
+        assertThat(service.getSensoresOffline()).containsExactly(SENSOR_ID);
+
+        service.registrar(SENSOR_ID);
+        assertThat(service.isOffline(SENSOR_ID)).isFalse();
+        assertThat(service.getSensoresOffline()).isEmpty();
+
+        avancar(Duration.ofSeconds(11));
+        assertThat(service.isOffline(SENSOR_ID)).isTrue();
+        verify(notificationService, times(2)).sendSensorOfflineAlert(eq(sensor), any(), any());
+    }
+
+    /**
+     * Inicializa o serviço com a última leitura registrada deslocada do relógio do servidor
+     * (null: sensor sem leitura registrada)
+     */
+    private void iniciarComUltimaLeitura(Duration deslocamento) {
+        if (deslocamento != null) {
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(INICIO).plus(deslocamento),
+                    ZoneId.systemDefault());
+            when(sensorEstadoService.findEstado(SENSOR_ID)).thenReturn(Optional.of(new EstadoSensor(SENSOR_ID, 1L,
+                    BigDecimal.valueOf(25), BigDecimal.valueOf(60), timestamp, timestamp, null, null)));
+        }
+        service.init();
+    }
+
+    /**
+     * Avança o relógio de segundo em segundo, girando a roda a cada passo
+     */
+    private void avancar(Duration duracao) {
+        for (long passo = 0; passo < duracao.toSeconds(); passo++) {
+            relogio.agora += 1000;
+            service.avancar();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.entity.Escola;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.repository.EscolaRepository;
+import com.greenlight.monitor.repository.SensorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Registro de sensores em memória e cache negativo de IDs desconhecidos
+ */
+class SensorRegistryServiceTest {
+
+    private static final long ESCOLA_ID = 10L;
+    private static final long SENSOR_ID = 1L;
+    private static final long DESCONHECIDO_ID = 99L;
+
+    private SensorRepository sensorRepository;
+    private EscolaRepository escolaRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private SensorRegistryService service;
+    private Escola escola;
+
+    @BeforeEach
+    void setUp() {
+        escola = escola();
+        sensorRepository = mock(SensorRepository.class);
+        escolaRepository = mock(EscolaRepository.class);
+        when(sensorRepository.findAllComEscola()).thenReturn(List.of(sensor(SENSOR_ID)));
+        when(escolaRepository.findAll()).thenReturn(List.of(escola));
+        when(sensorRepository.findByIdComEscola(DESCONHECIDO_ID)).thenReturn(Optional.empty());
+
+        meterRegistry = new SimpleMeterRegistry();
+        service = new SensorRegistryService();
+        ReflectionTestUtils.setField(service, "sensorRepository", sensorRepository);
+        ReflectionTestUtils.setField(service, "escolaRepository", escolaRepository);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "desconhecidosTamanhoMaximo", 100L);
+        ReflectionTestUtils.setField(service, "desconhecidosTtl", Duration.ofHours(1));
+        service.init();
+    }
+
+    @Test
+    void sensorDoSnapshotNaoConsultaOBanco() {
+        assertThat(service.findSensor(SENSOR_ID)).hasValueSatisfying(info -> {
+            assertThat(info.escolaId()).isEqualTo(ESCOLA_ID);
+            assertThat(info.nomeEscola()).isEqualTo("Escola Estadual");
+        });
+        assertThat(service.getSensorIdsDaEscola(ESCOLA_ID)).containsExactly(SENSOR_ID);
+
+        verify(sensorRepository, never()).findByIdComEscola(anyLong());
+        assertThat(contagem("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void sensorDesconhecidoConsultaOBancoSoUmaVez() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.findSensor(DESCONHECIDO_ID)).isEmpty();
+        }
+
+        verify(sensorRepository, times(1)).findByIdComEscola(DESCONHECIDO_ID);
+        assertThat(contagem("miss")).isEqualTo(1.0);
+        assertThat(contagem("unknown")).isEqualTo(4.0);
+        assertThat(meterRegistry.get("sensor.registry.unknown.size").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void sensorCadastradoDepoisDeDesconhecidoApareceAposRefresh() {
+        assertThat(service.findSensor(DESCONHECIDO_ID)).isEmpty();
+
+        when(sensorRepository.findByIdComEscola(DESCONHECIDO_ID)).thenReturn(Optional.of(sensor(DESCONHECIDO_ID)));
+        service.refreshSensor(DESCONHECIDO_ID);
+
+        assertThat(service.findSensor(DESCONHECIDO_ID)).isPresent();
+        assertThat(service.getSensorIdsDaEscola(ESCOLA_ID)).containsExactlyInAnyOrder(SENSOR_ID, DESCONHECIDO_ID);
+        assertThat(meterRegistry.get("sensor.registry.unknown.size").gauge().value()).isZero();
+    }
+
+    @Test
+    void recarregarEsvaziaOCacheNegativo() {
+        assertThat(service.findSensor(DESCONHECIDO_ID)).isEmpty();
+
+        service.recarregar();
+        assertThat(service.findSensor(DESCONHECIDO_ID)).isEmpty();
+
+        verify(sensorRepository, times(2)).findByIdComEscola(DESCONHECIDO_ID);
+    }
+
+    @Test
+    void sensorRemovidoDoBancoSaiDoSnapshotEDaEscola() {
+        when(sensorRepository.findByIdComEscola(SENSOR_ID)).thenReturn(Optional.empty());
+
+        assertThat(service.refreshSensor(SENSOR_ID)).isNull();
+
+        assertThat(service.getSensorSeCarregado(SENSOR_ID)).isNull();
+        assertThat(service.getSensorIdsDaEscola(ESCOLA_ID)).isEmpty();
+    }
+
+    private double contagem(String resultado) {
+        return meterRegistry.get("sensor.registry.lookups").tag("result", resultado).counter().count();
+    }
+
+    private static Escola escola() {
+        Escola escola = new Escola();
+        escola.setId(ESCOLA_ID);
+        escola.setNome("Escola Estadual");
+        escola.setCidade("Campinas");
+        escola.setEstado("SP");
+        escola.setAtivo(true);
+        return escola;
+    }
+
+    private Sensor sensor(long id) {
+        Sensor sensor = new Sensor();
+        sensor.setId(id);
+        sensor.setEscola(escola);
+        sensor.setLocalizacao("Sala " + id);
+        sensor.setTipo("DHT22");
+        sensor.setAtivo(true);
+        return sensor;
+    }
+}
@@ -0,0 +1,97 @@
+package com.greenlight.monitor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Carga do canal SSE: milhares de assinantes conectados pelo endpoint do dashboard, envio em threads
+ * virtuais, leituras de todas as escolas distribuídas a cada intervalo. Mede o tempo de cada intervalo
+ * até o último assinante receber seus eventos.
+ * Executar com {@code mvn test -Dbenchmark=true -Dtest=TempoRealServiceLoadTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TempoRealServiceLoadTest {
+
+    private static final int ASSINANTES = 5_000;
+    private static final int ESCOLAS = 100;
+    private static final int SENSORES_POR_ESCOLA = 5;
+    private static final int INTERVALOS = 10;
+
+    @Test
+    void milharesDeAssinantesEmThreadsVirtuais() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TempoRealService service = TempoRealServiceTest.novoServico(meterRegistry, ASSINANTES,
+                2 * ESCOLAS * SENSORES_POR_ESCOLA, true);
+        try {
+            MockMvc mockMvc = TempoRealServiceTest.mockMvc(service);
+
+            // Conexões abertas em paralelo; 2% dos dashboards assinam todas as escolas
+            MockHttpServletResponse[] respostas = new MockHttpServletResponse[ASSINANTES];
+            int[] esperadosPorIntervalo = new int[ASSINANTES];
+            try (ExecutorService conexoes = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> tarefas = new ArrayList<>();
+                for (int i = 0; i < ASSINANTES; i++) {
+                    int assinante = i;
+                    tarefas.add(conexoes.submit(() -> {
+                        Long escola = assinante % 50 == 0 ? null : (long) (assinante % ESCOLAS);
+                        respostas[assinante] = TempoRealServiceTest.assinar(mockMvc, escola);
+                        esperadosPorIntervalo[assinante] = escola == null
+                                ? ESCOLAS * SENSORES_POR_ESCOLA : SENSORES_POR_ESCOLA;
+                        return null;
+                    }));
+                }
+                for (Future<?> tarefa : tarefas) {
+                    tarefa.get();
+                }
+            }
+
+            long esperadosTotal = Arrays.stream(esperadosPorIntervalo).asLongStream().sum();
+            long[] latencias = new long[INTERVALOS];
+            for (int intervalo = 1; intervalo <= INTERVALOS; intervalo++) {
+                // Duas leituras por sensor no intervalo: apenas a última é enviada
+                for (int repeticao = 0; repeticao < 2; repeticao++) {
+                    for (int escola = 0; escola < ESCOLAS; escola++) {
+                        for (int s = 0; s < SENSORES_POR_ESCOLA; s++) {
+                            long sensorId = (long) escola * SENSORES_POR_ESCOLA + s;
+                            service.publicarLeitura(TempoRealServiceTest.sensor(sensorId, escola),
+                                    TempoRealServiceTest.leitura(sensorId, intervalo, 20 + repeticao));
+                        }
+                    }
+                }
+
+                long inicio = System.nanoTime();
+                TempoRealServiceTest.distribuir(service);
+                long enviados = esperadosTotal * intervalo;
+                TempoRealServiceTest.aguardar(() -> meterRegistry.get("realtime.events.sent").counter().count()
+                        >= enviados, Duration.ofMinutes(2));
+                latencias[intervalo - 1] = System.nanoTime() - inicio;
+            }
+
+            assertThat(meterRegistry.get("realtime.subscribers.dropped").counter().count()).isZero();
+            for (int i = 0; i < ASSINANTES; i++) {
+                assertThat(TempoRealServiceTest.eventos(respostas[i], "leitura"))
+                        .isEqualTo(esperadosPorIntervalo[i] * INTERVALOS);
+            }
+            Arrays.sort(latencias);
+            double eventos = meterRegistry.get("realtime.events.sent").counter().count();
+            System.out.printf("Tempo real: %d assinantes, %.0f eventos enviados; entrega do intervalo " +
+                            "mediana %.1f ms, máxima %.1f ms%n", ASSINANTES, eventos,
+                    latencias[INTERVALOS / 2] / 1e6, latencias[INTERVALOS - 1] / 1e6);
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.greenlight.monitor.service;
+
+import com.greenlight.monitor.controller.HomeController;
+import com.greenlight.monitor.entity.Leitura;
+import com.greenlight.monitor.entity.Sensor;
+import com.greenlight.monitor.service.DashboardService.Estatisticas;
+import com.greenlight.monitor.service.SensorRegistryService.SensorInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Canal SSE de tempo real pelo endpoint do dashboard: filtro por escola, agrupamento por sensor e
+ * desconexão de assinantes lentos
+ */
+class TempoRealServiceTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 3, 4, 10, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+    private TempoRealService service;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = novoServico(meterRegistry, 100, 2, false);
+        mockMvc = mockMvc(service);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void assinanteRecebeSoAUltimaLeituraDoSensorDasEscolasAssinadas() throws Exception {
+        MockHttpServletResponse escola1 = assinar(mockMvc, 1L);
+        MockHttpServletResponse escola2 = assinar(mockMvc, 2L);
+        MockHttpServletResponse todas = assinar(mockMvc, null);
+
+        service.publicarLeitura(sensor(10, 1), leitura(10, 0, 25.0));
+        service.publicarLeitura(sensor(10, 1), leitura(10, 1, 26.0));
+        service.publicarLeitura(sensor(10, 1), leitura(10, 2, 27.5));
+        distribuir(service);
+
+        aguardar(() -> eventos(escola1, "leitura") == 1 && eventos(todas, "leitura") == 1, Duration.ofSeconds(5));
+        assertThat(escola1.getContentAsString()).contains("\"temperatura\":27.5").doesNotContain("\"temperatura\":25.0");
+        assertThat(eventos(escola2, "leitura")).isZero();
+        assertThat(meterRegistry.get("realtime.readings.coalesced").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void assinanteQueNaoAcompanhaORitmoEDesconectado() throws Exception {
+        assinar(mockMvc, null);
+        // Envio parado: o buffer (2 eventos) enche no terceiro evento do intervalo
+        ((ExecutorService) ReflectionTestUtils.getField(service, "envio")).shutdownNow();
+        ReflectionTestUtils.setField(service, "envio", mock(ExecutorService.class));
+
+        for (int versao = 1; versao <= 3; versao++) {
+            service.publicarEstatisticas(estatisticas(versao));
+        }
+        distribuir(service);
+
+        assertThat(meterRegistry.get("realtime.subscribers.dropped").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("realtime.subscribers").gauge().value()).isZero();
+    }
+
+    @Test
+    void limiteDeAssinantesRecusaNovasConexoes() throws Exception {
+        ReflectionTestUtils.setField(service, "maximoAssinantes", 1);
+        assinar(mockMvc, null);
+
+        assertThat(mockMvc.perform(get("/api/dashboard/stream")).andReturn().getResponse().getStatus())
+                .isEqualTo(503);
+    }
+
+    /**
+     * Serviço com distribuição manual (o intervalo automático não corre durante o teste)
+     */
+    static TempoRealService novoServico(SimpleMeterRegistry meterRegistry, int maximoAssinantes, int buffer,
+                                        boolean threadsVirtuais) {
+        TempoRealService service = new TempoRealService();
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "intervaloDistribuicao", Duration.ofHours(1).toMillis());
+        ReflectionTestUtils.setField(service, "maximoAssinantes", maximoAssinantes);
+        ReflectionTestUtils.setField(service, "capacidadeBuffer", buffer);
+        ReflectionTestUtils.setField(service, "threadsEnvio", 8);
+        ReflectionTestUtils.setField(service, "threadsVirtuais", threadsVirtuais);
+        ReflectionTestUtils.setField(service, "tempoConexao", Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "intervaloKeepAlive", Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "maximoEventosPendentes", 1000);
+        service.init();
+        return service;
+    }
+
+    static MockMvc mockMvc(TempoRealService service) {
+        DashboardService dashboardService = mock(DashboardService.class);
+        when(dashboardService.getSnapshot()).thenReturn(new DashboardService.Snapshot(0, null, List.of()));
+        HomeController controller = new HomeController();
+        ReflectionTestUtils.setField(controller, "dashboardService", dashboardService);
+        ReflectionTestUtils.setField(controller, "tempoRealService", service);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    /**
+     * Abre uma conexão SSE; os eventos enviados depois são acrescentados à resposta
+     */
+    static MockHttpServletResponse assinar(MockMvc mockMvc, Long escolaId) throws Exception {
+        MockHttpServletRequestBuilder requisicao = get("/api/dashboard/stream");
+        if (escolaId != null) {
+            requisicao.param("escolaId", escolaId.toString());
+        }
+        return mockMvc.perform(requisicao).andExpect(request().asyncStarted()).andReturn().getResponse();
+    }
+
+    static void distribuir(TempoRealService service) {
+        ReflectionTestUtils.invokeMethod(service, "distribuir");
+    }
+
+    static int eventos(MockHttpServletResponse resposta, String nome) {
+        try {
+            String conteudo = resposta.getContentAsString();
+            String marcador = "event:" + nome + "\n";
+            int total = 0;
+            for (int i = conteudo.indexOf(marcador); i >= 0; i = conteudo.indexOf(marcador, i + 1)) {
+                total++;
+            }
+            return total;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static SensorInfo sensor(long id, long escolaId) {
+        return new SensorInfo(id, escolaId, "Sala " + id, "DHT22", true, "Escola " + escolaId, "Cidade", "SP", true);
+    }
+
+    static Leitura leitura(long sensorId, int minuto, double temperatura) {
+        Sensor sensor = new Sensor();
+        sensor.setId(sensorId);
+        return new Leitura(sensor, BigDecimal.valueOf(temperatura), BigDecimal.valueOf(50), INICIO.plusMinutes(minuto));
+    }
+
+    private static Estatisticas estatisticas(long versao) {
+        return new Estatisticas(versao, INICIO, 1, 1, 1, 0, 0, 0, List.of());
+    }
+
+    static void aguardar(BooleanSupplier condicao, Duration limite) throws InterruptedException {
+        long prazo = System.nanoTime() + limite.toNanos();
+        while (!condicao.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condição não atingida em %s", limite).isLessThan(prazo);
+            Thread.sleep(10);
+        }
+    }
+}
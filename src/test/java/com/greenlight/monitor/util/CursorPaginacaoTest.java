@@ -0,0 +1,74 @@
+package com.greenlight.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Codificação e decodificação dos cursores de paginação por chave e tokens inválidos
+ */
+class CursorPaginacaoTest {
+
+    @Test
+    void timestampEIdSobrevivemAoToken() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 4, 8, 15, 30, 123_456_000);
+
+        CursorPaginacao cursor = CursorPaginacao.decodificar(CursorPaginacao.codificar(timestamp, 42L));
+
+        assertThat(cursor.getId()).isEqualTo(42L);
+        assertThat(cursor.getTimestamp()).isEqualTo(timestamp);
+    }
+
+    @Test
+    void valorComSeparadorEAcentosSobreviveAoToken() {
+        String nome = "E.E. Prof. João: Anexo/São José";
+
+        String token = CursorPaginacao.codificar(nome, 7L);
+        CursorPaginacao cursor = CursorPaginacao.decodificar(token);
+
+        assertThat(cursor.getId()).isEqualTo(7L);
+        assertThat(cursor.getValor()).isEqualTo(nome);
+        // Token seguro para query string: Base64 URL sem preenchimento
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void tokensInvalidosSaoRecusados() {
+        assertInvalido("não é base64!");
+        assertInvalido(base64("sem-separador"));
+        assertInvalido(base64(":sem-id"));
+        assertInvalido(base64("abc:id-nao-numerico"));
+    }
+
+    @Test
+    void valorQueNaoETimestampERecusadoAoLerOTimestamp() {
+        CursorPaginacao cursor = CursorPaginacao.decodificar(CursorPaginacao.codificar("Escola A", 3L));
+
+        assertThatThrownBy(cursor::getTimestamp)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cursor de paginação inválido");
+    }
+
+    @Test
+    void tamanhoDaPaginaFicaEntreUmEOMaximo() {
+        assertThat(CursorPaginacao.pagina(0).getPageSize()).isEqualTo(1);
+        assertThat(CursorPaginacao.pagina(20).getPageSize()).isEqualTo(20);
+        assertThat(CursorPaginacao.pagina(10_000).getPageSize()).isEqualTo(CursorPaginacao.TAMANHO_MAXIMO);
+        assertThat(CursorPaginacao.pagina(20).getOffset()).isZero();
+    }
+
+    private static void assertInvalido(String token) {
+        assertThatThrownBy(() -> CursorPaginacao.decodificar(token))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cursor de paginação inválido");
+    }
+
+    private static String base64(String conteudo) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(conteudo.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,100 @@
+package com.greenlight.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Mapa de chaves long com endereçamento aberto: colisões, redimensionamento e cópias imutáveis
+ */
+class LongObjectMapTest {
+
+    // Chaves extremas e múltiplos de potências de dois grandes, que colidem nos bits baixos
+    private static final long[] CHAVES_ESPECIAIS = {0L, -1L, 1L, Long.MIN_VALUE, Long.MAX_VALUE,
+            1L << 32, 2L << 32, 3L << 32, 1L << 62, -(1L << 40)};
+
+    @Test
+    void builderEncontraTodasAsChavesAposRedimensionar() {
+        LongObjectMap.Builder<String> builder = LongObjectMap.builder(2);
+        Map<Long, String> esperado = new HashMap<>();
+        for (long chave : CHAVES_ESPECIAIS) {
+            builder.put(chave, "v" + chave);
+            esperado.put(chave, "v" + chave);
+        }
+        for (long chave = 100; chave < 5_100; chave++) {
+            builder.put(chave * 1024, "v" + chave);
+            esperado.put(chave * 1024, "v" + chave);
+        }
+
+        LongObjectMap<String> mapa = builder.build();
+
+        assertThat(mapa.size()).isEqualTo(esperado.size());
+        esperado.forEach((chave, valor) -> assertThat(mapa.get(chave)).isEqualTo(valor));
+        assertThat(mapa.get(42L)).isNull();
+        assertThat(mapa.containsKey(42L)).isFalse();
+        assertThat(mapa.values()).containsExactlyInAnyOrderElementsOf(esperado.values());
+    }
+
+    @Test
+    void putDeChaveExistenteSobrescreveSemAumentarOTamanho() {
+        LongObjectMap<String> mapa = LongObjectMap.<String>builder(4)
+                .put(7L, "antigo")
+                .put(7L, "novo")
+                .build();
+
+        assertThat(mapa.size()).isEqualTo(1);
+        assertThat(mapa.get(7L)).isEqualTo("novo");
+    }
+
+    @Test
+    void withEWithoutGeramCopiasSemAlterarOOriginal() {
+        LongObjectMap.Builder<String> builder = LongObjectMap.builder(CHAVES_ESPECIAIS.length);
+        for (long chave : CHAVES_ESPECIAIS) {
+            builder.put(chave, "v" + chave);
+        }
+        LongObjectMap<String> original = builder.build();
+
+        LongObjectMap<String> comNova = original.with(99L, "v99");
+        LongObjectMap<String> semZero = original.without(0L);
+
+        assertThat(original.size()).isEqualTo(CHAVES_ESPECIAIS.length);
+        assertThat(original.containsKey(99L)).isFalse();
+        assertThat(original.get(0L)).isEqualTo("v0");
+        assertThat(comNova.size()).isEqualTo(CHAVES_ESPECIAIS.length + 1);
+        assertThat(comNova.get(99L)).isEqualTo("v99");
+        assertThat(semZero.size()).isEqualTo(CHAVES_ESPECIAIS.length - 1);
+        assertThat(semZero.containsKey(0L)).isFalse();
+        // As chaves que colidiam com a removida continuam acessíveis
+        for (long chave : CHAVES_ESPECIAIS) {
+            if (chave != 0L) {
+                assertThat(semZero.get(chave)).isEqualTo("v" + chave);
+            }
+        }
+    }
+
+    @Test
+    void withoutDeChaveAusenteDevolveAMesmaInstancia() {
+        LongObjectMap<String> mapa = LongObjectMap.<String>empty().with(1L, "um");
+
+        assertThat(mapa.without(2L)).isSameAs(mapa);
+    }
+
+    @Test
+    void mapaVazioNaoTemValores() {
+        LongObjectMap<String> vazio = LongObjectMap.empty();
+
+        assertThat(vazio.isEmpty()).isTrue();
+        assertThat(vazio.get(0L)).isNull();
+        assertThat(vazio.values()).isEmpty();
+    }
+
+    @Test
+    void valoresNulosSaoRecusados() {
+        assertThatThrownBy(() -> LongObjectMap.<String>builder(1).put(1L, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}